@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.maven.shared.invoker.DefaultInvocationRequest;
+import org.apache.maven.shared.invoker.DefaultInvoker;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.apache.maven.shared.invoker.Invoker;
+import org.apache.maven.shared.invoker.MavenInvocationException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds a generated {@link MultiModuleProject} with Maven, offline against a local repository, and records the wall
+ * time and peak heap of the {@code generate} goal for every given plugin version. The time of the goal is the time of
+ * a build running it after an up-to-date {@code compile}, minus the time of that {@code compile} alone. The generation
+ * reports of the modules are added when the plugin version writes them. Configured through system properties:
+ * <ul>
+ *     <li>{@code e2e.modules}, {@code e2e.holders}, {@code e2e.depth} and {@code e2e.fanOut} size the project,</li>
+ *     <li>{@code e2e.versions} lists the plugin versions to compare, which must be in the local repository,</li>
+ *     <li>{@code e2e.runs} sets the number of runs per version,</li>
+ *     <li>{@code e2e.localRepository} and {@code maven.home} point to the local repository and Maven
+ *     installation,</li>
+ *     <li>{@code e2e.offline} can be set to {@code false} once, to fill the local repository with the dependencies of
+ *     the generated project,</li>
+ *     <li>{@code e2e.output} sets the json file the results are written to.</li>
+ * </ul>
+ */
+public class EndToEndBenchmark {
+
+    private static final String PLUGIN = "io.axoniq:axon-dataprotection-maven-plugin";
+
+    private static final String REPORT = "target/axon-data-protection-report.json";
+
+    /**
+     * Matches the heap before and after a collection in the unified gc log, like {@code 24M->8M(256M)}.
+     */
+    private static final Pattern GC_HEAP = Pattern.compile("(\\d+)M->(\\d+)M\\(\\d+M\\)");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Invoker invoker = new DefaultInvoker();
+    private final File localRepository;
+    private final boolean offline;
+
+    private EndToEndBenchmark(File mavenHome, File localRepository, boolean offline) {
+        this.localRepository = localRepository;
+        this.offline = offline;
+        invoker.setMavenHome(mavenHome);
+    }
+
+    /**
+     * Run the benchmark as configured by the system properties.
+     *
+     * @param args Not used.
+     * @throws Exception If the project could not be generated or built.
+     */
+    public static void main(String[] args) throws Exception {
+        MultiModuleProject project = new MultiModuleProject(Integer.getInteger("e2e.modules", 10),
+                                                            Integer.getInteger("e2e.holders", 50),
+                                                            Integer.getInteger("e2e.depth", 2),
+                                                            Integer.getInteger("e2e.fanOut", 3));
+        List<String> versions = List.of(System.getProperty("e2e.versions", "1.1-SNAPSHOT").split(","));
+        int runs = Integer.getInteger("e2e.runs", 3);
+        File localRepository = new File(System.getProperty(
+                "e2e.localRepository", System.getProperty("user.home") + "/.m2/repository"));
+        File output = new File(System.getProperty("e2e.output", "target/e2e-results.json"));
+
+        boolean offline = Boolean.parseBoolean(System.getProperty("e2e.offline", "true"));
+
+        EndToEndBenchmark benchmark = new EndToEndBenchmark(mavenHome(), localRepository, offline);
+        Path root = Files.createTempDirectory("axon-data-protection-e2e");
+        project.write(root, System.getProperty("e2e.configApiVersion", "1.0"),
+                      System.getProperty("e2e.compilerVersion", "3.10.1"));
+
+        ObjectNode results = benchmark.objectMapper.createObjectNode();
+        results.put("modules", Integer.getInteger("e2e.modules", 10));
+        results.put("holders", project.holderCount());
+        results.set("compile", benchmark.run(root, "compile", List.of("clean", "compile"), new Properties()));
+        ArrayNode measurements = results.putArray("generate");
+        Properties properties = new Properties();
+        properties.setProperty("packages", MultiModuleProject.PACKAGE);
+        for (String version : versions) {
+            for (int run = 0; run < runs; run++) {
+                // the reactor only resolves the classes of other modules when they are compiled in the same build,
+                // so the generate goal runs after an up-to-date compile, which is measured on its own as baseline
+                ObjectNode baseline = benchmark.run(root, "baseline-" + version + "-" + run,
+                                                    List.of("compile"), properties);
+                benchmark.deleteReports(root);
+                ObjectNode measurement = benchmark.run(root, "generate-" + version + "-" + run,
+                                                       List.of("compile", PLUGIN + ":" + version + ":generate"),
+                                                       properties);
+                long generateMillis = measurement.get("wallMillis").asLong() - baseline.get("wallMillis").asLong();
+                measurement.put("version", version);
+                measurement.put("run", run);
+                measurement.put("baselineMillis", baseline.get("wallMillis").asLong());
+                measurement.put("generateMillis", generateMillis);
+                measurement.set("reports", benchmark.readReports(root));
+                measurements.add(measurement);
+                System.out.printf("%s run %d: generate %d ms, peak heap %d MB%n", version, run, generateMillis,
+                                  measurement.get("peakHeapMb").asLong());
+            }
+        }
+        Files.createDirectories(output.getAbsoluteFile().getParentFile().toPath());
+        benchmark.objectMapper.writerWithDefaultPrettyPrinter().writeValue(output, results);
+        System.out.printf("Results written to %s%n", output);
+    }
+
+    /**
+     * Run the given goals on the project and measure them.
+     *
+     * @return The wall time and the peak heap of the Maven JVM.
+     */
+    private ObjectNode run(Path root, String name, List<String> goals, Properties properties)
+            throws IOException, MavenInvocationException {
+        Path gcLog = root.resolve("gc-" + name + ".log");
+        InvocationRequest request = new DefaultInvocationRequest();
+        request.setBaseDirectory(root.toFile());
+        request.setGoals(goals);
+        request.setProperties(properties);
+        request.setBatchMode(true);
+        request.setOffline(offline);
+        request.setLocalRepositoryDirectory(localRepository);
+        request.setMavenOpts("-Xlog:gc:file=" + gcLog);
+        request.setOutputHandler(line -> {
+            if (line.startsWith("[ERROR]") || line.startsWith("[WARNING]")) {
+                System.out.println(line);
+            }
+        });
+
+        long start = System.nanoTime();
+        InvocationResult result = invoker.execute(request);
+        long wallMillis = (System.nanoTime() - start) / 1_000_000;
+        if (result.getExitCode() != 0) {
+            throw new IllegalStateException(String.format("%s failed with exit code %d", goals,
+                                                          result.getExitCode()), result.getExecutionException());
+        }
+        ObjectNode measurement = objectMapper.createObjectNode();
+        measurement.put("wallMillis", wallMillis);
+        measurement.put("peakHeapMb", peakHeap(gcLog));
+        return measurement;
+    }
+
+    /**
+     * Delete the generation reports of all modules, so a plugin version which does not write them is not credited with
+     * those of an earlier run.
+     */
+    private void deleteReports(Path root) throws IOException {
+        for (Path report : reports(root)) {
+            Files.delete(report);
+        }
+    }
+
+    /**
+     * Read the generation reports written by the plugin, which time the phases of the goal without the Maven overhead.
+     *
+     * @return The reports per module, empty for plugin versions which do not write them.
+     */
+    private ObjectNode readReports(Path root) throws IOException {
+        ObjectNode reports = objectMapper.createObjectNode();
+        for (Path report : reports(root)) {
+            String module = report.getParent().getParent().getFileName().toString();
+            reports.set(module, objectMapper.readTree(report.toFile()));
+        }
+        return reports;
+    }
+
+    private static List<Path> reports(Path root) throws IOException {
+        try (Stream<Path> modules = Files.list(root)) {
+            return modules.map(module -> module.resolve(REPORT))
+                          .filter(Files::exists)
+                          .sorted()
+                          .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Read the peak heap usage from a gc log.
+     *
+     * @return The largest heap size before a collection in MB, or zero if no collection happened.
+     */
+    private static long peakHeap(Path gcLog) throws IOException {
+        if (!Files.exists(gcLog)) {
+            return 0;
+        }
+        long peak = 0;
+        try (Stream<String> lines = Files.lines(gcLog)) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                Matcher matcher = GC_HEAP.matcher(line);
+                if (matcher.find()) {
+                    peak = Math.max(peak, Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        return peak;
+    }
+
+    private static File mavenHome() {
+        String mavenHome = System.getProperty("maven.home", System.getenv("MAVEN_HOME"));
+        if (mavenHome == null) {
+            throw new IllegalStateException("Set maven.home or MAVEN_HOME to the Maven installation to use");
+        }
+        return new File(mavenHome);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.benchmark;
+
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.generator.MetamodelGenerator;
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoader;
+import io.axoniq.plugin.data.protection.testsupport.SyntheticCatalog;
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the {@link MetamodelGenerator} over {@link SyntheticCatalog}s of different sizes and shapes. Run it with
+ * {@code -prof gc} for the allocation rate, and compare the scores over the {@code holders} parameter for the scaling
+ * curve.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetamodelGeneratorBenchmark {
+
+    private static final String PACKAGE = "io.axoniq.benchmark.catalog";
+
+    @Param({"10", "100", "1000"})
+    private int holders;
+
+    @Param({"1", "3"})
+    private int depth;
+
+    @Param({"2", "4"})
+    private int fanOut;
+
+    @Param({"FIELDS", "COLLECTIONS", "MAPS", "ARRAYS"})
+    private SyntheticCatalog.Shape shape;
+
+    private Path directory;
+    private ScanClassLoader classLoader;
+    private MetamodelGenerator generator;
+    private List<Class<?>> holderClasses;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("axon-data-protection-benchmark");
+        SyntheticCatalog catalog = SyntheticCatalog.builder(PACKAGE)
+                                                   .holders(holders)
+                                                   .depth(depth)
+                                                   .fanOut(fanOut)
+                                                   .shape(shape)
+                                                   .build();
+        catalog.write(directory);
+        classLoader = new ScanClassLoader(List.of(directory.toUri().toURL()), getClass().getClassLoader());
+        generator = new MetamodelGenerator(new DefaultLog(new ConsoleLogger(Logger.LEVEL_WARN, "benchmark")),
+                                           List.of(),
+                                           classLoader);
+        holderClasses = new ArrayList<>();
+        for (String holder : catalog.holderNames()) {
+            holderClasses.add(classLoader.loadClass(holder));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        classLoader.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Inspect every holder on its own, without sharing type fragments between them.
+     */
+    @Benchmark
+    public void generateClass(Blackhole blackhole) {
+        for (Class<?> holder : holderClasses) {
+            blackhole.consume(generator.generateMetamodel(holder));
+        }
+    }
+
+    /**
+     * Scan the package and inspect all holders, sharing the type fragments between them.
+     */
+    @Benchmark
+    public DataProtectionConfigList generatePackages() {
+        return generator.generateMetamodel(List.of(PACKAGE));
+    }
+}
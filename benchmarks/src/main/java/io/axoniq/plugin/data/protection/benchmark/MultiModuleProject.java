@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A generated multi-module Maven project. The {@code common} module holds shared value objects, where every level
+ * embeds all value objects of the next level, and every other module holds events embedding the first level.
+ */
+public class MultiModuleProject {
+
+    /**
+     * The root package of all generated classes.
+     */
+    public static final String PACKAGE = "io.axoniq.e2e";
+
+    private final int modules;
+    private final int holders;
+    private final int depth;
+    private final int fanOut;
+
+    /**
+     * Describe a new project.
+     *
+     * @param modules The number of modules holding events.
+     * @param holders The number of events per module.
+     * @param depth   The number of value object levels below the events.
+     * @param fanOut  The number of value objects per level.
+     */
+    public MultiModuleProject(int modules, int holders, int depth, int fanOut) {
+        this.modules = modules;
+        this.holders = holders;
+        this.depth = depth;
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * @return The total number of events.
+     */
+    public int holderCount() {
+        return modules * holders;
+    }
+
+    /**
+     * Write the poms and sources of the project.
+     *
+     * @param root             The root directory of the project.
+     * @param configApiVersion The version of the annotations artifact.
+     * @param compilerVersion  The version of the maven-compiler-plugin.
+     * @throws IOException If the project can not be written.
+     */
+    public void write(Path root, String configApiVersion, String compilerVersion) throws IOException {
+        StringBuilder moduleList = new StringBuilder("        <module>common</module>\n");
+        for (int module = 0; module < modules; module++) {
+            moduleList.append("        <module>module").append(module).append("</module>\n");
+        }
+        write(root.resolve("pom.xml"), "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+                + "    <modelVersion>4.0.0</modelVersion>\n"
+                + "    <groupId>io.axoniq.e2e</groupId>\n"
+                + "    <artifactId>parent</artifactId>\n"
+                + "    <version>1.0</version>\n"
+                + "    <packaging>pom</packaging>\n"
+                + "    <modules>\n" + moduleList + "    </modules>\n"
+                + "    <properties>\n"
+                + "        <maven.compiler.release>11</maven.compiler.release>\n"
+                + "        <project.build.sourceEncoding>UTF-8</project.build.sourceEncoding>\n"
+                + "    </properties>\n"
+                + "    <dependencies>\n"
+                + "        <dependency>\n"
+                + "            <groupId>io.axoniq</groupId>\n"
+                + "            <artifactId>axon-dataprotection-config-api</artifactId>\n"
+                + "            <version>" + configApiVersion + "</version>\n"
+                + "        </dependency>\n"
+                + "    </dependencies>\n"
+                + "    <build>\n"
+                + "        <plugins>\n"
+                + "            <plugin>\n"
+                + "                <groupId>org.apache.maven.plugins</groupId>\n"
+                + "                <artifactId>maven-compiler-plugin</artifactId>\n"
+                + "                <version>" + compilerVersion + "</version>\n"
+                + "            </plugin>\n"
+                + "        </plugins>\n"
+                + "    </build>\n"
+                + "</project>\n");
+        writeModule(root.resolve("common"), "common", "");
+        for (int level = 0; level < depth; level++) {
+            for (int index = 0; index < fanOut; index++) {
+                writeClass(root.resolve("common"), PACKAGE + ".common", valueName(level, index),
+                           "\n    @SensitiveData(replacementValue = \"secret-" + level + "-" + index + "\")\n"
+                                   + "    String secret;\n" + references(level + 1));
+            }
+        }
+        String commonDependency = "    <dependencies>\n"
+                + "        <dependency>\n"
+                + "            <groupId>io.axoniq.e2e</groupId>\n"
+                + "            <artifactId>common</artifactId>\n"
+                + "            <version>1.0</version>\n"
+                + "        </dependency>\n"
+                + "    </dependencies>\n";
+        for (int module = 0; module < modules; module++) {
+            Path moduleRoot = root.resolve("module" + module);
+            writeModule(moduleRoot, "module" + module, commonDependency);
+            for (int holder = 0; holder < holders; holder++) {
+                writeClass(moduleRoot, PACKAGE + ".module" + module,
+                           "@SensitiveDataHolder\npublic class Event" + holder,
+                           "\n    @SubjectId\n    String id;\n" + references(0));
+            }
+        }
+    }
+
+    private void writeModule(Path moduleRoot, String artifactId, String dependencies) throws IOException {
+        write(moduleRoot.resolve("pom.xml"), "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+                + "    <modelVersion>4.0.0</modelVersion>\n"
+                + "    <parent>\n"
+                + "        <groupId>io.axoniq.e2e</groupId>\n"
+                + "        <artifactId>parent</artifactId>\n"
+                + "        <version>1.0</version>\n"
+                + "    </parent>\n"
+                + "    <artifactId>" + artifactId + "</artifactId>\n"
+                + dependencies
+                + "</project>\n");
+    }
+
+    private void writeClass(Path moduleRoot, String pkg, String declaration, String body) throws IOException {
+        String name = declaration.substring(declaration.lastIndexOf(' ') + 1);
+        String header = declaration.startsWith("@") ? declaration : "public class " + declaration;
+        write(moduleRoot.resolve("src/main/java/" + pkg.replace('.', '/') + "/" + name + ".java"),
+              "package " + pkg + ";\n\n"
+                      + "import io.axoniq.plugin.data.protection.annotation.*;\n"
+                      + (depth > 0 ? "import " + PACKAGE + ".common.*;\n" : "") + "\n"
+                      + header + " {\n" + body + "}\n");
+    }
+
+    private String references(int level) {
+        if (level >= depth) {
+            return "";
+        }
+        StringBuilder fields = new StringBuilder();
+        for (int index = 0; index < fanOut; index++) {
+            fields.append("\n    ").append(valueName(level, index)).append(" value").append(index).append(";\n");
+        }
+        return fields.toString();
+    }
+
+    private static String valueName(int level, int index) {
+        return "Value" + level + "_" + index;
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.generator.cache.ScanIndexCache;
+import io.axoniq.plugin.data.protection.generator.cache.TypeFragmentCache;
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoader;
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoaders;
+import io.axoniq.plugin.data.protection.generator.errors.GuardrailExceededException;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Generates a single config for all modules of the reactor. Modules whose dependencies agree on the version of every
+ * artifact are loaded by a single loader and generated together, so types shared by those modules are only inspected
+ * once. Modules depending on another version of an artifact are generated separately, against their own version. The
+ * packages are scanned and the holders inspected in parallel. Run it after the modules are compiled, for example with
+ * {@code mvn compile axon-data-protection:aggregate}.
+ */
+@Mojo(name = "aggregate",
+        aggregator = true,
+        requiresDependencyResolution = ResolutionScope.COMPILE,
+        threadSafe = true)
+public class AxonDataProtectionAggregateMojo extends AbstractMojo {
+
+    /**
+     * All projects of the reactor.
+     */
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true)
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * The current build session. It holds the {@link ScanClassLoaders} shared by the goals running at the same time.
+     */
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession session;
+
+    /**
+     * This property specify in which packages the plugin should look for the {@link
+     * io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder} Annotation to start generating the metamodel.
+     */
+    @Parameter(property = "packages", required = true)
+    private List<String> packages;
+
+    /**
+     * This property specify which class names or packages the plugin should ignore when looking for annotations.
+     * Examples would be `my.package.Class` or `my.package.*`.
+     */
+    @Parameter(property = "ignores")
+    private List<String> ignores;
+
+    /**
+     * Location of the combined config of all modules.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/axon-data-protection-config.json")
+    private File outputConfig;
+
+    /**
+     * This property specify if every module should also get a config with its own holders, written to {@link
+     * AxonDataProtectionAggregateMojo#moduleOutputConfig} in its build directory.
+     */
+    @Parameter(property = "perModuleOutput", defaultValue = "false")
+    private boolean perModuleOutput;
+
+    /**
+     * File name of the per module configs.
+     */
+    @Parameter(defaultValue = "axon-data-protection-config.json")
+    private String moduleOutputConfig;
+
+    /**
+     * Additional directories and jars to scan for holders and subtypes. The output directories of all modules are
+     * always scanned, other class path elements are only used to load field types.
+     */
+    @Parameter
+    private List<File> scanRoots;
+
+    /**
+     * Number of threads scanning the modules. Defaults to the number of available processors.
+     */
+    @Parameter(property = "parallelism", defaultValue = "0")
+    private int parallelism;
+
+    /**
+     * The maximum number of nested fields on the paths of a holder. Zero disables the limit.
+     */
+    @Parameter(property = "maxDepth", defaultValue = "0")
+    private int maxDepth;
+
+    /**
+     * The maximum number of sensitive data paths of a single holder. Zero disables the limit.
+     */
+    @Parameter(property = "maxHolderPaths", defaultValue = "0")
+    private int maxHolderPaths;
+
+    /**
+     * The maximum number of distinct types inspected in a run. Zero disables the limit.
+     */
+    @Parameter(property = "maxTypes", defaultValue = "0")
+    private int maxTypes;
+
+    /**
+     * The maximum number of sensitive data paths of all holders. Zero disables the limit.
+     */
+    @Parameter(property = "maxPaths", defaultValue = "0")
+    private int maxPaths;
+
+    /**
+     * What happens when one of the limits is exceeded: {@code FAIL} fails the build, {@code TRUNCATE} leaves out the
+     * sensitive data beyond the limit and logs a warning.
+     */
+    @Parameter(property = "guardrailPolicy", defaultValue = "FAIL")
+    private Guardrails.Policy guardrailPolicy;
+
+    /**
+     * Single instance of the ObjectMapper.
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * This is the method called by maven to start the plugin.
+     */
+    public void execute() throws MojoExecutionException {
+        getLog().info(String.format("Starting metamodel generation of %d modules for %s",
+                                    reactorProjects.size(), packages));
+        getLog().info(String.format("Ignoring the following packages and classes: %s", ignores));
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<List<MavenProject>> groups = moduleGroups();
+            if (groups.size() > 1) {
+                getLog().warn(String.format("The modules depend on different versions of the same artifacts, they "
+                                                    + "are generated in %d separate groups: %s",
+                                            groups.size(), groups));
+            }
+            Map<String, DataProtectionConfig> holders = new LinkedHashMap<>();
+            for (List<MavenProject> group : groups) {
+                generate(group, executor).getConfig().forEach(holder -> holders.putIfAbsent(holder.getType(), holder));
+            }
+            writeOutput(new DataProtectionConfigList(new ArrayList<>(holders.values())), outputConfig);
+        } catch (GuardrailExceededException e) {
+            getLog().error("Metamodel generation failed with: ", e);
+            throw new MojoExecutionException(e.getMessage(), e);
+        } catch (Exception e) {
+            getLog().error("Metamodel generation failed with: ", e);
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Generate the config of the given modules, which share a single loader, and write their per module configs if
+     * requested.
+     *
+     * @param modules  The modules to generate the config for.
+     * @param executor The executor running the scans and inspections.
+     * @return The configuration of the holders of the given modules.
+     */
+    private DataProtectionConfigList generate(List<MavenProject> modules, ExecutorService executor)
+            throws MojoExecutionException {
+        try (ScanClassLoader classLoader = createScanClassLoader(modules)) {
+            MetamodelGenerator generator = new MetamodelGenerator(getLog(),
+                                                                  ignores,
+                                                                  classLoader,
+                                                                  TypeFragmentCache.NONE,
+                                                                  ScanIndexCache.NONE,
+                                                                  scanRoots(modules),
+                                                                  new Guardrails(maxDepth,
+                                                                                 maxHolderPaths,
+                                                                                 maxTypes,
+                                                                                 maxPaths,
+                                                                                 guardrailPolicy));
+            DataProtectionConfigList config = generator.generateMetamodel(packages, executor);
+            if (perModuleOutput) {
+                writeModuleOutputs(config, modules, classLoader);
+            }
+            return config;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to close the scan class loader.", e);
+        }
+    }
+
+    /**
+     * Split the reactor into groups of modules which can share a loader. A module joins the first group in which no
+     * artifact it depends on resolves to another file, so every module is inspected against its own versions.
+     *
+     * @return The groups of modules, in reactor order.
+     */
+    private List<List<MavenProject>> moduleGroups() throws MojoExecutionException {
+        List<List<MavenProject>> groups = new ArrayList<>();
+        List<Map<String, File>> groupArtifacts = new ArrayList<>();
+        for (MavenProject module : reactorProjects) {
+            Map<String, File> artifacts = classpathArtifacts(module);
+            int index = 0;
+            while (index < groups.size() && conflicts(groupArtifacts.get(index), artifacts)) {
+                index++;
+            }
+            if (index == groups.size()) {
+                groups.add(new ArrayList<>());
+                groupArtifacts.add(new HashMap<>());
+            }
+            groups.get(index).add(module);
+            groupArtifacts.get(index).putAll(artifacts);
+        }
+        return groups;
+    }
+
+    /**
+     * @return The files of the artifacts on the compile class path of the given module, keyed by their group id,
+     * artifact id, type and classifier.
+     */
+    private static Map<String, File> classpathArtifacts(MavenProject module) throws MojoExecutionException {
+        Set<String> classpath = new HashSet<>();
+        try {
+            module.getCompileClasspathElements().forEach(element -> classpath.add(new File(element).getAbsolutePath()));
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException("Failed to build the classpath of the reactor.", e);
+        }
+        Map<String, File> artifacts = new HashMap<>();
+        for (Artifact artifact : module.getArtifacts()) {
+            File file = artifact.getFile();
+            if (file != null && classpath.contains(file.getAbsolutePath())) {
+                artifacts.put(artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getType()
+                                      + ":" + (artifact.getClassifier() == null ? "" : artifact.getClassifier()),
+                              file.getAbsoluteFile());
+            }
+        }
+        return artifacts;
+    }
+
+    private static boolean conflicts(Map<String, File> group, Map<String, File> artifacts) {
+        return artifacts.entrySet()
+                        .stream()
+                        .anyMatch(artifact -> group.containsKey(artifact.getKey())
+                                && !group.get(artifact.getKey()).equals(artifact.getValue()));
+    }
+
+    /**
+     * @return The output directories of the given modules, together with the configured {@link
+     * AxonDataProtectionAggregateMojo#scanRoots}.
+     */
+    private List<File> scanRoots(List<MavenProject> modules) {
+        List<File> roots = new ArrayList<>();
+        modules.forEach(module -> roots.add(new File(module.getBuild().getOutputDirectory())));
+        if (scanRoots != null) {
+            roots.addAll(scanRoots);
+        }
+        return roots;
+    }
+
+    /**
+     * Write a config for every module, holding only the holders compiled into that module.
+     *
+     * @param config      The configuration of the given modules.
+     * @param modules     The modules loaded by the given loader.
+     * @param classLoader The loader which loaded the holders.
+     */
+    private void writeModuleOutputs(DataProtectionConfigList config,
+                                    List<MavenProject> modules,
+                                    ClassLoader classLoader) throws MojoExecutionException {
+        Map<File, List<DataProtectionConfig>> moduleConfigs = new LinkedHashMap<>();
+        modules.forEach(module -> moduleConfigs.put(
+                new File(module.getBuild().getOutputDirectory()).getAbsoluteFile(), new ArrayList<>()));
+        for (DataProtectionConfig holder : config.getConfig()) {
+            List<DataProtectionConfig> moduleConfig = moduleConfigs.get(locate(holder.getType(), classLoader));
+            if (moduleConfig != null) {
+                moduleConfig.add(holder);
+            }
+        }
+        for (MavenProject module : modules) {
+            List<DataProtectionConfig> moduleConfig =
+                    moduleConfigs.get(new File(module.getBuild().getOutputDirectory()).getAbsoluteFile());
+            if (!moduleConfig.isEmpty()) {
+                writeOutput(new DataProtectionConfigList(moduleConfig),
+                            new File(module.getBuild().getDirectory(), moduleOutputConfig));
+            }
+        }
+    }
+
+    /**
+     * Find the class path element the given holder was loaded from.
+     *
+     * @param type        The class name of the holder.
+     * @param classLoader The loader which loaded the holder.
+     * @return The class path element, or null when it is unknown.
+     */
+    private File locate(String type, ClassLoader classLoader) throws MojoExecutionException {
+        try {
+            CodeSource codeSource = classLoader.loadClass(type).getProtectionDomain().getCodeSource();
+            return codeSource == null ? null : new File(codeSource.getLocation().toURI()).getAbsoluteFile();
+        } catch (ClassNotFoundException | URISyntaxException e) {
+            throw new MojoExecutionException(String.format("Failed to locate the module of [%s].", type), e);
+        }
+    }
+
+    /**
+     * Write the given config to the given File.
+     *
+     * @param config The generated configuration.
+     * @param file   The file to write to.
+     */
+    private void writeOutput(DataProtectionConfigList config, File file) throws MojoExecutionException {
+        try {
+            if (!file.getParentFile().exists()) {
+                file.getParentFile().mkdirs();
+            }
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, config);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write result schema.", e);
+        }
+    }
+
+    /**
+     * Create a single {@link ScanClassLoader} for the given modules, whose dependencies do not conflict. The output
+     * directories of the modules are loaded by it, so classes shared between them are loaded only once. Their
+     * dependency jars are loaded by a parent loader.
+     *
+     * @param modules The modules to load.
+     * @return A new {@link ScanClassLoader}, which should be closed after the run.
+     */
+    private ScanClassLoader createScanClassLoader(List<MavenProject> modules) throws MojoExecutionException {
+        Set<String> classpathElements = new LinkedHashSet<>();
+        try {
+            for (MavenProject module : modules) {
+                classpathElements.addAll(module.getCompileClasspathElements());
+            }
+            return ScanClassLoaders.of(session, getClass().getClassLoader()).create(classpathElements);
+        } catch (DependencyResolutionRequiredException | MalformedURLException e) {
+            throw new MojoExecutionException("Failed to build the classpath of the reactor.", e);
+        }
+    }
+}
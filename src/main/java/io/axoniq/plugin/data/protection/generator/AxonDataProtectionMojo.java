@@ -18,25 +18,60 @@ package io.axoniq.plugin.data.protection.generator;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.generator.cache.JarScanCache;
+import io.axoniq.plugin.data.protection.generator.cache.ProcessCache;
+import io.axoniq.plugin.data.protection.generator.cache.PublishedTypeFragments;
+import io.axoniq.plugin.data.protection.generator.cache.ScanIndexCache;
+import io.axoniq.plugin.data.protection.generator.cache.TypeFragmentCache;
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoader;
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoaders;
+import io.axoniq.plugin.data.protection.generator.errors.GuardrailExceededException;
+import io.axoniq.plugin.data.protection.generator.fork.ForkedCaches;
+import io.axoniq.plugin.data.protection.generator.fork.ForkedGenerator;
+import io.axoniq.plugin.data.protection.generator.fork.JvmFork;
+import io.axoniq.plugin.data.protection.generator.index.HolderIndex;
+import io.axoniq.plugin.data.protection.generator.index.HolderIndexWriter;
+import io.axoniq.plugin.data.protection.generator.index.JandexScanIndex;
+import io.axoniq.plugin.data.protection.generator.jfr.OutputWriteEvent;
+import io.axoniq.plugin.data.protection.generator.metrics.GenerationMetrics;
+import io.axoniq.plugin.data.protection.generator.metrics.GenerationProfile;
+import io.axoniq.plugin.data.protection.generator.metrics.PerformanceBudget;
+import io.axoniq.plugin.data.protection.generator.processor.CompiledFragments;
+import io.axoniq.plugin.data.protection.generator.processor.DataProtectionProcessor;
+import io.axoniq.plugin.data.protection.generator.utils.JsonUtils;
+import io.axoniq.plugin.data.protection.generator.watch.BuildDelta;
 import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
-import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.sonatype.plexus.build.incremental.BuildContext;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Starting point for the Axon Data Protection Plugin.
  */
-@Mojo(name = "generate", defaultPhase = LifecyclePhase.COMPILE)
+@Mojo(name = "generate",
+        defaultPhase = LifecyclePhase.COMPILE,
+        requiresDependencyResolution = ResolutionScope.COMPILE,
+        threadSafe = true)
 public class AxonDataProtectionMojo extends AbstractMojo {
 
     /**
@@ -47,11 +82,17 @@ public class AxonDataProtectionMojo extends AbstractMojo {
     private MavenProject project;
 
     /**
-     *
+     * The descriptor of this plugin, used to keep the caches of different plugin versions apart.
      */
     @Parameter(defaultValue = "${plugin}", readonly = true)
     private PluginDescriptor descriptor;
 
+    /**
+     * The current build session. It holds the {@link ScanClassLoaders} shared by the modules running at the same time.
+     */
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession session;
+
     /**
      * This property specify in which packages the plugin should look for the {@link
      * io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder} Annotation to start generating the metamodel.
@@ -59,6 +100,12 @@ public class AxonDataProtectionMojo extends AbstractMojo {
     @Parameter(property = "packages", required = true)
     private List<String> packages;
 
+    /**
+     * The directory containing the compiled classes of the project.
+     */
+    @Parameter(defaultValue = "${project.build.outputDirectory}", readonly = true)
+    private File outputDirectory;
+
     /**
      * Location of the result config.
      */
@@ -73,6 +120,242 @@ public class AxonDataProtectionMojo extends AbstractMojo {
     @Parameter(property = "ignores")
     private List<String> ignores;
 
+    /**
+     * Location of the holder index. The index lists all {@link io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder}
+     * classes, so tools can read them through {@link HolderIndex#load()} instead of scanning the classpath.
+     */
+    @Parameter(defaultValue = "${project.build.outputDirectory}/" + HolderIndex.RESOURCE)
+    private File holderIndex;
+
+    /**
+     * This property specify if the {@link AxonDataProtectionMojo#holderIndex} should be written.
+     */
+    @Parameter(property = "generateHolderIndex", defaultValue = "true")
+    private boolean generateHolderIndex;
+
+    /**
+     * This property specify if the fragments written by the {@link DataProtectionProcessor} should be used when
+     * present. In that case they are merged into the result config, without scanning the classpath or loading any
+     * project class. The fragments only know what the compiler saw: they apply the ignores of the processor option,
+     * miss subtypes which are neither sealed nor listed in {@code @JsonSubTypes}, and are not regenerated when only an
+     * embedded type is recompiled. Fragments of holders whose class no longer exists are deleted.
+     */
+    @Parameter(property = "useCompiledFragments", defaultValue = "false")
+    private boolean useCompiledFragments;
+
+    /**
+     * Location of the published type fragments. They hold the sensitive data of every type of this project embedded
+     * by a holder, so modules depending on this one can reuse them instead of inspecting the types again.
+     */
+    @Parameter(defaultValue = "${project.build.outputDirectory}/" + PublishedTypeFragments.RESOURCE)
+    private File typeFragments;
+
+    /**
+     * This property specify if the {@link AxonDataProtectionMojo#typeFragments} should be written.
+     */
+    @Parameter(property = "publishTypeFragments", defaultValue = "true")
+    private boolean publishTypeFragments;
+
+    /**
+     * This property specify if the type fragments published by dependencies should be reused. A fragment is only
+     * reused when the class files it was built from are unchanged.
+     */
+    @Parameter(property = "useDependencyTypeFragments", defaultValue = "true")
+    private boolean useDependencyTypeFragments;
+
+    /**
+     * This property specify if the scan results and type fragments of dependency jars should be cached in the {@link
+     * AxonDataProtectionMojo#scanCacheDirectory}, so unchanged jars are not scanned again on later runs.
+     */
+    @Parameter(property = "useScanCache", defaultValue = "true")
+    private boolean useScanCache;
+
+    /**
+     * Location of the scan cache. Entries are stored per jar checksum and plugin version, so the directory can be
+     * shared by several projects.
+     */
+    @Parameter(property = "scanCacheDirectory", defaultValue = "${project.build.directory}/axon-data-protection-cache")
+    private File scanCacheDirectory;
+
+    /**
+     * This property specify if Jandex indexes should be used to find the holders and subtypes. Dependency jars shipping
+     * a {@link JandexScanIndex#RESOURCE} are not scanned, and the project output directory is indexed with Jandex.
+     */
+    @Parameter(property = "useJandex", defaultValue = "true")
+    private boolean useJandex;
+
+    /**
+     * This property specify if class loaders, scan results and type fragments should be kept in memory between builds.
+     * Only useful when the build runs in a long-lived JVM like the Maven daemon, see {@link ProcessCache}.
+     */
+    @Parameter(property = "useProcessCache", defaultValue = "false")
+    private boolean useProcessCache;
+
+    /**
+     * The directories and jars scanned for holders and subtypes. Defaults to the {@link
+     * AxonDataProtectionMojo#outputDirectory}. Other elements of the compile classpath are only used to load the types
+     * of the inspected fields, so list jars holding events or subtypes of embedded interfaces here.
+     */
+    @Parameter
+    private List<File> scanRoots;
+
+    /**
+     * This property specify if the metamodel should be generated in a separate JVM, keeping the classes of the project
+     * out of the heap and metaspace of the Maven JVM. The forked JVM reads and writes the published type fragments
+     * and the scan cache like the Maven JVM does, as configured by {@link
+     * AxonDataProtectionMojo#useDependencyTypeFragments}, {@link AxonDataProtectionMojo#useScanCache} and {@link
+     * AxonDataProtectionMojo#publishTypeFragments}. Only the {@link ProcessCache} is not available in this mode.
+     */
+    @Parameter(property = "fork", defaultValue = "false")
+    private boolean fork;
+
+    /**
+     * The maximum heap size of the forked JVM, like {@code 2g}. Uses the JVM default when not set.
+     */
+    @Parameter(property = "forkMaxHeap")
+    private String forkMaxHeap;
+
+    /**
+     * The maximum metaspace size of the forked JVM, like {@code 512m}. Uses the JVM default when not set.
+     */
+    @Parameter(property = "forkMaxMetaspace")
+    private String forkMaxMetaspace;
+
+    /**
+     * The number of threads inspecting the classes in the forked JVM. Zero uses one thread per available processor.
+     */
+    @Parameter(property = "forkParallelism", defaultValue = "0")
+    private int forkParallelism;
+
+    /**
+     * Additional arguments for the forked JVM.
+     */
+    @Parameter
+    private List<String> forkJvmArgs;
+
+    /**
+     * Location of the generation report. It holds the time spent in every phase of the generation and counters of the
+     * work done, like the number of visited types and cache hits.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/axon-data-protection-report.json")
+    private File report;
+
+    /**
+     * This property specify if the {@link AxonDataProtectionMojo#report} should be written.
+     */
+    @Parameter(property = "generateReport", defaultValue = "true")
+    private boolean generateReport;
+
+    /**
+     * This property specify if the holders and types should be profiled. The slowest holders and the types requested
+     * most often are logged and written to the {@link AxonDataProtectionMojo#profileReport}. Not supported together
+     * with {@link AxonDataProtectionMojo#fork}.
+     */
+    @Parameter(property = "profiling", defaultValue = "false")
+    private boolean profiling;
+
+    /**
+     * The number of holders and types listed in the profiling report.
+     */
+    @Parameter(property = "profileTop", defaultValue = "10")
+    private int profileTop;
+
+    /**
+     * Location of the profiling report.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/axon-data-protection-profile.json")
+    private File profileReport;
+
+    /**
+     * This property specify if the run should be checked against the {@link AxonDataProtectionMojo#budgetBaseline}.
+     * When the baseline does not exist yet, it is written from the current run.
+     */
+    @Parameter(property = "checkBudget", defaultValue = "false")
+    private boolean checkBudget;
+
+    /**
+     * Location of the performance baseline. Point it to a committed file to check every build against the same
+     * baseline.
+     */
+    @Parameter(property = "budgetBaseline",
+            defaultValue = "${project.build.directory}/axon-data-protection-baseline.json")
+    private File budgetBaseline;
+
+    /**
+     * This property specify if the {@link AxonDataProtectionMojo#budgetBaseline} should be overwritten with the current
+     * run instead of checked.
+     */
+    @Parameter(property = "updateBaseline", defaultValue = "false")
+    private boolean updateBaseline;
+
+    /**
+     * The allowed ratio between the duration per holder of a run and of the baseline.
+     */
+    @Parameter(property = "budgetDurationRatio", defaultValue = "2.0")
+    private double budgetDurationRatio;
+
+    /**
+     * The allowed ratio between the visited types per holder of a run and of the baseline.
+     */
+    @Parameter(property = "budgetTypesRatio", defaultValue = "1.5")
+    private double budgetTypesRatio;
+
+    /**
+     * The allowed ratio between the emitted paths per holder of a run and of the baseline.
+     */
+    @Parameter(property = "budgetPathsRatio", defaultValue = "1.5")
+    private double budgetPathsRatio;
+
+    /**
+     * The duration in milliseconds below which the duration of a run is not compared, as it is dominated by noise.
+     */
+    @Parameter(property = "budgetMinDuration", defaultValue = "1000")
+    private long budgetMinDuration;
+
+    /**
+     * This property specify if the build should fail when the budget is exceeded. Otherwise, a warning is logged.
+     */
+    @Parameter(property = "failOnBudgetExceeded", defaultValue = "false")
+    private boolean failOnBudgetExceeded;
+
+    /**
+     * The maximum number of nested fields on the paths of a holder. Zero disables the limit.
+     */
+    @Parameter(property = "maxDepth", defaultValue = "0")
+    private int maxDepth;
+
+    /**
+     * The maximum number of sensitive data paths of a single holder. Zero disables the limit.
+     */
+    @Parameter(property = "maxHolderPaths", defaultValue = "0")
+    private int maxHolderPaths;
+
+    /**
+     * The maximum number of distinct types inspected in a run. Zero disables the limit.
+     */
+    @Parameter(property = "maxTypes", defaultValue = "0")
+    private int maxTypes;
+
+    /**
+     * The maximum number of sensitive data paths of all holders. Zero disables the limit.
+     */
+    @Parameter(property = "maxPaths", defaultValue = "0")
+    private int maxPaths;
+
+    /**
+     * What happens when one of the limits is exceeded: {@code FAIL} fails the build, {@code TRUNCATE} leaves out the
+     * sensitive data beyond the limit and logs a warning.
+     */
+    @Parameter(property = "guardrailPolicy", defaultValue = "FAIL")
+    private Guardrails.Policy guardrailPolicy;
+
+    /**
+     * The context of the current build. In incremental IDE builds it tells which class files changed, and it is
+     * notified about the written files.
+     */
+    @Component
+    private BuildContext buildContext;
+
     /**
      * Single instance of the ObjectMapper.
      */
@@ -84,28 +367,391 @@ public class AxonDataProtectionMojo extends AbstractMojo {
     public void execute() throws MojoExecutionException {
         getLog().info(String.format("Starting metamodel generation for %s", packages));
         getLog().info(String.format("Ignoring the following packages and classes: %s", ignores));
-        addProjectClassesToPluginClasspath();
-        MetamodelGenerator generator = new MetamodelGenerator(getLog(), ignores);
+        Optional<Set<String>> changedClasses = BuildDelta.changedClasses(buildContext, outputDirectory);
+        List<String> classpath = changedClasses.isPresent() ? compileClasspath() : null;
+        if (changedClasses.isPresent() && changedClasses.get().isEmpty() && outputConfig.exists()
+                && !BuildDelta.classpathChanged(buildContext, classpath, outputDirectory, scanRoots())) {
+            getLog().info("No classes changed since the previous build, skipping the metamodel generation");
+            return;
+        }
+        changedClasses.ifPresent(changes -> getLog().debug(String.format("Changed classes: %s", changes)));
         try {
-            DataProtectionConfigList config = generator.generateMetamodel(packages);
-            writeOutput(config);
+            GenerationMetrics metrics = new GenerationMetrics(profiling);
+            generateAndWrite(metrics);
+            if (classpath != null) {
+                BuildDelta.recordClasspath(buildContext, classpath, outputDirectory, scanRoots(),
+                                           metrics.dependencies());
+            }
         } catch (Exception e) {
             getLog().error("Metamodel generation failed with: ", e);
             throw e;
         }
     }
 
+    /**
+     * Generate the config and write it, together with the holder index.
+     *
+     * @param metrics The metrics to record the phases, counters and the types the config depends on in.
+     * @return The generated configuration.
+     */
+    protected DataProtectionConfigList generateAndWrite(GenerationMetrics metrics) throws MojoExecutionException {
+        metrics.sampleHeap();
+        DataProtectionConfigList config = generate(metrics);
+        writeOutput(config, metrics);
+        long start = System.nanoTime();
+        writeHolderIndex(config);
+        metrics.addTime(GenerationMetrics.Phase.WRITE, start);
+        buildContext.refresh(outputConfig);
+        buildContext.refresh(holderIndex);
+        buildContext.refresh(typeFragments);
+        metrics.log(getLog());
+        writeReport(metrics);
+        if (metrics.profile().isPresent()) {
+            writeProfile(metrics.profile().get());
+        }
+        checkBudget(metrics);
+        return config;
+    }
+
+    /**
+     * @return The directory holding the compiled classes of the project.
+     */
+    protected File getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    /**
+     * @return True if the generation should be profiled.
+     */
+    protected boolean isProfiling() {
+        return profiling;
+    }
+
+    /**
+     * @return The holders generated before, whose configs are reused. The {@code generate} goal generates all holders
+     * on every run.
+     */
+    protected GeneratedHolders generatedHolders() {
+        return new GeneratedHolders();
+    }
+
+    /**
+     * @return True if the {@link ProcessCache} should be used. Incremental IDE builds always use it, so only the
+     * changed types and the types embedding them are inspected again.
+     */
+    protected boolean useProcessCache() {
+        return useProcessCache || buildContext.isIncremental();
+    }
+
+    /**
+     * Generate the config, either by merging the compiled fragments or by scanning the project classes. Merging the
+     * compiled fragments is recorded as discovery, and a forked generation as traversal, as their steps are not timed
+     * separately.
+     *
+     * @param metrics The metrics to record the phases and counters in.
+     * @return The generated configuration.
+     */
+    private DataProtectionConfigList generate(GenerationMetrics metrics) throws MojoExecutionException {
+        long start = System.nanoTime();
+        if (useCompiledFragments && CompiledFragments.exist(outputDirectory)) {
+            getLog().info("Merging the config fragments generated during compilation");
+            checkProcessorIgnores();
+            try {
+                deleteStaleFragments();
+                DataProtectionConfigList config = CompiledFragments.read(outputDirectory, packages, objectMapper);
+                metrics.addTime(GenerationMetrics.Phase.DISCOVERY, start);
+                metrics.result(config);
+                return config;
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to read the compiled config fragments.", e);
+            }
+        }
+        if (fork) {
+            if (profiling) {
+                getLog().warn("Profiling is not supported in a forked JVM, the profile will be empty");
+            }
+            if (useProcessCache) {
+                getLog().warn("The process cache is not supported in a forked JVM, it is not used");
+            }
+            DataProtectionConfigList config = generateForked();
+            metrics.addTime(GenerationMetrics.Phase.TRAVERSAL, start);
+            metrics.result(config);
+            return config;
+        }
+        try (ScanClassLoader classLoader = createScanClassLoader()) {
+            PublishedTypeFragments typeFragmentCache = loadTypeFragments(classLoader);
+            JarScanCache scanCache = new JarScanCache(new File(scanCacheDirectory, descriptor.getVersion()),
+                                                      objectMapper);
+            List<File> jars = dependencyJars();
+            if (useScanCache) {
+                scanCache.readTypeFragments(typeFragmentCache, jars);
+            }
+            ScanIndexCache scanIndexCache = ScanIndexCache.chain(
+                    useProcessCache() ? ProcessCache.instance().scanIndexes() : ScanIndexCache.NONE,
+                    useJandex ? new JandexScanIndex(true) : ScanIndexCache.NONE,
+                    useScanCache ? scanCache : ScanIndexCache.NONE
+            );
+            MetamodelGenerator generator = new MetamodelGenerator(getLog(),
+                                                                  ignores,
+                                                                  classLoader,
+                                                                  processCache(typeFragmentCache),
+                                                                  scanIndexCache,
+                                                                  scanRoots(),
+                                                                  guardrails());
+            metrics.addTime(GenerationMetrics.Phase.SETUP, start);
+            DataProtectionConfigList config = generator.generateMetamodel(packages,
+                                                                            Runnable::run,
+                                                                            metrics,
+                                                                            generatedHolders());
+            start = System.nanoTime();
+            writeTypeFragments(typeFragmentCache);
+            if (useScanCache) {
+                scanCache.writeTypeFragments(typeFragmentCache, jars);
+            }
+            metrics.addTime(GenerationMetrics.Phase.WRITE, start);
+            return config;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to access the scan class loader or scan cache.", e);
+        } catch (GuardrailExceededException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Delete the compiled fragments whose holder class no longer exists, so deleted or renamed holders do not end up
+     * in the config.
+     */
+    private void deleteStaleFragments() throws IOException {
+        for (File fragment : CompiledFragments.staleFragments(outputDirectory)) {
+            getLog().warn(String.format("Deleting the compiled fragment [%s], its holder class no longer exists",
+                                        fragment));
+            Files.delete(fragment.toPath());
+        }
+    }
+
+    /**
+     * Warn when the {@link AxonDataProtectionMojo#ignores} differ from the {@link
+     * DataProtectionProcessor#IGNORES_OPTION} passed to the compiler, as only the latter applies to the compiled
+     * fragments.
+     */
+    private void checkProcessorIgnores() {
+        Set<String> configured = ignores == null ? Set.of() : new TreeSet<>(ignores);
+        Set<String> processor = new TreeSet<>(processorIgnores());
+        if (!configured.equals(processor)) {
+            getLog().warn(String.format("The ignores %s differ from the %s %s of the annotation processor, the "
+                                                + "compiled fragments are generated with the latter",
+                                        configured, DataProtectionProcessor.IGNORES_OPTION, processor));
+        }
+    }
+
+    /**
+     * @return The ignores passed to the annotation processor in the {@code compilerArgs} or {@code compilerArgument}
+     * of the compiler plugin, or an empty list when the option is not set there.
+     */
+    private List<String> processorIgnores() {
+        Plugin compiler = project.getPlugin("org.apache.maven.plugins:maven-compiler-plugin");
+        if (compiler == null) {
+            return List.of();
+        }
+        List<Object> configurations = new ArrayList<>();
+        configurations.add(compiler.getConfiguration());
+        compiler.getExecutions().forEach(execution -> configurations.add(execution.getConfiguration()));
+        String prefix = "-A" + DataProtectionProcessor.IGNORES_OPTION + "=";
+        for (Object configuration : configurations) {
+            if (!(configuration instanceof Xpp3Dom)) {
+                continue;
+            }
+            List<String> arguments = new ArrayList<>();
+            Xpp3Dom compilerArgs = ((Xpp3Dom) configuration).getChild("compilerArgs");
+            if (compilerArgs != null) {
+                for (Xpp3Dom argument : compilerArgs.getChildren()) {
+                    arguments.add(argument.getValue());
+                }
+            }
+            Xpp3Dom compilerArgument = ((Xpp3Dom) configuration).getChild("compilerArgument");
+            if (compilerArgument != null && compilerArgument.getValue() != null) {
+                arguments.addAll(List.of(compilerArgument.getValue().trim().split("\\s+")));
+            }
+            for (String argument : arguments) {
+                if (argument != null && argument.trim().startsWith(prefix)) {
+                    return DataProtectionProcessor.parseIgnores(argument.trim().substring(prefix.length()));
+                }
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * @return The configured limits of the generation.
+     */
+    private Guardrails guardrails() {
+        return new Guardrails(maxDepth, maxHolderPaths, maxTypes, maxPaths, guardrailPolicy);
+    }
+
+    /**
+     * Generate the config in a forked JVM and read back its result.
+     *
+     * @return The generated configuration.
+     */
+    private DataProtectionConfigList generateForked() throws MojoExecutionException {
+        int parallelism = forkParallelism > 0 ? forkParallelism : Runtime.getRuntime().availableProcessors();
+        JvmFork jvmFork = new JvmFork(getLog(),
+                                      new File(project.getBuild().getDirectory(), "axon-data-protection-fork"),
+                                      forkMaxHeap,
+                                      forkMaxMetaspace,
+                                      forkJvmArgs);
+        try {
+            ForkedGenerator request = new ForkedGenerator(packages,
+                                                          ignores,
+                                                          project.getCompileClasspathElements(),
+                                                          scanRoots(),
+                                                          parallelism,
+                                                          useJandex,
+                                                          guardrails(),
+                                                          forkedCaches());
+            File result = jvmFork.run(request, JvmFork.pluginClasspath(getClass().getClassLoader()), objectMapper);
+            return JsonUtils.readConfigList(objectMapper.readTree(result));
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException("Failed to build the classpath of the project.", e);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to generate the metamodel in a forked JVM.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for the forked JVM.", e);
+        }
+    }
+
+    /**
+     * @return The configured {@link AxonDataProtectionMojo#scanRoots}, or the output directory when none are
+     * configured.
+     */
+    private List<File> scanRoots() {
+        return scanRoots == null || scanRoots.isEmpty() ? List.of(outputDirectory) : scanRoots;
+    }
+
+    /**
+     * @return The compile classpath elements of the project.
+     */
+    private List<String> compileClasspath() throws MojoExecutionException {
+        try {
+            return project.getCompileClasspathElements();
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException("Failed to build the classpath of the project.", e);
+        }
+    }
+
+    /**
+     * @return The jars on the compile classpath of the project.
+     */
+    private List<File> dependencyJars() throws MojoExecutionException {
+        List<File> jars = new ArrayList<>();
+        try {
+            for (String element : project.getCompileClasspathElements()) {
+                File elementFile = new File(element);
+                if (elementFile.isFile()) {
+                    jars.add(elementFile);
+                }
+            }
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException("Failed to build the classpath of the project.", e);
+        }
+        return jars;
+    }
+
+    /**
+     * Put the process-wide type fragments behind the published ones, when enabled. Hits of the process cache are
+     * still recorded in the published fragments, so they end up in the written {@link
+     * AxonDataProtectionMojo#typeFragments}.
+     *
+     * @param typeFragmentCache The fragments published by the dependencies.
+     * @return The {@link TypeFragmentCache} used during the generation.
+     */
+    private TypeFragmentCache processCache(PublishedTypeFragments typeFragmentCache) {
+        if (!useProcessCache()) {
+            return typeFragmentCache;
+        }
+        return TypeFragmentCache.chain(typeFragmentCache, ProcessCache.instance().typeFragments(ignores));
+    }
+
+    /**
+     * Load the type fragments published by the dependencies, when enabled.
+     *
+     * @param classLoader The loader of the project classes and dependencies.
+     * @return The {@link PublishedTypeFragments} used as cache during the generation.
+     */
+    private PublishedTypeFragments loadTypeFragments(ClassLoader classLoader) throws MojoExecutionException {
+        if (!useDependencyTypeFragments) {
+            return new PublishedTypeFragments(ignores, objectMapper);
+        }
+        try {
+            PublishedTypeFragments typeFragmentCache = PublishedTypeFragments.load(classLoader, ignores, objectMapper);
+            getLog().debug(String.format("Loaded %d published type fragments of %s",
+                                         typeFragmentCache.publishedSize(), typeFragmentCache.artifacts()));
+            return typeFragmentCache;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to read the published type fragments.", e);
+        }
+    }
+
+    /**
+     * @return The caches the forked JVM should read and write, like the generation in the Maven JVM.
+     */
+    private ForkedCaches forkedCaches() {
+        return new ForkedCaches(useDependencyTypeFragments,
+                                useScanCache ? new File(scanCacheDirectory, descriptor.getVersion()) : null,
+                                publishTypeFragments ? typeFragments : null,
+                                outputDirectory,
+                                artifact());
+    }
+
+    /**
+     * @return The coordinates of the project, like {@code groupId:artifactId:version}.
+     */
+    private String artifact() {
+        return project.getGroupId() + ":" + project.getArtifactId() + ":" + project.getVersion();
+    }
+
+    /**
+     * Write the fragments of the types of this project to the configured File. Defaults to {@link
+     * AxonDataProtectionMojo#typeFragments}.
+     *
+     * @param typeFragmentCache The cache holding the fragments of the generation.
+     */
+    private void writeTypeFragments(PublishedTypeFragments typeFragmentCache) throws MojoExecutionException {
+        if (!publishTypeFragments) {
+            return;
+        }
+        OutputWriteEvent event = new OutputWriteEvent();
+        event.begin();
+        try {
+            typeFragmentCache.write(typeFragments, outputDirectory, artifact());
+            commit(event, typeFragments);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write the type fragments.", e);
+        }
+    }
+
     /**
      * Write the output to the configured File. Defaults to {@link AxonDataProtectionMojo#outputConfig}.
      *
-     * @param config The generated configuration.
+     * @param config  The generated configuration.
+     * @param metrics The metrics to record the serialization and write time in.
      */
-    private void writeOutput(DataProtectionConfigList config) throws MojoExecutionException {
+    private void writeOutput(DataProtectionConfigList config,
+                             GenerationMetrics metrics) throws MojoExecutionException {
         try {
+            long start = System.nanoTime();
+            byte[] json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(config);
+            metrics.addTime(GenerationMetrics.Phase.SERIALIZATION, start);
+            start = System.nanoTime();
+            OutputWriteEvent event = new OutputWriteEvent();
+            event.begin();
             if (!outputConfig.getParentFile().exists()) {
                 outputConfig.getParentFile().mkdirs();
             }
-            objectMapper.writerWithDefaultPrettyPrinter().writeValue(outputConfig, config);
+            Files.write(outputConfig.toPath(), json);
+            commit(event, outputConfig);
+            metrics.addTime(GenerationMetrics.Phase.WRITE, start);
         } catch (IOException e) {
             // TODO: print the config as a info/warn message
             throw new MojoExecutionException("Failed to write result schema.", e);
@@ -113,22 +759,137 @@ public class AxonDataProtectionMojo extends AbstractMojo {
     }
 
     /**
-     * In order to inspect the classes of the project running the plugin, we need to add them to the plugin classpath.
+     * Write the holder index to the configured File. Defaults to {@link AxonDataProtectionMojo#holderIndex}.
+     *
+     * @param config The generated configuration.
+     */
+    private void writeHolderIndex(DataProtectionConfigList config) throws MojoExecutionException {
+        if (!generateHolderIndex) {
+            return;
+        }
+        OutputWriteEvent event = new OutputWriteEvent();
+        event.begin();
+        try {
+            new HolderIndexWriter(objectMapper).write(config, holderIndex);
+            commit(event, holderIndex);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write holder index.", e);
+        }
+    }
+
+    /**
+     * Write the generation report to the configured File. Defaults to {@link AxonDataProtectionMojo#report}.
+     *
+     * @param metrics The metrics of the generation.
+     */
+    private void writeReport(GenerationMetrics metrics) throws MojoExecutionException {
+        if (!generateReport) {
+            return;
+        }
+        OutputWriteEvent event = new OutputWriteEvent();
+        event.begin();
+        try {
+            if (!report.getParentFile().exists()) {
+                report.getParentFile().mkdirs();
+            }
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(report, metrics.toJson(objectMapper));
+            commit(event, report);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write the generation report.", e);
+        }
+    }
+
+    /**
+     * Log the profile and write it to the configured File. Defaults to {@link AxonDataProtectionMojo#profileReport}.
+     *
+     * @param profile The profile of the holders and types.
      */
-    private void addProjectClassesToPluginClasspath() {
+    private void writeProfile(GenerationProfile profile) throws MojoExecutionException {
+        profile.log(getLog(), profileTop);
+        OutputWriteEvent event = new OutputWriteEvent();
+        event.begin();
         try {
-            final ClassRealm realm = descriptor.getClassRealm();
-            for (String dependency : project.getCompileClasspathElements()) {
-                try {
-                    final File elementFile = new File(dependency);
-                    realm.addURL(elementFile.toURI().toURL());
-                } catch (MalformedURLException ex) {
-                    ex.printStackTrace();
+            if (!profileReport.getParentFile().exists()) {
+                profileReport.getParentFile().mkdirs();
+            }
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(profileReport,
+                                                                     profile.toJson(objectMapper, profileTop));
+            commit(event, profileReport);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write the profiling report.", e);
+        }
+    }
+
+    /**
+     * Check the run against the {@link AxonDataProtectionMojo#budgetBaseline}, when enabled. The baseline is written
+     * instead when it does not exist yet or {@link AxonDataProtectionMojo#updateBaseline} is set.
+     *
+     * @param metrics The metrics of the run.
+     */
+    private void checkBudget(GenerationMetrics metrics) throws MojoExecutionException {
+        if (!checkBudget) {
+            return;
+        }
+        try {
+            if (updateBaseline || !budgetBaseline.exists()) {
+                if (!budgetBaseline.getParentFile().exists()) {
+                    budgetBaseline.getParentFile().mkdirs();
                 }
+                objectMapper.writerWithDefaultPrettyPrinter()
+                            .writeValue(budgetBaseline, PerformanceBudget.baseline(metrics, objectMapper));
+                getLog().info(String.format("Wrote the performance baseline to %s", budgetBaseline));
+                return;
+            }
+            PerformanceBudget budget = new PerformanceBudget(budgetDurationRatio,
+                                                             budgetTypesRatio,
+                                                             budgetPathsRatio,
+                                                             budgetMinDuration);
+            List<String> violations = budget.check(objectMapper.readTree(budgetBaseline), metrics);
+            if (violations.isEmpty()) {
+                getLog().info(String.format("Metamodel generation is within the budget of %s", budgetBaseline));
+                return;
+            }
+            violations.forEach(violation -> getLog().warn("Performance budget exceeded: " + violation));
+            if (failOnBudgetExceeded) {
+                throw new MojoExecutionException(String.format(
+                        "Metamodel generation exceeded the budget of %s: %s", budgetBaseline, violations));
             }
-        } catch (DependencyResolutionRequiredException ex) {
-            // throw exception when we are not able to check it
-            ex.printStackTrace();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to read or write the performance baseline.", e);
+        }
+    }
+
+    /**
+     * Commit the given event for a written file, if JFR records it.
+     *
+     * @param event The event started before the write.
+     * @param file  The written file.
+     */
+    private static void commit(OutputWriteEvent event, File file) {
+        if (event.shouldCommit()) {
+            event.file = file.getPath();
+            event.bytes = file.length();
+            event.commit();
+        }
+    }
+
+    /**
+     * In order to inspect the classes of the project running the plugin, they are loaded by a dedicated {@link
+     * ScanClassLoader}, leaving the plugin class realm untouched. Directories on the classpath, like the output
+     * directory of this and other reactor modules, are loaded by a loader for this module only. Jars are loaded by a
+     * parent loader shared by all modules of the build with the same dependencies, or by all builds of the process when
+     * {@link AxonDataProtectionMojo#useProcessCache} is enabled.
+     *
+     * @return A new {@link ScanClassLoader}, which should be closed after the run.
+     */
+    private ScanClassLoader createScanClassLoader() throws MojoExecutionException {
+        try {
+            ScanClassLoaders scanClassLoaders = useProcessCache()
+                    ? ProcessCache.instance().scanClassLoaders(getClass().getClassLoader())
+                    : ScanClassLoaders.of(session, getClass().getClassLoader());
+            return scanClassLoaders.create(project.getCompileClasspathElements());
+        } catch (DependencyResolutionRequiredException | MalformedURLException e) {
+            throw new MojoExecutionException("Failed to build the classpath of the project.", e);
         }
     }
-}
\ No newline at end of file
+}
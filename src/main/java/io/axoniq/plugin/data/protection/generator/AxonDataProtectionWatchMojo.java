@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator;
+
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.generator.cache.ProcessCache;
+import io.axoniq.plugin.data.protection.generator.metrics.GenerationMetrics;
+import io.axoniq.plugin.data.protection.generator.watch.ClassChangeWatcher;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Generates the config like the {@code generate} goal, and regenerates it whenever classes in the output directory
+ * change, until the build is interrupted. Run it next to the incremental compiler of your IDE, for example with {@code
+ * mvn compile axon-data-protection:watch}. The configs of the holders not built from any of the changed classes are
+ * reused from the previous generation, and the {@link ProcessCache} is always used, so a regeneration only inspects
+ * the changed types and the types embedding them.
+ */
+@Mojo(name = "watch", requiresDependencyResolution = ResolutionScope.COMPILE)
+public class AxonDataProtectionWatchMojo extends AxonDataProtectionMojo {
+
+    /**
+     * Maximum time in milliseconds to wait for a change, before checking if the build was interrupted.
+     */
+    private static final long POLL_INTERVAL = 1000;
+
+    /**
+     * Time in milliseconds without further class changes, before the config is regenerated. Collapses the burst of
+     * class files written by a single compilation into one regeneration.
+     */
+    @Parameter(property = "watchDebounce", defaultValue = "200")
+    private long watchDebounce;
+
+    /**
+     * The holders generated so far, without those built from classes changed since.
+     */
+    private final GeneratedHolders generatedHolders = new GeneratedHolders();
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        super.execute();
+        getLog().info(String.format("Watching %s for changes, press Ctrl+C to stop", getOutputDirectory()));
+        try (ClassChangeWatcher watcher = new ClassChangeWatcher(getOutputDirectory().toPath(), watchDebounce)) {
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<String> changes = watcher.awaitChanges(POLL_INTERVAL);
+                if (!changes.isEmpty()) {
+                    regenerate(changes);
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to watch the output directory.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    protected boolean useProcessCache() {
+        return true;
+    }
+
+    @Override
+    protected GeneratedHolders generatedHolders() {
+        return generatedHolders;
+    }
+
+    /**
+     * Regenerate the config after the given classes changed. Failures are logged only, as the classes are often
+     * inconsistent in the middle of a compilation, and the next change triggers another try.
+     *
+     * @param changes The binary names of the changed classes.
+     */
+    private void regenerate(Set<String> changes) {
+        getLog().debug(String.format("Changed classes: %s", changes));
+        long start = System.nanoTime();
+        generatedHolders.invalidate(changes);
+        try {
+            GenerationMetrics metrics = new GenerationMetrics(isProfiling());
+            DataProtectionConfigList config = generateAndWrite(metrics);
+            getLog().info(String.format("Regenerated %d of %d holders in %d ms after %d class changes",
+                                        config.getConfig().size() - metrics.holdersReused(),
+                                        config.getConfig().size(),
+                                        (System.nanoTime() - start) / 1_000_000,
+                                        changes.size()));
+        } catch (MojoExecutionException | RuntimeException | LinkageError e) {
+            getLog().error("Metamodel regeneration failed with: ", e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator;
+
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The configs of the holders generated by a {@link MetamodelGenerator}, together with the types each config was built
+ * from. A later generation reuses the config of a holder as long as none of these types changed, so the {@code watch}
+ * goal only generates the holders affected by a change again.
+ */
+public class GeneratedHolders {
+
+    private final Map<String, GeneratedHolder> holders = new ConcurrentHashMap<>();
+
+    /**
+     * Record the generated config of a holder.
+     *
+     * @param holder       The class name of the holder.
+     * @param config       The generated config of the holder.
+     * @param dependencies The class names of all types the config was built from, including the holder itself.
+     */
+    public void put(String holder, DataProtectionConfig config, Set<String> dependencies) {
+        holders.put(holder, new GeneratedHolder(config, Collections.unmodifiableSet(dependencies)));
+    }
+
+    /**
+     * @param holder The class name of the holder.
+     * @return The config generated for the holder before, or an empty optional if it has to be generated.
+     */
+    public Optional<DataProtectionConfig> get(String holder) {
+        return Optional.ofNullable(holders.get(holder)).map(generated -> generated.config);
+    }
+
+    /**
+     * @param holder The class name of the holder.
+     * @return The class names of the types the config of the holder was built from, or an empty set if the holder was
+     * not generated before.
+     */
+    public Set<String> dependencies(String holder) {
+        GeneratedHolder generated = holders.get(holder);
+        return generated == null ? Collections.emptySet() : generated.dependencies;
+    }
+
+    /**
+     * Forget the holders built from any of the given types, so they are generated again.
+     *
+     * @param changedTypes The class names of the created, modified or deleted types.
+     * @return The number of forgotten holders.
+     */
+    public int invalidate(Collection<String> changedTypes) {
+        int before = holders.size();
+        holders.values().removeIf(generated -> changedTypes.stream().anyMatch(generated.dependencies::contains));
+        return before - holders.size();
+    }
+
+    /**
+     * Forget the holders which are no longer found, like deleted holders or those in a package no longer scanned.
+     *
+     * @param found The class names of the holders found by the current generation.
+     */
+    public void retain(Set<String> found) {
+        holders.keySet().retainAll(found);
+    }
+
+    /**
+     * @return The number of holders whose config can be reused.
+     */
+    public int size() {
+        return holders.size();
+    }
+
+    /**
+     * The config of a single holder, and the types it was built from.
+     */
+    private static class GeneratedHolder {
+
+        private final DataProtectionConfig config;
+        private final Set<String> dependencies;
+
+        private GeneratedHolder(DataProtectionConfig config, Set<String> dependencies) {
+            this.config = config;
+            this.dependencies = dependencies;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator;
+
+import io.axoniq.plugin.data.protection.generator.errors.GuardrailExceededException;
+
+/**
+ * Limits on the work of a generation, so a single badly modeled holder, like one embedding an entity graph, can not
+ * make a run take minutes or exhaust the memory. The depth and the number of paths are limited per holder, the number
+ * of types and paths per run. The limits are checked while the types are traversed, and a limit of zero or less
+ * disables it. Depending on the {@link Policy}, exceeding a limit fails the run or truncates the config of the holder.
+ */
+public class Guardrails {
+
+    /**
+     * What happens when a limit is exceeded.
+     */
+    public enum Policy {
+
+        /**
+         * Fail the run with a {@link GuardrailExceededException}.
+         */
+        FAIL,
+
+        /**
+         * Stop the traversal where the limit is exceeded and log a warning. The config of the holder misses the
+         * sensitive data beyond that point.
+         */
+        TRUNCATE
+    }
+
+    /**
+     * Guardrails without any limit.
+     */
+    public static final Guardrails NONE = new Guardrails(0, 0, 0, 0, Policy.FAIL);
+
+    private final int maxDepth;
+    private final int maxHolderPaths;
+    private final int maxTypes;
+    private final int maxPaths;
+    private final Policy policy;
+
+    /**
+     * Create a new instance of the {@link Guardrails}.
+     *
+     * @param maxDepth       The maximum number of nested fields on the paths of a holder, so {@code $.a[*].b} has a
+     *                       depth of two. Types which would be inspected deeper than that are not traversed.
+     * @param maxHolderPaths The maximum number of sensitive data paths of a single holder.
+     * @param maxTypes       The maximum number of distinct types inspected in a run.
+     * @param maxPaths       The maximum number of sensitive data paths of all holders of a run.
+     * @param policy         What happens when a limit is exceeded.
+     */
+    public Guardrails(int maxDepth, int maxHolderPaths, int maxTypes, int maxPaths, Policy policy) {
+        this.maxDepth = limit(maxDepth);
+        this.maxHolderPaths = limit(maxHolderPaths);
+        this.maxTypes = limit(maxTypes);
+        this.maxPaths = limit(maxPaths);
+        this.policy = policy == null ? Policy.FAIL : policy;
+    }
+
+    /**
+     * @return The maximum depth of the paths of a holder, or {@link Integer#MAX_VALUE} when unlimited.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return The maximum number of paths of a holder, or {@link Integer#MAX_VALUE} when unlimited.
+     */
+    public int getMaxHolderPaths() {
+        return maxHolderPaths;
+    }
+
+    /**
+     * @return The maximum number of types inspected in a run, or {@link Integer#MAX_VALUE} when unlimited.
+     */
+    public int getMaxTypes() {
+        return maxTypes;
+    }
+
+    /**
+     * @return The maximum number of paths of a run, or {@link Integer#MAX_VALUE} when unlimited.
+     */
+    public int getMaxPaths() {
+        return maxPaths;
+    }
+
+    /**
+     * @return What happens when a limit is exceeded.
+     */
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return True if any limit is set, so the generator has to track the traversal.
+     */
+    public boolean isEnabled() {
+        return maxDepth != Integer.MAX_VALUE
+                || maxHolderPaths != Integer.MAX_VALUE
+                || maxTypes != Integer.MAX_VALUE
+                || maxPaths != Integer.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return "Guardrails{maxDepth=" + maxDepth + ", maxHolderPaths=" + maxHolderPaths + ", maxTypes=" + maxTypes
+                + ", maxPaths=" + maxPaths + ", policy=" + policy + "}";
+    }
+
+    private static int limit(int value) {
+        return value > 0 ? value : Integer.MAX_VALUE;
+    }
+}
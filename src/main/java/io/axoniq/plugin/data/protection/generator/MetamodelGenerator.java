@@ -25,60 +25,82 @@ import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
 import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
 import io.axoniq.plugin.data.protection.config.SensitiveDataConfig;
 import io.axoniq.plugin.data.protection.config.SubjectIdConfig;
+import io.axoniq.plugin.data.protection.generator.cache.ScanIndexCache;
+import io.axoniq.plugin.data.protection.generator.cache.TypeFragment;
+import io.axoniq.plugin.data.protection.generator.cache.TypeFragmentCache;
+import io.axoniq.plugin.data.protection.generator.errors.GuardrailExceededException;
 import io.axoniq.plugin.data.protection.generator.errors.NoSensitiveDataHolderAnnotationException;
 import io.axoniq.plugin.data.protection.generator.errors.NoSubjectIdException;
+import io.axoniq.plugin.data.protection.generator.errors.RecursiveTypeException;
+import io.axoniq.plugin.data.protection.generator.jfr.CacheLookupEvent;
+import io.axoniq.plugin.data.protection.generator.jfr.HolderGenerationEvent;
+import io.axoniq.plugin.data.protection.generator.jfr.PackageScanEvent;
+import io.axoniq.plugin.data.protection.generator.metrics.GenerationMetrics;
 import io.axoniq.plugin.data.protection.generator.utils.AnnotationUtils;
+import io.axoniq.plugin.data.protection.generator.utils.ClassPathUtils;
 import io.axoniq.plugin.data.protection.generator.utils.ReflectionUtils;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.reflections.Reflections;
+import org.reflections.Store;
+import org.reflections.util.ClasspathHelper;
+import org.reflections.util.ConfigurationBuilder;
+import org.reflections.util.FilterBuilder;
 
+import java.io.File;
 import java.lang.reflect.Field;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
+import static io.axoniq.plugin.data.protection.generator.utils.PathUtils.*;
 import static io.axoniq.plugin.data.protection.generator.utils.ReflectionUtils.*;
 import static io.axoniq.plugin.data.protection.generator.utils.TypeDetector.*;
 
 /**
- * Class responsible to hold the logic for generating the Metamodel Configuration.
+ * Class responsible to hold the logic for generating the Metamodel Configuration. The configuration of a generator is
+ * immutable and all state built up during a generation, like the subtype index, belongs to that generation only. A
+ * single instance can therefore be used by several threads at once.
  */
 public class MetamodelGenerator {
 
-    /**
-     * Represents a path prefix for json path.
-     */
-    private static final String PATH_PREFIX = "$";
+    private final Log log;
 
-    /**
-     * Represents a path divider for json path.
-     */
-    private static final String PATH_DIVIDER = ".";
+    private final List<String> ignores;
 
-    /**
-     * Represents every element of a given List.
-     */
-    private static final String PATH_LIST_ELEMENTS = "[*]";
+    private final ClassLoader classLoader;
 
-    /**
-     * Represents every element of a given Map entry.
-     */
-    private static final String PATH_MAP_ELEMENTS = "*";
+    private final TypeFragmentCache typeFragmentCache;
 
-    private final Log log;
+    private final ScanIndexCache scanIndexCache;
 
-    private final List<String> ignores;
+    private final Set<File> scanRoots;
+
+    private final Guardrails guardrails;
 
     /**
      * Create a new instance of the {@link MetamodelGenerator}. Specially useful on tests setting up the default {@link
      * Log}.
      */
     public MetamodelGenerator() {
-        this.log = new SystemStreamLog();
-        this.ignores = new ArrayList<>();
+        this(new SystemStreamLog(), new ArrayList<>());
     }
 
     /**
@@ -88,8 +110,7 @@ public class MetamodelGenerator {
      * @param ignores List of classes or packages that should be ignored when checking for types.
      */
     public MetamodelGenerator(List<String> ignores) {
-        this.log = new SystemStreamLog();
-        this.ignores = ignores;
+        this(new SystemStreamLog(), ignores);
     }
 
     /**
@@ -100,187 +121,1068 @@ public class MetamodelGenerator {
      * @param ignores List of classes or packages that should be ignored when checking for types.
      */
     public MetamodelGenerator(Log log, List<String> ignores) {
-        this.log = log;
-        this.ignores = ignores;
+        this(log, ignores, Thread.currentThread().getContextClassLoader());
     }
 
     /**
-     * Start the generation of the metamodel based on the given {@code packages}.
+     * Create a new instance of the {@link MetamodelGenerator}.
      *
-     * @param packages List of packages for look up for annotated classes.
-     * @return A new instance of a {@link DataProtectionConfig}.
+     * @param log         Log to be used on class. As a Maven Plugin, the default log from the {@link
+     *                    AbstractMojo#getLog()} is recommended.
+     * @param ignores     List of classes or packages that should be ignored when checking for types.
+     * @param classLoader The class loader used to find and load the classes to scan.
      */
-    public DataProtectionConfigList generateMetamodel(List<String> packages) {
-        List<DataProtectionConfig> dataProtectionConfigs = new ArrayList<>();
-        packages.forEach(pkg -> dataProtectionConfigs.addAll(generateMetamodel(pkg).getConfig()));
-        return new DataProtectionConfigList(dataProtectionConfigs);
+    public MetamodelGenerator(Log log, List<String> ignores, ClassLoader classLoader) {
+        this(log, ignores, classLoader, TypeFragmentCache.NONE);
     }
 
     /**
-     * Start the generation of the metamodel based on the given {@code pkg}.
+     * Create a new instance of the {@link MetamodelGenerator}.
      *
-     * @param pkg The package for look up for annotated classes.
-     * @return A new instance of a {@link DataProtectionConfig}.
+     * @param log               Log to be used on class. As a Maven Plugin, the default log from the {@link
+     *                          AbstractMojo#getLog()} is recommended.
+     * @param ignores           List of classes or packages that should be ignored when checking for types.
+     * @param classLoader       The class loader used to find and load the classes to scan.
+     * @param typeFragmentCache The cache consulted before a type is inspected, and filled with the fragments of the
+     *                          inspected types.
      */
-    public DataProtectionConfigList generateMetamodel(String pkg) {
-        log.info(String.format("Scanning package [%s]", pkg));
-        List<DataProtectionConfig> dataProtectionConfigs = new ArrayList<>();
-        // reflections lib code
-        Reflections reflections = new Reflections(pkg);
-        Set<Class<?>> annotatedClasses = reflections.getTypesAnnotatedWith(SensitiveDataHolder.class);
-        // all SensitiveDataHolder annotated class
-        annotatedClasses.stream()
-                        .map(this::generateMetamodel)
-                        .forEach(dataProtectionConfigs::add);
+    public MetamodelGenerator(Log log,
+                              List<String> ignores,
+                              ClassLoader classLoader,
+                              TypeFragmentCache typeFragmentCache) {
+        this(log, ignores, classLoader, typeFragmentCache, ScanIndexCache.NONE);
+    }
 
-        // TODO: getFieldsAnnotatedWith can be used to validate if we got the right number of config entries
-        return new DataProtectionConfigList(dataProtectionConfigs);
+    /**
+     * Create a new instance of the {@link MetamodelGenerator}.
+     *
+     * @param log               Log to be used on class. As a Maven Plugin, the default log from the {@link
+     *                          AbstractMojo#getLog()} is recommended.
+     * @param ignores           List of classes or packages that should be ignored when checking for types.
+     * @param classLoader       The class loader used to find and load the classes to scan.
+     * @param typeFragmentCache The cache consulted before a type is inspected, and filled with the fragments of the
+     *                          inspected types.
+     * @param scanIndexCache    The cache consulted before a class path element is scanned, and filled with the
+     *                          results of the scanned elements.
+     */
+    public MetamodelGenerator(Log log,
+                              List<String> ignores,
+                              ClassLoader classLoader,
+                              TypeFragmentCache typeFragmentCache,
+                              ScanIndexCache scanIndexCache) {
+        this(log, ignores, classLoader, typeFragmentCache, scanIndexCache, Collections.emptyList());
     }
 
     /**
-     * Create a {@link DataProtectionConfig} instance based on the class and its fields.
+     * Create a new instance of the {@link MetamodelGenerator}.
      *
-     * @param annotatedClass A class which is annotated with {@link SensitiveDataHolder}.
-     * @return A new instance of a {@link DataProtectionConfig}.
+     * @param log               Log to be used on class. As a Maven Plugin, the default log from the {@link
+     *                          AbstractMojo#getLog()} is recommended.
+     * @param ignores           List of classes or packages that should be ignored when checking for types.
+     * @param classLoader       The class loader used to find and load the classes to scan.
+     * @param typeFragmentCache The cache consulted before a type is inspected, and filled with the fragments of the
+     *                          inspected types.
+     * @param scanIndexCache    The cache consulted before a class path element is scanned, and filled with the
+     *                          results of the scanned elements.
+     * @param scanRoots         The directories and jars scanned for holders and subtypes. Other elements of the class
+     *                          loader are only used to load the field types. Scans all elements when empty.
      */
-    public DataProtectionConfig generateMetamodel(Class<?> annotatedClass) {
-        if (!annotatedClass.isAnnotationPresent(SensitiveDataHolder.class)) {
-            throw new NoSensitiveDataHolderAnnotationException(annotatedClass);
-        }
-        log.debug(String.format("Scanning class [%s]", extractName(annotatedClass)));
-        List<SensitiveDataConfig> sensitiveDataList = new ArrayList<>();
-        String type = extractName(annotatedClass);
-        String revision = extractRevision(annotatedClass);
+    public MetamodelGenerator(Log log,
+                              List<String> ignores,
+                              ClassLoader classLoader,
+                              TypeFragmentCache typeFragmentCache,
+                              ScanIndexCache scanIndexCache,
+                              Collection<File> scanRoots) {
+        this(log, ignores, classLoader, typeFragmentCache, scanIndexCache, scanRoots, Guardrails.NONE);
+    }
 
-        List<Field> classFields = getAllDeclaredFields(annotatedClass);
-        SubjectIdConfig subjectId = extractSubjectId(classFields)
-                .orElseThrow(() -> new NoSubjectIdException(annotatedClass));
+    /**
+     * Create a new instance of the {@link MetamodelGenerator}.
+     *
+     * @param log               Log to be used on class. As a Maven Plugin, the default log from the {@link
+     *                          AbstractMojo#getLog()} is recommended.
+     * @param ignores           List of classes or packages that should be ignored when checking for types.
+     * @param classLoader       The class loader used to find and load the classes to scan.
+     * @param typeFragmentCache The cache consulted before a type is inspected, and filled with the fragments of the
+     *                          inspected types.
+     * @param scanIndexCache    The cache consulted before a class path element is scanned, and filled with the
+     *                          results of the scanned elements.
+     * @param scanRoots         The directories and jars scanned for holders and subtypes. Other elements of the class
+     *                          loader are only used to load the field types. Scans all elements when empty.
+     * @param guardrails        The limits on the depth, types and paths of a generation.
+     */
+    public MetamodelGenerator(Log log,
+                              List<String> ignores,
+                              ClassLoader classLoader,
+                              TypeFragmentCache typeFragmentCache,
+                              ScanIndexCache scanIndexCache,
+                              Collection<File> scanRoots,
+                              Guardrails guardrails) {
+        this.log = log;
+        this.ignores = ignores == null ? Collections.emptyList() : List.copyOf(ignores);
+        this.classLoader = classLoader;
+        this.typeFragmentCache = typeFragmentCache;
+        this.scanIndexCache = scanIndexCache;
+        this.scanRoots = scanRoots.stream().map(File::getAbsoluteFile).collect(Collectors.toUnmodifiableSet());
+        this.guardrails = guardrails;
+    }
 
-        extractSensitiveData(classFields, sensitiveDataList, PATH_PREFIX);
-        return new DataProtectionConfig(type, revision, subjectId, sensitiveDataList);
+    /**
+     * Start the generation of the metamodel based on the given {@code packages}. All packages are scanned before any
+     * class is inspected, so the subtype index is complete when polymorphic fields get expanded.
+     *
+     * @param packages List of packages for look up for annotated classes.
+     * @return A new instance of a {@link DataProtectionConfig}.
+     */
+    public DataProtectionConfigList generateMetamodel(List<String> packages) {
+        return generateMetamodel(packages, Runnable::run);
     }
 
     /**
-     * Create a {@link SubjectIdConfig} instance based on a list of {@link Field}s. The first field annotated with
-     * {@link SubjectId} is the one which the value will be taken.
+     * Start the generation of the metamodel based on the given {@code packages}, scanning the packages and inspecting
+     * the annotated classes on the given {@code executor}. All classes share the fragments of the types they have in
+     * common, so every type is only inspected once. The result does not depend on the executor.
      *
-     * @param classFields List of fields from a {@link Class}.
-     * @return A new instance of a {@link SubjectIdConfig}.
+     * @param packages List of packages for look up for annotated classes.
+     * @param executor The executor running the scans and inspections.
+     * @return A new instance of a {@link DataProtectionConfig}.
      */
-    private Optional<SubjectIdConfig> extractSubjectId(List<Field> classFields) {
-        return classFields.stream()
-                          .filter(field -> AnnotationUtils.isAnnotationPresent(field, SubjectId.class))
-                          .findFirst()
-                          .map(subjectIdField -> new SubjectIdConfig(
-                                  buildPath(PATH_PREFIX, extractName(subjectIdField))));
+    public DataProtectionConfigList generateMetamodel(List<String> packages, Executor executor) {
+        return generateMetamodel(packages, executor, new GenerationMetrics());
     }
 
     /**
-     * Create one or more instances of a {@link SensitiveDataConfig} which are added to the {@param sensitiveDataList}.
-     * This method is called recursively.
+     * Start the generation of the metamodel based on the given {@code packages}, like {@link
+     * MetamodelGenerator#generateMetamodel(List, Executor)}, recording the time of the discovery and traversal phases
+     * and the work done in them in the given {@code metrics}.
      *
-     * @param classFields       A list of {@link Field}s that may contains {@link SensitiveData} annotated fields.
-     * @param sensitiveDataList A list which will hold all the {@link SensitiveDataConfig} created during the calls.
-     *                          Needed because this is meant to be a recursive method.
-     * @param path              The path from the previous field. Needed because this is meant to be a recursive
-     *                          method.
+     * @param packages List of packages for look up for annotated classes.
+     * @param executor The executor running the scans and inspections.
+     * @param metrics  The metrics to record the phases and counters in.
+     * @return A new instance of a {@link DataProtectionConfig}.
      */
-    private void extractSensitiveData(List<Field> classFields,
-                                      List<SensitiveDataConfig> sensitiveDataList,
-                                      String path) {
-        // direct annotated fields (ignoring the SubjectId annotated field)
-        classFields.stream()
-                   .filter(f -> AnnotationUtils.isAnnotationPresent(f, SensitiveData.class))
-                   .filter(f -> !AnnotationUtils.isAnnotationPresent(f, SubjectId.class))
-                   .forEach(f -> sensitiveDataList.add(
-                           new SensitiveDataConfig(buildPath(path, extractName(f)),
-                                                   extractReplacementValue(f))
-                   ));
-        // if it's not a primitive type, go deeper recursively (ignoring the SubjectId annotated field)
-        classFields.stream()
-                   .filter(f -> !AnnotationUtils.isAnnotationPresent(f, SubjectId.class))
-                   .filter(f -> !ignore(ignores, f.getType()))
-                   .filter(ReflectionUtils::shouldGoDeeper)
-                   .forEach(field -> checkType(field,
-                                               sensitiveDataList,
-                                               buildPath(path, extractName(field))));
+    public DataProtectionConfigList generateMetamodel(List<String> packages,
+                                                      Executor executor,
+                                                      GenerationMetrics metrics) {
+        return generateMetamodel(packages, executor, metrics, new GeneratedHolders());
     }
 
     /**
-     * Check the type of the given {@link Field} to decide if it's a form of Container, Array or not. In case it's a
-     * Container or an Array, the method calls {@link MetamodelGenerator#extractSensitiveData(List, List, String)} on
-     * its type. If not, it calls the method on its {@link Field}s.
+     * Start the generation of the metamodel based on the given {@code packages}, like {@link
+     * MetamodelGenerator#generateMetamodel(List, Executor, GenerationMetrics)}, reusing the configs of the given
+     * {@code generatedHolders}. The config of a holder is only reused when no new subtype of the polymorphic types it
+     * was built from showed up, and no {@link Guardrails} are enabled, as they limit the run as a whole. The holders
+     * generated now are added to the {@code generatedHolders}, for the next generation.
      *
-     * @param field             The {@link Field} we are going to perform the type check.
-     * @param sensitiveDataList The container for all the {@link SensitiveDataConfig}. Needed because this is meant to
-     *                          be a recursive method.
-     * @param path              The path from the previous field. Needed because this is meant to be a recursive
-     *                          method.
+     * @param packages         List of packages for look up for annotated classes.
+     * @param executor         The executor running the scans and inspections.
+     * @param metrics          The metrics to record the phases and counters in.
+     * @param generatedHolders The holders generated before, without the holders affected by changes since.
+     * @return A new instance of a {@link DataProtectionConfig}.
      */
-    private void checkType(Field field, List<SensitiveDataConfig> sensitiveDataList, String path) {
-        // TODO: can we replace the following 2 lines to avoid another dependency?
-        TypeResolver resolver = new TypeResolver();
-        ResolvedType type = resolver.resolve(field.getGenericType());
-
-        if (isMap(type)) {
-            // only Value of the Map, ignore Key
-            extractSensitiveData(getAllDeclaredFields(type.getTypeParameters().get(1).getErasedType()),
-                                 sensitiveDataList,
-                                 buildMapPath(path));
-        } else if (isArray(type)) {
-            extractSensitiveData(getAllDeclaredFields(type.getArrayElementType().getErasedType()),
-                                 sensitiveDataList,
-                                 buildCollectionPath(path));
-        } else if (hasTypeParameters(type)) {
-            type.getTypeParameters()
-                .stream()
-                .filter(tp -> shouldGoDeeper(tp.getErasedType()))
-                .forEach(tp -> extractSensitiveData(getAllDeclaredFields(tp.getErasedType()),
-                                                    sensitiveDataList,
-                                                    buildCollectionPath(path)));
-        } else {
-            extractSensitiveData(getAllDeclaredFields(type.getErasedType()), sensitiveDataList, path);
-        }
+    public DataProtectionConfigList generateMetamodel(List<String> packages,
+                                                      Executor executor,
+                                                      GenerationMetrics metrics,
+                                                      GeneratedHolders generatedHolders) {
+        Generation generation = new Generation(metrics);
+        metrics.ignoreSuggestions().scanned(packages);
+        long start = System.nanoTime();
+        List<CompletableFuture<Set<Class<?>>>> scans = new ArrayList<>();
+        packages.forEach(pkg -> scans.add(CompletableFuture.supplyAsync(() -> generation.scan(pkg), executor)));
+        Set<Class<?>> annotatedClasses = new LinkedHashSet<>();
+        scans.forEach(scan -> annotatedClasses.addAll(join(scan)));
+        generatedHolders.retain(annotatedClasses.stream().map(Class::getName).collect(Collectors.toSet()));
+        metrics.addTime(GenerationMetrics.Phase.DISCOVERY, start);
+
+        start = System.nanoTime();
+        List<CompletableFuture<DataProtectionConfig>> generations = new ArrayList<>();
+        // all SensitiveDataHolder annotated class
+        annotatedClasses.forEach(annotatedClass -> generations.add(
+                CompletableFuture.supplyAsync(() -> generation.generateMetamodel(annotatedClass, generatedHolders),
+                                              executor)));
+        List<DataProtectionConfig> dataProtectionConfigs = new ArrayList<>();
+        generations.forEach(config -> dataProtectionConfigs.add(join(config)));
+        metrics.addTime(GenerationMetrics.Phase.TRAVERSAL, start);
+
+        // TODO: getFieldsAnnotatedWith can be used to validate if we got the right number of config entries
+        DataProtectionConfigList result = new DataProtectionConfigList(dataProtectionConfigs);
+        metrics.result(result);
+        return result;
     }
 
     /**
-     * Check if the given type has Type Parameters.
+     * Start the generation of the metamodel based on the given {@code pkg}.
      *
-     * @param type Type which will be used to check if it has Type Parameters.
-     * @return True or false, depending on the check.
+     * @param pkg The package for look up for annotated classes.
+     * @return A new instance of a {@link DataProtectionConfig}.
      */
-    private boolean hasTypeParameters(ResolvedType type) {
-        return !type.getTypeParameters().isEmpty();
+    public DataProtectionConfigList generateMetamodel(String pkg) {
+        return generateMetamodel(Collections.singletonList(pkg));
     }
 
     /**
-     * Build a path based on the previous path and the current one.
+     * Create a {@link DataProtectionConfig} instance based on the class and its fields.
      *
-     * @param previousPath Previous path on the json
-     * @param path         Current path on the json
-     * @return A new path built based on the parameters divided by the {@link MetamodelGenerator#PATH_DIVIDER}
+     * @param annotatedClass A class which is annotated with {@link SensitiveDataHolder}.
+     * @return A new instance of a {@link DataProtectionConfig}.
      */
-    private String buildPath(String previousPath, String path) {
-        return previousPath + PATH_DIVIDER + path;
+    public DataProtectionConfig generateMetamodel(Class<?> annotatedClass) {
+        return new Generation(new GenerationMetrics()).generateMetamodel(annotatedClass);
     }
 
     /**
-     * Build a path based on the previous path and the current one.
+     * Check if the given class path element should be scanned.
      *
-     * @param path Current path on the json
-     * @return A new path built based on the parameters divided by the {@link MetamodelGenerator#PATH_DIVIDER}
+     * @param root The URL of a jar or directory.
+     * @return True if no scan roots are configured, or if the element is one of them.
      */
-    private String buildCollectionPath(String path) {
-        return path + PATH_LIST_ELEMENTS;
+    private boolean isScanRoot(URL root) {
+        return scanRoots.isEmpty() || ClassPathUtils.toFile(root).map(scanRoots::contains).orElse(false);
     }
 
     /**
-     * Build a path based on the previous path and the current one.
+     * Wait for the given {@code future}, rethrowing the exception or error it failed with as is.
      *
-     * @param path Current path on the json
-     * @return A new path built based on the parameters divided by the {@link MetamodelGenerator#PATH_DIVIDER}
+     * @param future The future to wait for.
+     * @param <T>    The type of the result.
+     * @return The result of the future.
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The state of a single generation. Types are resolved and expanded against the indexes scanned during this
+     * generation only.
      */
-    private String buildMapPath(String path) {
-        return path + PATH_DIVIDER + PATH_MAP_ELEMENTS;
+    private class Generation {
+
+        private final GenerationMetrics metrics;
+
+        private final SubtypeResolver subtypeResolver = new SubtypeResolver();
+
+        /**
+         * Resolves the generic field types. It caches resolved types and is safe for concurrent use.
+         */
+        private final TypeResolver typeResolver = new TypeResolver();
+
+        /**
+         * Memoized sensitive data per type, shared by all classes inspected during this generation. Polymorphic types
+         * are expanded over their known subtypes. Paths are relative to the field holding the type.
+         */
+        private final Map<Class<?>, List<SensitiveDataConfig>> typeFragments = new ConcurrentHashMap<>();
+
+        /**
+         * The class names of all types the complete fragment of a type was built from, so they are known for every
+         * holder embedding the type. Only the fragments of types which do not depend on a polymorphic type are stored
+         * in the {@link TypeFragmentCache}.
+         */
+        private final Map<Class<?>, Set<String>> typeDependencies = new ConcurrentHashMap<>();
+
+        /**
+         * Types whose fragment depends on the subtypes found during this generation.
+         */
+        private final Set<Class<?>> openTypes = ConcurrentHashMap.newKeySet();
+
+        /**
+         * The types requested while building the fragment of a type, on the current thread.
+         */
+        private final ThreadLocal<Set<Class<?>>> requestedTypes = new ThreadLocal<>();
+
+        /**
+         * The polymorphic types being expanded on the current thread. A fragment is only memoized once it is built,
+         * so a subtype embedding its own declared type would otherwise be expanded without end.
+         */
+        private final ThreadLocal<Set<Class<?>>> expandingTypes = ThreadLocal.withInitial(HashSet::new);
+
+        /**
+         * The class names of the types the holder generated on the current thread is built from.
+         */
+        private final ThreadLocal<Set<String>> holderDependencies = new ThreadLocal<>();
+
+        /**
+         * The traversal of the holder generated on the current thread. Only set when {@link Guardrails} are enabled.
+         */
+        private final ThreadLocal<Traversal> traversals = new ThreadLocal<>();
+
+        /**
+         * The number of nested fields below every type with a complete fragment, so the depth of a memoized fragment
+         * can be checked without traversing it again.
+         */
+        private final Map<Class<?>, Integer> typeHeights = new ConcurrentHashMap<>();
+
+        /**
+         * The types inspected during this generation, counted against {@link Guardrails#getMaxTypes()}.
+         */
+        private final Set<Class<?>> inspectedTypes = ConcurrentHashMap.newKeySet();
+
+        private final AtomicInteger inspectedTypeCount = new AtomicInteger();
+
+        /**
+         * The sensitive data paths of the holders generated so far, counted against {@link Guardrails#getMaxPaths()}.
+         */
+        private final AtomicLong emittedPaths = new AtomicLong();
+
+        private Generation(GenerationMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        /**
+         * Scan the given {@code pkg} for {@link SensitiveDataHolder} annotated classes. Every class path element
+         * holding the package is scanned separately, so the results of unchanged elements can be taken from the
+         * {@link ScanIndexCache}. The merged index is registered on the {@link SubtypeResolver}, so it is built only
+         * once per run.
+         *
+         * @param pkg The package for look up for annotated classes.
+         * @return All classes annotated with {@link SensitiveDataHolder} in the given package.
+         */
+        private Set<Class<?>> scan(String pkg) {
+            log.info(String.format("Scanning package [%s]", pkg));
+            PackageScanEvent event = new PackageScanEvent();
+            event.begin();
+            // reflections lib code
+            Reflections reflections = new Reflections(new ConfigurationBuilder().addClassLoaders(classLoader));
+            for (URL root : ClasspathHelper.forPackage(pkg, classLoader)) {
+                if (!isScanRoot(root)) {
+                    log.debug(String.format("Skipping [%s], it is not a scan root", root));
+                    continue;
+                }
+                CacheLookupEvent lookup = new CacheLookupEvent();
+                lookup.begin();
+                Optional<Map<String, Map<String, Set<String>>>> cached = scanIndexCache.get(root, pkg);
+                if (lookup.shouldCommit()) {
+                    lookup.cache = CacheLookupEvent.SCAN_INDEXES;
+                    lookup.key = root + "!" + pkg;
+                    lookup.hit = cached.isPresent();
+                    lookup.commit();
+                }
+                if (cached.isPresent()) {
+                    metrics.scanIndexHit();
+                    event.cachedElements++;
+                    reflections.merge(new Reflections(new Store(cached.get())));
+                    continue;
+                }
+                event.scannedElements++;
+                Reflections scanned = new Reflections(new ConfigurationBuilder()
+                                                              .addUrls(root)
+                                                              .filterInputsBy(new FilterBuilder().includePackage(pkg))
+                                                              .addClassLoaders(classLoader));
+                scanIndexCache.put(root, pkg, scanned.getStore());
+                reflections.merge(scanned);
+            }
+            subtypeResolver.register(reflections);
+            typeFragments.clear();
+            typeDependencies.clear();
+            openTypes.clear();
+            typeHeights.clear();
+            Set<Class<?>> holders = reflections.getTypesAnnotatedWith(SensitiveDataHolder.class);
+            if (event.shouldCommit()) {
+                event.pkg = pkg;
+                event.holders = holders.size();
+                event.commit();
+            }
+            return holders;
+        }
+
+        /**
+         * Take the config of the given holder from the {@code generatedHolders}, or create it and record it there
+         * along with the types it was built from.
+         *
+         * @param annotatedClass   A class which is annotated with {@link SensitiveDataHolder}.
+         * @param generatedHolders The holders generated before.
+         * @return The {@link DataProtectionConfig} of the holder.
+         */
+        private DataProtectionConfig generateMetamodel(Class<?> annotatedClass, GeneratedHolders generatedHolders) {
+            String holder = annotatedClass.getName();
+            Optional<DataProtectionConfig> generated = generatedHolders.get(holder);
+            Set<String> generatedDependencies = generatedHolders.dependencies(holder);
+            if (generated.isPresent() && !guardrails.isEnabled() && subtypesUnchanged(generatedDependencies)) {
+                metrics.holderReused();
+                metrics.holder(holder);
+                metrics.dependsOn(generatedDependencies);
+                return generated.get();
+            }
+            Set<String> dependencies = new HashSet<>();
+            holderDependencies.set(dependencies);
+            DataProtectionConfig config;
+            try {
+                config = generateMetamodel(annotatedClass);
+            } finally {
+                holderDependencies.remove();
+            }
+            if (!guardrails.isEnabled()) {
+                generatedHolders.put(holder, config, dependencies);
+            }
+            return config;
+        }
+
+        /**
+         * Check that every subtype of the polymorphic types among the given ones is one of them, so no subtype was
+         * added since a holder was built from these types.
+         *
+         * @param dependencies The class names of the types a holder was built from.
+         * @return True if all subtypes are known, false if a subtype is new or a type can no longer be loaded.
+         */
+        private boolean subtypesUnchanged(Set<String> dependencies) {
+            for (String dependency : dependencies) {
+                Class<?> type;
+                try {
+                    type = Class.forName(dependency, false, classLoader);
+                } catch (ClassNotFoundException | LinkageError e) {
+                    return false;
+                }
+                if (SubtypeResolver.isPolymorphic(type)
+                        && subtypeResolver.resolve(type)
+                                          .stream()
+                                          .anyMatch(subtype -> !ignore(ignores, subtype)
+                                                  && !dependencies.contains(subtype.getName()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Create a {@link DataProtectionConfig} instance based on the class and its fields.
+         *
+         * @param annotatedClass A class which is annotated with {@link SensitiveDataHolder}.
+         * @return A new instance of a {@link DataProtectionConfig}.
+         */
+        private DataProtectionConfig generateMetamodel(Class<?> annotatedClass) {
+            if (!annotatedClass.isAnnotationPresent(SensitiveDataHolder.class)) {
+                throw new NoSensitiveDataHolderAnnotationException(annotatedClass);
+            }
+            long start = metrics.isProfiling() ? System.nanoTime() : 0;
+            metrics.holderStarted();
+            HolderGenerationEvent event = new HolderGenerationEvent();
+            event.begin();
+            log.debug(String.format("Scanning class [%s]", extractName(annotatedClass)));
+            List<SensitiveDataConfig> sensitiveDataList = new ArrayList<>();
+            String type = extractName(annotatedClass);
+            String revision = extractRevision(annotatedClass);
+
+            typeVisited(annotatedClass);
+            metrics.holder(annotatedClass.getName());
+            List<Field> classFields = inspectFields(annotatedClass);
+            SubjectIdConfig subjectId = extractSubjectId(classFields)
+                    .orElseThrow(() -> new NoSubjectIdException(annotatedClass));
+
+            Traversal traversal = guardrails.isEnabled() ? new Traversal(annotatedClass.getName()) : null;
+            traversals.set(traversal);
+            try {
+                extractSensitiveData(classFields, sensitiveDataList, PATH_PREFIX);
+            } finally {
+                traversals.remove();
+            }
+            if (traversal != null) {
+                sensitiveDataList = traversal.finish(sensitiveDataList);
+            }
+            DataProtectionConfig config = new DataProtectionConfig(type, revision, subjectId, sensitiveDataList);
+            metrics.holderFinished(config, start);
+            if (event.shouldCommit()) {
+                event.holder = type;
+                event.paths = 1 + sensitiveDataList.size();
+                event.commit();
+            }
+            return config;
+        }
+
+        /**
+         * Create a {@link SubjectIdConfig} instance based on a list of {@link Field}s. The first field annotated with
+         * {@link SubjectId} is the one which the value will be taken.
+         *
+         * @param classFields List of fields from a {@link Class}.
+         * @return A new instance of a {@link SubjectIdConfig}.
+         */
+        private Optional<SubjectIdConfig> extractSubjectId(List<Field> classFields) {
+            return classFields.stream()
+                              .filter(field -> AnnotationUtils.isAnnotationPresent(field, SubjectId.class))
+                              .findFirst()
+                              .map(subjectIdField -> new SubjectIdConfig(
+                                      buildPath(PATH_PREFIX, extractName(subjectIdField))));
+        }
+
+        /**
+         * Create one or more instances of a {@link SensitiveDataConfig} which are added to the {@param
+         * sensitiveDataList}. This method is called recursively.
+         *
+         * @param classFields       A list of {@link Field}s that may contains {@link SensitiveData} annotated fields.
+         * @param sensitiveDataList A list which will hold all the {@link SensitiveDataConfig} created during the calls.
+         *                          Needed because this is meant to be a recursive method.
+         * @param path              The path from the previous field. Needed because this is meant to be a recursive
+         *                          method.
+         */
+        private void extractSensitiveData(List<Field> classFields,
+                                          List<SensitiveDataConfig> sensitiveDataList,
+                                          String path) {
+            // direct annotated fields (ignoring the SubjectId annotated field)
+            classFields.stream()
+                       .filter(f -> AnnotationUtils.isAnnotationPresent(f, SensitiveData.class))
+                       .filter(f -> !AnnotationUtils.isAnnotationPresent(f, SubjectId.class))
+                       .forEach(f -> addSensitiveData(
+                               sensitiveDataList,
+                               new SensitiveDataConfig(buildPath(path, extractName(f)),
+                                                       extractReplacementValue(f))
+                       ));
+            // if it's not a primitive type, go deeper recursively (ignoring the SubjectId annotated field)
+            classFields.stream()
+                       .filter(f -> !AnnotationUtils.isAnnotationPresent(f, SubjectId.class))
+                       .filter(f -> !ignore(ignores, f.getType()))
+                       .filter(ReflectionUtils::shouldGoDeeper)
+                       .forEach(field -> checkType(field,
+                                                   sensitiveDataList,
+                                                   buildPath(path, extractName(field))));
+        }
+
+        /**
+         * Check the type of the given {@link Field} to decide if it's a form of Container, Array or not. In case it's a
+         * Container or an Array, the method calls {@link Generation#extractSensitiveData(Class, List, String)} on
+         * its type. If not, it calls the method on the type of the {@link Field}.
+         *
+         * @param field             The {@link Field} we are going to perform the type check.
+         * @param sensitiveDataList The container for all the {@link SensitiveDataConfig}. Needed because this is meant
+         *                          to be a recursive method.
+         * @param path              The path from the previous field. Needed because this is meant to be a recursive
+         *                          method.
+         */
+        private void checkType(Field field, List<SensitiveDataConfig> sensitiveDataList, String path) {
+            Traversal traversal = traversals.get();
+            if (traversal == null) {
+                checkFieldType(field, sensitiveDataList, path);
+                return;
+            }
+            if (!traversal.canDescend(path)) {
+                return;
+            }
+            String outerPath = traversal.enter(path);
+            try {
+                checkFieldType(field, sensitiveDataList, path);
+            } finally {
+                traversal.leave(outerPath);
+            }
+        }
+
+        private void checkFieldType(Field field, List<SensitiveDataConfig> sensitiveDataList, String path) {
+            // TODO: can we replace the following line to avoid another dependency?
+            ResolvedType type = typeResolver.resolve(field.getGenericType());
+
+            if (isMap(type)) {
+                // only Value of the Map, ignore Key
+                extractSensitiveData(type.getTypeParameters().get(1).getErasedType(),
+                                     sensitiveDataList,
+                                     buildMapPath(path));
+            } else if (isArray(type)) {
+                extractSensitiveData(type.getArrayElementType().getErasedType(),
+                                     sensitiveDataList,
+                                     buildCollectionPath(path));
+            } else if (hasTypeParameters(type)) {
+                type.getTypeParameters()
+                    .stream()
+                    .filter(tp -> shouldGoDeeper(tp.getErasedType()))
+                    .forEach(tp -> extractSensitiveData(tp.getErasedType(),
+                                                        sensitiveDataList,
+                                                        buildCollectionPath(path)));
+            } else {
+                extractSensitiveData(type.getErasedType(), sensitiveDataList, path);
+            }
+        }
+
+        /**
+         * Create the {@link SensitiveDataConfig}s for the fields of the given {@code clazz}. When the class is an
+         * interface or an abstract class with known subtypes, the fields of all those subtypes are taken into account
+         * instead.
+         *
+         * @param clazz             The type of the field that is being inspected.
+         * @param sensitiveDataList The container for all the {@link SensitiveDataConfig}. Needed because this is meant
+         *                          to be a recursive method.
+         * @param path              The path from the previous field. Needed because this is meant to be a recursive
+         *                          method.
+         */
+        private void extractSensitiveData(Class<?> clazz, List<SensitiveDataConfig> sensitiveDataList, String path) {
+            typeFragment(clazz).forEach(config -> addSensitiveData(
+                    sensitiveDataList,
+                    new SensitiveDataConfig(path + config.getPath(), config.getReplacementValue())));
+        }
+
+        /**
+         * Add the given {@code config} to the given list, unless the list already holds the maximum number of paths
+         * allowed by the {@link Guardrails}.
+         *
+         * @param sensitiveDataList The list of a type fragment or holder.
+         * @param config            The config to add.
+         */
+        private void addSensitiveData(List<SensitiveDataConfig> sensitiveDataList, SensitiveDataConfig config) {
+            if (guardrails.isEnabled()) {
+                Traversal traversal = traversals.get();
+                if (traversal != null && !traversal.canAdd(sensitiveDataList.size())) {
+                    return;
+                }
+            }
+            sensitiveDataList.add(config);
+        }
+
+        /**
+         * Get the sensitive data of the given type, with paths relative to the field holding it. The fragment is
+         * memoized per type. It is looked up and stored separately rather than computed atomically, so a recursive
+         * type still recurses instead of blocking on itself.
+         *
+         * @param clazz The type of the field that is being inspected.
+         * @return The {@link SensitiveDataConfig}s with paths relative to the field holding the type.
+         */
+        private List<SensitiveDataConfig> typeFragment(Class<?> clazz) {
+            Set<Class<?>> requested = requestedTypes.get();
+            if (requested != null) {
+                requested.add(clazz);
+            }
+            typeVisited(clazz);
+            Traversal traversal = traversals.get();
+            List<SensitiveDataConfig> fragment = typeFragments.get(clazz);
+            if (fragment != null && (traversal == null || traversal.reached(typeHeights.getOrDefault(clazz, 0)))) {
+                metrics.generationHit();
+                Set<String> holder = holderDependencies.get();
+                if (holder != null) {
+                    holder.addAll(typeDependencies.getOrDefault(clazz, Collections.emptySet()));
+                }
+                return fragment;
+            }
+            if (traversal != null) {
+                List<SensitiveDataConfig> truncated = traversal.truncatedFragment(clazz);
+                if (truncated != null) {
+                    metrics.generationHit();
+                    return truncated;
+                }
+                if (!traversal.canInspect(clazz)) {
+                    return Collections.emptyList();
+                }
+            }
+            Set<Class<?>> dependencies = new LinkedHashSet<>();
+            requestedTypes.set(dependencies);
+            GenerationMetrics.TypeTimer timer = metrics.startType();
+            Traversal.TypeFrame frame = traversal == null ? null : traversal.startType();
+            try {
+                fragment = buildTypeFragment(clazz);
+            } finally {
+                requestedTypes.set(requested);
+            }
+            boolean complete = frame == null || frame.finish(clazz, fragment);
+            timer.finish(clazz.getName(), fragment.isEmpty() && complete);
+            if (!complete) {
+                // a truncated fragment depends on where the type was reached, so it is only memoized per level of the
+                // holder, by the traversal
+                return fragment;
+            }
+            if (!typeDependencies.containsKey(clazz)) {
+                recordDependencies(clazz, fragment, dependencies);
+            }
+            typeFragments.put(clazz, fragment);
+            return fragment;
+        }
+
+        private List<SensitiveDataConfig> buildTypeFragment(Class<?> clazz) {
+            if (SubtypeResolver.isPolymorphic(clazz)) {
+                return expandPolymorphic(clazz);
+            }
+            CacheLookupEvent lookup = new CacheLookupEvent();
+            lookup.begin();
+            Optional<TypeFragment> cached = typeFragmentCache.get(clazz);
+            if (lookup.shouldCommit()) {
+                lookup.cache = CacheLookupEvent.TYPE_FRAGMENTS;
+                lookup.key = clazz.getName();
+                lookup.hit = cached.isPresent();
+                lookup.commit();
+            }
+            Traversal traversal = traversals.get();
+            if (cached.isPresent() && (traversal == null || traversal.reached(height(cached.get())))) {
+                metrics.typeFragmentHit();
+                dependsOn(cached.get().getDependencies());
+                typeDependencies.put(clazz, cached.get().getDependencies());
+                return cached.get().getSensitiveData();
+            }
+            List<Field> classFields = inspectFields(clazz);
+            List<SensitiveDataConfig> fields = new ArrayList<>();
+            extractSensitiveData(classFields, fields, "");
+            return Collections.unmodifiableList(fields);
+        }
+
+        /**
+         * Read the fields of the given type and of its super classes and interfaces, recording them in the metrics.
+         *
+         * @param clazz The inspected type.
+         * @return All fields of the type.
+         */
+        private List<Field> inspectFields(Class<?> clazz) {
+            List<Field> fields = getAllDeclaredFields(clazz);
+            metrics.fieldsInspected(fields.size());
+            dependsOn(getAllParents(clazz).stream().map(Class::getName).collect(Collectors.toList()));
+            return fields;
+        }
+
+        private void typeVisited(Class<?> clazz) {
+            metrics.typeVisited(clazz.getName());
+            Set<String> holder = holderDependencies.get();
+            if (holder != null) {
+                holder.add(clazz.getName());
+            }
+        }
+
+        private void dependsOn(Collection<String> types) {
+            metrics.dependsOn(types);
+            Set<String> holder = holderDependencies.get();
+            if (holder != null) {
+                holder.addAll(types);
+            }
+        }
+
+        /**
+         * Record the types the fragment of the given type was built from, including the super classes and interfaces
+         * whose fields were inspected with it. When none of them is polymorphic, the fragment is stored in the {@link
+         * TypeFragmentCache}.
+         *
+         * @param clazz        The inspected type.
+         * @param fragment     The fragment of the type.
+         * @param dependencies The types requested while building the fragment.
+         */
+        private void recordDependencies(Class<?> clazz,
+                                        List<SensitiveDataConfig> fragment,
+                                        Set<Class<?>> dependencies) {
+            Set<String> transitive = new TreeSet<>();
+            getAllParents(clazz).stream()
+                                .filter(parent -> parent != Object.class)
+                                .forEach(parent -> transitive.add(parent.getName()));
+            dependencies.forEach(dependency -> {
+                transitive.add(dependency.getName());
+                transitive.addAll(typeDependencies.getOrDefault(dependency, Collections.emptySet()));
+            });
+            transitive.remove(clazz.getName());
+            typeDependencies.put(clazz, transitive);
+            if (SubtypeResolver.isPolymorphic(clazz) || dependencies.stream().anyMatch(openTypes::contains)) {
+                openTypes.add(clazz);
+                return;
+            }
+            typeFragmentCache.put(clazz, new TypeFragment(clazz.getName(), fragment, transitive));
+        }
+
+        /**
+         * Expand the given interface or abstract class over its known subtypes. Paths which are shared by several
+         * subtypes are only added once. A type reached again while it is expanded, like in a composite, fails the
+         * generation, unless a {@code maxDepth} guardrail ends the traversal.
+         *
+         * @param declaredType The interface or abstract class as declared on a field.
+         * @return The {@link SensitiveDataConfig}s with paths relative to the field holding the type.
+         */
+        private List<SensitiveDataConfig> expandPolymorphic(Class<?> declaredType) {
+            Set<Class<?>> expanding = expandingTypes.get();
+            boolean reentered = !expanding.add(declaredType);
+            if (reentered && (traversals.get() == null || guardrails.getMaxDepth() == Integer.MAX_VALUE)) {
+                throw new RecursiveTypeException(declaredType);
+            }
+            try {
+                return expandSubtypes(declaredType);
+            } finally {
+                if (!reentered) {
+                    expanding.remove(declaredType);
+                }
+            }
+        }
+
+        private List<SensitiveDataConfig> expandSubtypes(Class<?> declaredType) {
+            Set<Class<?>> subtypes = subtypeResolver.resolve(declaredType);
+            Set<SensitiveDataConfig> expanded = new LinkedHashSet<>();
+            if (subtypes.isEmpty()) {
+                List<Field> declaredFields = inspectFields(declaredType);
+                List<SensitiveDataConfig> declared = new ArrayList<>();
+                extractSensitiveData(declaredFields, declared, "");
+                expanded.addAll(declared);
+            }
+            subtypes.stream()
+                    .filter(subtype -> !ignore(ignores, subtype))
+                    .forEach(subtype -> expanded.addAll(typeFragment(subtype)));
+            return Collections.unmodifiableList(new ArrayList<>(expanded));
+        }
+
+        /**
+         * The number of nested fields below the given cached type. The fragment does not tell which types were
+         * traversed, so only the fields leading to sensitive data are counted.
+         *
+         * @param fragment The cached fragment.
+         * @return The deepest level of the sensitive data, relative to the type.
+         */
+        private int height(TypeFragment fragment) {
+            int height = 0;
+            for (SensitiveDataConfig config : fragment.getSensitiveData()) {
+                height = Math.max(height, depth(PATH_PREFIX + config.getPath()) - 1);
+            }
+            return height;
+        }
+
+        /**
+         * Check if the given type has Type Parameters.
+         *
+         * @param type Type which will be used to check if it has Type Parameters.
+         * @return True or false, depending on the check.
+         */
+        private boolean hasTypeParameters(ResolvedType type) {
+            return !type.getTypeParameters().isEmpty();
+        }
+
+        /**
+         * The traversal of a single holder, checking the {@link Guardrails} while the types are traversed. It is only
+         * used by the thread generating the holder.
+         */
+        private class Traversal {
+
+            private final String holder;
+
+            /**
+             * The maximum number of paths of the holder, and the guardrail it comes from.
+             */
+            private final int pathLimit;
+            private final String pathGuardrail;
+
+            /**
+             * The number of fields followed from the holder to the type inspected now, and the field path to it.
+             */
+            private int level;
+            private String path = PATH_PREFIX;
+
+            /**
+             * The deepest level reached since the type inspected now was started.
+             */
+            private int deepest;
+
+            /**
+             * True if the fragment of the type inspected now misses sensitive data because a limit was exceeded.
+             */
+            private boolean truncated;
+
+            /**
+             * True if the fragment of the type inspected now misses sensitive data because a limit other than the
+             * depth was exceeded. Such a fragment depends on the types and paths seen before, not only on its level.
+             */
+            private boolean limited;
+
+            private boolean pathsExhausted;
+
+            /**
+             * The first exceeded limit of the holder, logged once the holder is generated.
+             */
+            private String exceeded;
+
+            /**
+             * The fragments of the holder truncated by the depth only, per type and level. Such a fragment only
+             * depends on the level it was built at, so a recursive type is walked once per level instead of once per
+             * path to it.
+             */
+            private final Map<Class<?>, Map<Integer, TruncatedFragment>> truncatedFragments = new HashMap<>();
+
+            private Traversal(String holder) {
+                this.holder = holder;
+                long remaining = Math.max(0, guardrails.getMaxPaths() - emittedPaths.get());
+                if (remaining < guardrails.getMaxHolderPaths()) {
+                    this.pathLimit = (int) remaining;
+                    this.pathGuardrail = "maxPaths";
+                } else {
+                    this.pathLimit = guardrails.getMaxHolderPaths();
+                    this.pathGuardrail = "maxHolderPaths";
+                }
+            }
+
+            /**
+             * Check if the type of the field on the given path may be inspected, one level deeper than the current
+             * type.
+             */
+            private boolean canDescend(String fieldPath) {
+                if (pathsExhausted) {
+                    return false;
+                }
+                if (level + 1 >= guardrails.getMaxDepth()) {
+                    exceed("maxDepth", guardrails.getMaxDepth(), fieldPath);
+                    return false;
+                }
+                return true;
+            }
+
+            /**
+             * Step into the type of the field on the given path.
+             *
+             * @return The path of the outer field, to be restored on {@link Traversal#leave(String)}.
+             */
+            private String enter(String fieldPath) {
+                String outerPath = path;
+                level++;
+                deepest = Math.max(deepest, level);
+                path = fieldPath;
+                return outerPath;
+            }
+
+            private void leave(String outerPath) {
+                level--;
+                path = outerPath;
+            }
+
+            /**
+             * Check if a fragment with the given number of nested fields, which was built before, fits below the
+             * current type.
+             */
+            private boolean reached(int height) {
+                if (level + height >= guardrails.getMaxDepth()) {
+                    exceed("maxDepth", guardrails.getMaxDepth(), path);
+                    return false;
+                }
+                deepest = Math.max(deepest, level + height);
+                return true;
+            }
+
+            /**
+             * Find the truncated fragment of the given type, built before at the current level of the holder.
+             *
+             * @return The fragment, or null if it was not built at this level.
+             */
+            private List<SensitiveDataConfig> truncatedFragment(Class<?> clazz) {
+                TruncatedFragment fragment = truncatedFragments.getOrDefault(clazz, Collections.emptyMap())
+                                                               .get(level);
+                if (fragment == null) {
+                    return null;
+                }
+                deepest = Math.max(deepest, level + fragment.height);
+                truncated = true;
+                return fragment.sensitiveData;
+            }
+
+            /**
+             * Check if the given type may be inspected without exceeding the number of types of the run.
+             */
+            private boolean canInspect(Class<?> clazz) {
+                if (guardrails.getMaxTypes() == Integer.MAX_VALUE || inspectedTypes.contains(clazz)) {
+                    return true;
+                }
+                if (inspectedTypeCount.incrementAndGet() > guardrails.getMaxTypes()) {
+                    inspectedTypeCount.decrementAndGet();
+                    exceed("maxTypes", guardrails.getMaxTypes(), path);
+                    return false;
+                }
+                if (!inspectedTypes.add(clazz)) {
+                    inspectedTypeCount.decrementAndGet();
+                }
+                return true;
+            }
+
+            /**
+             * Check if a path may be added to a list of the given size. Every fragment ends up in the config of the
+             * holder, so no list may hold more paths than the holder.
+             */
+            private boolean canAdd(int size) {
+                if (size < pathLimit) {
+                    return true;
+                }
+                pathsExhausted = true;
+                exceed(pathGuardrail,
+                       pathGuardrail.equals("maxPaths") ? guardrails.getMaxPaths() : guardrails.getMaxHolderPaths(),
+                       path);
+                return false;
+            }
+
+            private TypeFrame startType() {
+                TypeFrame frame = new TypeFrame(deepest, truncated, limited);
+                deepest = level;
+                truncated = false;
+                limited = false;
+                return frame;
+            }
+
+            /**
+             * Count the paths of the holder against the paths of the run, and log the exceeded limit if the config of
+             * the holder got truncated.
+             *
+             * @param sensitiveData The sensitive data of the holder.
+             * @return The sensitive data which fits in the paths of the run.
+             */
+            private List<SensitiveDataConfig> finish(List<SensitiveDataConfig> sensitiveData) {
+                List<SensitiveDataConfig> result = sensitiveData;
+                long excess = emittedPaths.addAndGet(sensitiveData.size()) - guardrails.getMaxPaths();
+                if (excess > 0) {
+                    exceed("maxPaths", guardrails.getMaxPaths(), PATH_PREFIX);
+                    int kept = (int) Math.max(0, sensitiveData.size() - excess);
+                    emittedPaths.addAndGet(kept - sensitiveData.size());
+                    result = new ArrayList<>(sensitiveData.subList(0, kept));
+                }
+                if (exceeded != null) {
+                    log.warn(String.format("Truncated the config of [%s], %s", holder, exceeded));
+                    metrics.truncated(holder);
+                }
+                return result;
+            }
+
+            private void exceed(String guardrail, int limit, String at) {
+                if (guardrails.getPolicy() == Guardrails.Policy.FAIL) {
+                    throw new GuardrailExceededException(guardrail, limit, holder, at);
+                }
+                truncated = true;
+                limited = limited || !guardrail.equals("maxDepth");
+                if (exceeded == null) {
+                    exceeded = String.format("the guardrail [%s] of %d was exceeded at [%s]", guardrail, limit, at);
+                }
+            }
+
+            /**
+             * The state of the outer type, saved while the fragment of a nested type is built.
+             */
+            private class TypeFrame {
+
+                private final int outerDeepest;
+                private final boolean outerTruncated;
+                private final boolean outerLimited;
+
+                private TypeFrame(int outerDeepest, boolean outerTruncated, boolean outerLimited) {
+                    this.outerDeepest = outerDeepest;
+                    this.outerTruncated = outerTruncated;
+                    this.outerLimited = outerLimited;
+                }
+
+                /**
+                 * Finish building the fragment of the given type, recording its height if it is complete, or the
+                 * fragment itself for the current level if it is truncated by the depth only.
+                 *
+                 * @return True if the fragment is complete.
+                 */
+                private boolean finish(Class<?> clazz, List<SensitiveDataConfig> fragment) {
+                    boolean complete = !truncated;
+                    if (complete) {
+                        typeHeights.put(clazz, deepest - level);
+                    } else if (!limited) {
+                        truncatedFragments.computeIfAbsent(clazz, type -> new HashMap<>())
+                                          .put(level, new TruncatedFragment(fragment, deepest - level));
+                    }
+                    deepest = Math.max(outerDeepest, deepest);
+                    truncated = truncated || outerTruncated;
+                    limited = limited || outerLimited;
+                    return complete;
+                }
+            }
+
+            /**
+             * A truncated fragment, together with the number of nested fields below its type.
+             */
+            private class TruncatedFragment {
+
+                private final List<SensitiveDataConfig> sensitiveData;
+                private final int height;
+
+                private TruncatedFragment(List<SensitiveDataConfig> sensitiveData, int height) {
+                    this.sensitiveData = sensitiveData;
+                    this.height = height;
+                }
+            }
+        }
     }
 }
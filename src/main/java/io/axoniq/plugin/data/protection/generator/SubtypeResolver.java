@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import org.reflections.Reflections;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Resolves the known concrete subtypes of interfaces and abstract classes. Subtypes are taken from sealed {@code
+ * permittedSubclasses}, from Jackson {@link JsonSubTypes} and from the {@link Reflections} indexes registered during a
+ * run. Results are memoized per declared type.
+ */
+public class SubtypeResolver {
+
+    /**
+     * {@code Class#getPermittedSubclasses()} is only available from Java 17 on, so it is looked up reflectively.
+     */
+    private static final Method PERMITTED_SUBCLASSES = permittedSubclassesMethod();
+
+    private final List<Reflections> indexes = new CopyOnWriteArrayList<>();
+
+    private final Map<Class<?>, Set<Class<?>>> subtypes = new ConcurrentHashMap<>();
+
+    /**
+     * Register a {@link Reflections} index which should be consulted for subtypes. Previously memoized results are
+     * dropped, as the new index may know more subtypes.
+     *
+     * @param index The index built while scanning a package.
+     */
+    public void register(Reflections index) {
+        indexes.add(index);
+        subtypes.clear();
+    }
+
+    /**
+     * Check if the given type is a candidate for subtype expansion. That is true for interfaces and abstract classes
+     * outside the Java standard library.
+     *
+     * @param clazz The class which you want to check.
+     * @return True or false, depending on the check.
+     */
+    public static boolean isPolymorphic(Class<?> clazz) {
+        return !clazz.isArray()
+                && !clazz.isPrimitive()
+                && (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers()))
+                && !clazz.getName().startsWith("java.")
+                && !clazz.getName().startsWith("javax.");
+    }
+
+    /**
+     * Resolve all known concrete subtypes of the given type.
+     *
+     * @param declaredType The interface or abstract class as declared on a field.
+     * @return The concrete subtypes in a stable order, or an empty set if none are known.
+     */
+    public Set<Class<?>> resolve(Class<?> declaredType) {
+        Set<Class<?>> result = subtypes.get(declaredType);
+        if (result == null) {
+            result = Collections.unmodifiableSet(collectConcreteSubtypes(declaredType));
+            subtypes.put(declaredType, result);
+        }
+        return result;
+    }
+
+    private Set<Class<?>> collectConcreteSubtypes(Class<?> declaredType) {
+        Set<Class<?>> visited = new LinkedHashSet<>();
+        collectSubtypes(declaredType, visited);
+        visited.remove(declaredType);
+        visited.removeIf(SubtypeResolver::isPolymorphic);
+        return visited;
+    }
+
+    private void collectSubtypes(Class<?> type, Set<Class<?>> visited) {
+        if (!visited.add(type)) {
+            return;
+        }
+        directSubtypes(type).forEach(subtype -> collectSubtypes(subtype, visited));
+    }
+
+    private List<Class<?>> directSubtypes(Class<?> type) {
+        List<Class<?>> result = new ArrayList<>(permittedSubclasses(type));
+        JsonSubTypes jsonSubTypes = type.getAnnotation(JsonSubTypes.class);
+        if (jsonSubTypes != null) {
+            for (JsonSubTypes.Type subtype : jsonSubTypes.value()) {
+                result.add(subtype.value());
+            }
+        }
+        List<Class<?>> indexed = new ArrayList<>();
+        indexes.forEach(index -> indexed.addAll(index.getSubTypesOf(type)));
+        indexed.sort(Comparator.comparing(Class::getName));
+        result.addAll(indexed);
+        result.removeIf(subtype -> !type.isAssignableFrom(subtype));
+        return result;
+    }
+
+    private static List<Class<?>> permittedSubclasses(Class<?> type) {
+        if (PERMITTED_SUBCLASSES == null) {
+            return Collections.emptyList();
+        }
+        try {
+            Class<?>[] permitted = (Class<?>[]) PERMITTED_SUBCLASSES.invoke(type);
+            return permitted == null ? Collections.emptyList() : List.of(permitted);
+        } catch (ReflectiveOperationException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static Method permittedSubclassesMethod() {
+        try {
+            return Class.class.getMethod("getPermittedSubclasses");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * Utils to fingerprint class files, so cached results can be validated without loading or inspecting the classes.
+ */
+public abstract class ClassFingerprints {
+
+    /**
+     * Compute the hex encoded SHA-256 hash of the class files of the given types, as found by the given loader. The
+     * order of the types does not matter.
+     *
+     * @param classLoader The loader to read the class files from.
+     * @param types       The full qualified (binary) class names of the types.
+     * @return The hash, or an empty optional if a class file could not be found.
+     */
+    public static Optional<String> fingerprint(ClassLoader classLoader, Collection<String> types) {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[8192];
+        for (String type : new TreeSet<>(types)) {
+            digest.update(type.getBytes(StandardCharsets.UTF_8));
+            try (InputStream in = classLoader.getResourceAsStream(resourceName(type))) {
+                if (in == null) {
+                    return Optional.empty();
+                }
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    digest.update(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(String.format("%064x", new BigInteger(1, digest.digest())));
+    }
+
+    /**
+     * Build the name of the class file resource of the given type.
+     *
+     * @param type The full qualified (binary) class name of the type.
+     * @return The resource name, like {@code io/axoniq/Type.class}.
+     */
+    public static String resourceName(String type) {
+        return type.replace('.', '/') + ".class";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.axoniq.plugin.data.protection.generator.utils.ClassPathUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent cache of the scan results and type fragments of dependency jars. Entries are stored per jar checksum,
+ * so unchanged jars are never scanned or inspected again, whatever their location. The cache directory should be
+ * specific to the plugin version, so an upgrade starts with an empty cache. Directories on the class path are never
+ * cached, as their content may change between runs.
+ * <p>
+ * Entries are written to a temporary file first and then moved in place, so builds sharing a cache directory never
+ * see a partially written entry.
+ */
+public class JarScanCache implements ScanIndexCache {
+
+    private static final String INDEX_DIRECTORY = "index";
+
+    private static final String TYPE_FRAGMENTS = "types.json";
+
+    private static final TypeReference<Map<String, Map<String, Set<String>>>> INDEX_TYPE = new TypeReference<>() {
+    };
+
+    private final File directory;
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<File, Checksum> checksums = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new instance of the {@link JarScanCache}.
+     *
+     * @param directory    The cache directory, which should be specific to the plugin version.
+     * @param objectMapper The mapper used to read and write the entries.
+     */
+    public JarScanCache(File directory, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Optional<Map<String, Map<String, Set<String>>>> get(URL root, String pkg) {
+        return jar(root).map(jar -> indexFile(jar, pkg))
+                        .filter(File::isFile)
+                        .flatMap(this::readIndex);
+    }
+
+    @Override
+    public void put(URL root, String pkg, Map<String, Map<String, Set<String>>> index) {
+        Optional<File> jar = jar(root);
+        if (jar.isPresent()) {
+            write(indexFile(jar.get(), pkg), index);
+        }
+    }
+
+    /**
+     * Read the cached type fragments of the given jars into the given {@link PublishedTypeFragments}.
+     *
+     * @param typeFragments The type fragments of the current generation.
+     * @param jars          The dependency jars of the project.
+     * @throws IOException When a cache entry could not be read.
+     */
+    public void readTypeFragments(PublishedTypeFragments typeFragments, Collection<File> jars) throws IOException {
+        for (File jar : jars) {
+            File file = typeFragmentsFile(jar);
+            if (jar.isFile() && file.isFile()) {
+                typeFragments.read(file.toURI().toURL(), jar);
+            }
+        }
+    }
+
+    /**
+     * Write the type fragments generated for the given jars. Jars for which all fragments were taken from the cache
+     * are skipped.
+     *
+     * @param typeFragments The type fragments of the current generation.
+     * @param jars          The dependency jars of the project.
+     * @throws IOException When a cache entry could not be written.
+     */
+    public void writeTypeFragments(PublishedTypeFragments typeFragments, Collection<File> jars) throws IOException {
+        Set<File> generatedRoots = typeFragments.generatedRoots();
+        for (File jar : jars) {
+            if (jar.isFile() && generatedRoots.contains(jar.getAbsoluteFile())) {
+                File file = typeFragmentsFile(jar);
+                File temporary = temporaryFile(file);
+                typeFragments.write(temporary, jar, jar.getName(), true);
+                move(temporary, file);
+            }
+        }
+    }
+
+    /**
+     * Compute the hex encoded SHA-256 checksum of the given file. Checksums are memoized per file, as long as its size
+     * and modification time do not change.
+     *
+     * @param file The file to compute the checksum of.
+     * @return The checksum.
+     */
+    public String checksum(File file) {
+        Checksum known = checksums.get(file);
+        if (known != null && known.matches(file)) {
+            return known.value;
+        }
+        Checksum computed = new Checksum(file, sha256(file));
+        checksums.put(file, computed);
+        return computed.value;
+    }
+
+    private File entryDirectory(File jar) {
+        return new File(directory, checksum(jar));
+    }
+
+    private File indexFile(File jar, String pkg) {
+        return new File(new File(entryDirectory(jar), INDEX_DIRECTORY), pkg + ".json");
+    }
+
+    private File typeFragmentsFile(File jar) {
+        return new File(entryDirectory(jar), TYPE_FRAGMENTS);
+    }
+
+    private Optional<Map<String, Map<String, Set<String>>>> readIndex(File file) {
+        try {
+            return Optional.of(objectMapper.readValue(file, INDEX_TYPE));
+        } catch (IOException e) {
+            // a corrupt entry is scanned again, and replaced afterwards
+            return Optional.empty();
+        }
+    }
+
+    private void write(File file, Object value) {
+        try {
+            File temporary = temporaryFile(file);
+            objectMapper.writeValue(temporary, value);
+            move(temporary, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write scan cache entry " + file, e);
+        }
+    }
+
+    private static File temporaryFile(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.exists()) {
+            parent.mkdirs();
+        }
+        return Files.createTempFile(parent.toPath(), file.getName(), ".tmp").toFile();
+    }
+
+    private static void move(File source, File target) throws IOException {
+        Path from = source.toPath();
+        Path to = target.toPath();
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Optional<File> jar(URL root) {
+        return ClassPathUtils.toFile(root).filter(File::isFile);
+    }
+
+    private static String sha256(File file) {
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()),
+                                                    MessageDigest.getInstance("SHA-256"))) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // reading updates the digest
+            }
+            byte[] digest = ((DigestInputStream) in).getMessageDigest().digest();
+            return String.format("%064x", new BigInteger(1, digest));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compute the checksum of " + file, e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A checksum, together with the file attributes it was computed for.
+     */
+    private static class Checksum {
+
+        private final long length;
+        private final long lastModified;
+        private final String value;
+
+        private Checksum(File file, String value) {
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+            this.value = value;
+        }
+
+        private boolean matches(File file) {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+}
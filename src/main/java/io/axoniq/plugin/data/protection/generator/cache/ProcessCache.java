@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.cache;
+
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoaders;
+import io.axoniq.plugin.data.protection.generator.utils.ClassPathUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.math.BigInteger;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Process-wide caches, which survive between builds when the plugin runs in a long-lived JVM like the Maven daemon.
+ * Nothing is trusted blindly on a later build:
+ * <ul>
+ *     <li>the shared {@link ScanClassLoaders} replace a dependency loader as soon as one of its jars changed, and
+ *     keep at most {@link ProcessCache#IDLE_DEPENDENCY_LOADERS} unused dependency loaders, closing the least recently
+ *     used one beyond that,</li>
+ *     <li>scan results are validated by a fingerprint of the size and modification time of the scanned class
+ *     files,</li>
+ *     <li>type fragments are validated by the hash of the class files they were built from. Only when the very same
+ *     class is seen again, which is tracked through a weak reference so the cache never keeps a class loader alive,
+ *     this check is skipped.</li>
+ * </ul>
+ */
+public class ProcessCache {
+
+    /**
+     * The number of unused dependency loaders kept open between builds, enough for the dependency sets of a few
+     * modules without keeping every version ever built.
+     */
+    static final int IDLE_DEPENDENCY_LOADERS = 4;
+
+    private static final ProcessCache INSTANCE = new ProcessCache();
+
+    /**
+     * The loaders of the plugin realm which used this cache last, guarded by this instance.
+     */
+    private ClassLoader scanClassLoadersParent;
+    private ScanClassLoaders scanClassLoaders;
+
+    private final Map<String, ScanIndex> scanIndexes = new ConcurrentHashMap<>();
+
+    private final Map<String, Fragment> typeFragments = new ConcurrentHashMap<>();
+
+    /**
+     * Use {@link ProcessCache#instance()} outside of tests.
+     */
+    ProcessCache() {
+    }
+
+    /**
+     * @return The cache of the current process.
+     */
+    public static ProcessCache instance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the {@link ScanClassLoaders} of the given parent. Only the loaders of the last parent are kept, so the
+     * loaders of a replaced plugin realm are closed once they are unused.
+     *
+     * @param parent The parent of all created loaders, usually the plugin's own class loader.
+     * @return The {@link ScanClassLoaders} shared by all builds in this process.
+     */
+    public synchronized ScanClassLoaders scanClassLoaders(ClassLoader parent) {
+        if (scanClassLoadersParent != parent) {
+            closeScanClassLoaders();
+            scanClassLoadersParent = parent;
+            scanClassLoaders = new ScanClassLoaders(parent, IDLE_DEPENDENCY_LOADERS);
+        }
+        return scanClassLoaders;
+    }
+
+    /**
+     * @return A {@link ScanIndexCache} backed by this process cache.
+     */
+    public ScanIndexCache scanIndexes() {
+        return new ScanIndexCache() {
+            @Override
+            public Optional<Map<String, Map<String, Set<String>>>> get(URL root, String pkg) {
+                ScanIndex known = scanIndexes.get(root.toExternalForm() + "|" + pkg);
+                if (known == null || !known.fingerprint.equals(fingerprint(root, pkg))) {
+                    return Optional.empty();
+                }
+                return Optional.of(copy(known.index));
+            }
+
+            @Override
+            public void put(URL root, String pkg, Map<String, Map<String, Set<String>>> index) {
+                String fingerprint = fingerprint(root, pkg);
+                if (fingerprint != null) {
+                    scanIndexes.put(root.toExternalForm() + "|" + pkg, new ScanIndex(fingerprint, copy(index)));
+                }
+            }
+        };
+    }
+
+    /**
+     * Get a {@link TypeFragmentCache} backed by this process cache. Fragments depend on the ignores, so every set of
+     * ignores gets its own entries.
+     *
+     * @param ignores The ignores of the current generation.
+     * @return A {@link TypeFragmentCache} backed by this process cache.
+     */
+    public TypeFragmentCache typeFragments(List<String> ignores) {
+        String prefix = (ignores == null ? Collections.emptySet() : new TreeSet<>(ignores)) + "|";
+        return new TypeFragmentCache() {
+            @Override
+            public Optional<TypeFragment> get(Class<?> type) {
+                Fragment known = typeFragments.get(prefix + type.getName());
+                if (known == null) {
+                    return Optional.empty();
+                }
+                if (known.type.get() == type) {
+                    return Optional.of(known.fragment);
+                }
+                Optional<String> hash =
+                        ClassFingerprints.fingerprint(type.getClassLoader(), classFiles(known.fragment));
+                if (hash.isPresent() && hash.get().equals(known.hash)) {
+                    typeFragments.put(prefix + type.getName(), new Fragment(type, known.hash, known.fragment));
+                    return Optional.of(known.fragment);
+                }
+                return Optional.empty();
+            }
+
+            @Override
+            public void put(Class<?> type, TypeFragment fragment) {
+                ClassFingerprints.fingerprint(type.getClassLoader(), classFiles(fragment)).ifPresent(
+                        hash -> typeFragments.put(prefix + type.getName(), new Fragment(type, hash, fragment)));
+            }
+        };
+    }
+
+    /**
+     * Drop all cached entries.
+     */
+    public synchronized void clear() {
+        closeScanClassLoaders();
+        scanIndexes.clear();
+        typeFragments.clear();
+    }
+
+    private void closeScanClassLoaders() {
+        if (scanClassLoaders != null) {
+            scanClassLoaders.close();
+        }
+        scanClassLoadersParent = null;
+        scanClassLoaders = null;
+    }
+
+    /**
+     * @return The number of cached scan results and type fragments.
+     */
+    public int size() {
+        return scanIndexes.size() + typeFragments.size();
+    }
+
+    /**
+     * Fingerprint the class files of the given package inside the given class path element by their size and
+     * modification time. A jar is fingerprinted as a whole.
+     *
+     * @return The fingerprint, or null if the class path element is not a local file.
+     */
+    private static String fingerprint(URL root, String pkg) {
+        Optional<File> file = ClassPathUtils.toFile(root);
+        if (!file.isPresent()) {
+            return null;
+        }
+        if (file.get().isFile()) {
+            return file.get().length() + ":" + file.get().lastModified();
+        }
+        Path packageDirectory = file.get().toPath().resolve(pkg.replace('.', File.separatorChar));
+        if (!Files.isDirectory(packageDirectory)) {
+            return "empty";
+        }
+        MessageDigest digest = sha256();
+        try (Stream<Path> files = Files.walk(packageDirectory)) {
+            for (Path classFile : files.filter(path -> path.toString().endsWith(".class"))
+                                       .sorted()
+                                       .collect(Collectors.toList())) {
+                BasicFileAttributes attributes = Files.readAttributes(classFile, BasicFileAttributes.class);
+                digest.update((classFile + ":" + attributes.size() + ":" + attributes.lastModifiedTime().toMillis()
+                        + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to fingerprint " + packageDirectory, e);
+        }
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+    private static Map<String, Map<String, Set<String>>> copy(Map<String, Map<String, Set<String>>> index) {
+        Map<String, Map<String, Set<String>>> copy = new HashMap<>();
+        index.forEach((name, entries) -> {
+            Map<String, Set<String>> entriesCopy = new HashMap<>();
+            entries.forEach((key, values) -> entriesCopy.put(key, new HashSet<>(values)));
+            copy.put(name, entriesCopy);
+        });
+        return copy;
+    }
+
+    private static List<String> classFiles(TypeFragment fragment) {
+        List<String> types = new ArrayList<>(fragment.getDependencies());
+        types.add(fragment.getType());
+        return types;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A cached scan result, together with the fingerprint of the class files it was built from.
+     */
+    private static class ScanIndex {
+
+        private final String fingerprint;
+        private final Map<String, Map<String, Set<String>>> index;
+
+        private ScanIndex(String fingerprint, Map<String, Map<String, Set<String>>> index) {
+            this.fingerprint = fingerprint;
+            this.index = index;
+        }
+    }
+
+    /**
+     * A cached type fragment, together with the hash of the class files it was built from and the last class it was
+     * used for.
+     */
+    private static class Fragment {
+
+        private final WeakReference<Class<?>> type;
+        private final String hash;
+        private final TypeFragment fragment;
+
+        private Fragment(Class<?> type, String hash, TypeFragment fragment) {
+            this.type = new WeakReference<>(type);
+            this.hash = hash;
+            this.fragment = fragment;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.axoniq.plugin.data.protection.config.SensitiveDataConfig;
+import io.axoniq.plugin.data.protection.generator.utils.JsonUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link TypeFragmentCache} backed by the {@link PublishedTypeFragments#RESOURCE} files packaged in the jars of
+ * dependencies. A published fragment is only used for a class loaded from the same artifact that published it, when
+ * the class files of the type and its dependencies still have the published hash, and when the artifact was generated
+ * with the same ignores. All other types are inspected as usual.
+ * <p>
+ * All fragments used or generated during a run are kept, so the fragments of the project itself can be published
+ * again afterwards with {@link PublishedTypeFragments#write(File, File, String)}.
+ */
+public class PublishedTypeFragments implements TypeFragmentCache {
+
+    /**
+     * Location of the published fragments inside a jar or output directory.
+     */
+    public static final String RESOURCE = "META-INF/axon-data-protection/types.json";
+
+    /**
+     * Version of the resource format. Resources with another version are skipped. Version 2 lists the super classes
+     * and interfaces of a type among its dependencies.
+     */
+    static final int VERSION = 2;
+
+    private final ObjectMapper objectMapper;
+
+    private final Set<String> ignores;
+
+    private final Set<String> artifacts = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, Published> published = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, TypeFragment> fragments = new ConcurrentHashMap<>();
+
+    private final Set<Class<?>> generated = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Create a new instance of the {@link PublishedTypeFragments}, without any published fragments.
+     *
+     * @param ignores      The ignores of the current generation.
+     * @param objectMapper The mapper used to read and write the resources.
+     */
+    public PublishedTypeFragments(List<String> ignores, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.ignores = ignores == null ? Collections.emptySet() : new TreeSet<>(ignores);
+    }
+
+    /**
+     * Load all fragments published on the class path of the given loader.
+     *
+     * @param classLoader  The loader to find the {@link PublishedTypeFragments#RESOURCE}s with.
+     * @param ignores      The ignores of the current generation. Resources generated with other ignores are skipped.
+     * @param objectMapper The mapper used to read and write the resources.
+     * @return A new instance of the {@link PublishedTypeFragments}.
+     * @throws IOException When a resource could not be read.
+     */
+    public static PublishedTypeFragments load(ClassLoader classLoader, List<String> ignores, ObjectMapper objectMapper)
+            throws IOException {
+        PublishedTypeFragments typeFragments = new PublishedTypeFragments(ignores, objectMapper);
+        Enumeration<URL> resources = classLoader.getResources(RESOURCE);
+        while (resources.hasMoreElements()) {
+            URL resource = resources.nextElement();
+            typeFragments.read(resource, root(resource));
+        }
+        return typeFragments;
+    }
+
+    /**
+     * @return The coordinates of the artifacts which published fragments that can be reused.
+     */
+    public Set<String> artifacts() {
+        return Collections.unmodifiableSet(artifacts);
+    }
+
+    /**
+     * @return The number of published fragments available for reuse.
+     */
+    public int publishedSize() {
+        return published.size();
+    }
+
+    @Override
+    public Optional<TypeFragment> get(Class<?> type) {
+        Published candidate = published.get(type.getName());
+        if (candidate == null || candidate.root == null || !candidate.root.equals(location(type))) {
+            return Optional.empty();
+        }
+        Optional<String> hash = ClassFingerprints.fingerprint(type.getClassLoader(), classFiles(candidate.fragment));
+        if (!hash.isPresent() || !hash.get().equals(candidate.hash)) {
+            return Optional.empty();
+        }
+        fragments.put(type, candidate.fragment);
+        return Optional.of(candidate.fragment);
+    }
+
+    @Override
+    public void put(Class<?> type, TypeFragment fragment) {
+        fragments.put(type, fragment);
+        generated.add(type);
+    }
+
+    /**
+     * @return The class path elements of the types which were inspected, rather than taken from a published fragment.
+     */
+    public Set<File> generatedRoots() {
+        Set<File> roots = new HashSet<>();
+        generated.forEach(type -> {
+            File root = location(type);
+            if (root != null) {
+                roots.add(root);
+            }
+        });
+        return roots;
+    }
+
+    /**
+     * Write the fragments of all types loaded from the given {@code outputDirectory} to the given {@code file}.
+     *
+     * @param file            The resource file, usually {@link PublishedTypeFragments#RESOURCE} inside the project
+     *                        output directory.
+     * @param outputDirectory The output directory of the project, only types loaded from there are written.
+     * @param artifact        The coordinates of the project, like {@code groupId:artifactId:version}.
+     * @throws IOException When the file could not be written.
+     */
+    public void write(File file, File outputDirectory, String artifact) throws IOException {
+        write(file, outputDirectory, artifact, false);
+    }
+
+    /**
+     * Write the fragments of all types loaded from the given {@code root} to the given {@code file}.
+     *
+     * @param file             The file to write to.
+     * @param root             The class path element, only types loaded from there are written.
+     * @param artifact         The coordinates of the artifact, like {@code groupId:artifactId:version}.
+     * @param includePublished Whether the published fragments of the root which were not used during this run should
+     *                         be written as well. Only safe when the content of the root can not have changed, like
+     *                         for a jar identified by its checksum.
+     * @throws IOException When the file could not be written.
+     */
+    public void write(File file, File root, String artifact, boolean includePublished) throws IOException {
+        Map<String, ObjectNode> types = new TreeMap<>();
+        if (includePublished) {
+            published.values().stream()
+                     .filter(candidate -> root.getAbsoluteFile().equals(candidate.root))
+                     .forEach(candidate -> types.put(candidate.fragment.getType(),
+                                                     writeFragment(candidate.fragment, candidate.hash)));
+        }
+        fragments.forEach((type, fragment) -> {
+            if (!root.getAbsoluteFile().equals(location(type))) {
+                return;
+            }
+            ClassFingerprints.fingerprint(type.getClassLoader(), classFiles(fragment))
+                             .ifPresent(hash -> types.put(fragment.getType(), writeFragment(fragment, hash)));
+        });
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("version", VERSION);
+        node.put("artifact", artifact);
+        ArrayNode ignoresNode = node.putArray("ignores");
+        ignores.forEach(ignoresNode::add);
+        node.putArray("types").addAll(types.values());
+        if (!file.getParentFile().exists()) {
+            file.getParentFile().mkdirs();
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, node);
+    }
+
+    private ObjectNode writeFragment(TypeFragment fragment, String hash) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("type", fragment.getType());
+        node.put("hash", hash);
+        ArrayNode dependencies = node.putArray("dependencies");
+        fragment.getDependencies().forEach(dependencies::add);
+        node.set("sensitiveData", objectMapper.valueToTree(fragment.getSensitiveData()));
+        return node;
+    }
+
+    /**
+     * Read the fragments of the given resource, published for the types of the given class path element.
+     *
+     * @param resource The resource to read.
+     * @param root     The class path element the fragments belong to.
+     * @throws IOException When the resource could not be read.
+     */
+    public void read(URL resource, File root) throws IOException {
+        JsonNode node;
+        try (InputStream in = resource.openStream()) {
+            node = objectMapper.readTree(in);
+        }
+        if (node.path("version").asInt() != VERSION || !ignores.equals(readStrings(node.path("ignores")))) {
+            return;
+        }
+        artifacts.add(node.path("artifact").asText());
+        for (JsonNode type : node.path("types")) {
+            List<SensitiveDataConfig> sensitiveData = JsonUtils.readSensitiveData(type.path("sensitiveData"));
+            TypeFragment fragment = new TypeFragment(type.path("type").asText(),
+                                                     sensitiveData,
+                                                     readStrings(type.path("dependencies")));
+            published.putIfAbsent(fragment.getType(),
+                                  new Published(root.getAbsoluteFile(), type.path("hash").asText(), fragment));
+        }
+    }
+
+    private static Set<String> readStrings(JsonNode node) {
+        Set<String> strings = new TreeSet<>();
+        node.forEach(value -> strings.add(value.asText()));
+        return strings;
+    }
+
+    private static List<String> classFiles(TypeFragment fragment) {
+        List<String> types = new ArrayList<>(fragment.getDependencies());
+        types.add(fragment.getType());
+        return types;
+    }
+
+    /**
+     * Find the class path element the given resource was found in.
+     */
+    private static File root(URL resource) throws IOException {
+        String url = resource.toExternalForm();
+        String root = url.substring(0, url.length() - RESOURCE.length());
+        if (root.startsWith("jar:") && root.endsWith("!/")) {
+            root = root.substring("jar:".length(), root.length() - "!/".length());
+        }
+        try {
+            return new File(new URL(root).toURI()).getAbsoluteFile();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Failed to locate the class path element of " + resource, e);
+        }
+    }
+
+    /**
+     * Find the class path element the given type was loaded from.
+     */
+    private static File location(Class<?> type) {
+        CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            return null;
+        }
+        try {
+            return new File(codeSource.getLocation().toURI()).getAbsoluteFile();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A fragment as published by an artifact.
+     */
+    private static class Published {
+
+        private final File root;
+        private final String hash;
+        private final TypeFragment fragment;
+
+        private Published(File root, String hash, TypeFragment fragment) {
+            this.root = root;
+            this.hash = hash;
+            this.fragment = fragment;
+        }
+    }
+}
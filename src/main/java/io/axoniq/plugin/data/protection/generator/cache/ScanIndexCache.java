@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.cache;
+
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A cache of the scan results of single class path elements, so unchanged elements do not have to be scanned again.
+ * A scan result is the {@link org.reflections.Store} of the element, restricted to the scanned package.
+ * Implementations must be safe for concurrent use.
+ */
+public interface ScanIndexCache {
+
+    /**
+     * A cache which never holds anything.
+     */
+    ScanIndexCache NONE = new ScanIndexCache() {
+        @Override
+        public Optional<Map<String, Map<String, Set<String>>>> get(URL root, String pkg) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void put(URL root, String pkg, Map<String, Map<String, Set<String>>> index) {
+            // nothing to store
+        }
+    };
+
+    /**
+     * Combine the given caches. The scan result is taken from the first cache holding it, and stored in all of them.
+     *
+     * @param caches The caches to combine, in lookup order.
+     * @return A cache consulting all given caches.
+     */
+    static ScanIndexCache chain(ScanIndexCache... caches) {
+        List<ScanIndexCache> chain = List.of(caches);
+        return new ScanIndexCache() {
+            @Override
+            public Optional<Map<String, Map<String, Set<String>>>> get(URL root, String pkg) {
+                for (ScanIndexCache cache : chain) {
+                    Optional<Map<String, Map<String, Set<String>>>> index = cache.get(root, pkg);
+                    if (index.isPresent()) {
+                        return index;
+                    }
+                }
+                return Optional.empty();
+            }
+
+            @Override
+            public void put(URL root, String pkg, Map<String, Map<String, Set<String>>> index) {
+                chain.forEach(cache -> cache.put(root, pkg, index));
+            }
+        };
+    }
+
+    /**
+     * Get the scan result of the given class path element.
+     *
+     * @param root The class path element, a directory or a jar.
+     * @param pkg  The scanned package.
+     * @return The scan result, or an empty optional if the element has to be scanned.
+     */
+    Optional<Map<String, Map<String, Set<String>>>> get(URL root, String pkg);
+
+    /**
+     * Store the scan result of the given class path element.
+     *
+     * @param root  The class path element, a directory or a jar.
+     * @param pkg   The scanned package.
+     * @param index The scan result.
+     */
+    void put(URL root, String pkg, Map<String, Map<String, Set<String>>> index);
+}
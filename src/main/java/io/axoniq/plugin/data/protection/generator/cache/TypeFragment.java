@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.cache;
+
+import io.axoniq.plugin.data.protection.config.SensitiveDataConfig;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The sensitive data of a single type, with paths relative to the field holding the type. Besides the type itself, the
+ * fragment depends on the types it (transitively) embeds, so those are kept as well.
+ */
+public class TypeFragment {
+
+    private final String type;
+    private final List<SensitiveDataConfig> sensitiveData;
+    private final Set<String> dependencies;
+
+    /**
+     * Create a new instance of the {@link TypeFragment}.
+     *
+     * @param type          The full qualified (binary) class name of the type.
+     * @param sensitiveData The sensitive data of the type, with relative paths.
+     * @param dependencies  The class names of all types the fragment was built from, excluding the type itself.
+     */
+    public TypeFragment(String type, List<SensitiveDataConfig> sensitiveData, Set<String> dependencies) {
+        this.type = type;
+        this.sensitiveData = List.copyOf(sensitiveData);
+        this.dependencies = Collections.unmodifiableSet(new TreeSet<>(dependencies));
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public List<SensitiveDataConfig> getSensitiveData() {
+        return sensitiveData;
+    }
+
+    public Set<String> getDependencies() {
+        return dependencies;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        TypeFragment that = (TypeFragment) o;
+        return type.equals(that.type)
+                && sensitiveData.equals(that.sensitiveData)
+                && dependencies.equals(that.dependencies);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, sensitiveData, dependencies);
+    }
+
+    @Override
+    public String toString() {
+        return "TypeFragment{type='" + type + "', sensitiveData=" + sensitiveData + ", dependencies=" + dependencies
+                + "}";
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.cache;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A cache of {@link TypeFragment}s which lives longer than a single generation. The generator only stores fragments
+ * which do not depend on the subtypes found during a scan, so they are valid for every build with the same class
+ * files and ignores. Implementations must be safe for concurrent use.
+ */
+public interface TypeFragmentCache {
+
+    /**
+     * A cache which never holds anything.
+     */
+    TypeFragmentCache NONE = new TypeFragmentCache() {
+        @Override
+        public Optional<TypeFragment> get(Class<?> type) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void put(Class<?> type, TypeFragment fragment) {
+            // nothing to store
+        }
+    };
+
+    /**
+     * Combine the given caches. The fragment is taken from the first cache holding it, and also stored in the caches
+     * consulted before. New fragments are stored in all of them.
+     *
+     * @param caches The caches to combine, in lookup order.
+     * @return A cache consulting all given caches.
+     */
+    static TypeFragmentCache chain(TypeFragmentCache... caches) {
+        List<TypeFragmentCache> chain = List.of(caches);
+        return new TypeFragmentCache() {
+            @Override
+            public Optional<TypeFragment> get(Class<?> type) {
+                for (int i = 0; i < chain.size(); i++) {
+                    Optional<TypeFragment> fragment = chain.get(i).get(type);
+                    if (fragment.isPresent()) {
+                        chain.subList(0, i).forEach(cache -> cache.put(type, fragment.get()));
+                        return fragment;
+                    }
+                }
+                return Optional.empty();
+            }
+
+            @Override
+            public void put(Class<?> type, TypeFragment fragment) {
+                chain.forEach(cache -> cache.put(type, fragment));
+            }
+        };
+    }
+
+    /**
+     * Get the fragment of the given type, if it is known and still valid for the loaded class.
+     *
+     * @param type The type of the field that is being inspected.
+     * @return The fragment, or an empty optional if the type has to be inspected.
+     */
+    Optional<TypeFragment> get(Class<?> type);
+
+    /**
+     * Store the fragment generated for the given type.
+     *
+     * @param type     The inspected type.
+     * @param fragment The fragment of the type.
+     */
+    void put(Class<?> type, TypeFragment fragment);
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.classloading;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Child-first class loader used to load the classes of the project being scanned, isolated from the plugin's own
+ * class realm. Only the types the plugin itself works with, like the data protection annotations, are taken from the
+ * parent, so they keep the same identity on both sides.
+ */
+public class ScanClassLoader extends URLClassLoader {
+
+    /**
+     * Prefixes of the class names which are always loaded from the parent.
+     */
+    static final List<String> PARENT_FIRST_PREFIXES = List.of(
+            "java.",
+            "javax.",
+            "jdk.",
+            "sun.",
+            "io.axoniq.plugin.data.protection.annotation.",
+            "io.axoniq.plugin.data.protection.config.",
+            "org.axonframework.serialization.Revision",
+            "com.fasterxml.jackson.annotation."
+    );
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    private final Runnable onClose;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * Create a new instance of the {@link ScanClassLoader}.
+     *
+     * @param urls   The class path elements of this loader, which take precedence over the parent.
+     * @param parent The parent class loader.
+     */
+    public ScanClassLoader(List<URL> urls, ClassLoader parent) {
+        this(urls, parent, () -> {
+        });
+    }
+
+    /**
+     * Create a new instance of the {@link ScanClassLoader}, running the given action once it is closed.
+     *
+     * @param urls    The class path elements of this loader, which take precedence over the parent.
+     * @param parent  The parent class loader.
+     * @param onClose The action to run once this loader is closed, like releasing a shared parent.
+     */
+    public ScanClassLoader(List<URL> urls, ClassLoader parent, Runnable onClose) {
+        super(urls.toArray(new URL[0]), parent);
+        this.onClose = onClose;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (isParentFirst(name)) {
+            return super.loadClass(name, resolve);
+        }
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> clazz = findLoadedClass(name);
+            if (clazz == null) {
+                try {
+                    clazz = findClass(name);
+                } catch (ClassNotFoundException e) {
+                    clazz = getParent().loadClass(name);
+                }
+            }
+            if (resolve) {
+                resolveClass(clazz);
+            }
+            return clazz;
+        }
+    }
+
+    @Override
+    public URL getResource(String name) {
+        URL resource = findResource(name);
+        return resource != null ? resource : getParent().getResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> getResources(String name) throws IOException {
+        List<URL> resources = new ArrayList<>(Collections.list(findResources(name)));
+        resources.addAll(Collections.list(getParent().getResources(name)));
+        return Collections.enumeration(resources);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (closed.compareAndSet(false, true)) {
+                onClose.run();
+            }
+        }
+    }
+
+    private static boolean isParentFirst(String name) {
+        return PARENT_FIRST_PREFIXES.stream().anyMatch(name::startsWith);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.classloading;
+
+import io.axoniq.plugin.data.protection.generator.utils.ClassPathUtils;
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.SessionData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates the {@link ScanClassLoader}s of the modules being scanned. Every module gets its own loader for its output
+ * directories, which the caller closes after the run. The dependency jars are loaded by a parent loader which is
+ * shared by all modules with an identical dependency set, so common jars are only opened once while those modules
+ * run, like the modules of a parallel build. A shared loader is closed as soon as the last module loader using it is
+ * closed, so nothing outlives the executions using it. Only a long-lived process, like the Maven daemon, keeps a few
+ * unused loaders for later builds, see {@link ScanClassLoaders#ScanClassLoaders(ClassLoader, int)}.
+ */
+public class ScanClassLoaders implements AutoCloseable {
+
+    private final ClassLoader parent;
+
+    /**
+     * The shared loaders per dependency set, guarded by this instance.
+     */
+    private final Map<List<String>, DependencyLoader> dependencyLoaders = new HashMap<>();
+
+    /**
+     * The shared loaders without users, least recently used first, guarded by this instance.
+     */
+    private final Set<DependencyLoader> idleLoaders = new LinkedHashSet<>();
+
+    private final int maxIdleLoaders;
+
+    /**
+     * Create a new instance of the {@link ScanClassLoaders}, closing every shared loader once it is unused.
+     *
+     * @param parent The parent of all created loaders, usually the plugin's own class loader.
+     */
+    public ScanClassLoaders(ClassLoader parent) {
+        this(parent, 0);
+    }
+
+    /**
+     * Create a new instance of the {@link ScanClassLoaders}, keeping up to the given number of unused shared loaders
+     * for later builds. When more are unused, the least recently used one is closed.
+     *
+     * @param parent         The parent of all created loaders, usually the plugin's own class loader.
+     * @param maxIdleLoaders The maximum number of unused shared loaders kept open.
+     */
+    public ScanClassLoaders(ClassLoader parent, int maxIdleLoaders) {
+        this.parent = parent;
+        this.maxIdleLoaders = maxIdleLoaders;
+    }
+
+    /**
+     * Get the {@link ScanClassLoaders} kept in the data of the given session, creating them on first use. They are
+     * keyed by their class, so every plugin realm gets its own instance. The instance only keeps the dependency
+     * loaders used by running executions, so nothing is left open when the session ends.
+     *
+     * @param session The current build session.
+     * @param parent  The parent of all created loaders, used when the instance is created.
+     * @return The {@link ScanClassLoaders} shared by all executions of the build.
+     */
+    public static ScanClassLoaders of(MavenSession session, ClassLoader parent) {
+        SessionData data = session.getRepositorySession().getData();
+        data.set(ScanClassLoaders.class, null, new ScanClassLoaders(parent));
+        return (ScanClassLoaders) data.get(ScanClassLoaders.class);
+    }
+
+    /**
+     * Create a new loader for the given class path. Directories, like the output directories of reactor modules, are
+     * loaded by the new loader itself. Jars are loaded by the shared loader of their dependency set.
+     *
+     * @param classpathElements The class path elements, in class path order.
+     * @return A new {@link ScanClassLoader}, which the caller should close after the run.
+     * @throws MalformedURLException When a class path element can not be converted to a URL.
+     */
+    public ScanClassLoader create(Collection<String> classpathElements) throws MalformedURLException {
+        List<URL> moduleUrls = new ArrayList<>();
+        List<URL> dependencyUrls = new ArrayList<>();
+        for (String element : classpathElements) {
+            File elementFile = new File(element);
+            URL url = elementFile.toURI().toURL();
+            if (elementFile.isDirectory()) {
+                moduleUrls.add(url);
+            } else {
+                dependencyUrls.add(url);
+            }
+        }
+        return create(moduleUrls, dependencyUrls);
+    }
+
+    /**
+     * Create a new loader for a module. Closing it releases the shared loader of its dependencies.
+     *
+     * @param moduleUrls     The output directories of the module.
+     * @param dependencyUrls The dependencies of the module, in class path order.
+     * @return A new {@link ScanClassLoader}, which the caller should close after the run.
+     */
+    public ScanClassLoader create(List<URL> moduleUrls, List<URL> dependencyUrls) {
+        if (dependencyUrls.isEmpty()) {
+            return new ScanClassLoader(moduleUrls, parent);
+        }
+        DependencyLoader dependencyLoader = acquire(dependencyUrls);
+        return new ScanClassLoader(moduleUrls, dependencyLoader.loader, () -> release(dependencyLoader));
+    }
+
+    /**
+     * @return The number of distinct dependency sets for which a loader is kept.
+     */
+    public synchronized int size() {
+        return dependencyLoaders.size();
+    }
+
+    private synchronized DependencyLoader acquire(List<URL> dependencyUrls) {
+        List<String> key = new ArrayList<>();
+        dependencyUrls.forEach(url -> key.add(url.toExternalForm()));
+        List<String> stamps = stamps(dependencyUrls);
+        DependencyLoader known = dependencyLoaders.get(key);
+        if (known != null && !known.stamps.equals(stamps)) {
+            // a loader in use keeps loading the old jars until its users are done, new users get a fresh one
+            dependencyLoaders.remove(key);
+            if (idleLoaders.remove(known)) {
+                close(known.loader);
+            }
+            known = null;
+        }
+        if (known == null) {
+            known = new DependencyLoader(key, stamps, new ScanClassLoader(dependencyUrls, parent));
+            dependencyLoaders.put(key, known);
+        }
+        known.users++;
+        idleLoaders.remove(known);
+        return known;
+    }
+
+    private synchronized void release(DependencyLoader dependencyLoader) {
+        if (--dependencyLoader.users > 0) {
+            return;
+        }
+        if (maxIdleLoaders == 0 || dependencyLoaders.get(dependencyLoader.key) != dependencyLoader) {
+            dependencyLoaders.remove(dependencyLoader.key, dependencyLoader);
+            close(dependencyLoader.loader);
+            return;
+        }
+        idleLoaders.add(dependencyLoader);
+        Iterator<DependencyLoader> leastRecentlyUsed = idleLoaders.iterator();
+        while (idleLoaders.size() > maxIdleLoaders) {
+            DependencyLoader evicted = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            dependencyLoaders.remove(evicted.key);
+            close(evicted.loader);
+        }
+    }
+
+    private static void close(ScanClassLoader loader) {
+        try {
+            loader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close a scan class loader.", e);
+        }
+    }
+
+    /**
+     * Stamp the given jars with their size and modification time. A loader is replaced when a jar it loads from
+     * changed, which only happens when the loaders outlive a build.
+     */
+    private static List<String> stamps(List<URL> urls) {
+        List<String> stamps = new ArrayList<>();
+        for (URL url : urls) {
+            stamps.add(ClassPathUtils.toFile(url)
+                                     .map(file -> file.length() + ":" + file.lastModified())
+                                     .orElse("missing"));
+        }
+        return stamps;
+    }
+
+    /**
+     * Close the shared loaders which are not used by a module loader. The others are closed once their last module
+     * loader is closed.
+     */
+    @Override
+    public synchronized void close() {
+        IOException failure = null;
+        for (DependencyLoader dependencyLoader : dependencyLoaders.values()) {
+            if (dependencyLoader.users > 0) {
+                continue;
+            }
+            try {
+                dependencyLoader.loader.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        dependencyLoaders.clear();
+        idleLoaders.clear();
+        if (failure != null) {
+            throw new UncheckedIOException("Failed to close a scan class loader.", failure);
+        }
+    }
+
+    /**
+     * A shared loader of a dependency set, together with the stamps of its jars and the number of module loaders
+     * using it.
+     */
+    private static class DependencyLoader {
+
+        private final List<String> key;
+        private final List<String> stamps;
+        private final ScanClassLoader loader;
+        private int users;
+
+        private DependencyLoader(List<String> key, List<String> stamps, ScanClassLoader loader) {
+            this.key = key;
+            this.stamps = stamps;
+            this.loader = loader;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.errors;
+
+/**
+ * Exception to indicate that the generation of a {@link
+ * io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder} annotated class exceeded one of the configured
+ * {@link io.axoniq.plugin.data.protection.generator.Guardrails}.
+ */
+public class GuardrailExceededException extends RuntimeException {
+
+    public GuardrailExceededException(String message) {
+        super(message);
+    }
+
+    public GuardrailExceededException(String guardrail, int limit, String holder, String path) {
+        super("Guardrail [" + guardrail + "] of " + limit + " exceeded while generating [" + holder + "] at ["
+                      + path + "]");
+    }
+}
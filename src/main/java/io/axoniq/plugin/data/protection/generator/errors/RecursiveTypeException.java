@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.errors;
+
+/**
+ * Exception to indicate that a polymorphic type is reached again while it is expanded over its subtypes, like the
+ * {@code Shape} of a {@code Group implements Shape} holding a {@code List<Shape>}. Its paths would never end.
+ */
+public class RecursiveTypeException extends RuntimeException {
+
+    public RecursiveTypeException(String message) {
+        super(message);
+    }
+
+    public RecursiveTypeException(Class<?> clazz) {
+        super("Recursive polymorphic type [" + clazz.getName() + "] found while expanding its subtypes. Add the type "
+                      + "or the subtype embedding it to the ignores, or set a maxDepth guardrail.");
+    }
+}
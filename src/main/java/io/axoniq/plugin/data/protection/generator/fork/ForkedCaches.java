@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.fork;
+
+import io.axoniq.plugin.data.protection.generator.cache.JarScanCache;
+import io.axoniq.plugin.data.protection.generator.cache.PublishedTypeFragments;
+
+import java.io.File;
+
+/**
+ * The caches used and written by the {@link ForkedGenerator}, like those of an in-process generation: the {@link
+ * PublishedTypeFragments} of the dependencies, the {@link JarScanCache} and the type fragments published by the
+ * project itself.
+ */
+public class ForkedCaches {
+
+    /**
+     * Neither read nor write any cache.
+     */
+    public static final ForkedCaches NONE = new ForkedCaches(false, null, null, null, null);
+
+    private final boolean useDependencyTypeFragments;
+    private final File scanCacheDirectory;
+    private final File typeFragments;
+    private final File outputDirectory;
+    private final String artifact;
+
+    /**
+     * Create a new instance of the {@link ForkedCaches}.
+     *
+     * @param useDependencyTypeFragments True if the type fragments published by the dependencies should be reused.
+     * @param scanCacheDirectory         The directory of the {@link JarScanCache}, or null to not use it.
+     * @param typeFragments              The file to publish the type fragments of the project in, or null to not
+     *                                   publish them.
+     * @param outputDirectory            The output directory of the project, whose types are published.
+     * @param artifact                   The coordinates of the project, like {@code groupId:artifactId:version}.
+     */
+    public ForkedCaches(boolean useDependencyTypeFragments,
+                        File scanCacheDirectory,
+                        File typeFragments,
+                        File outputDirectory,
+                        String artifact) {
+        this.useDependencyTypeFragments = useDependencyTypeFragments;
+        this.scanCacheDirectory = scanCacheDirectory;
+        this.typeFragments = typeFragments;
+        this.outputDirectory = outputDirectory;
+        this.artifact = artifact;
+    }
+
+    /**
+     * @return True if the type fragments published by the dependencies should be reused.
+     */
+    public boolean isUseDependencyTypeFragments() {
+        return useDependencyTypeFragments;
+    }
+
+    /**
+     * @return The directory of the {@link JarScanCache}, or null if it is not used.
+     */
+    public File getScanCacheDirectory() {
+        return scanCacheDirectory;
+    }
+
+    /**
+     * @return The file to publish the type fragments of the project in, or null if they are not published.
+     */
+    public File getTypeFragments() {
+        return typeFragments;
+    }
+
+    /**
+     * @return The output directory of the project, whose types are published.
+     */
+    public File getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    /**
+     * @return The coordinates of the project.
+     */
+    public String getArtifact() {
+        return artifact;
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.fork;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.generator.Guardrails;
+import io.axoniq.plugin.data.protection.generator.MetamodelGenerator;
+import io.axoniq.plugin.data.protection.generator.cache.JarScanCache;
+import io.axoniq.plugin.data.protection.generator.cache.PublishedTypeFragments;
+import io.axoniq.plugin.data.protection.generator.cache.ScanIndexCache;
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoader;
+import io.axoniq.plugin.data.protection.generator.index.JandexScanIndex;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Entry point of the forked JVM running the {@link MetamodelGenerator}. It reads a request, as written by {@link
+ * ForkedGenerator#writeRequest}, from the file given as first argument and writes the generated config to the file
+ * given as second argument.
+ */
+public class ForkedGenerator {
+
+    private final List<String> packages;
+    private final List<String> ignores;
+    private final List<String> classpath;
+    private final List<File> scanRoots;
+    private final int parallelism;
+    private final boolean useJandex;
+    private final Guardrails guardrails;
+    private final ForkedCaches caches;
+
+    /**
+     * Create a new request for the forked generator.
+     *
+     * @param packages    The packages to look up the holders in.
+     * @param ignores     The classes or packages to ignore.
+     * @param classpath   The compile classpath elements of the project.
+     * @param scanRoots   The classpath elements scanned for holders and subtypes, or all elements when empty.
+     * @param parallelism The number of threads inspecting the classes.
+     * @param useJandex   True if Jandex indexes should be used to find the holders and subtypes.
+     */
+    public ForkedGenerator(List<String> packages,
+                           List<String> ignores,
+                           List<String> classpath,
+                           List<File> scanRoots,
+                           int parallelism,
+                           boolean useJandex) {
+        this(packages, ignores, classpath, scanRoots, parallelism, useJandex, Guardrails.NONE);
+    }
+
+    /**
+     * Create a new request for the forked generator.
+     *
+     * @param packages    The packages to look up the holders in.
+     * @param ignores     The classes or packages to ignore.
+     * @param classpath   The compile classpath elements of the project.
+     * @param scanRoots   The classpath elements scanned for holders and subtypes, or all elements when empty.
+     * @param parallelism The number of threads inspecting the classes.
+     * @param useJandex   True if Jandex indexes should be used to find the holders and subtypes.
+     * @param guardrails  The limits on the depth, types and paths of the generation.
+     */
+    public ForkedGenerator(List<String> packages,
+                           List<String> ignores,
+                           List<String> classpath,
+                           List<File> scanRoots,
+                           int parallelism,
+                           boolean useJandex,
+                           Guardrails guardrails) {
+        this(packages, ignores, classpath, scanRoots, parallelism, useJandex, guardrails, ForkedCaches.NONE);
+    }
+
+    /**
+     * Create a new request for the forked generator.
+     *
+     * @param packages    The packages to look up the holders in.
+     * @param ignores     The classes or packages to ignore.
+     * @param classpath   The compile classpath elements of the project.
+     * @param scanRoots   The classpath elements scanned for holders and subtypes, or all elements when empty.
+     * @param parallelism The number of threads inspecting the classes.
+     * @param useJandex   True if Jandex indexes should be used to find the holders and subtypes.
+     * @param guardrails  The limits on the depth, types and paths of the generation.
+     * @param caches      The type fragment and scan caches to read and write.
+     */
+    public ForkedGenerator(List<String> packages,
+                           List<String> ignores,
+                           List<String> classpath,
+                           List<File> scanRoots,
+                           int parallelism,
+                           boolean useJandex,
+                           Guardrails guardrails,
+                           ForkedCaches caches) {
+        this.packages = List.copyOf(packages);
+        this.ignores = ignores == null ? List.of() : List.copyOf(ignores);
+        this.classpath = List.copyOf(classpath);
+        this.scanRoots = List.copyOf(scanRoots);
+        this.parallelism = parallelism;
+        this.useJandex = useJandex;
+        this.guardrails = guardrails;
+        this.caches = caches;
+    }
+
+    /**
+     * Run the generator as requested in {@code args[0]}, writing the result to {@code args[1]}.
+     *
+     * @param args The request and result files.
+     * @throws IOException If either file can not be accessed.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Expected the request and result files as arguments");
+        }
+        ObjectMapper objectMapper = new ObjectMapper();
+        DataProtectionConfigList config = readRequest(objectMapper.readTree(new File(args[0]))).generate();
+        objectMapper.writeValue(new File(args[1]), config);
+    }
+
+    /**
+     * Write this request to the given file.
+     *
+     * @param file         The file to write to.
+     * @param objectMapper The mapper to write the json with.
+     * @throws IOException If the file can not be written.
+     */
+    public void writeRequest(File file, ObjectMapper objectMapper) throws IOException {
+        ObjectNode request = objectMapper.createObjectNode();
+        packages.forEach(request.putArray("packages")::add);
+        ignores.forEach(request.putArray("ignores")::add);
+        classpath.forEach(request.putArray("classpath")::add);
+        ArrayNode roots = request.putArray("scanRoots");
+        scanRoots.forEach(root -> roots.add(root.getAbsolutePath()));
+        request.put("parallelism", parallelism);
+        request.put("useJandex", useJandex);
+        ObjectNode limits = request.putObject("guardrails");
+        limits.put("maxDepth", guardrails.getMaxDepth());
+        limits.put("maxHolderPaths", guardrails.getMaxHolderPaths());
+        limits.put("maxTypes", guardrails.getMaxTypes());
+        limits.put("maxPaths", guardrails.getMaxPaths());
+        limits.put("policy", guardrails.getPolicy().name());
+        ObjectNode cacheNode = request.putObject("caches");
+        cacheNode.put("useDependencyTypeFragments", caches.isUseDependencyTypeFragments());
+        putFile(cacheNode, "scanCacheDirectory", caches.getScanCacheDirectory());
+        putFile(cacheNode, "typeFragments", caches.getTypeFragments());
+        putFile(cacheNode, "outputDirectory", caches.getOutputDirectory());
+        cacheNode.put("artifact", caches.getArtifact());
+        objectMapper.writeValue(file, request);
+    }
+
+    /**
+     * Generate the config in the current JVM, reading and writing the requested {@link ForkedCaches}.
+     *
+     * @return The generated configuration.
+     * @throws IOException If the classpath or a cache can not be read, or a cache can not be written.
+     */
+    public DataProtectionConfigList generate() throws IOException {
+        List<URL> urls = new ArrayList<>();
+        List<File> jars = new ArrayList<>();
+        for (String element : classpath) {
+            File file = new File(element);
+            urls.add(file.toURI().toURL());
+            if (file.isFile()) {
+                jars.add(file);
+            }
+        }
+        ObjectMapper objectMapper = new ObjectMapper();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try (ScanClassLoader classLoader = new ScanClassLoader(urls, ForkedGenerator.class.getClassLoader())) {
+            PublishedTypeFragments typeFragmentCache = caches.isUseDependencyTypeFragments()
+                    ? PublishedTypeFragments.load(classLoader, ignores, objectMapper)
+                    : new PublishedTypeFragments(ignores, objectMapper);
+            JarScanCache scanCache = caches.getScanCacheDirectory() == null
+                    ? null
+                    : new JarScanCache(caches.getScanCacheDirectory(), objectMapper);
+            if (scanCache != null) {
+                scanCache.readTypeFragments(typeFragmentCache, jars);
+            }
+            MetamodelGenerator generator = new MetamodelGenerator(
+                    new SystemStreamLog(),
+                    ignores,
+                    classLoader,
+                    typeFragmentCache,
+                    ScanIndexCache.chain(useJandex ? new JandexScanIndex(true) : ScanIndexCache.NONE,
+                                         scanCache == null ? ScanIndexCache.NONE : scanCache),
+                    scanRoots,
+                    guardrails
+            );
+            DataProtectionConfigList config = generator.generateMetamodel(packages, executor);
+            if (caches.getTypeFragments() != null) {
+                typeFragmentCache.write(caches.getTypeFragments(), caches.getOutputDirectory(), caches.getArtifact());
+            }
+            if (scanCache != null) {
+                scanCache.writeTypeFragments(typeFragmentCache, jars);
+            }
+            return config;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ForkedGenerator readRequest(JsonNode request) {
+        return new ForkedGenerator(strings(request.path("packages")),
+                                   strings(request.path("ignores")),
+                                   strings(request.path("classpath")),
+                                   strings(request.path("scanRoots")).stream().map(File::new)
+                                                                     .collect(Collectors.toList()),
+                                   request.path("parallelism").asInt(1),
+                                   request.path("useJandex").asBoolean(true),
+                                   readGuardrails(request.path("guardrails")),
+                                   readCaches(request.path("caches")));
+    }
+
+    private static ForkedCaches readCaches(JsonNode caches) {
+        if (caches.isMissingNode()) {
+            return ForkedCaches.NONE;
+        }
+        return new ForkedCaches(caches.path("useDependencyTypeFragments").asBoolean(),
+                                file(caches.path("scanCacheDirectory")),
+                                file(caches.path("typeFragments")),
+                                file(caches.path("outputDirectory")),
+                                caches.path("artifact").asText(null));
+    }
+
+    private static void putFile(ObjectNode node, String field, File file) {
+        if (file != null) {
+            node.put(field, file.getAbsolutePath());
+        }
+    }
+
+    private static File file(JsonNode path) {
+        return path.isTextual() ? new File(path.asText()) : null;
+    }
+
+    private static Guardrails readGuardrails(JsonNode limits) {
+        if (limits.isMissingNode()) {
+            return Guardrails.NONE;
+        }
+        return new Guardrails(limits.path("maxDepth").asInt(),
+                              limits.path("maxHolderPaths").asInt(),
+                              limits.path("maxTypes").asInt(),
+                              limits.path("maxPaths").asInt(),
+                              Guardrails.Policy.valueOf(limits.path("policy").asText(Guardrails.Policy.FAIL.name())));
+    }
+
+    private static List<String> strings(JsonNode array) {
+        List<String> result = new ArrayList<>();
+        array.forEach(element -> result.add(element.asText()));
+        return result;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.fork;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Runs the {@link ForkedGenerator} in a separate JVM, so the classes of the scanned project never end up in the heap
+ * and metaspace of the Maven JVM. The output of the forked JVM is passed on to the {@link Log}.
+ */
+public class JvmFork {
+
+    private final Log log;
+    private final File workingDirectory;
+    private final List<String> jvmArgs = new ArrayList<>();
+
+    /**
+     * Create a new fork.
+     *
+     * @param log              The log receiving the output of the forked JVM.
+     * @param workingDirectory The directory holding the request, result and argument files.
+     * @param maxHeap          The maximum heap size, like {@code 2g}, or null for the JVM default.
+     * @param maxMetaspace     The maximum metaspace size, like {@code 512m}, or null for the JVM default.
+     * @param jvmArgs          Additional arguments for the forked JVM, or null.
+     */
+    public JvmFork(Log log, File workingDirectory, String maxHeap, String maxMetaspace, List<String> jvmArgs) {
+        this.log = log;
+        this.workingDirectory = workingDirectory;
+        if (maxHeap != null && !maxHeap.isBlank()) {
+            this.jvmArgs.add("-Xmx" + maxHeap);
+        }
+        if (maxMetaspace != null && !maxMetaspace.isBlank()) {
+            this.jvmArgs.add("-XX:MaxMetaspaceSize=" + maxMetaspace);
+        }
+        if (jvmArgs != null) {
+            this.jvmArgs.addAll(jvmArgs);
+        }
+    }
+
+    /**
+     * Run the given request in a forked JVM and wait for it to finish.
+     *
+     * @param request      The generation to run.
+     * @param classpath    The classpath of the forked JVM, holding the plugin and its dependencies.
+     * @param objectMapper The mapper to write the request with.
+     * @return The file holding the generated config.
+     * @throws IOException          If the fork could not be started or failed.
+     * @throws InterruptedException If the thread was interrupted while waiting for the fork.
+     */
+    public File run(ForkedGenerator request, List<String> classpath, ObjectMapper objectMapper)
+            throws IOException, InterruptedException {
+        Files.createDirectories(workingDirectory.toPath());
+        File requestFile = new File(workingDirectory, "request.json");
+        File resultFile = new File(workingDirectory, "result.json");
+        File argumentFile = new File(workingDirectory, "jvm.args");
+        Files.deleteIfExists(resultFile.toPath());
+        request.writeRequest(requestFile, objectMapper);
+        Files.writeString(argumentFile.toPath(), "-cp \"" + quote(String.join(File.pathSeparator, classpath)) + "\"",
+                          Charset.defaultCharset());
+
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(jvmArgs);
+        command.add("@" + argumentFile.getPath());
+        command.add(ForkedGenerator.class.getName());
+        command.add(requestFile.getPath());
+        command.add(resultFile.getPath());
+        log.debug(String.format("Forking %s", command));
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                                                                              Charset.defaultCharset()))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                log.info("[fork] " + line);
+            }
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0 || !resultFile.isFile()) {
+            throw new IOException(String.format("The forked JVM failed with exit code %d", exitCode));
+        }
+        return resultFile;
+    }
+
+    /**
+     * Build the classpath of the forked JVM from the given class loader, which should be the plugin class realm.
+     * The Maven plugin API is provided by Maven itself, so its location is added as well.
+     *
+     * @param pluginClassLoader The class loader of the plugin.
+     * @return The classpath elements.
+     */
+    public static List<String> pluginClasspath(ClassLoader pluginClassLoader) {
+        Set<String> classpath = new LinkedHashSet<>();
+        if (pluginClassLoader instanceof URLClassLoader) {
+            for (URL url : ((URLClassLoader) pluginClassLoader).getURLs()) {
+                path(url).ifPresent(classpath::add);
+            }
+        } else {
+            classpath.addAll(List.of(System.getProperty("java.class.path").split(File.pathSeparator)));
+        }
+        for (Class<?> provided : List.of(ForkedGenerator.class, Log.class)) {
+            CodeSource codeSource = provided.getProtectionDomain().getCodeSource();
+            if (codeSource != null) {
+                path(codeSource.getLocation()).ifPresent(classpath::add);
+            }
+        }
+        return new ArrayList<>(classpath);
+    }
+
+    private static Optional<String> path(URL url) {
+        try {
+            return Optional.of(new File(url.toURI()).getPath());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Escape the given value for a quoted string in a java argument file.
+     */
+    private static String quote(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Index of all {@link io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder} classes, written at build time
+ * by the {@code generate} goal. Tools that need to know the holders can read it from the classpath instead of scanning
+ * it. The index is a plain text file with one tab separated line per holder: the class name, the revision and the
+ * SHA-256 hash of the holder's generated configuration. The class only uses the JDK, so it can be used at runtime
+ * with all dependencies of the plugin artifact excluded.
+ */
+public class HolderIndex {
+
+    /**
+     * Location of the index resource on the classpath.
+     */
+    public static final String RESOURCE = "META-INF/axon-data-protection/holders.idx";
+
+    static final String COMMENT = "#";
+
+    static final String SEPARATOR = "\t";
+
+    private final Map<String, Entry> entries;
+
+    HolderIndex(Map<String, Entry> entries) {
+        this.entries = Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Load the index from all {@link HolderIndex#RESOURCE} resources visible to the context class loader.
+     *
+     * @return The merged index, which is empty when no resource was found.
+     */
+    public static HolderIndex load() {
+        return load(Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Load the index from all {@link HolderIndex#RESOURCE} resources visible to the given class loader. When a class is
+     * listed more than once, the first entry wins.
+     *
+     * @param classLoader The class loader used to look up the resources.
+     * @return The merged index, which is empty when no resource was found.
+     */
+    public static HolderIndex load(ClassLoader classLoader) {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        try {
+            Enumeration<URL> resources = classLoader.getResources(RESOURCE);
+            while (resources.hasMoreElements()) {
+                read(resources.nextElement()).forEach(entry -> entries.putIfAbsent(entry.getType(), entry));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the holder index.", e);
+        }
+        return new HolderIndex(entries);
+    }
+
+    private static List<Entry> read(URL resource) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith(COMMENT)) {
+                    continue;
+                }
+                String[] columns = line.split(SEPARATOR, -1);
+                if (columns.length != 3) {
+                    throw new IOException(String.format("Malformed holder index line [%s] in [%s]", line, resource));
+                }
+                entries.add(new Entry(columns[0], columns[1], columns[2]));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return All entries of the index, in the order they were written.
+     */
+    public List<Entry> entries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * @return The class names of all indexed holders.
+     */
+    public Set<String> holderTypes() {
+        return entries.keySet();
+    }
+
+    /**
+     * Find the entry of a given holder class.
+     *
+     * @param type The full qualified class name of the holder.
+     * @return The entry if the class is indexed. Otherwise empty.
+     */
+    public Optional<Entry> find(String type) {
+        return Optional.ofNullable(entries.get(type));
+    }
+
+    /**
+     * A single holder in the index.
+     */
+    public static class Entry {
+
+        private final String type;
+        private final String revision;
+        private final String hash;
+
+        public Entry(String type, String revision, String hash) {
+            this.type = type;
+            this.revision = revision;
+            this.hash = hash;
+        }
+
+        /**
+         * @return The full qualified class name of the holder.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return The revision of the holder, or an empty String when it has none.
+         */
+        public String getRevision() {
+            return revision;
+        }
+
+        /**
+         * @return The hex encoded SHA-256 hash of the holder's generated configuration.
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Entry entry = (Entry) o;
+            return type.equals(entry.type) && revision.equals(entry.revision) && hash.equals(entry.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, revision, hash);
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{type='" + type + "', revision='" + revision + "', hash='" + hash + "'}";
+        }
+    }
+}
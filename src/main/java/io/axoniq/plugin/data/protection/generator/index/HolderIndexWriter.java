@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.index;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Writes the {@link HolderIndex} resource for a generated {@link DataProtectionConfigList}.
+ */
+public class HolderIndexWriter {
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Create a new instance of the {@link HolderIndexWriter}.
+     *
+     * @param objectMapper The mapper used to serialize the configuration fragments before hashing them.
+     */
+    public HolderIndexWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Write the index for all holders in the given {@code config} to the given {@code file}.
+     *
+     * @param config The generated configuration.
+     * @param file   The index file, usually {@link HolderIndex#RESOURCE} inside the project output directory.
+     * @throws IOException When the file could not be written.
+     */
+    public void write(DataProtectionConfigList config, File file) throws IOException {
+        if (!file.getParentFile().exists()) {
+            file.getParentFile().mkdirs();
+        }
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(HolderIndex.COMMENT + " type" + HolderIndex.SEPARATOR + "revision" + HolderIndex.SEPARATOR
+                                 + "sha256\n");
+            for (DataProtectionConfig holder : config.getConfig()) {
+                writer.write(holder.getType() + HolderIndex.SEPARATOR + holder.getRevision() + HolderIndex.SEPARATOR
+                                     + hash(holder) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Compute the hex encoded SHA-256 hash of the JSON representation of the given configuration fragment.
+     *
+     * @param holder The configuration of a single holder.
+     * @return The hash, which changes whenever the generated configuration changes.
+     */
+    public String hash(DataProtectionConfig holder) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(holder);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return String.format("%064x", new BigInteger(1, digest));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to hash the configuration of [" + holder.getType() + "]", e);
+        }
+    }
+}
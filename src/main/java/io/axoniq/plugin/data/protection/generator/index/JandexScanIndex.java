@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.index;
+
+import io.axoniq.plugin.data.protection.generator.cache.ScanIndexCache;
+import io.axoniq.plugin.data.protection.generator.utils.ClassPathUtils;
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexReader;
+import org.jboss.jandex.Indexer;
+import org.reflections.scanners.Scanners;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Provides the scan result of a class path element from a <a href="https://smallrye.io/jandex">Jandex</a> index, so
+ * holders and subtypes are found by an index lookup instead of a bytecode scan. Jars are only served when they ship a
+ * {@link JandexScanIndex#RESOURCE}. Directories, like the project output directory, are indexed on the fly, as an index
+ * lying around in them may be outdated.
+ * <p>
+ * The result has the same shape as the {@link org.reflections.Store} of a scan with the default scanners, restricted
+ * to the scanned package.
+ */
+public class JandexScanIndex implements ScanIndexCache {
+
+    /**
+     * Location of the Jandex index inside a jar.
+     */
+    public static final String RESOURCE = "META-INF/jandex.idx";
+
+    private static final DotName OBJECT = DotName.createSimple(Object.class.getName());
+
+    private final boolean indexDirectories;
+
+    /**
+     * Create a new instance of the {@link JandexScanIndex}.
+     *
+     * @param indexDirectories Whether directories should be indexed on the fly. Otherwise, they are left to the
+     *                         regular scan.
+     */
+    public JandexScanIndex(boolean indexDirectories) {
+        this.indexDirectories = indexDirectories;
+    }
+
+    @Override
+    public Optional<Map<String, Map<String, Set<String>>>> get(URL root, String pkg) {
+        Optional<File> file = ClassPathUtils.toFile(root);
+        if (!file.isPresent()) {
+            return Optional.empty();
+        }
+        try {
+            if (file.get().isDirectory()) {
+                return indexDirectories ? Optional.of(toStore(indexDirectory(file.get(), pkg), pkg)) : Optional.empty();
+            }
+            return readJarIndex(file.get()).map(index -> toStore(index, pkg));
+        } catch (IOException | IllegalArgumentException e) {
+            // an unreadable or unsupported index is left to the regular scan
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void put(URL root, String pkg, Map<String, Map<String, Set<String>>> index) {
+        // indexes are read from the class path elements themselves
+    }
+
+    /**
+     * Read the {@link JandexScanIndex#RESOURCE} shipped in the given jar.
+     *
+     * @param jar The jar to read the index from.
+     * @return The index, or an empty optional if the jar ships none.
+     * @throws IOException When the index could not be read.
+     */
+    public static Optional<Index> readJarIndex(File jar) throws IOException {
+        try (JarFile jarFile = new JarFile(jar)) {
+            ZipEntry entry = jarFile.getEntry(RESOURCE);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            try (InputStream in = jarFile.getInputStream(entry)) {
+                return Optional.of(new IndexReader(in).read());
+            }
+        }
+    }
+
+    /**
+     * Index the class files of the given package inside the given directory.
+     *
+     * @param directory The directory holding the class files.
+     * @param pkg       The package to index, including its sub packages.
+     * @return The index.
+     * @throws IOException When a class file could not be read.
+     */
+    public static Index indexDirectory(File directory, String pkg) throws IOException {
+        Indexer indexer = new Indexer();
+        Path packageDirectory = directory.toPath().resolve(pkg.replace('.', File.separatorChar));
+        if (Files.isDirectory(packageDirectory)) {
+            List<Path> classFiles;
+            try (Stream<Path> files = Files.walk(packageDirectory)) {
+                classFiles = files.filter(path -> path.toString().endsWith(".class")).collect(Collectors.toList());
+            }
+            for (Path classFile : classFiles) {
+                try (InputStream in = Files.newInputStream(classFile)) {
+                    indexer.index(in);
+                }
+            }
+        }
+        return indexer.complete();
+    }
+
+    /**
+     * Convert the given index to the shape of the {@link org.reflections.Store} of a scan, holding the subtypes and the
+     * annotated types of the given package.
+     *
+     * @param index The Jandex index.
+     * @param pkg   The scanned package.
+     * @return The scan result.
+     */
+    static Map<String, Map<String, Set<String>>> toStore(Index index, String pkg) {
+        Map<String, Set<String>> subTypes = new HashMap<>();
+        Map<String, Set<String>> typesAnnotated = new HashMap<>();
+        String prefix = pkg + ".";
+        for (ClassInfo classInfo : index.getKnownClasses()) {
+            String name = classInfo.name().toString();
+            if (!name.startsWith(prefix)) {
+                continue;
+            }
+            if (classInfo.superName() != null && !OBJECT.equals(classInfo.superName())) {
+                add(subTypes, classInfo.superName().toString(), name);
+            }
+            classInfo.interfaceNames().forEach(interfaceName -> add(subTypes, interfaceName.toString(), name));
+            for (AnnotationInstance annotation : classInfo.declaredAnnotations()) {
+                if (annotation.runtimeVisible()) {
+                    add(typesAnnotated, annotation.name().toString(), name);
+                }
+            }
+        }
+        Map<String, Map<String, Set<String>>> store = new HashMap<>();
+        store.put(Scanners.SubTypes.index(), subTypes);
+        store.put(Scanners.TypesAnnotated.index(), typesAnnotated);
+        return store;
+    }
+
+    private static void add(Map<String, Set<String>> index, String key, String value) {
+        index.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(value);
+    }
+}
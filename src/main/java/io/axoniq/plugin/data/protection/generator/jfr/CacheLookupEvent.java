@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for a lookup in the type fragment or scan index caches.
+ */
+@Name("io.axoniq.dataprotection.CacheLookup")
+@Label("Cache Lookup")
+@Category({"Axon Data Protection", "Generator"})
+@Description("Lookup of a type fragment or scan result in a cache")
+@StackTrace(false)
+public class CacheLookupEvent extends Event {
+
+    /**
+     * Value of {@link CacheLookupEvent#cache} for lookups in the {@link
+     * io.axoniq.plugin.data.protection.generator.cache.TypeFragmentCache}.
+     */
+    public static final String TYPE_FRAGMENTS = "typeFragments";
+
+    /**
+     * Value of {@link CacheLookupEvent#cache} for lookups in the {@link
+     * io.axoniq.plugin.data.protection.generator.cache.ScanIndexCache}.
+     */
+    public static final String SCAN_INDEXES = "scanIndexes";
+
+    @Label("Cache")
+    public String cache;
+
+    @Label("Key")
+    @Description("The looked up type, or the class path element and package")
+    public String key;
+
+    @Label("Hit")
+    public boolean hit;
+}
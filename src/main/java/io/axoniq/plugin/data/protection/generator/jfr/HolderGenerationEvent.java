@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for the generation of the config of a single holder.
+ */
+@Name("io.axoniq.dataprotection.HolderGeneration")
+@Label("Holder Generation")
+@Category({"Axon Data Protection", "Generator"})
+@Description("Generation of the config of a sensitive data holder")
+@StackTrace(false)
+public class HolderGenerationEvent extends Event {
+
+    @Label("Holder")
+    public String holder;
+
+    @Label("Paths")
+    @Description("Paths of the holder, counting the subject id")
+    public int paths;
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for writing one of the outputs of the plugin, like the config or the holder index.
+ */
+@Name("io.axoniq.dataprotection.OutputWrite")
+@Label("Output Write")
+@Category({"Axon Data Protection", "Generator"})
+@Description("Write of a file generated by the plugin")
+@StackTrace(false)
+public class OutputWriteEvent extends Event {
+
+    @Label("File")
+    public String file;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for the scan of a package for holders and subtypes.
+ */
+@Name("io.axoniq.dataprotection.PackageScan")
+@Label("Package Scan")
+@Category({"Axon Data Protection", "Generator"})
+@Description("Scan of a package for sensitive data holders and subtypes")
+@StackTrace(false)
+public class PackageScanEvent extends Event {
+
+    @Label("Package")
+    public String pkg;
+
+    @Label("Scanned Elements")
+    @Description("Class path elements holding the package which were scanned")
+    public int scannedElements;
+
+    @Label("Cached Elements")
+    @Description("Class path elements holding the package whose scan result was taken from a cache")
+    public int cachedElements;
+
+    @Label("Holders")
+    public int holders;
+}
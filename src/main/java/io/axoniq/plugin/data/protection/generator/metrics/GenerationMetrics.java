@@ -0,0 +1,538 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import org.apache.maven.plugin.logging.Log;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times the phases of a metamodel generation and counts the work done in them. All methods are safe for concurrent
+ * use, so the threads inspecting the holders can share a single instance.
+ */
+public class GenerationMetrics {
+
+    /**
+     * The phases of a generation, in the order they run.
+     */
+    public enum Phase {
+
+        /**
+         * Creating the class loader of the project and loading the published type fragments and scan caches.
+         */
+        SETUP,
+
+        /**
+         * Scanning the packages for holders and subtypes.
+         */
+        DISCOVERY,
+
+        /**
+         * Inspecting the fields of the holders and the types they embed.
+         */
+        TRAVERSAL,
+
+        /**
+         * Turning the generated config into JSON.
+         */
+        SERIALIZATION,
+
+        /**
+         * Writing the config, holder index, type fragments and scan caches.
+         */
+        WRITE
+    }
+
+    /**
+     * The maximum number of suggested {@code ignores} entries in the log and report.
+     */
+    private static final int SUGGESTIONS = 10;
+
+    private final Map<Phase, LongAdder> phaseNanos = new EnumMap<>(Phase.class);
+
+    private final Set<String> visitedTypes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The types the config was built from without being visited, like super classes and the types behind cached
+     * fragments.
+     */
+    private final Set<String> dependencies = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder fieldsInspected = new LongAdder();
+
+    private final LongAdder generationHits = new LongAdder();
+
+    private final LongAdder typeFragmentHits = new LongAdder();
+
+    private final LongAdder scanIndexHits = new LongAdder();
+
+    private final LongAdder reusedHolders = new LongAdder();
+
+    private final Set<String> truncatedHolders = new ConcurrentSkipListSet<>();
+
+    private final LongAccumulator peakHeapBytes = new LongAccumulator(Math::max, 0);
+
+    private final GenerationProfile profile;
+
+    private final IgnoreSuggestions ignoreSuggestions = new IgnoreSuggestions();
+
+    /**
+     * The time spent in the types embedded by the type inspected on the current thread, and the fields inspected for
+     * that type itself.
+     */
+    private final ThreadLocal<long[]> currentType = ThreadLocal.withInitial(() -> new long[2]);
+
+    private volatile int holders;
+
+    private volatile long paths;
+
+    /**
+     * Create a new instance of the {@link GenerationMetrics}, without profiling.
+     */
+    public GenerationMetrics() {
+        this(false);
+    }
+
+    /**
+     * Create a new instance of the {@link GenerationMetrics}.
+     *
+     * @param profiling True if the holders and types should be profiled in a {@link GenerationProfile}. It keeps an
+     *                  entry per holder and type, and times every type, so it is off by default.
+     */
+    public GenerationMetrics(boolean profiling) {
+        for (Phase phase : Phase.values()) {
+            phaseNanos.put(phase, new LongAdder());
+        }
+        this.profile = profiling ? new GenerationProfile() : null;
+    }
+
+    /**
+     * @return The profile of the holders and types, if profiling is enabled.
+     */
+    public Optional<GenerationProfile> profile() {
+        return Optional.ofNullable(profile);
+    }
+
+    /**
+     * @return The suggested {@code ignores} entries, based on the work spent in types without sensitive data.
+     */
+    public IgnoreSuggestions ignoreSuggestions() {
+        return ignoreSuggestions;
+    }
+
+    /**
+     * @return True if the holders and types are profiled, so the callers of {@link GenerationMetrics#holderStarted()}
+     * and {@link GenerationMetrics#holderFinished(DataProtectionConfig, long)} can skip reading the clock otherwise.
+     */
+    public boolean isProfiling() {
+        return profile != null;
+    }
+
+    /**
+     * Sample the current usage of the heap memory pools for {@link GenerationMetrics#peakHeapBytes()}. The peak
+     * usages tracked by the JVM are left alone, as resetting them would corrupt the numbers of other work running in
+     * the same JVM, like other modules of a parallel build.
+     */
+    public void sampleHeap() {
+        peakHeapBytes.accumulate(heapPools().stream().mapToLong(pool -> pool.getUsage().getUsed()).sum());
+    }
+
+    /**
+     * Add the time passed since the given start to the given phase. A phase may be timed in several steps. The heap
+     * is sampled at the end of every step.
+     *
+     * @param phase      The phase the time was spent in.
+     * @param startNanos The {@link System#nanoTime()} at the start of the step.
+     */
+    public void addTime(Phase phase, long startNanos) {
+        phaseNanos.get(phase).add(System.nanoTime() - startNanos);
+        sampleHeap();
+    }
+
+    /**
+     * Record that the fields of the given type are inspected, or that its fragment is taken from a cache.
+     *
+     * @param type The name of the visited type.
+     */
+    public void typeVisited(String type) {
+        visitedTypes.add(type);
+        if (profile != null) {
+            profile.typeRequested(type);
+        }
+    }
+
+    /**
+     * Record that the config depends on the class files of the given types, without visiting them, like the super
+     * classes of an inspected type or the types a cached fragment was built from.
+     *
+     * @param types The names of the types.
+     */
+    public void dependsOn(Collection<String> types) {
+        dependencies.addAll(types);
+    }
+
+    /**
+     * @return The names of all types whose class files the config was built from, so a later build can tell whether
+     * it is still up-to-date.
+     */
+    public Set<String> dependencies() {
+        Set<String> all = new TreeSet<>(visitedTypes);
+        all.addAll(dependencies);
+        return all;
+    }
+
+    /**
+     * Record that the given number of fields is inspected.
+     *
+     * @param count The number of fields.
+     */
+    public void fieldsInspected(int count) {
+        fieldsInspected.add(count);
+        currentType.get()[1] += count;
+        if (profile != null) {
+            profile.fieldsInspected(count);
+        }
+    }
+
+    /**
+     * Record that the inspection of a holder starts on the current thread. Only used when profiling.
+     */
+    public void holderStarted() {
+        if (profile != null) {
+            profile.holderStarted();
+        }
+    }
+
+    /**
+     * Record that the inspection of the holder on the current thread finished. It samples the heap, and profiles the
+     * holder when profiling.
+     *
+     * @param config     The generated config of the holder.
+     * @param startNanos The {@link System#nanoTime()} at the start of the inspection.
+     */
+    public void holderFinished(DataProtectionConfig config, long startNanos) {
+        sampleHeap();
+        if (profile != null) {
+            profile.holderFinished(config, startNanos);
+        }
+    }
+
+    /**
+     * Record that a holder was inspected, so the {@link IgnoreSuggestions} never suggest its package.
+     *
+     * @param type The name of the holder.
+     */
+    public void holder(String type) {
+        ignoreSuggestions.holder(type);
+    }
+
+    /**
+     * Start building the fragment of a type on the current thread. Types embedded by the type are started and
+     * finished in between, so the time and fields of the type itself can be told apart from those of its embedded
+     * types.
+     *
+     * @return The timer to finish once the fragment is built.
+     */
+    public TypeTimer startType() {
+        long[] frame = currentType.get();
+        TypeTimer timer = new TypeTimer(frame[0], frame[1]);
+        frame[0] = 0;
+        frame[1] = 0;
+        return timer;
+    }
+
+    /**
+     * Record that the fragment of a type is taken from the fragments built earlier in the same generation.
+     */
+    public void generationHit() {
+        generationHits.increment();
+    }
+
+    /**
+     * Record that the fragment of a type is taken from a {@link
+     * io.axoniq.plugin.data.protection.generator.cache.TypeFragmentCache}.
+     */
+    public void typeFragmentHit() {
+        typeFragmentHits.increment();
+    }
+
+    /**
+     * Record that the scan result of a class path element is taken from a {@link
+     * io.axoniq.plugin.data.protection.generator.cache.ScanIndexCache}.
+     */
+    public void scanIndexHit() {
+        scanIndexHits.increment();
+    }
+
+    /**
+     * Record that the config of a holder is taken from the {@link
+     * io.axoniq.plugin.data.protection.generator.GeneratedHolders} of an earlier generation.
+     */
+    public void holderReused() {
+        reusedHolders.increment();
+    }
+
+    /**
+     * Record that the config of the given holder misses sensitive data, as it exceeded one of the {@link
+     * io.axoniq.plugin.data.protection.generator.Guardrails}.
+     *
+     * @param holder The name of the holder.
+     */
+    public void truncated(String holder) {
+        truncatedHolders.add(holder);
+    }
+
+    /**
+     * Record the number of holders and emitted paths of the generated config.
+     *
+     * @param config The generated configuration.
+     */
+    public void result(DataProtectionConfigList config) {
+        holders = config.getConfig().size();
+        long count = 0;
+        for (DataProtectionConfig holder : config.getConfig()) {
+            count += 1 + holder.getSensitiveData().size();
+        }
+        paths = count;
+    }
+
+    /**
+     * @param phase The phase of the generation.
+     * @return The time spent in the given phase, in milliseconds.
+     */
+    public long millis(Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(phaseNanos.get(phase).sum());
+    }
+
+    /**
+     * @return The time spent in all phases, in milliseconds.
+     */
+    public long totalMillis() {
+        long nanos = 0;
+        for (LongAdder phase : phaseNanos.values()) {
+            nanos += phase.sum();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * @return The number of holders in the generated config.
+     */
+    public int holders() {
+        return holders;
+    }
+
+    /**
+     * @return The number of holders whose config was taken from an earlier generation.
+     */
+    public long holdersReused() {
+        return reusedHolders.sum();
+    }
+
+    /**
+     * @return The number of paths in the generated config, counting the subject id of every holder.
+     */
+    public long paths() {
+        return paths;
+    }
+
+    /**
+     * @return The number of distinct types whose fragment was requested.
+     */
+    public int typesVisited() {
+        return visitedTypes.size();
+    }
+
+    /**
+     * @return The names of the holders whose config was truncated by the guardrails, sorted by name.
+     */
+    public List<String> truncatedHolders() {
+        return List.copyOf(truncatedHolders);
+    }
+
+    /**
+     * @return The number of inspected fields, including the fields of the holders.
+     */
+    public long fieldsInspected() {
+        return fieldsInspected.sum();
+    }
+
+    /**
+     * @return The number of fragments taken from the fragments built earlier in the same generation.
+     */
+    public long generationHits() {
+        return generationHits.sum();
+    }
+
+    /**
+     * @return The number of fragments taken from a type fragment cache.
+     */
+    public long typeFragmentHits() {
+        return typeFragmentHits.sum();
+    }
+
+    /**
+     * @return The number of class path elements whose scan result was taken from a scan index cache.
+     */
+    public long scanIndexHits() {
+        return scanIndexHits.sum();
+    }
+
+    /**
+     * The highest heap usage sampled during this generation, at the end of every timed step and after every holder.
+     * Garbage collected between two samples is not seen, so it is a lower bound of the real peak. The heap is shared
+     * by the whole JVM, so it includes the memory of other work running at the same time, like other modules of a
+     * parallel build.
+     *
+     * @return The peak heap usage in bytes.
+     */
+    public long peakHeapBytes() {
+        return peakHeapBytes.get();
+    }
+
+    /**
+     * Log a summary of the phases and counters at info level.
+     *
+     * @param log The log to write the summary to.
+     */
+    public void log(Log log) {
+        log.info(String.format("Metamodel generation took %d ms (setup %d ms, discovery %d ms, traversal %d ms, "
+                                       + "serialization %d ms, write %d ms)",
+                               totalMillis(),
+                               millis(Phase.SETUP),
+                               millis(Phase.DISCOVERY),
+                               millis(Phase.TRAVERSAL),
+                               millis(Phase.SERIALIZATION),
+                               millis(Phase.WRITE)));
+        log.info(String.format("Generated %d paths for %d holders, visiting %d types and %d fields "
+                                       + "(cache hits: %d generation, %d type fragments, %d scan indexes), "
+                                       + "peak heap %d MB",
+                               paths(),
+                               holders(),
+                               typesVisited(),
+                               fieldsInspected(),
+                               generationHits(),
+                               typeFragmentHits(),
+                               scanIndexHits(),
+                               peakHeapBytes() / (1024 * 1024)));
+        if (!truncatedHolders.isEmpty()) {
+            log.warn(String.format("The guardrails truncated the config of %d holders: %s",
+                                   truncatedHolders.size(), truncatedHolders));
+        }
+        ignoreSuggestions.suggestions(SUGGESTIONS).forEach(suggestion -> log.info(String.format(
+                Locale.ROOT,
+                "Consider ignoring %s, it cost %.1f ms for %d types and %d fields without sensitive data",
+                suggestion.getIgnore(), suggestion.getSavedMillis(), suggestion.getTypes(), suggestion.getFields())));
+    }
+
+    /**
+     * Create the machine-readable report of the phases and counters.
+     *
+     * @param objectMapper The mapper used to create the JSON nodes.
+     * @return The report as JSON object.
+     */
+    public ObjectNode toJson(ObjectMapper objectMapper) {
+        ObjectNode report = objectMapper.createObjectNode();
+        report.put("totalMillis", totalMillis());
+        ObjectNode phases = report.putObject("phases");
+        for (Phase phase : Phase.values()) {
+            phases.put(phase.name().toLowerCase(Locale.ROOT) + "Millis", millis(phase));
+        }
+        report.put("holders", holders());
+        report.put("typesVisited", typesVisited());
+        report.put("fieldsInspected", fieldsInspected());
+        ObjectNode cacheHits = report.putObject("cacheHits");
+        cacheHits.put("generation", generationHits());
+        cacheHits.put("typeFragments", typeFragmentHits());
+        cacheHits.put("scanIndexes", scanIndexHits());
+        report.put("paths", paths());
+        report.put("peakHeapBytes", peakHeapBytes());
+        truncatedHolders.forEach(report.putArray("truncatedHolders")::add);
+        ArrayNode suggestions = report.putArray("ignoreSuggestions");
+        for (IgnoreSuggestions.Suggestion suggestion : ignoreSuggestions.suggestions(SUGGESTIONS)) {
+            ObjectNode entry = suggestions.addObject();
+            entry.put("ignore", suggestion.getIgnore());
+            entry.put("savedMillis", suggestion.getSavedMillis());
+            entry.put("types", suggestion.getTypes());
+            entry.put("fields", suggestion.getFields());
+        }
+        return report;
+    }
+
+    /**
+     * Times the building of a single type fragment, see {@link GenerationMetrics#startType()}.
+     */
+    public class TypeTimer {
+
+        private final long startNanos = System.nanoTime();
+        private final long outerChildNanos;
+        private final long outerFields;
+
+        private TypeTimer(long outerChildNanos, long outerFields) {
+            this.outerChildNanos = outerChildNanos;
+            this.outerFields = outerFields;
+        }
+
+        /**
+         * Finish building the fragment of the given type.
+         *
+         * @param type  The name of the type.
+         * @param empty True if the fragment holds no sensitive data.
+         */
+        public void finish(String type, boolean empty) {
+            long nanos = System.nanoTime() - startNanos;
+            long[] frame = currentType.get();
+            ignoreSuggestions.typeInspected(type, nanos - frame[0], (int) frame[1], empty);
+            if (profile != null) {
+                profile.typeBuilt(type, nanos);
+            }
+            frame[0] = outerChildNanos + nanos;
+            frame[1] = outerFields;
+        }
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.SensitiveDataConfig;
+import io.axoniq.plugin.data.protection.generator.utils.PathUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Profiles a metamodel generation per holder and per type, to find the holders and types that make a generation
+ * slow. Type fragments are shared by all holders of a generation, so the cost of a type is attributed to the first
+ * holder embedding it, and later holders only request its fragment. A holder is inspected on a single thread, while
+ * several holders may be inspected at once.
+ */
+public class GenerationProfile {
+
+    private final Queue<HolderProfile> holders = new ConcurrentLinkedQueue<>();
+
+    private final Map<String, TypeProfile> types = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<HolderContext> currentHolder = new ThreadLocal<>();
+
+    /**
+     * Start profiling a holder on the current thread.
+     */
+    public void holderStarted() {
+        currentHolder.set(new HolderContext());
+    }
+
+    /**
+     * Finish profiling the holder started on the current thread.
+     *
+     * @param config     The generated config of the holder.
+     * @param startNanos The {@link System#nanoTime()} at the start of the inspection.
+     */
+    public void holderFinished(DataProtectionConfig config, long startNanos) {
+        HolderContext context = currentHolder.get();
+        currentHolder.remove();
+        int maxDepth = PathUtils.depth(config.getSubjectId().getPath());
+        for (SensitiveDataConfig sensitiveData : config.getSensitiveData()) {
+            maxDepth = Math.max(maxDepth, PathUtils.depth(sensitiveData.getPath()));
+        }
+        holders.add(new HolderProfile(config.getType(),
+                                      System.nanoTime() - startNanos,
+                                      context == null ? 0 : context.fields,
+                                      maxDepth,
+                                      1 + config.getSensitiveData().size()));
+    }
+
+    /**
+     * Record that the holder on the current thread inspected the given number of fields.
+     *
+     * @param count The number of fields.
+     */
+    public void fieldsInspected(int count) {
+        HolderContext context = currentHolder.get();
+        if (context != null) {
+            context.fields += count;
+        }
+    }
+
+    /**
+     * Record that the fragment of the given type is requested by the holder on the current thread.
+     *
+     * @param type The name of the requested type.
+     */
+    public void typeRequested(String type) {
+        TypeProfile profile = types.computeIfAbsent(type, TypeProfile::new);
+        profile.requests.increment();
+        HolderContext context = currentHolder.get();
+        if (context != null && context.types.add(type)) {
+            profile.holders.increment();
+        }
+    }
+
+    /**
+     * Record the time it took to build the fragment of the given type, including the types it embeds.
+     *
+     * @param type  The name of the inspected type.
+     * @param nanos The time it took to build the fragment.
+     */
+    public void typeBuilt(String type, long nanos) {
+        types.computeIfAbsent(type, TypeProfile::new).buildNanos.add(nanos);
+    }
+
+    /**
+     * @param top The maximum number of holders.
+     * @return The profiles of the holders which took longest, slowest first.
+     */
+    public List<HolderProfile> slowestHolders(int top) {
+        return holders.stream()
+                      .sorted(Comparator.comparingLong(HolderProfile::getNanos).reversed()
+                                        .thenComparing(HolderProfile::getType))
+                      .limit(top)
+                      .collect(Collectors.toList());
+    }
+
+    /**
+     * @param top The maximum number of types.
+     * @return The profiles of the types whose fragment was requested most often, most requested first.
+     */
+    public List<TypeProfile> hotTypes(int top) {
+        return types.values()
+                    .stream()
+                    .sorted(Comparator.comparingLong(TypeProfile::getRequests).reversed()
+                                      .thenComparing(TypeProfile::getType))
+                    .limit(top)
+                    .collect(Collectors.toList());
+    }
+
+    /**
+     * @param top The maximum number of types.
+     * @return The profiles of the types whose fragment took longest to build, slowest first.
+     */
+    public List<TypeProfile> slowestTypes(int top) {
+        return types.values()
+                    .stream()
+                    .sorted(Comparator.comparingLong(TypeProfile::getBuildNanos).reversed()
+                                      .thenComparing(TypeProfile::getType))
+                    .limit(top)
+                    .collect(Collectors.toList());
+    }
+
+    /**
+     * Log the slowest holders and the hot types at info level.
+     *
+     * @param log The log to write the report to.
+     * @param top The maximum number of holders and types to log.
+     */
+    public void log(Log log, int top) {
+        log.info(String.format("Slowest %d holders:", top));
+        slowestHolders(top).forEach(holder -> log.info(String.format(
+                "  %s: %d ms, %d fields, depth %d, %d paths",
+                holder.getType(), holder.getMillis(), holder.getFields(), holder.getMaxDepth(), holder.getPaths())));
+        log.info(String.format("Hot %d types:", top));
+        hotTypes(top).forEach(type -> log.info(String.format(
+                "  %s: %d requests by %d holders, built in %d ms",
+                type.getType(), type.getRequests(), type.getHolders(), type.getBuildMillis())));
+    }
+
+    /**
+     * Create the machine-readable top-N report.
+     *
+     * @param objectMapper The mapper used to create the JSON nodes.
+     * @param top          The maximum number of holders and types per list.
+     * @return The report as JSON object.
+     */
+    public ObjectNode toJson(ObjectMapper objectMapper, int top) {
+        ObjectNode report = objectMapper.createObjectNode();
+        ArrayNode slowestHolders = report.putArray("slowestHolders");
+        slowestHolders(top).forEach(holder -> slowestHolders.addObject()
+                                                            .put("type", holder.getType())
+                                                            .put("millis", holder.getMillis())
+                                                            .put("fields", holder.getFields())
+                                                            .put("maxDepth", holder.getMaxDepth())
+                                                            .put("paths", holder.getPaths()));
+        addTypes(report.putArray("hotTypes"), hotTypes(top));
+        addTypes(report.putArray("slowestTypes"), slowestTypes(top));
+        return report;
+    }
+
+    private static void addTypes(ArrayNode array, List<TypeProfile> types) {
+        types.forEach(type -> array.addObject()
+                                   .put("type", type.getType())
+                                   .put("requests", type.getRequests())
+                                   .put("holders", type.getHolders())
+                                   .put("buildMillis", type.getBuildMillis()));
+    }
+
+    /**
+     * The work done for a single holder.
+     */
+    public static class HolderProfile {
+
+        private final String type;
+        private final long nanos;
+        private final int fields;
+        private final int maxDepth;
+        private final int paths;
+
+        HolderProfile(String type, long nanos, int fields, int maxDepth, int paths) {
+            this.type = type;
+            this.nanos = nanos;
+            this.fields = fields;
+            this.maxDepth = maxDepth;
+            this.paths = paths;
+        }
+
+        /**
+         * @return The type of the holder, as written to the config.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return The time it took to inspect the holder, in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return The time it took to inspect the holder, in milliseconds.
+         */
+        public long getMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        /**
+         * @return The number of fields inspected for the holder, not counting fragments built for earlier holders.
+         */
+        public int getFields() {
+            return fields;
+        }
+
+        /**
+         * @return The largest number of fields on a path of the holder.
+         */
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        /**
+         * @return The number of paths of the holder, counting the subject id.
+         */
+        public int getPaths() {
+            return paths;
+        }
+    }
+
+    /**
+     * The requests for the fragment of a single type.
+     */
+    public static class TypeProfile {
+
+        private final String type;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder holders = new LongAdder();
+        private final LongAdder buildNanos = new LongAdder();
+
+        TypeProfile(String type) {
+            this.type = type;
+        }
+
+        /**
+         * @return The name of the type.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return The number of times the fragment of the type was requested.
+         */
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        /**
+         * @return The number of holders which requested the fragment of the type.
+         */
+        public long getHolders() {
+            return holders.sum();
+        }
+
+        /**
+         * @return The time it took to build the fragment of the type, including the types it embeds, in nanoseconds.
+         */
+        public long getBuildNanos() {
+            return buildNanos.sum();
+        }
+
+        /**
+         * @return The time it took to build the fragment of the type, including the types it embeds, in milliseconds.
+         */
+        public long getBuildMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(buildNanos.sum());
+        }
+    }
+
+    /**
+     * The work done so far for the holder inspected on a thread.
+     */
+    private static class HolderContext {
+
+        private final Set<String> types = new HashSet<>();
+
+        private int fields;
+    }
+}
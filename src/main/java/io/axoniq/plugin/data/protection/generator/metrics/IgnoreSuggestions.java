@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Suggests {@code ignores} entries for packages whose types were inspected without producing any sensitive data. The
+ * work done inside such a package, and its subpackages, is saved by ignoring it. Only the broadest package which is
+ * safe to ignore is suggested, and never a package holding holders or types with sensitive data, nor a package which
+ * is scanned for holders or contains one.
+ */
+public class IgnoreSuggestions {
+
+    /**
+     * The minimal number of segments of a suggested package, so top level names like {@code com} or {@code org} are
+     * never suggested.
+     */
+    private static final int MIN_SEGMENTS = 2;
+
+    private final Map<String, PackageCost> packages = new ConcurrentHashMap<>();
+
+    private final Set<String> scannedPackages = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Exclude the given packages, their parents and subpackages from the suggestions.
+     *
+     * @param scanned The packages scanned for holders.
+     */
+    public void scanned(Collection<String> scanned) {
+        scannedPackages.addAll(scanned);
+    }
+
+    /**
+     * Record the inspection of a type.
+     *
+     * @param className The name of the type.
+     * @param selfNanos The time spent on the type itself, without the types it embeds.
+     * @param fields    The number of fields inspected for the type itself.
+     * @param empty     True if the type holds no sensitive data.
+     */
+    public void typeInspected(String className, long selfNanos, int fields, boolean empty) {
+        for (String pkg : packagesOf(className)) {
+            PackageCost cost = packages.computeIfAbsent(pkg, PackageCost::new);
+            cost.nanos.add(selfNanos);
+            cost.fields.add(fields);
+            cost.types.increment();
+            if (!empty) {
+                cost.sensitive = true;
+            }
+        }
+    }
+
+    /**
+     * Record a holder, so its packages are never suggested.
+     *
+     * @param className The name of the holder.
+     */
+    public void holder(String className) {
+        for (String pkg : packagesOf(className)) {
+            packages.computeIfAbsent(pkg, PackageCost::new).sensitive = true;
+        }
+    }
+
+    /**
+     * @param top The maximum number of suggestions.
+     * @return The suggestions, the one saving the most time first.
+     */
+    public List<Suggestion> suggestions(int top) {
+        return packages.values()
+                       .stream()
+                       .filter(this::isSafe)
+                       .filter(cost -> !isSafe(packages.get(parent(cost.pkg))))
+                       .map(cost -> new Suggestion(cost.pkg + ".*",
+                                                   cost.nanos.sum(),
+                                                   cost.types.sum(),
+                                                   cost.fields.sum()))
+                       .sorted(Comparator.comparingLong(Suggestion::getSavedNanos).reversed()
+                                         .thenComparing(Comparator.comparingLong(Suggestion::getFields).reversed())
+                                         .thenComparing(Suggestion::getIgnore))
+                       .limit(top)
+                       .collect(Collectors.toList());
+    }
+
+    private boolean isSafe(PackageCost cost) {
+        return cost != null
+                && !cost.sensitive
+                && cost.pkg.split("\\.").length >= MIN_SEGMENTS
+                && !cost.pkg.startsWith("java.")
+                && scannedPackages.stream().noneMatch(
+                scanned -> isSameOrSubpackage(scanned, cost.pkg) || isSameOrSubpackage(cost.pkg, scanned));
+    }
+
+    private static boolean isSameOrSubpackage(String pkg, String parent) {
+        return pkg.equals(parent) || pkg.startsWith(parent + ".");
+    }
+
+    private static String parent(String pkg) {
+        int index = pkg.lastIndexOf('.');
+        return index < 0 ? "" : pkg.substring(0, index);
+    }
+
+    /**
+     * @return The package of the given class and all its parents.
+     */
+    private static List<String> packagesOf(String className) {
+        List<String> result = new ArrayList<>();
+        String pkg = parent(className);
+        while (!pkg.isEmpty()) {
+            result.add(pkg);
+            pkg = parent(pkg);
+        }
+        return result;
+    }
+
+    /**
+     * A suggested {@code ignores} entry and the work it saves.
+     */
+    public static class Suggestion {
+
+        private final String ignore;
+        private final long savedNanos;
+        private final long types;
+        private final long fields;
+
+        Suggestion(String ignore, long savedNanos, long types, long fields) {
+            this.ignore = ignore;
+            this.savedNanos = savedNanos;
+            this.types = types;
+            this.fields = fields;
+        }
+
+        /**
+         * @return The entry to add to the {@code ignores}, like {@code org.joda.time.*}.
+         */
+        public String getIgnore() {
+            return ignore;
+        }
+
+        /**
+         * @return The time spent inside the package, in nanoseconds.
+         */
+        public long getSavedNanos() {
+            return savedNanos;
+        }
+
+        /**
+         * @return The time spent inside the package, in milliseconds.
+         */
+        public double getSavedMillis() {
+            return savedNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        /**
+         * @return The number of inspected types in the package.
+         */
+        public long getTypes() {
+            return types;
+        }
+
+        /**
+         * @return The number of inspected fields in the package.
+         */
+        public long getFields() {
+            return fields;
+        }
+    }
+
+    /**
+     * The work done inside a package and its subpackages.
+     */
+    private static class PackageCost {
+
+        private final String pkg;
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder fields = new LongAdder();
+        private final LongAdder types = new LongAdder();
+        private volatile boolean sensitive;
+
+        PackageCost(String pkg) {
+            this.pkg = pkg;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the {@link GenerationMetrics} of a run against a stored baseline. The duration, the visited types and the
+ * emitted paths are compared per holder, so adding holders does not exceed the budget, while a type rule that makes
+ * the traversal of every holder more expensive does.
+ */
+public class PerformanceBudget {
+
+    private static final String HOLDERS = "holders";
+    private static final String DURATION = "durationMillis";
+    private static final String TYPES = "typesVisited";
+    private static final String PATHS = "paths";
+
+    private final double durationRatio;
+    private final double typesRatio;
+    private final double pathsRatio;
+    private final long minDurationMillis;
+
+    /**
+     * Create a new instance of the {@link PerformanceBudget}.
+     *
+     * @param durationRatio     The allowed ratio between the duration of a run and of the baseline.
+     * @param typesRatio        The allowed ratio between the visited types of a run and of the baseline.
+     * @param pathsRatio        The allowed ratio between the emitted paths of a run and of the baseline.
+     * @param minDurationMillis The duration below which runs are not compared, as short runs are dominated by noise.
+     */
+    public PerformanceBudget(double durationRatio, double typesRatio, double pathsRatio, long minDurationMillis) {
+        this.durationRatio = durationRatio;
+        this.typesRatio = typesRatio;
+        this.pathsRatio = pathsRatio;
+        this.minDurationMillis = minDurationMillis;
+    }
+
+    /**
+     * Create the baseline of a run.
+     *
+     * @param metrics      The metrics of the run.
+     * @param objectMapper The mapper used to create the JSON nodes.
+     * @return The baseline as JSON object.
+     */
+    public static ObjectNode baseline(GenerationMetrics metrics, ObjectMapper objectMapper) {
+        ObjectNode baseline = objectMapper.createObjectNode();
+        baseline.put(HOLDERS, metrics.holders());
+        baseline.put(DURATION, metrics.totalMillis());
+        baseline.put(TYPES, metrics.typesVisited());
+        baseline.put(PATHS, metrics.paths());
+        return baseline;
+    }
+
+    /**
+     * Check the given run against the given baseline.
+     *
+     * @param baseline The baseline, as created by {@link PerformanceBudget#baseline(GenerationMetrics, ObjectMapper)}.
+     * @param metrics  The metrics of the run.
+     * @return A description of every exceeded ratio, empty if the run is within the budget.
+     */
+    public List<String> check(JsonNode baseline, GenerationMetrics metrics) {
+        List<String> violations = new ArrayList<>();
+        long baselineHolders = Math.max(1, baseline.path(HOLDERS).asLong());
+        long holders = Math.max(1, metrics.holders());
+        if (metrics.totalMillis() >= minDurationMillis) {
+            check(violations, "duration", baseline.path(DURATION).asLong(), baselineHolders,
+                  metrics.totalMillis(), holders, durationRatio);
+        }
+        check(violations, "visited types", baseline.path(TYPES).asLong(), baselineHolders,
+              metrics.typesVisited(), holders, typesRatio);
+        check(violations, "paths", baseline.path(PATHS).asLong(), baselineHolders,
+              metrics.paths(), holders, pathsRatio);
+        return violations;
+    }
+
+    private static void check(List<String> violations,
+                              String name,
+                              long baselineValue,
+                              long baselineHolders,
+                              long value,
+                              long holders,
+                              double allowedRatio) {
+        if (baselineValue <= 0) {
+            return;
+        }
+        double ratio = ((double) value / holders) / ((double) baselineValue / baselineHolders);
+        if (ratio > allowedRatio) {
+            violations.add(String.format(Locale.ROOT,
+                                         "%s per holder grew %.2f times (%d for %d holders, baseline %d for %d "
+                                                 + "holders), allowed are %.2f times",
+                                         name, ratio, value, holders, baselineValue, baselineHolders,
+                                         allowedRatio));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.processor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.generator.utils.JsonUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads the fragments written by the {@link DataProtectionProcessor} from the project output directory, so the {@code
+ * generate} goal can merge them instead of scanning and loading the project classes.
+ */
+public abstract class CompiledFragments {
+
+    /**
+     * Location of the fragments, relative to the class output directory.
+     */
+    public static final String DIRECTORY = "META-INF/axon-data-protection/fragments/";
+
+    private static final String EXTENSION = ".json";
+
+    /**
+     * Build the resource name of the fragment of a given holder.
+     *
+     * @param type The full qualified (binary) class name of the holder.
+     * @return The resource name, relative to the class output directory.
+     */
+    public static String resourceName(String type) {
+        return DIRECTORY + type + EXTENSION;
+    }
+
+    /**
+     * Check if the given output directory contains any compiled fragment.
+     *
+     * @param outputDirectory The class output directory of the project.
+     * @return True or false, depending on the check.
+     */
+    public static boolean exist(File outputDirectory) {
+        return fragmentFiles(outputDirectory).length > 0;
+    }
+
+    /**
+     * Find the fragments whose holder class does not exist in the given output directory. Incremental compilation
+     * does not remove the fragments of deleted or renamed holders, so those are left behind.
+     *
+     * @param outputDirectory The class output directory of the project.
+     * @return The fragment files without a holder class.
+     */
+    public static List<File> staleFragments(File outputDirectory) {
+        List<File> stale = new ArrayList<>();
+        for (File file : fragmentFiles(outputDirectory)) {
+            String type = file.getName().substring(0, file.getName().length() - EXTENSION.length());
+            if (!new File(outputDirectory, type.replace('.', '/') + ".class").isFile()) {
+                stale.add(file);
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Read and merge all compiled fragments of holders within the given packages. Holders are sorted by class name.
+     *
+     * @param outputDirectory The class output directory of the project.
+     * @param packages        The packages the holders should be in.
+     * @param objectMapper    The mapper used to read the fragments.
+     * @return A new instance of a {@link DataProtectionConfigList}.
+     * @throws IOException When a fragment could not be read.
+     */
+    public static DataProtectionConfigList read(File outputDirectory,
+                                                List<String> packages,
+                                                ObjectMapper objectMapper) throws IOException {
+        File[] files = fragmentFiles(outputDirectory);
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        List<DataProtectionConfig> configs = new ArrayList<>();
+        for (File file : files) {
+            DataProtectionConfig config = JsonUtils.readConfig(objectMapper.readTree(file));
+            if (packages.stream().anyMatch(pkg -> config.getType().startsWith(pkg + "."))) {
+                configs.add(config);
+            }
+        }
+        return new DataProtectionConfigList(configs);
+    }
+
+    private static File[] fragmentFiles(File outputDirectory) {
+        File[] files = new File(outputDirectory, DIRECTORY).listFiles((dir, name) -> name.endsWith(EXTENSION));
+        return files == null ? new File[0] : files;
+    }
+}
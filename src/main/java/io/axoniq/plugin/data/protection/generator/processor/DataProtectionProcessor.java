@@ -0,0 +1,466 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.processor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.axoniq.plugin.data.protection.annotation.SensitiveData;
+import io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder;
+import io.axoniq.plugin.data.protection.annotation.SubjectId;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.SensitiveDataConfig;
+import io.axoniq.plugin.data.protection.config.SubjectIdConfig;
+import io.axoniq.plugin.data.protection.generator.utils.ReflectionUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import static io.axoniq.plugin.data.protection.generator.utils.PathUtils.*;
+import static io.axoniq.plugin.data.protection.generator.utils.TypeDetector.ignore;
+
+/**
+ * Annotation processor generating the {@link DataProtectionConfig} of every {@link SensitiveDataHolder} during
+ * compilation. It follows the same rules as the {@link io.axoniq.plugin.data.protection.generator.MetamodelGenerator},
+ * but works on the compiler's model instead of loaded classes. Each holder is written to its own fragment in {@link
+ * CompiledFragments#DIRECTORY}, with the holder as its only originating element, so the processor works with
+ * incremental compilation.
+ * <p>
+ * Interfaces and abstract classes are expanded over the subtypes known to the compiler: sealed {@code
+ * permittedSubclasses} and Jackson {@code @JsonSubTypes}. Types to ignore can be passed as a comma separated list
+ * through the {@link DataProtectionProcessor#IGNORES_OPTION} option.
+ */
+public class DataProtectionProcessor extends AbstractProcessor {
+
+    /**
+     * Processor option holding the comma separated class names or packages to ignore, like the {@code ignores} of the
+     * {@code generate} goal.
+     */
+    public static final String IGNORES_OPTION = "axon.dataprotection.ignores";
+
+    private static final String REVISION_ANNOTATION = "org.axonframework.serialization.Revision";
+
+    private static final String JSON_SUB_TYPES_ANNOTATION = "com.fasterxml.jackson.annotation.JsonSubTypes";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Elements elements;
+
+    private Types types;
+
+    private List<String> ignores;
+
+    private List<TypeMirror> leafTypes;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.ignores = parseIgnores(processingEnv.getOptions().get(IGNORES_OPTION));
+        this.leafTypes = Stream.concat(ReflectionUtils.COMMON_JAVA_TYPES.stream(),
+                                       ReflectionUtils.DATE_TIME_JAVA_TYPES.stream())
+                               .map(type -> elements.getTypeElement(type.getCanonicalName()))
+                               .filter(element -> element != null)
+                               .map(element -> types.erasure(element.asType()))
+                               .collect(Collectors.toList());
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Set.of(SensitiveDataHolder.class.getName(), SubjectId.class.getName(), SensitiveData.class.getName());
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Set.of(IGNORES_OPTION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement holderAnnotation = elements.getTypeElement(SensitiveDataHolder.class.getName());
+        if (holderAnnotation == null) {
+            return false;
+        }
+        ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(holderAnnotation))
+                     .forEach(this::process);
+        return false;
+    }
+
+    private void process(TypeElement holder) {
+        try {
+            DataProtectionConfig config = generate(holder);
+            write(holder, config);
+        } catch (ProcessingException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), holder);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.ERROR, "Failed to write data protection config fragment: " + e.getMessage(), holder);
+        }
+    }
+
+    private DataProtectionConfig generate(TypeElement holder) {
+        String type = elements.getBinaryName(holder).toString();
+        List<VariableElement> fields = getAllDeclaredFields(holder);
+        SubjectIdConfig subjectId = fields.stream()
+                                          .filter(field -> hasAnnotation(field, SubjectId.class.getName()))
+                                          .findFirst()
+                                          .map(field -> new SubjectIdConfig(buildPath(PATH_PREFIX, name(field))))
+                                          .orElseThrow(() -> new ProcessingException(
+                                                  "No SubjectId annotated field found in [" + type
+                                                          + "] or one of it's parents"));
+        List<SensitiveDataConfig> sensitiveData = new ArrayList<>();
+        Deque<String> visiting = new ArrayDeque<>();
+        visiting.push(type);
+        extractSensitiveData(fields, sensitiveData, PATH_PREFIX, visiting);
+        return new DataProtectionConfig(type, extractRevision(holder), subjectId, sensitiveData);
+    }
+
+    private void write(TypeElement holder, DataProtectionConfig config) throws IOException {
+        FileObject fragment = processingEnv.getFiler().createResource(
+                StandardLocation.CLASS_OUTPUT, "", CompiledFragments.resourceName(config.getType()), holder);
+        try (OutputStream outputStream = fragment.openOutputStream()) {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(outputStream, config);
+        }
+    }
+
+    private void extractSensitiveData(List<VariableElement> fields,
+                                      List<SensitiveDataConfig> sensitiveDataList,
+                                      String path,
+                                      Deque<String> visiting) {
+        // direct annotated fields (ignoring the SubjectId annotated field)
+        fields.stream()
+              .filter(f -> hasAnnotation(f, SensitiveData.class.getName()))
+              .filter(f -> !hasAnnotation(f, SubjectId.class.getName()))
+              .forEach(f -> sensitiveDataList.add(
+                      new SensitiveDataConfig(buildPath(path, name(f)), extractReplacementValue(f))));
+        // if it's not a primitive type, go deeper recursively (ignoring the SubjectId annotated field)
+        fields.stream()
+              .filter(f -> !hasAnnotation(f, SubjectId.class.getName()))
+              .filter(f -> !ignore(ignores, binaryName(types.erasure(f.asType()))))
+              .filter(f -> shouldGoDeeper(f.asType()))
+              .forEach(f -> checkType(f.asType(), sensitiveDataList, buildPath(path, name(f)), visiting));
+    }
+
+    private void checkType(TypeMirror fieldType,
+                           List<SensitiveDataConfig> sensitiveDataList,
+                           String path,
+                           Deque<String> visiting) {
+        List<TypeMirror> typeArguments = typeArguments(fieldType);
+        if (isMap(fieldType, typeArguments)) {
+            // only Value of the Map, ignore Key
+            extractSensitiveData(typeArguments.get(1), sensitiveDataList, buildMapPath(path), visiting);
+        } else if (fieldType.getKind() == TypeKind.ARRAY) {
+            TypeMirror componentType = ((ArrayType) fieldType).getComponentType();
+            if (shouldGoDeeper(componentType)) {
+                extractSensitiveData(componentType, sensitiveDataList, buildCollectionPath(path), visiting);
+            }
+        } else if (!typeArguments.isEmpty()) {
+            typeArguments.stream()
+                         .filter(this::shouldGoDeeper)
+                         .forEach(argument -> extractSensitiveData(
+                                 argument, sensitiveDataList, buildCollectionPath(path), visiting));
+        } else {
+            extractSensitiveData(fieldType, sensitiveDataList, path, visiting);
+        }
+    }
+
+    private void extractSensitiveData(TypeMirror type,
+                                      List<SensitiveDataConfig> sensitiveDataList,
+                                      String path,
+                                      Deque<String> visiting) {
+        TypeElement element = asTypeElement(type);
+        if (element == null) {
+            return;
+        }
+        String name = elements.getBinaryName(element).toString();
+        if (visiting.contains(name)) {
+            throw new ProcessingException("Recursive type [" + name + "] found on path [" + path
+                                                  + "]. Add it to the " + IGNORES_OPTION + " option.");
+        }
+        visiting.push(name);
+        List<TypeElement> subtypes = isPolymorphic(element) ? concreteSubtypes(element) : Collections.emptyList();
+        if (subtypes.isEmpty()) {
+            extractSensitiveData(getAllDeclaredFields(element), sensitiveDataList, path, visiting);
+        } else {
+            Set<SensitiveDataConfig> expanded = new LinkedHashSet<>();
+            subtypes.stream()
+                    .filter(subtype -> !ignore(ignores, elements.getBinaryName(subtype).toString()))
+                    .forEach(subtype -> {
+                        List<SensitiveDataConfig> subtypeData = new ArrayList<>();
+                        extractSensitiveData(getAllDeclaredFields(subtype), subtypeData, path, visiting);
+                        expanded.addAll(subtypeData);
+                    });
+            sensitiveDataList.addAll(expanded);
+        }
+        visiting.pop();
+    }
+
+    /**
+     * Mirrors {@link ReflectionUtils#shouldGoDeeper(Class)}.
+     */
+    private boolean shouldGoDeeper(TypeMirror type) {
+        TypeMirror erased = types.erasure(type);
+        if (erased.getKind().isPrimitive()) {
+            return false;
+        }
+        if (erased.getKind() == TypeKind.ARRAY) {
+            TypeMirror componentType = ((ArrayType) erased).getComponentType();
+            return !componentType.getKind().isPrimitive() && !isPrimitiveWrapper(componentType);
+        }
+        if (erased.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        return !isPrimitiveWrapper(erased)
+                && leafTypes.stream().noneMatch(leafType -> types.isAssignable(erased, leafType))
+                && asTypeElement(erased).getKind() != ElementKind.ENUM;
+    }
+
+    private boolean isPrimitiveWrapper(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        if (Void.class.getName().equals(binaryName(type))) {
+            return true;
+        }
+        try {
+            types.unboxedType(type);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean isMap(TypeMirror type, List<TypeMirror> typeArguments) {
+        TypeElement map = elements.getTypeElement(Map.class.getName());
+        return types.isAssignable(types.erasure(type), types.erasure(map.asType()))
+                && typeArguments.size() == 2
+                && shouldGoDeeper(typeArguments.get(1));
+    }
+
+    private List<TypeMirror> typeArguments(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return Collections.emptyList();
+        }
+        return ((DeclaredType) type).getTypeArguments()
+                                    .stream()
+                                    .map(this::upperBound)
+                                    .collect(Collectors.toList());
+    }
+
+    private TypeMirror upperBound(TypeMirror type) {
+        if (type.getKind() == TypeKind.WILDCARD) {
+            TypeMirror bound = ((WildcardType) type).getExtendsBound();
+            return bound != null ? bound : elements.getTypeElement(Object.class.getName()).asType();
+        }
+        return types.erasure(type);
+    }
+
+    private boolean isPolymorphic(TypeElement element) {
+        String name = element.getQualifiedName().toString();
+        return (element.getKind() == ElementKind.INTERFACE || element.getModifiers().contains(Modifier.ABSTRACT))
+                && !name.startsWith("java.")
+                && !name.startsWith("javax.");
+    }
+
+    private List<TypeElement> concreteSubtypes(TypeElement element) {
+        Set<TypeElement> visited = new LinkedHashSet<>();
+        collectSubtypes(element, visited);
+        visited.remove(element);
+        visited.removeIf(this::isPolymorphic);
+        return new ArrayList<>(visited);
+    }
+
+    private void collectSubtypes(TypeElement element, Set<TypeElement> visited) {
+        if (!visited.add(element)) {
+            return;
+        }
+        List<TypeElement> direct = new ArrayList<>(permittedSubclasses(element));
+        annotationValue(element, JSON_SUB_TYPES_ANNOTATION, "value")
+                .map(value -> (List<?>) value.getValue())
+                .ifPresent(subtypes -> subtypes.forEach(subtype -> {
+                    AnnotationMirror typeAnnotation = (AnnotationMirror) ((AnnotationValue) subtype).getValue();
+                    annotationValue(typeAnnotation, "value")
+                            .map(value -> asTypeElement((TypeMirror) value.getValue()))
+                            .ifPresent(direct::add);
+                }));
+        direct.forEach(subtype -> collectSubtypes(subtype, visited));
+    }
+
+    /**
+     * {@code TypeElement#getPermittedSubclasses()} is only available from Java 17 on, so it is called reflectively.
+     */
+    @SuppressWarnings("unchecked")
+    private List<TypeElement> permittedSubclasses(TypeElement element) {
+        try {
+            Method method = TypeElement.class.getMethod("getPermittedSubclasses");
+            List<? extends TypeMirror> permitted = (List<? extends TypeMirror>) method.invoke(element);
+            return permitted.stream().map(this::asTypeElement).collect(Collectors.toList());
+        } catch (ReflectiveOperationException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Mirrors {@link ReflectionUtils#getAllDeclaredFields(Class)}, so the fields come in the same order.
+     */
+    private List<VariableElement> getAllDeclaredFields(TypeElement element) {
+        List<VariableElement> fields = new ArrayList<>();
+        getAllParents(element).forEach(parent -> fields.addAll(ElementFilter.fieldsIn(parent.getEnclosedElements())));
+        fields.addAll(ElementFilter.fieldsIn(element.getEnclosedElements()));
+        return fields;
+    }
+
+    /**
+     * Mirrors {@link ReflectionUtils#getAllParents(Class)}.
+     */
+    private List<TypeElement> getAllParents(TypeElement element) {
+        List<TypeElement> parents = new ArrayList<>();
+        TypeElement superclass = asTypeElement(element.getSuperclass());
+        if (superclass != null) {
+            parents.add(superclass);
+            parents.addAll(getAllParents(superclass));
+        }
+        List<TypeElement> interfaces = element.getInterfaces()
+                                              .stream()
+                                              .map(this::asTypeElement)
+                                              .filter(i -> i != null)
+                                              .collect(Collectors.toList());
+        parents.addAll(interfaces);
+        interfaces.forEach(i -> parents.addAll(getAllParents(i)));
+        return parents;
+    }
+
+    private String extractRevision(TypeElement holder) {
+        return annotationValue(holder, REVISION_ANNOTATION, "value")
+                .map(value -> value.getValue().toString())
+                .orElse("");
+    }
+
+    private String extractReplacementValue(VariableElement field) {
+        return annotationValue(field, SensitiveData.class.getName(), "replacementValue")
+                .map(value -> value.getValue().toString())
+                .orElse("");
+    }
+
+    private boolean hasAnnotation(Element element, String annotationName) {
+        return annotation(element, annotationName).isPresent();
+    }
+
+    private Optional<AnnotationValue> annotationValue(Element element, String annotationName, String attribute) {
+        return annotation(element, annotationName).flatMap(annotation -> annotationValue(annotation, attribute));
+    }
+
+    private Optional<AnnotationValue> annotationValue(AnnotationMirror annotation, String attribute) {
+        return elements.getElementValuesWithDefaults(annotation)
+                       .entrySet()
+                       .stream()
+                       .filter(entry -> entry.getKey().getSimpleName().contentEquals(attribute))
+                       .map(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue>::getValue)
+                       .findFirst()
+                       .map(value -> (AnnotationValue) value);
+    }
+
+    private Optional<? extends AnnotationMirror> annotation(Element element, String annotationName) {
+        return element.getAnnotationMirrors()
+                      .stream()
+                      .filter(annotation -> ((TypeElement) annotation.getAnnotationType().asElement())
+                              .getQualifiedName().contentEquals(annotationName))
+                      .findFirst();
+    }
+
+    private TypeElement asTypeElement(TypeMirror type) {
+        if (type == null || type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement) ((DeclaredType) type).asElement();
+    }
+
+    private String binaryName(TypeMirror type) {
+        TypeElement element = asTypeElement(type);
+        return element == null ? type.toString() : elements.getBinaryName(element).toString();
+    }
+
+    private static String name(VariableElement field) {
+        return field.getSimpleName().toString();
+    }
+
+    /**
+     * Parse the value of the {@link DataProtectionProcessor#IGNORES_OPTION}.
+     *
+     * @param option The comma separated class names or packages, or null if the option is not set.
+     * @return The class names or packages to ignore.
+     */
+    public static List<String> parseIgnores(String option) {
+        if (option == null || option.isBlank()) {
+            return Collections.emptyList();
+        }
+        return Arrays.stream(option.split(","))
+                     .map(String::trim)
+                     .filter(ignore -> !ignore.isEmpty())
+                     .collect(Collectors.toList());
+    }
+
+    /**
+     * Signals a holder for which no configuration can be generated. Reported as a compiler error on the holder.
+     */
+    private static class ProcessingException extends RuntimeException {
+
+        ProcessingException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.utils;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Optional;
+
+/**
+ * Utils around the elements of a class path, as returned by {@link org.reflections.util.ClasspathHelper}.
+ */
+public abstract class ClassPathUtils {
+
+    /**
+     * Convert the URL of a class path element to a file.
+     *
+     * @param root The URL of a jar or directory, either as {@code file:} or as {@code jar:file:...!/} URL.
+     * @return The jar or directory, or an empty optional if the URL does not point to an existing file.
+     */
+    public static Optional<File> toFile(URL root) {
+        String url = root.toExternalForm();
+        if (url.startsWith("jar:") && url.endsWith("!/")) {
+            url = url.substring("jar:".length(), url.length() - "!/".length());
+        }
+        try {
+            File file = new File(new URL(url).toURI()).getAbsoluteFile();
+            return file.exists() ? Optional.of(file) : Optional.empty();
+        } catch (MalformedURLException | URISyntaxException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Convert the path of a class file, relative to the root of its class path element, to the binary class name.
+     *
+     * @param classFile The relative path, like {@code io/axoniq/Event$Nested.class}, using {@code /} or the platform
+     *                  separator.
+     * @return The binary class name, like {@code io.axoniq.Event$Nested}.
+     */
+    public static String toClassName(String classFile) {
+        String name = classFile.endsWith(".class") ? classFile.substring(0, classFile.length() - ".class".length())
+                                                   : classFile;
+        return name.replace(File.separatorChar, '.').replace('/', '.');
+    }
+}
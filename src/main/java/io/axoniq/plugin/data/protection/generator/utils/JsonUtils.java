@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.config.SensitiveDataConfig;
+import io.axoniq.plugin.data.protection.config.SubjectIdConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utils around reading the generated configuration back from json. The configuration classes have no default
+ * constructor, so they are built from the json tree instead of being bound by Jackson.
+ */
+public abstract class JsonUtils {
+
+    /**
+     * Read a {@link DataProtectionConfigList} from its json representation.
+     *
+     * @param node The json tree of the list.
+     * @return A new instance of a {@link DataProtectionConfigList}.
+     */
+    public static DataProtectionConfigList readConfigList(JsonNode node) {
+        List<DataProtectionConfig> configs = new ArrayList<>();
+        node.path("config").forEach(config -> configs.add(readConfig(config)));
+        return new DataProtectionConfigList(configs);
+    }
+
+    /**
+     * Read a {@link DataProtectionConfig} from its json representation.
+     *
+     * @param node The json tree of a single holder configuration.
+     * @return A new instance of a {@link DataProtectionConfig}.
+     */
+    public static DataProtectionConfig readConfig(JsonNode node) {
+        return new DataProtectionConfig(node.path("type").asText(),
+                                        node.path("revision").asText(),
+                                        new SubjectIdConfig(node.path("subjectId").path("path").asText()),
+                                        readSensitiveData(node.path("sensitiveData")));
+    }
+
+    /**
+     * Read a list of {@link SensitiveDataConfig} from its json representation.
+     *
+     * @param node The json array of sensitive data entries.
+     * @return A new list of {@link SensitiveDataConfig}.
+     */
+    public static List<SensitiveDataConfig> readSensitiveData(JsonNode node) {
+        List<SensitiveDataConfig> sensitiveData = new ArrayList<>();
+        node.forEach(entry -> sensitiveData.add(new SensitiveDataConfig(entry.path("path").asText(),
+                                                                        entry.path("replacementValue").asText())));
+        return sensitiveData;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.utils;
+
+import java.util.regex.Pattern;
+
+/**
+ * Utils around the json paths used in the generated configuration. Shared by all generators, so they build the same
+ * paths for the same types.
+ */
+public abstract class PathUtils {
+
+    /**
+     * Represents a path prefix for json path.
+     */
+    public static final String PATH_PREFIX = "$";
+
+    /**
+     * Represents a path divider for json path.
+     */
+    public static final String PATH_DIVIDER = ".";
+
+    /**
+     * Represents every element of a given List.
+     */
+    public static final String PATH_LIST_ELEMENTS = "[*]";
+
+    /**
+     * Represents every element of a given Map entry.
+     */
+    public static final String PATH_MAP_ELEMENTS = "*";
+
+    /**
+     * Build a path based on the previous path and the current one.
+     *
+     * @param previousPath Previous path on the json
+     * @param path         Current path on the json
+     * @return A new path built based on the parameters divided by the {@link PathUtils#PATH_DIVIDER}
+     */
+    public static String buildPath(String previousPath, String path) {
+        return previousPath + PATH_DIVIDER + path;
+    }
+
+    /**
+     * Build a path pointing to every element of the collection or array on the given path.
+     *
+     * @param path Current path on the json
+     * @return A new path ending with {@link PathUtils#PATH_LIST_ELEMENTS}
+     */
+    public static String buildCollectionPath(String path) {
+        return path + PATH_LIST_ELEMENTS;
+    }
+
+    /**
+     * Build a path pointing to every value of the map on the given path.
+     *
+     * @param path Current path on the json
+     * @return A new path ending with {@link PathUtils#PATH_MAP_ELEMENTS}, divided by the {@link
+     * PathUtils#PATH_DIVIDER}
+     */
+    public static String buildMapPath(String path) {
+        return path + PATH_DIVIDER + PATH_MAP_ELEMENTS;
+    }
+
+    /**
+     * Count the fields on the given path. Elements of collections and maps are not counted, so {@code $.a[*].b} and
+     * {@code $.a.*.b} both have a depth of two.
+     *
+     * @param path A path built by this class.
+     * @return The number of fields on the path.
+     */
+    public static int depth(String path) {
+        int depth = 0;
+        for (String segment : path.split(Pattern.quote(PATH_DIVIDER))) {
+            if (!segment.equals(PATH_PREFIX) && !segment.equals(PATH_MAP_ELEMENTS)) {
+                depth++;
+            }
+        }
+        return depth;
+    }
+}
@@ -46,6 +46,24 @@ public abstract class ReflectionUtils {
      */
     private static final String EMPTY_STRING = "";
 
+    /**
+     * Common Java types which are treated as a single value, so their fields are never inspected.
+     */
+    public static final List<Class<?>> COMMON_JAVA_TYPES = List.of(String.class, BigDecimal.class, BigInteger.class);
+
+    /**
+     * Date Time Java types which are treated as a single value, so their fields are never inspected.
+     */
+    public static final List<Class<?>> DATE_TIME_JAVA_TYPES = List.of(Date.class,
+                                                                      LocalDate.class,
+                                                                      LocalTime.class,
+                                                                      LocalDateTime.class,
+                                                                      OffsetDateTime.class,
+                                                                      ZonedDateTime.class,
+                                                                      Instant.class,
+                                                                      Period.class,
+                                                                      Duration.class);
+
     /**
      * Check if it should go deeper checking for extra fields inside the given class. This is not true for primitives,
      * wrappers, enums and common java types.
@@ -91,9 +109,7 @@ public abstract class ReflectionUtils {
      * @return True or false, depending on the check.
      */
     private static boolean isCommonJavaType(Class<?> clazz) {
-        return ClassUtils.isAssignable(String.class, clazz)
-                || ClassUtils.isAssignable(BigDecimal.class, clazz)
-                || ClassUtils.isAssignable(BigInteger.class, clazz);
+        return COMMON_JAVA_TYPES.stream().anyMatch(type -> ClassUtils.isAssignable(type, clazz));
     }
 
     /**
@@ -103,15 +119,7 @@ public abstract class ReflectionUtils {
      * @return True or false, depending on the check.
      */
     private static boolean isDateTimeJavaType(Class<?> clazz) {
-        return ClassUtils.isAssignable(Date.class, clazz)
-                || ClassUtils.isAssignable(LocalDate.class, clazz)
-                || ClassUtils.isAssignable(LocalTime.class, clazz)
-                || ClassUtils.isAssignable(LocalDateTime.class, clazz)
-                || ClassUtils.isAssignable(OffsetDateTime.class, clazz)
-                || ClassUtils.isAssignable(ZonedDateTime.class, clazz)
-                || ClassUtils.isAssignable(Instant.class, clazz)
-                || ClassUtils.isAssignable(Period.class, clazz)
-                || ClassUtils.isAssignable(Duration.class, clazz);
+        return DATE_TIME_JAVA_TYPES.stream().anyMatch(type -> ClassUtils.isAssignable(type, clazz));
     }
 
     /**
@@ -58,16 +58,27 @@ public abstract class TypeDetector {
      * @return True or false, depending on the check.
      */
     public static boolean ignore(List<String> ignores, Class<?> clazz) {
-        return ignoreClass(ignores, clazz) || ignorePackage(ignores, clazz);
+        return ignore(ignores, clazz.getName());
     }
 
-    private static boolean ignoreClass(List<String> ignores, Class<?> clazz) {
-        return ignores.contains(clazz.getName());
+    /**
+     * Check if a given type should be ignored or not, based on its full qualified (binary) class name.
+     *
+     * @param ignores   List of classes that should be ignored.
+     * @param className Full qualified class name which will be used to check if it should be ignored or not.
+     * @return True or false, depending on the check.
+     */
+    public static boolean ignore(List<String> ignores, String className) {
+        return ignoreClass(ignores, className) || ignorePackage(ignores, className);
+    }
+
+    private static boolean ignoreClass(List<String> ignores, String className) {
+        return ignores.contains(className);
     }
 
-    private static boolean ignorePackage(List<String> ignores, Class<?> clazz) {
+    private static boolean ignorePackage(List<String> ignores, String className) {
         return ignores.stream()
                       .filter(ignore -> ignore.endsWith(".*"))
-                      .anyMatch(ignore -> clazz.getName().matches(ignore));
+                      .anyMatch(className::matches);
     }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.watch;
+
+import io.axoniq.plugin.data.protection.generator.cache.ClassFingerprints;
+import io.axoniq.plugin.data.protection.generator.utils.ClassPathUtils;
+import org.codehaus.plexus.util.Scanner;
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads the class files changed during an incremental IDE build, like an Eclipse m2e build, from the {@link
+ * BuildContext}. As the context only reports changes inside the module, changes of the rest of the class path are
+ * detected by a fingerprint kept in the context between builds.
+ */
+public abstract class BuildDelta {
+
+    private static final String[] CLASS_FILES = {"**/*.class"};
+    private static final String CLASSPATH_FINGERPRINT = BuildDelta.class.getName() + ".classpath";
+    private static final String CLASSPATH_TYPES = BuildDelta.class.getName() + ".classpathTypes";
+
+    /**
+     * Find the classes in the given output directory, which were created, modified or deleted since the previous
+     * build.
+     *
+     * @param buildContext    The build context of the current build.
+     * @param outputDirectory The directory holding the compiled classes.
+     * @return The binary names of the changed classes, or an empty optional when the build is not incremental and all
+     * classes should be considered changed.
+     */
+    public static Optional<Set<String>> changedClasses(BuildContext buildContext, File outputDirectory) {
+        if (!buildContext.isIncremental()) {
+            return Optional.empty();
+        }
+        Set<String> changes = new TreeSet<>();
+        collect(buildContext.newScanner(outputDirectory), changes);
+        collect(buildContext.newDeleteScanner(outputDirectory), changes);
+        return Optional.of(changes);
+    }
+
+    private static void collect(Scanner scanner, Set<String> changes) {
+        scanner.setIncludes(CLASS_FILES);
+        scanner.scan();
+        for (String classFile : scanner.getIncludedFiles()) {
+            changes.add(ClassPathUtils.toClassName(classFile));
+        }
+    }
+
+    /**
+     * Check whether the class path outside the output directory, like a sibling workspace module or a dependency jar,
+     * changed since it was recorded by {@link #recordClasspath(BuildContext, List, File, List, Collection)}.
+     *
+     * @param buildContext      The build context of the current build.
+     * @param classpathElements The class path elements, in class path order.
+     * @param outputDirectory   The directory holding the compiled classes of the module.
+     * @param scanRoots         The directories scanned for holders and subtypes.
+     * @return True if the class path changed, or if no class path was recorded yet.
+     */
+    public static boolean classpathChanged(BuildContext buildContext, List<String> classpathElements,
+                                           File outputDirectory, List<File> scanRoots) {
+        Object fingerprint = buildContext.getValue(CLASSPATH_FINGERPRINT);
+        Object types = buildContext.getValue(CLASSPATH_TYPES);
+        if (fingerprint == null || !(types instanceof Collection)) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        Collection<String> recordedTypes = (Collection<String>) types;
+        return !fingerprint.equals(classpathFingerprint(classpathElements, outputDirectory, scanRoots, recordedTypes));
+    }
+
+    /**
+     * Record the class path the config was generated from, for the next incremental build. Only the given types are
+     * recorded of the class directories outside the output directory, which are not scanned.
+     *
+     * @param buildContext      The build context of the current build.
+     * @param classpathElements The class path elements, in class path order.
+     * @param outputDirectory   The directory holding the compiled classes of the module.
+     * @param scanRoots         The directories scanned for holders and subtypes.
+     * @param types             The binary names of the types the config depends on, or an empty collection to record
+     *                          every class file.
+     */
+    public static void recordClasspath(BuildContext buildContext, List<String> classpathElements, File outputDirectory,
+                                       List<File> scanRoots, Collection<String> types) {
+        Set<String> recordedTypes = new TreeSet<>(types);
+        buildContext.setValue(CLASSPATH_TYPES, recordedTypes);
+        buildContext.setValue(CLASSPATH_FINGERPRINT,
+                              classpathFingerprint(classpathElements, outputDirectory, scanRoots, recordedTypes));
+    }
+
+    /**
+     * Fingerprint the given class path by the size and modification time of its files. Jars are fingerprinted as a
+     * whole, and the output directory of the module itself is left out, as its changes are reported by the {@link
+     * BuildContext}. Every file of a scan root is fingerprinted, as new holders and subtypes may show up there. Of the
+     * other class directories only the class files of the given types are, so a sibling workspace module does not
+     * have to be walked on every build.
+     *
+     * @param classpathElements The class path elements, in class path order.
+     * @param outputDirectory   The directory holding the compiled classes of the module.
+     * @param scanRoots         The directories scanned for holders and subtypes.
+     * @param types             The binary names of the types the config depends on, or an empty collection to
+     *                          fingerprint every file.
+     * @return The hex encoded SHA-256 hash of the class path.
+     */
+    public static String classpathFingerprint(List<String> classpathElements, File outputDirectory,
+                                              List<File> scanRoots, Collection<String> types) {
+        MessageDigest digest = sha256();
+        Set<File> walkedDirectories = scanRoots.stream().map(File::getAbsoluteFile).collect(Collectors.toSet());
+        for (String element : classpathElements) {
+            File file = new File(element);
+            if (file.getAbsoluteFile().equals(outputDirectory.getAbsoluteFile())) {
+                continue;
+            }
+            digest.update((element + "\n").getBytes(StandardCharsets.UTF_8));
+            if (file.isFile()) {
+                digest.update((file.length() + ":" + file.lastModified() + "\n").getBytes(StandardCharsets.UTF_8));
+            } else if (!file.isDirectory()) {
+                continue;
+            } else if (types.isEmpty() || walkedDirectories.contains(file.getAbsoluteFile())) {
+                fingerprintDirectory(file.toPath(), digest);
+            } else {
+                fingerprintTypes(file, types, digest);
+            }
+        }
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+    private static void fingerprintTypes(File directory, Collection<String> types, MessageDigest digest) {
+        for (String type : types) {
+            File classFile = new File(directory, ClassFingerprints.resourceName(type));
+            String state = classFile.isFile() ? classFile.length() + ":" + classFile.lastModified() : "missing";
+            digest.update((type + ":" + state + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void fingerprintDirectory(Path directory, MessageDigest digest) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                digest.update((file + ":" + attributes.size() + ":" + attributes.lastModifiedTime().toMillis()
+                        + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to fingerprint " + directory, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
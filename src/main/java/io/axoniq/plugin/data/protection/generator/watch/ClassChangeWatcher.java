@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.watch;
+
+import io.axoniq.plugin.data.protection.generator.utils.ClassPathUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Watches a class output directory, including all its subdirectories, for created, modified and deleted class files.
+ * The compiler writes many files in a short burst, so changes are only reported once no further change happened for
+ * the configured debounce time.
+ */
+public class ClassChangeWatcher implements Closeable {
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final Path root;
+    private final long debounceMillis;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /**
+     * Start watching the given directory.
+     *
+     * @param root           The class output directory, like {@code target/classes}.
+     * @param debounceMillis The time without changes after which a burst of changes is reported.
+     * @throws IOException If the directory can not be watched.
+     */
+    public ClassChangeWatcher(Path root, long debounceMillis) throws IOException {
+        this.root = root;
+        this.debounceMillis = debounceMillis;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        Files.createDirectories(root);
+        registerAll(root);
+    }
+
+    /**
+     * Wait for changed class files.
+     *
+     * @param timeoutMillis The maximum time to wait for the first change.
+     * @return The binary names of the created, modified and deleted classes, or an empty set if nothing changed within
+     * the timeout. When the file system dropped events, the set contains all classes of the directory.
+     * @throws IOException          If a new subdirectory can not be watched.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public Set<String> awaitChanges(long timeoutMillis) throws IOException, InterruptedException {
+        WatchKey key = watchService.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (key == null) {
+            return Collections.emptySet();
+        }
+        Set<String> changes = new TreeSet<>();
+        boolean overflow = false;
+        while (key != null) {
+            overflow |= collect(key, changes);
+            key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+        }
+        if (overflow) {
+            changes.addAll(allClasses());
+        }
+        return changes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Collect the changes of the given key and watch newly created subdirectories.
+     *
+     * @return True if events were dropped.
+     */
+    private boolean collect(WatchKey key, Set<String> changes) throws IOException {
+        Path directory = directories.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                overflow = true;
+                continue;
+            }
+            Path changed = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                registerAll(changed);
+                try (Stream<Path> files = Files.walk(changed)) {
+                    files.filter(ClassChangeWatcher::isClassFile).forEach(file -> changes.add(className(file)));
+                }
+            } else if (isClassFile(changed)) {
+                changes.add(className(changed));
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+        return overflow;
+    }
+
+    private void registerAll(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.filter(Files::isDirectory).collect(Collectors.toList())) {
+                directories.put(path.register(watchService,
+                                              StandardWatchEventKinds.ENTRY_CREATE,
+                                              StandardWatchEventKinds.ENTRY_MODIFY,
+                                              StandardWatchEventKinds.ENTRY_DELETE), path);
+            }
+        }
+    }
+
+    private Set<String> allClasses() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(ClassChangeWatcher::isClassFile)
+                        .map(this::className)
+                        .collect(Collectors.toCollection(TreeSet::new));
+        }
+    }
+
+    private static boolean isClassFile(Path path) {
+        return path.getFileName().toString().endsWith(CLASS_SUFFIX);
+    }
+
+    private String className(Path classFile) {
+        return ClassPathUtils.toClassName(root.relativize(classFile).toString());
+    }
+}
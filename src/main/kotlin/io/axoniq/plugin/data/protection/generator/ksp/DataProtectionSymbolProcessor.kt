@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.ksp
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.google.devtools.ksp.getAllSuperTypes
+import com.google.devtools.ksp.getDeclaredProperties
+import com.google.devtools.ksp.processing.CodeGenerator
+import com.google.devtools.ksp.processing.Dependencies
+import com.google.devtools.ksp.processing.KSPLogger
+import com.google.devtools.ksp.processing.Resolver
+import com.google.devtools.ksp.processing.SymbolProcessor
+import com.google.devtools.ksp.symbol.ClassKind
+import com.google.devtools.ksp.symbol.KSAnnotated
+import com.google.devtools.ksp.symbol.KSAnnotation
+import com.google.devtools.ksp.symbol.KSClassDeclaration
+import com.google.devtools.ksp.symbol.KSPropertyDeclaration
+import com.google.devtools.ksp.symbol.KSType
+import com.google.devtools.ksp.symbol.Modifier
+import com.google.devtools.ksp.validate
+import io.axoniq.plugin.data.protection.annotation.SensitiveData
+import io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder
+import io.axoniq.plugin.data.protection.annotation.SubjectId
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig
+import io.axoniq.plugin.data.protection.config.SensitiveDataConfig
+import io.axoniq.plugin.data.protection.config.SubjectIdConfig
+import io.axoniq.plugin.data.protection.generator.processor.CompiledFragments
+import io.axoniq.plugin.data.protection.generator.utils.PathUtils.PATH_PREFIX
+import io.axoniq.plugin.data.protection.generator.utils.PathUtils.buildCollectionPath
+import io.axoniq.plugin.data.protection.generator.utils.PathUtils.buildMapPath
+import io.axoniq.plugin.data.protection.generator.utils.PathUtils.buildPath
+import io.axoniq.plugin.data.protection.generator.utils.ReflectionUtils
+import io.axoniq.plugin.data.protection.generator.utils.TypeDetector
+
+/**
+ * Kotlin Symbol Processor generating the [DataProtectionConfig] of every [SensitiveDataHolder] from Kotlin
+ * declarations. It writes the same fragments as the
+ * [io.axoniq.plugin.data.protection.generator.processor.DataProtectionProcessor] and follows the same path building
+ * rules as the [io.axoniq.plugin.data.protection.generator.MetamodelGenerator], with two Kotlin specific differences:
+ * - a property overridden in a subclass is only taken into account once, with the annotations of the whole override
+ *   chain, instead of once per backing field;
+ * - nullable types are treated as their non-null counterpart.
+ */
+class DataProtectionSymbolProcessor(
+    private val codeGenerator: CodeGenerator,
+    private val logger: KSPLogger,
+    private val ignores: List<String>
+) : SymbolProcessor {
+
+    private val objectMapper = ObjectMapper()
+
+    override fun process(resolver: Resolver): List<KSAnnotated> {
+        val (valid, deferred) = resolver.getSymbolsWithAnnotation(SensitiveDataHolder::class.java.name)
+            .partition { it.validate() }
+        valid.filterIsInstance<KSClassDeclaration>().forEach { process(it) }
+        return deferred
+    }
+
+    private fun process(holder: KSClassDeclaration) {
+        try {
+            write(holder, generate(holder))
+        } catch (e: ProcessingException) {
+            logger.error(e.message ?: "Failed to generate the data protection config", holder)
+        }
+    }
+
+    private fun generate(holder: KSClassDeclaration): DataProtectionConfig {
+        val type = binaryName(holder)
+        val properties = allProperties(holder)
+        val subjectId = properties.firstOrNull { it.hasAnnotation(SubjectId::class.java.name) }
+            ?.let { SubjectIdConfig(buildPath(PATH_PREFIX, it.name)) }
+            ?: throw ProcessingException("No SubjectId annotated field found in [$type] or one of it's parents")
+        val sensitiveData = mutableListOf<SensitiveDataConfig>()
+        extractSensitiveData(properties, sensitiveData, PATH_PREFIX, ArrayDeque(listOf(type)))
+        val revision = holder.annotation(REVISION_ANNOTATION)?.argument("value")?.toString() ?: ""
+        return DataProtectionConfig(type, revision, subjectId, sensitiveData)
+    }
+
+    private fun write(holder: KSClassDeclaration, config: DataProtectionConfig) {
+        val directory = CompiledFragments.DIRECTORY.trimEnd('/').replace('/', '.')
+        codeGenerator.createNewFile(Dependencies(false, *listOfNotNull(holder.containingFile).toTypedArray()),
+                                    directory, config.type, "json")
+            .use { objectMapper.writerWithDefaultPrettyPrinter().writeValue(it, config) }
+    }
+
+    private fun extractSensitiveData(
+        properties: List<Property>,
+        sensitiveDataList: MutableList<SensitiveDataConfig>,
+        path: String,
+        visiting: ArrayDeque<String>
+    ) {
+        // direct annotated properties (ignoring the SubjectId annotated property)
+        properties.filter { it.hasAnnotation(SensitiveData::class.java.name) }
+            .filterNot { it.hasAnnotation(SubjectId::class.java.name) }
+            .forEach {
+                val replacementValue = it.annotation(SensitiveData::class.java.name)
+                    ?.argument("replacementValue")?.toString() ?: ""
+                sensitiveDataList.add(SensitiveDataConfig(buildPath(path, it.name), replacementValue))
+            }
+        // if it's not a primitive type, go deeper recursively (ignoring the SubjectId annotated property)
+        properties.filterNot { it.hasAnnotation(SubjectId::class.java.name) }
+            .map { it to it.type() }
+            .filterNot { (_, type) -> TypeDetector.ignore(ignores, binaryName(type.declaration())) }
+            .filter { (_, type) -> shouldGoDeeper(type) }
+            .forEach { (property, type) ->
+                checkType(type, sensitiveDataList, buildPath(path, property.name), visiting)
+            }
+    }
+
+    private fun checkType(
+        type: KSType,
+        sensitiveDataList: MutableList<SensitiveDataConfig>,
+        path: String,
+        visiting: ArrayDeque<String>
+    ) {
+        val typeArguments = type.arguments.map { it.type?.resolve()?.makeNotNullable() }
+        val declaration = type.declaration()
+        when {
+            isMap(declaration) && typeArguments.size == 2 && typeArguments[1]?.let { shouldGoDeeper(it) } == true ->
+                // only Value of the Map, ignore Key
+                extractSensitiveData(typeArguments[1]!!, sensitiveDataList, buildMapPath(path), visiting)
+            declaration.qualifiedName?.asString() == "kotlin.Array"
+                    && typeArguments.singleOrNull()?.let { shouldGoDeeper(it) } == true ->
+                extractSensitiveData(typeArguments[0]!!, sensitiveDataList, buildCollectionPath(path), visiting)
+            typeArguments.isNotEmpty() ->
+                typeArguments.filterNotNull()
+                    .filter { shouldGoDeeper(it) }
+                    .forEach { extractSensitiveData(it, sensitiveDataList, buildCollectionPath(path), visiting) }
+            else -> extractSensitiveData(type, sensitiveDataList, path, visiting)
+        }
+    }
+
+    private fun extractSensitiveData(
+        type: KSType,
+        sensitiveDataList: MutableList<SensitiveDataConfig>,
+        path: String,
+        visiting: ArrayDeque<String>
+    ) {
+        val declaration = type.declaration as? KSClassDeclaration ?: return
+        val name = binaryName(declaration)
+        if (visiting.contains(name)) {
+            throw ProcessingException(
+                "Recursive type [$name] found on path [$path]. Add it to the $IGNORES_OPTION option."
+            )
+        }
+        visiting.addLast(name)
+        val subtypes = if (isPolymorphic(declaration)) concreteSubtypes(declaration) else emptyList()
+        if (subtypes.isEmpty()) {
+            extractSensitiveData(allProperties(declaration), sensitiveDataList, path, visiting)
+        } else {
+            val expanded = linkedSetOf<SensitiveDataConfig>()
+            subtypes.filterNot { TypeDetector.ignore(ignores, binaryName(it)) }
+                .forEach {
+                    val subtypeData = mutableListOf<SensitiveDataConfig>()
+                    extractSensitiveData(allProperties(it), subtypeData, path, visiting)
+                    expanded.addAll(subtypeData)
+                }
+            sensitiveDataList.addAll(expanded)
+        }
+        visiting.removeLast()
+    }
+
+    /**
+     * Mirrors [ReflectionUtils.shouldGoDeeper], mapping the Kotlin built-in types to their Java counterparts.
+     */
+    private fun shouldGoDeeper(type: KSType): Boolean {
+        val declaration = type.declaration()
+        val name = declaration.qualifiedName?.asString() ?: return false
+        if (name in KOTLIN_LEAF_TYPES || declaration.classKind == ClassKind.ENUM_CLASS) {
+            return false
+        }
+        return (sequenceOf(name) + declaration.getAllSuperTypes().mapNotNull { it.declaration.qualifiedName?.asString() })
+            .none { it in JAVA_LEAF_TYPES }
+    }
+
+    private fun isMap(declaration: KSClassDeclaration): Boolean =
+        (sequenceOf(declaration.qualifiedName?.asString()) +
+                declaration.getAllSuperTypes().map { it.declaration.qualifiedName?.asString() })
+            .any { it in MAP_TYPES }
+
+    private fun isPolymorphic(declaration: KSClassDeclaration): Boolean {
+        val name = declaration.qualifiedName?.asString() ?: return false
+        return (declaration.classKind == ClassKind.INTERFACE
+                || Modifier.ABSTRACT in declaration.modifiers
+                || Modifier.SEALED in declaration.modifiers)
+                && !name.startsWith("java.")
+                && !name.startsWith("javax.")
+                && !name.startsWith("kotlin.")
+    }
+
+    private fun concreteSubtypes(declaration: KSClassDeclaration): List<KSClassDeclaration> {
+        val visited = linkedSetOf<KSClassDeclaration>()
+        collectSubtypes(declaration, visited)
+        visited.remove(declaration)
+        return visited.filterNot { isPolymorphic(it) }
+    }
+
+    private fun collectSubtypes(declaration: KSClassDeclaration, visited: MutableSet<KSClassDeclaration>) {
+        if (!visited.add(declaration)) {
+            return
+        }
+        val direct = declaration.getSealedSubclasses().toMutableList()
+        (declaration.annotation(JSON_SUB_TYPES_ANNOTATION)?.argument("value") as? List<*>)
+            ?.filterIsInstance<KSAnnotation>()
+            ?.mapNotNull { (it.argument("value") as? KSType)?.declaration as? KSClassDeclaration }
+            ?.let { direct.addAll(it) }
+        direct.forEach { collectSubtypes(it, visited) }
+    }
+
+    /**
+     * Collects the properties with a backing field in the same order as
+     * [ReflectionUtils.getAllDeclaredFields]: parents first, then the class itself. A property overridden along the
+     * hierarchy is listed once, at the position of its first declaration, and carries the annotations of the whole
+     * override chain.
+     */
+    private fun allProperties(declaration: KSClassDeclaration): List<Property> {
+        val parents = allParents(declaration)
+        val byName = linkedMapOf<String, Property>()
+        (parents + declaration).forEach { owner ->
+            owner.getDeclaredProperties()
+                .filter { it.hasBackingField }
+                .forEach { byName.getOrPut(it.simpleName.asString()) { Property(it.simpleName.asString()) } }
+        }
+        // most specific declaration first, so its annotations win over the overridden ones
+        (listOf(declaration) + parents).forEach { owner ->
+            owner.getDeclaredProperties().forEach { byName[it.simpleName.asString()]?.overrideChain?.add(it) }
+        }
+        return byName.values.toList()
+    }
+
+    /**
+     * Mirrors [ReflectionUtils.getAllParents].
+     */
+    private fun allParents(declaration: KSClassDeclaration): List<KSClassDeclaration> {
+        val parents = mutableListOf<KSClassDeclaration>()
+        val superTypes = declaration.superTypes.mapNotNull { it.resolve().declaration as? KSClassDeclaration }.toList()
+        superTypes.filter { it.classKind != ClassKind.INTERFACE }.forEach {
+            parents.add(it)
+            parents.addAll(allParents(it))
+        }
+        val interfaces = superTypes.filter { it.classKind == ClassKind.INTERFACE }
+        parents.addAll(interfaces)
+        interfaces.forEach { parents.addAll(allParents(it)) }
+        return parents
+    }
+
+    private fun KSType.declaration(): KSClassDeclaration =
+        declaration as? KSClassDeclaration ?: throw ProcessingException("Unsupported type [$this]")
+
+    private fun binaryName(declaration: KSClassDeclaration): String {
+        val packageName = declaration.packageName.asString()
+        val qualifiedName = declaration.qualifiedName?.asString() ?: return declaration.simpleName.asString()
+        val simpleNames = qualifiedName.removePrefix(packageName).removePrefix(".").replace('.', '$')
+        return if (packageName.isEmpty()) simpleNames else "$packageName.$simpleNames"
+    }
+
+    private fun KSAnnotated.annotation(name: String): KSAnnotation? =
+        annotations.firstOrNull { it.annotationType.resolve().declaration.qualifiedName?.asString() == name }
+
+    private fun KSAnnotation.argument(name: String): Any? =
+        arguments.firstOrNull { it.name?.asString() == name }?.value
+
+    /**
+     * A property of a class, with all its declarations from the most specific one to the first overridden one.
+     */
+    private inner class Property(val name: String) {
+
+        val overrideChain = mutableListOf<KSPropertyDeclaration>()
+
+        fun type(): KSType = overrideChain.first().type.resolve().makeNotNullable()
+
+        fun hasAnnotation(name: String): Boolean = annotation(name) != null
+
+        fun annotation(name: String): KSAnnotation? =
+            overrideChain.firstNotNullOfOrNull { it.annotation(name) }
+    }
+
+    private class ProcessingException(message: String) : RuntimeException(message)
+
+    companion object {
+
+        /**
+         * Processor option holding the comma separated class names or packages to ignore, like the `ignores` of the
+         * `generate` goal.
+         */
+        const val IGNORES_OPTION = "axon.dataprotection.ignores"
+
+        private const val REVISION_ANNOTATION = "org.axonframework.serialization.Revision"
+
+        private const val JSON_SUB_TYPES_ANNOTATION = "com.fasterxml.jackson.annotation.JsonSubTypes"
+
+        private val KOTLIN_LEAF_TYPES = setOf(
+            "kotlin.String", "kotlin.Boolean", "kotlin.Byte", "kotlin.Char", "kotlin.Short", "kotlin.Int",
+            "kotlin.Long", "kotlin.Float", "kotlin.Double", "kotlin.Unit",
+            "kotlin.BooleanArray", "kotlin.ByteArray", "kotlin.CharArray", "kotlin.ShortArray", "kotlin.IntArray",
+            "kotlin.LongArray", "kotlin.FloatArray", "kotlin.DoubleArray"
+        )
+
+        private val JAVA_LEAF_TYPES = (ReflectionUtils.COMMON_JAVA_TYPES + ReflectionUtils.DATE_TIME_JAVA_TYPES)
+            .map { it.name }
+            .toSet()
+
+        private val MAP_TYPES = setOf("kotlin.collections.Map", "kotlin.collections.MutableMap", "java.util.Map")
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import io.axoniq.plugin.data.protection.annotation.SensitiveData;
+import io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder;
+import io.axoniq.plugin.data.protection.annotation.SubjectId;
+
+import java.util.List;
+
+/**
+ * A composite model, where a subtype embeds its own interface again. It is kept out of the polymorphic types test, as
+ * the annotation processor rejects the recursive holder when that test is compiled with it.
+ */
+class CompositeShapes {
+
+    @SensitiveDataHolder
+    static class ShapeAdded {
+
+        @SubjectId
+        String subjectId;
+
+        Shape shape;
+    }
+
+    @JsonSubTypes({
+            @JsonSubTypes.Type(Group.class),
+            @JsonSubTypes.Type(Circle.class)
+    })
+    interface Shape {
+
+    }
+
+    static class Group implements Shape {
+
+        List<Shape> children;
+    }
+
+    static class Circle implements Shape {
+
+        @SensitiveData(replacementValue = "label")
+        String label;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator;
+
+import io.axoniq.plugin.data.protection.annotation.SensitiveData;
+import io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder;
+import io.axoniq.plugin.data.protection.annotation.SubjectId;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.config.SensitiveDataConfig;
+import io.axoniq.plugin.data.protection.generator.cache.ClassFingerprints;
+import io.axoniq.plugin.data.protection.generator.cache.ScanIndexCache;
+import io.axoniq.plugin.data.protection.generator.cache.TypeFragmentCache;
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoader;
+import io.axoniq.plugin.data.protection.generator.metrics.GenerationMetrics;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class GeneratedHoldersTest {
+
+    private static final String PACKAGE = GeneratedHoldersTest.class.getPackageName();
+
+    private final GeneratedHolders generatedHolders = new GeneratedHolders();
+
+    @Test
+    void unchangedHoldersAreReused(@TempDir Path classes) throws Exception {
+        copyClasses(classes, CustomerMoved.class, Address.class, PaymentAdded.class, Payment.class, Card.class);
+        DataProtectionConfigList first = generate(classes, Guardrails.NONE, new GenerationMetrics());
+        GenerationMetrics metrics = new GenerationMetrics();
+
+        DataProtectionConfigList second = generate(classes, Guardrails.NONE, metrics);
+
+        Assertions.assertEquals(first, second);
+        Assertions.assertEquals(2, metrics.holdersReused());
+        Assertions.assertTrue(generatedHolders.dependencies(CustomerMoved.class.getName())
+                                              .containsAll(List.of(CustomerMoved.class.getName(),
+                                                                   Address.class.getName())));
+    }
+
+    @Test
+    void holdersBuiltFromChangedTypesAreGeneratedAgain(@TempDir Path classes) throws Exception {
+        copyClasses(classes, CustomerMoved.class, Address.class, PaymentAdded.class, Payment.class, Card.class);
+        generate(classes, Guardrails.NONE, new GenerationMetrics());
+
+        Assertions.assertEquals(1, generatedHolders.invalidate(Set.of(Address.class.getName())));
+        GenerationMetrics metrics = new GenerationMetrics();
+        generate(classes, Guardrails.NONE, metrics);
+
+        Assertions.assertEquals(1, metrics.holdersReused());
+        Assertions.assertEquals(2, generatedHolders.size());
+    }
+
+    @Test
+    void holdersEmbeddingAPolymorphicTypeWithANewSubtypeAreGeneratedAgain(@TempDir Path classes) throws Exception {
+        copyClasses(classes, CustomerMoved.class, Address.class, PaymentAdded.class, Payment.class, Card.class);
+        generate(classes, Guardrails.NONE, new GenerationMetrics());
+
+        copyClasses(classes, Voucher.class);
+        GenerationMetrics metrics = new GenerationMetrics();
+        DataProtectionConfigList result = generate(classes, Guardrails.NONE, metrics);
+
+        Assertions.assertEquals(1, metrics.holdersReused());
+        DataProtectionConfig paymentAdded = result.getConfig()
+                                                  .stream()
+                                                  .filter(config -> config.getType()
+                                                                          .equals(PaymentAdded.class.getName()))
+                                                  .findFirst()
+                                                  .orElseThrow();
+        Assertions.assertTrue(paths(paymentAdded).contains("$.payment.code"));
+    }
+
+    @Test
+    void holdersNoLongerFoundAreForgotten(@TempDir Path classes) throws Exception {
+        copyClasses(classes, CustomerMoved.class, Address.class, PaymentAdded.class, Payment.class, Card.class);
+        generate(classes, Guardrails.NONE, new GenerationMetrics());
+
+        Files.delete(classes.resolve(ClassFingerprints.resourceName(PaymentAdded.class.getName())));
+        generate(classes, Guardrails.NONE, new GenerationMetrics());
+
+        Assertions.assertEquals(1, generatedHolders.size());
+        Assertions.assertTrue(generatedHolders.get(PaymentAdded.class.getName()).isEmpty());
+    }
+
+    @Test
+    void holdersAreNotReusedWithGuardrails(@TempDir Path classes) throws Exception {
+        copyClasses(classes, CustomerMoved.class, Address.class);
+        Guardrails guardrails = new Guardrails(10, 0, 0, 0, Guardrails.Policy.FAIL);
+        generate(classes, guardrails, new GenerationMetrics());
+        GenerationMetrics metrics = new GenerationMetrics();
+
+        generate(classes, guardrails, metrics);
+
+        Assertions.assertEquals(0, metrics.holdersReused());
+        Assertions.assertEquals(0, generatedHolders.size());
+    }
+
+    private DataProtectionConfigList generate(Path classes,
+                                              Guardrails guardrails,
+                                              GenerationMetrics metrics) throws Exception {
+        try (ScanClassLoader loader = new ScanClassLoader(List.of(classes.toUri().toURL()),
+                                                          getClass().getClassLoader())) {
+            return new MetamodelGenerator(new SystemStreamLog(),
+                                          List.of(),
+                                          loader,
+                                          TypeFragmentCache.NONE,
+                                          ScanIndexCache.NONE,
+                                          List.of(classes.toFile()),
+                                          guardrails)
+                    .generateMetamodel(List.of(PACKAGE), Runnable::run, metrics, generatedHolders);
+        }
+    }
+
+    private static void copyClasses(Path directory, Class<?>... types) throws Exception {
+        for (Class<?> type : types) {
+            String resource = ClassFingerprints.resourceName(type.getName());
+            Path target = directory.resolve(resource);
+            Files.createDirectories(target.getParent());
+            try (InputStream in = type.getClassLoader().getResourceAsStream(resource)) {
+                Files.copy(in, target);
+            }
+        }
+    }
+
+    private static List<String> paths(DataProtectionConfig config) {
+        return config.getSensitiveData().stream().map(SensitiveDataConfig::getPath).collect(Collectors.toList());
+    }
+
+    @SensitiveDataHolder
+    static class CustomerMoved {
+
+        @SubjectId
+        String customerId;
+
+        Address address;
+    }
+
+    static class Address {
+
+        @SensitiveData(replacementValue = "")
+        String street;
+    }
+
+    @SensitiveDataHolder
+    static class PaymentAdded {
+
+        @SubjectId
+        String customerId;
+
+        Payment payment;
+    }
+
+    interface Payment {
+
+    }
+
+    static class Card implements Payment {
+
+        @SensitiveData(replacementValue = "")
+        String number;
+    }
+
+    static class Voucher implements Payment {
+
+        @SensitiveData(replacementValue = "")
+        String code;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator;
+
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class MetamodelGeneratorConcurrencyTest {
+
+    private static final List<String> PACKAGES = List.of("io.axoniq.plugin.data.protection.testclasses");
+
+    private static final int THREADS = 16;
+
+    private static final int GENERATIONS = 128;
+
+    @Test
+    void parallelGenerationsOnSharedGeneratorTest() throws Exception {
+        MetamodelGenerator generator = new MetamodelGenerator();
+        DataProtectionConfigList expected = new MetamodelGenerator().generateMetamodel(PACKAGES);
+
+        List<DataProtectionConfigList> results = runInParallel(() -> generator.generateMetamodel(PACKAGES));
+
+        results.forEach(result -> Assertions.assertEquals(expected, result));
+    }
+
+    @Test
+    void parallelGenerationsOnSeparateGeneratorsTest() throws Exception {
+        DataProtectionConfigList expected = new MetamodelGenerator().generateMetamodel(PACKAGES);
+
+        List<DataProtectionConfigList> results = runInParallel(
+                () -> new MetamodelGenerator().generateMetamodel(PACKAGES));
+
+        results.forEach(result -> Assertions.assertEquals(expected, result));
+    }
+
+    @Test
+    void generationOnExecutorMatchesSequentialGenerationTest() {
+        List<String> packages = List.of("io.axoniq.plugin.data.protection.testclasses.polymorphic",
+                                        "io.axoniq.plugin.data.protection.testclasses");
+        DataProtectionConfigList expected = new MetamodelGenerator().generateMetamodel(packages);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            Assertions.assertEquals(expected, new MetamodelGenerator().generateMetamodel(packages, executor));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void ignoresAreCopiedOnConstructionTest() {
+        List<String> ignores = new ArrayList<>();
+        MetamodelGenerator generator = new MetamodelGenerator(ignores);
+        DataProtectionConfigList expected = generator.generateMetamodel(PACKAGES);
+
+        ignores.add("io.axoniq.plugin.data.protection.testclasses.*");
+
+        Assertions.assertEquals(expected, generator.generateMetamodel(PACKAGES));
+    }
+
+    private static List<DataProtectionConfigList> runInParallel(Callable<DataProtectionConfigList> generation)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<DataProtectionConfigList>> futures = new ArrayList<>();
+            for (int i = 0; i < GENERATIONS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return generation.call();
+                }));
+            }
+            start.countDown();
+            List<DataProtectionConfigList> results = new ArrayList<>();
+            for (Future<DataProtectionConfigList> future : futures) {
+                results.add(future.get(1, TimeUnit.MINUTES));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator;
+
+import io.axoniq.plugin.data.protection.annotation.SensitiveData;
+import io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder;
+import io.axoniq.plugin.data.protection.annotation.SubjectId;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.config.SensitiveDataConfig;
+import io.axoniq.plugin.data.protection.generator.cache.ClassFingerprints;
+import io.axoniq.plugin.data.protection.generator.cache.ScanIndexCache;
+import io.axoniq.plugin.data.protection.generator.cache.TypeFragmentCache;
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoader;
+import io.axoniq.plugin.data.protection.generator.errors.GuardrailExceededException;
+import io.axoniq.plugin.data.protection.generator.metrics.GenerationMetrics;
+import io.axoniq.plugin.data.protection.generator.utils.PathUtils;
+import io.axoniq.plugin.data.protection.testsupport.SyntheticCatalog;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class MetamodelGeneratorGuardrailsTest {
+
+    private static final String PACKAGE = "io.axoniq.guarded";
+
+    @TempDir
+    Path classes;
+
+    @Test
+    void recursiveTypeFailsFastOnMaxDepth() {
+        GuardrailExceededException exception = Assertions.assertThrows(
+                GuardrailExceededException.class,
+                () -> generator(new Guardrails(8, 0, 0, 0, Guardrails.Policy.FAIL))
+                        .generateMetamodel(RecursiveHolder.class));
+
+        Assertions.assertTrue(exception.getMessage().contains("[maxDepth] of 8"), exception.getMessage());
+        Assertions.assertTrue(exception.getMessage().contains(RecursiveHolder.class.getName()),
+                              exception.getMessage());
+    }
+
+    @Test
+    void recursiveTypeIsTruncatedOnMaxDepth() {
+        DataProtectionConfig result = generator(new Guardrails(3, 0, 0, 0, Guardrails.Policy.TRUNCATE))
+                .generateMetamodel(RecursiveHolder.class);
+
+        Assertions.assertEquals(List.of("$.node.name", "$.node.next.name"), paths(result));
+    }
+
+    @Test
+    void sharedTypeIsTruncatedWhereItIsReachedTooDeep() {
+        MetamodelGenerator generator = generator(new Guardrails(3, 0, 0, 0, Guardrails.Policy.TRUNCATE));
+
+        DataProtectionConfig shallowFirst = generator.generateMetamodel(ShallowFirstHolder.class);
+        DataProtectionConfig deepFirst = generator.generateMetamodel(DeepFirstHolder.class);
+
+        Assertions.assertEquals(List.of("$.shallow.name", "$.shallow.leaf.name", "$.deep.inner.name"),
+                                paths(shallowFirst));
+        Assertions.assertEquals(List.of("$.deep.inner.name", "$.shallow.name", "$.shallow.leaf.name"),
+                                paths(deepFirst));
+    }
+
+    @Test
+    void holderFailsFastOnMaxHolderPaths() {
+        GuardrailExceededException exception = Assertions.assertThrows(
+                GuardrailExceededException.class,
+                () -> generator(new Guardrails(0, 2, 0, 0, Guardrails.Policy.FAIL))
+                        .generateMetamodel(ShallowFirstHolder.class));
+
+        Assertions.assertTrue(exception.getMessage().contains("[maxHolderPaths] of 2"), exception.getMessage());
+    }
+
+    @Test
+    void cyclesAreTruncatedOnMaxDepth() throws Exception {
+        SyntheticCatalog catalog = SyntheticCatalog.builder(PACKAGE).holders(3).depth(2).fanOut(2).cycles(true)
+                                                   .build();
+        GenerationMetrics metrics = new GenerationMetrics();
+
+        DataProtectionConfigList result = generate(catalog, new Guardrails(6, 0, 0, 0, Guardrails.Policy.TRUNCATE),
+                                                   metrics);
+
+        Assertions.assertEquals(catalog.holderNames().size(), result.getConfig().size());
+        Assertions.assertEquals(catalog.holderNames().stream().sorted().collect(Collectors.toList()),
+                                metrics.truncatedHolders());
+        result.getConfig().forEach(holder -> {
+            Assertions.assertTrue(paths(holder).contains("$.node.next.next.next.next.secret"));
+            paths(holder).forEach(path -> Assertions.assertTrue(PathUtils.depth(path) <= 6, path));
+        });
+    }
+
+    @Test
+    void wideRecursiveTypeIsTruncatedOncePerLevel() throws Exception {
+        Path directory = Files.createTempDirectory(classes, "tree");
+        copyClasses(directory, TreeHolder.class, Tree.class);
+        GenerationMetrics metrics = new GenerationMetrics();
+
+        DataProtectionConfigList result = generate(directory,
+                                                   TreeHolder.class.getPackageName(),
+                                                   new Guardrails(24, 0, 0, 0, Guardrails.Policy.TRUNCATE),
+                                                   metrics);
+
+        Assertions.assertEquals(List.of(), paths(result.getConfig().get(0)));
+        Assertions.assertEquals(List.of(TreeHolder.class.getName()), metrics.truncatedHolders());
+        Assertions.assertTrue(metrics.fieldsInspected() <= 2 + 3 * 24,
+                              "inspected " + metrics.fieldsInspected() + " fields");
+    }
+
+    @Test
+    void runIsTruncatedOnMaxPaths() throws Exception {
+        SyntheticCatalog catalog = SyntheticCatalog.builder(PACKAGE).holders(5).depth(3).fanOut(2).build();
+        GenerationMetrics metrics = new GenerationMetrics();
+
+        DataProtectionConfigList result = generate(catalog, new Guardrails(0, 0, 0, 30, Guardrails.Policy.TRUNCATE),
+                                                   metrics);
+
+        Assertions.assertEquals(30, result.getConfig().stream().mapToInt(holder -> paths(holder).size()).sum());
+        Assertions.assertFalse(metrics.truncatedHolders().isEmpty());
+    }
+
+    @Test
+    void runFailsFastOnMaxTypes() throws Exception {
+        SyntheticCatalog catalog = SyntheticCatalog.builder(PACKAGE).holders(5).depth(3).fanOut(2).build();
+
+        GuardrailExceededException exception = Assertions.assertThrows(
+                GuardrailExceededException.class,
+                () -> generate(catalog, new Guardrails(0, 0, 3, 0, Guardrails.Policy.FAIL), new GenerationMetrics()));
+
+        Assertions.assertTrue(exception.getMessage().contains("[maxTypes] of 3"), exception.getMessage());
+    }
+
+    @Test
+    void guardrailsWithinLimitsKeepTheFullConfig() throws Exception {
+        SyntheticCatalog catalog = SyntheticCatalog.builder(PACKAGE).holders(5).depth(3).fanOut(2).build();
+        GenerationMetrics metrics = new GenerationMetrics();
+
+        DataProtectionConfigList guarded = generate(catalog, new Guardrails(4, 14, 6, 70, Guardrails.Policy.FAIL),
+                                                    metrics);
+
+        Assertions.assertEquals(generate(catalog, Guardrails.NONE, new GenerationMetrics()), guarded);
+        Assertions.assertTrue(metrics.truncatedHolders().isEmpty());
+    }
+
+    private MetamodelGenerator generator(Guardrails guardrails) {
+        return new MetamodelGenerator(new SystemStreamLog(),
+                                      List.of(),
+                                      getClass().getClassLoader(),
+                                      TypeFragmentCache.NONE,
+                                      ScanIndexCache.NONE,
+                                      List.of(),
+                                      guardrails);
+    }
+
+    private DataProtectionConfigList generate(SyntheticCatalog catalog,
+                                              Guardrails guardrails,
+                                              GenerationMetrics metrics) throws Exception {
+        Path directory = Files.createTempDirectory(classes, "catalog");
+        catalog.write(directory);
+        return generate(directory, PACKAGE, guardrails, metrics);
+    }
+
+    private DataProtectionConfigList generate(Path directory,
+                                              String pkg,
+                                              Guardrails guardrails,
+                                              GenerationMetrics metrics) throws Exception {
+        try (ScanClassLoader loader = new ScanClassLoader(List.of(directory.toUri().toURL()),
+                                                          getClass().getClassLoader())) {
+            return new MetamodelGenerator(new SystemStreamLog(),
+                                          List.of(),
+                                          loader,
+                                          TypeFragmentCache.NONE,
+                                          ScanIndexCache.NONE,
+                                          List.of(directory.toFile()),
+                                          guardrails)
+                    .generateMetamodel(List.of(pkg), Runnable::run, metrics);
+        }
+    }
+
+    private static void copyClasses(Path directory, Class<?>... types) throws Exception {
+        for (Class<?> type : types) {
+            String resource = ClassFingerprints.resourceName(type.getName());
+            Path target = directory.resolve(resource);
+            Files.createDirectories(target.getParent());
+            try (InputStream in = type.getClassLoader().getResourceAsStream(resource)) {
+                Files.copy(in, target);
+            }
+        }
+    }
+
+    private static List<String> paths(DataProtectionConfig config) {
+        return config.getSensitiveData().stream().map(SensitiveDataConfig::getPath).collect(Collectors.toList());
+    }
+
+    @SensitiveDataHolder
+    static class RecursiveHolder {
+
+        @SubjectId
+        String subjectId;
+
+        Node node;
+    }
+
+    static class Node {
+
+        @SensitiveData(replacementValue = "name")
+        String name;
+
+        Node next;
+    }
+
+    @SensitiveDataHolder
+    static class TreeHolder {
+
+        @SubjectId
+        String subjectId;
+
+        Tree tree;
+    }
+
+    static class Tree {
+
+        String name;
+
+        Tree left;
+
+        Tree right;
+    }
+
+    @SensitiveDataHolder
+    static class ShallowFirstHolder {
+
+        @SubjectId
+        String subjectId;
+
+        Inner shallow;
+
+        Wrapper deep;
+    }
+
+    @SensitiveDataHolder
+    static class DeepFirstHolder {
+
+        @SubjectId
+        String subjectId;
+
+        Wrapper deep;
+
+        Inner shallow;
+    }
+
+    static class Wrapper {
+
+        Inner inner;
+    }
+
+    static class Inner {
+
+        @SensitiveData(replacementValue = "inner")
+        String name;
+
+        Leaf leaf;
+    }
+
+    static class Leaf {
+
+        @SensitiveData(replacementValue = "leaf")
+        String name;
+    }
+}
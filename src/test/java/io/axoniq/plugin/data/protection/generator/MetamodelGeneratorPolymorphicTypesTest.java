@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import io.axoniq.plugin.data.protection.annotation.SensitiveData;
+import io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder;
+import io.axoniq.plugin.data.protection.annotation.SubjectId;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.config.SensitiveDataConfig;
+import io.axoniq.plugin.data.protection.config.SubjectIdConfig;
+import io.axoniq.plugin.data.protection.generator.cache.ScanIndexCache;
+import io.axoniq.plugin.data.protection.generator.cache.TypeFragmentCache;
+import io.axoniq.plugin.data.protection.generator.errors.RecursiveTypeException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.Map;
+
+class MetamodelGeneratorPolymorphicTypesTest {
+
+    MetamodelGenerator metamodelGenerator = new MetamodelGenerator();
+
+    @Test
+    void jsonSubTypesTest() {
+        DataProtectionConfig expected = new DataProtectionConfig(
+                "io.axoniq.plugin.data.protection.generator.MetamodelGeneratorPolymorphicTypesTest$JsonSubTypesTest",
+                "",
+                new SubjectIdConfig("$.subjectId"),
+                List.of(new SensitiveDataConfig("$.sensitiveData.shared", "shared"),
+                        new SensitiveDataConfig("$.sensitiveData.email", "email"),
+                        new SensitiveDataConfig("$.sensitiveData.phone", "phone")));
+
+        DataProtectionConfig result = metamodelGenerator.generateMetamodel(JsonSubTypesTest.class);
+
+        Assertions.assertEquals(expected, result);
+    }
+
+    @Test
+    void jsonSubTypesInContainersTest() {
+        DataProtectionConfig expected = new DataProtectionConfig(
+                "io.axoniq.plugin.data.protection.generator.MetamodelGeneratorPolymorphicTypesTest$JsonSubTypesContainerTest",
+                "",
+                new SubjectIdConfig("$.subjectId"),
+                List.of(new SensitiveDataConfig("$.list[*].shared", "shared"),
+                        new SensitiveDataConfig("$.list[*].email", "email"),
+                        new SensitiveDataConfig("$.list[*].phone", "phone"),
+                        new SensitiveDataConfig("$.map.*.shared", "shared"),
+                        new SensitiveDataConfig("$.map.*.email", "email"),
+                        new SensitiveDataConfig("$.map.*.phone", "phone")));
+
+        DataProtectionConfig result = metamodelGenerator.generateMetamodel(JsonSubTypesContainerTest.class);
+
+        Assertions.assertEquals(expected, result);
+    }
+
+    @Test
+    void unknownSubTypesTest() {
+        DataProtectionConfig expected = new DataProtectionConfig(
+                "io.axoniq.plugin.data.protection.generator.MetamodelGeneratorPolymorphicTypesTest$UnknownSubTypesTest",
+                "",
+                new SubjectIdConfig("$.subjectId"),
+                List.of(new SensitiveDataConfig("$.sensitiveData.shared", "shared")));
+
+        DataProtectionConfig result = metamodelGenerator.generateMetamodel(UnknownSubTypesTest.class);
+
+        Assertions.assertEquals(expected, result);
+    }
+
+    @Test
+    void ignoredSubTypeTest() {
+        MetamodelGenerator generator = new MetamodelGenerator(List.of(
+                "io.axoniq.plugin.data.protection.generator.MetamodelGeneratorPolymorphicTypesTest$PhoneContact"));
+        DataProtectionConfig expected = new DataProtectionConfig(
+                "io.axoniq.plugin.data.protection.generator.MetamodelGeneratorPolymorphicTypesTest$JsonSubTypesTest",
+                "",
+                new SubjectIdConfig("$.subjectId"),
+                List.of(new SensitiveDataConfig("$.sensitiveData.shared", "shared"),
+                        new SensitiveDataConfig("$.sensitiveData.email", "email")));
+
+        DataProtectionConfig result = generator.generateMetamodel(JsonSubTypesTest.class);
+
+        Assertions.assertEquals(expected, result);
+    }
+
+    @Test
+    void scannedSubTypesTest() {
+        DataProtectionConfig expected = new DataProtectionConfig(
+                "io.axoniq.plugin.data.protection.testclasses.polymorphic.PaymentRegisteredEvent",
+                "",
+                new SubjectIdConfig("$.customerId"),
+                List.of(new SensitiveDataConfig("$.paymentMethod.holderName", "holder"),
+                        new SensitiveDataConfig("$.paymentMethod.iban", "iban"),
+                        new SensitiveDataConfig("$.paymentMethod.number", "number"),
+                        new SensitiveDataConfig("$.previousPaymentMethods[*].holderName", "holder"),
+                        new SensitiveDataConfig("$.previousPaymentMethods[*].iban", "iban"),
+                        new SensitiveDataConfig("$.previousPaymentMethods[*].number", "number")));
+
+        DataProtectionConfigList result = metamodelGenerator.generateMetamodel(List.of(
+                "io.axoniq.plugin.data.protection.testclasses.polymorphic"));
+
+        Assertions.assertEquals(new DataProtectionConfigList(List.of(expected)), result);
+    }
+
+    @Test
+    void recursiveSubTypesFailWithAClearError() {
+        RecursiveTypeException exception = Assertions.assertThrows(
+                RecursiveTypeException.class, () -> metamodelGenerator.generateMetamodel(CompositeShapes.ShapeAdded.class));
+
+        Assertions.assertTrue(exception.getMessage().contains(CompositeShapes.Shape.class.getName()), exception.getMessage());
+    }
+
+    @Test
+    void recursiveSubTypesAreTruncatedOnMaxDepth() {
+        MetamodelGenerator generator = new MetamodelGenerator(new SystemStreamLog(),
+                                                              List.of(),
+                                                              getClass().getClassLoader(),
+                                                              TypeFragmentCache.NONE,
+                                                              ScanIndexCache.NONE,
+                                                              List.of(),
+                                                              new Guardrails(3, 0, 0, 0, Guardrails.Policy.TRUNCATE));
+        DataProtectionConfig expected = new DataProtectionConfig(
+                "io.axoniq.plugin.data.protection.generator.CompositeShapes$ShapeAdded",
+                "",
+                new SubjectIdConfig("$.subjectId"),
+                List.of(new SensitiveDataConfig("$.shape.children[*].label", "label"),
+                        new SensitiveDataConfig("$.shape.label", "label")));
+
+        DataProtectionConfig result = generator.generateMetamodel(CompositeShapes.ShapeAdded.class);
+
+        Assertions.assertEquals(expected, result);
+    }
+
+    @SensitiveDataHolder
+    static class JsonSubTypesTest {
+
+        @SubjectId
+        String subjectId;
+
+        Contact sensitiveData;
+    }
+
+    @SensitiveDataHolder
+    static class JsonSubTypesContainerTest {
+
+        @SubjectId
+        String subjectId;
+
+        List<Contact> list;
+
+        Map<String, Contact> map;
+    }
+
+    @SensitiveDataHolder
+    static class UnknownSubTypesTest {
+
+        @SubjectId
+        String subjectId;
+
+        UnknownContact sensitiveData;
+    }
+
+    @JsonSubTypes({
+            @JsonSubTypes.Type(EmailContact.class),
+            @JsonSubTypes.Type(PhoneContact.class)
+    })
+    abstract static class Contact {
+
+        @SensitiveData(replacementValue = "shared")
+        String shared;
+    }
+
+    static class EmailContact extends Contact {
+
+        @SensitiveData(replacementValue = "email")
+        String email;
+    }
+
+    static class PhoneContact extends Contact {
+
+        @SensitiveData(replacementValue = "phone")
+        String phone;
+    }
+
+    abstract static class UnknownContact {
+
+        @SensitiveData(replacementValue = "shared")
+        String shared;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator;
+
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoader;
+import io.axoniq.plugin.data.protection.generator.metrics.GenerationMetrics;
+import io.axoniq.plugin.data.protection.generator.utils.ReflectionUtils;
+import io.axoniq.plugin.data.protection.testsupport.SyntheticCatalog;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Verifies that the work of a generation grows linearly with the size of the inspected type graph. The work is
+ * counted by the {@link GenerationMetrics} instead of timed, so the tests are deterministic. Every type must be
+ * inspected at most once per generation, and the work per field and emitted path must not grow with the size of the
+ * graph.
+ */
+class MetamodelGeneratorScalingTest {
+
+    private static final String PACKAGE = "io.axoniq.scaling";
+
+    /**
+     * The allowed growth of the work per field and path between two neighbouring graphs of a family. Small graphs have
+     * a slightly different mix of holders and value types, so the ratio is not exactly constant.
+     */
+    private static final double TOLERANCE = 1.1;
+
+    @TempDir
+    Path classes;
+
+    @Test
+    void workGrowsLinearlyWithHolders() throws Exception {
+        assertLinear(size -> SyntheticCatalog.builder(PACKAGE).holders(size).depth(3).fanOut(3),
+                     10, 20, 40, 80, 160);
+    }
+
+    @Test
+    void workGrowsLinearlyWithDepth() throws Exception {
+        // the paths grow exponentially with the depth, as every value refers to all values of the next level, while the
+        // inspected types and fields grow linearly
+        assertLinear(size -> SyntheticCatalog.builder(PACKAGE).holders(10).depth(size).fanOut(2),
+                     1, 2, 4, 8);
+    }
+
+    @Test
+    void workGrowsLinearlyWithRepeatedValueTypes() throws Exception {
+        assertLinear(size -> SyntheticCatalog.builder(PACKAGE).holders(10).depth(3).fanOut(size),
+                     2, 4, 8, 16);
+    }
+
+    @Test
+    void workGrowsLinearlyWithWideMaps() throws Exception {
+        assertLinear(size -> SyntheticCatalog.builder(PACKAGE)
+                                             .holders(10)
+                                             .depth(2)
+                                             .fanOut(size)
+                                             .shape(SyntheticCatalog.Shape.MAPS),
+                     2, 4, 8, 16, 32);
+    }
+
+    @Test
+    void workGrowsLinearlyWithCollectionsAndArrays() throws Exception {
+        assertLinear(size -> SyntheticCatalog.builder(PACKAGE)
+                                             .holders(size)
+                                             .depth(3)
+                                             .fanOut(3)
+                                             .shape(SyntheticCatalog.Shape.COLLECTIONS)
+                                             .genericContainers(true),
+                     10, 20, 40, 80);
+        assertLinear(size -> SyntheticCatalog.builder(PACKAGE)
+                                             .holders(size)
+                                             .depth(3)
+                                             .fanOut(3)
+                                             .shape(SyntheticCatalog.Shape.ARRAYS),
+                     10, 20, 40, 80);
+    }
+
+    @Test
+    void workGrowsLinearlyWithDiamondHierarchies() throws Exception {
+        assertLinear(size -> SyntheticCatalog.builder(PACKAGE).holders(20).depth(2).fanOut(2).diamonds(size),
+                     1, 2, 4, 8, 16);
+    }
+
+    @Test
+    void workGrowsLinearlyWithInheritance() throws Exception {
+        assertLinear(size -> SyntheticCatalog.builder(PACKAGE)
+                                             .holders(20)
+                                             .depth(2)
+                                             .fanOut(2)
+                                             .inheritanceDepth(size),
+                     1, 2, 4, 8, 16);
+    }
+
+    /**
+     * Generate the catalogs of the given sizes and check that no type is inspected twice, and that the work per
+     * field and emitted path of every catalog is at most {@link MetamodelGeneratorScalingTest#TOLERANCE} times that
+     * of the next smaller one. Fields are counted once, on the class declaring them, so inherited fields do not make a
+     * catalog with deep hierarchies look larger than it is. The paths are counted as well, as every holder emits the
+     * paths of the fields it inherits, so inspecting them once per holder is inherent to the output.
+     */
+    private void assertLinear(IntFunction<SyntheticCatalog.Builder> family, int... sizes) throws Exception {
+        List<Double> workPerFieldAndPath = new ArrayList<>();
+        for (int size : sizes) {
+            SyntheticCatalog catalog = family.apply(size).build();
+            Path directory = Files.createTempDirectory(classes, "catalog");
+            catalog.write(directory);
+            try (ScanClassLoader loader = new ScanClassLoader(List.of(directory.toUri().toURL()),
+                                                              getClass().getClassLoader())) {
+                long fields = 0;
+                long inspectableFields = 0;
+                for (String className : catalog.classFiles().keySet()) {
+                    Class<?> type = loader.loadClass(className);
+                    fields += type.getDeclaredFields().length;
+                    inspectableFields += ReflectionUtils.getAllDeclaredFields(type).size();
+                }
+                GenerationMetrics metrics = new GenerationMetrics();
+                new MetamodelGenerator(new SystemStreamLog(), List.of(), loader)
+                        .generateMetamodel(List.of(PACKAGE), Runnable::run, metrics);
+
+                Assertions.assertEquals(catalog.holderNames().size(), metrics.holders());
+                Assertions.assertTrue(metrics.fieldsInspected() <= inspectableFields, String.format(
+                        "Inspected %d fields of a catalog with %d fields at size %d, types are inspected repeatedly",
+                        metrics.fieldsInspected(), inspectableFields, size));
+                long work = metrics.fieldsInspected() + metrics.typesVisited() + metrics.generationHits();
+                workPerFieldAndPath.add((double) work / (fields + metrics.paths()));
+            }
+        }
+        for (int i = 1; i < workPerFieldAndPath.size(); i++) {
+            double smaller = workPerFieldAndPath.get(i - 1);
+            double larger = workPerFieldAndPath.get(i);
+            Assertions.assertTrue(larger <= smaller * TOLERANCE, String.format(
+                    "Work per field and path grew from %.2f at size %d to %.2f at size %d, over all sizes %s",
+                    smaller, sizes[i - 1], larger, sizes[i], workPerFieldAndPath));
+        }
+    }
+}
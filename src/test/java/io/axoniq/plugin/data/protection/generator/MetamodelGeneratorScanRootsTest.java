@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator;
+
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.generator.cache.ScanIndexCache;
+import io.axoniq.plugin.data.protection.generator.cache.TypeFragmentCache;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.util.List;
+
+class MetamodelGeneratorScanRootsTest {
+
+    private static final List<String> PACKAGES = List.of("io.axoniq.plugin.data.protection.testclasses.polymorphic");
+
+    @Test
+    void holdersInScanRootsAreFound() {
+        MetamodelGenerator generator = generator(List.of(new File("target/test-classes")));
+
+        DataProtectionConfigList result = generator.generateMetamodel(PACKAGES);
+
+        Assertions.assertEquals(new MetamodelGenerator().generateMetamodel(PACKAGES), result);
+        Assertions.assertEquals(1, result.getConfig().size());
+    }
+
+    @Test
+    void holdersOutsideScanRootsAreSkipped() {
+        MetamodelGenerator generator = generator(List.of(new File("target/classes")));
+
+        DataProtectionConfigList result = generator.generateMetamodel(PACKAGES);
+
+        Assertions.assertTrue(result.getConfig().isEmpty());
+    }
+
+    private static MetamodelGenerator generator(List<File> scanRoots) {
+        return new MetamodelGenerator(new SystemStreamLog(),
+                                      List.of(),
+                                      MetamodelGeneratorScanRootsTest.class.getClassLoader(),
+                                      TypeFragmentCache.NONE,
+                                      ScanIndexCache.NONE,
+                                      scanRoots);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.generator.MetamodelGenerator;
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoader;
+import io.axoniq.plugin.data.protection.testclasses.polymorphic.BankAccount;
+import io.axoniq.plugin.data.protection.testclasses.polymorphic.CreditCard;
+import io.axoniq.plugin.data.protection.testclasses.polymorphic.PaymentMethod;
+import io.axoniq.plugin.data.protection.testclasses.polymorphic.PaymentRegisteredEvent;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+class JarScanCacheTest {
+
+    private static final String PACKAGE = "io.axoniq.plugin.data.protection.testclasses.polymorphic";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void unchangedJarsAreNotScannedAgain(@TempDir Path cacheDirectory, @TempDir Path libs) throws Exception {
+        File jar = jar(libs.resolve("payments.jar"),
+                       PaymentRegisteredEvent.class, PaymentMethod.class, CreditCard.class, BankAccount.class);
+        DataProtectionConfigList expected = new MetamodelGenerator().generateMetamodel(PACKAGE);
+
+        CountingScanIndexCache first = new CountingScanIndexCache(new JarScanCache(cacheDirectory.toFile(),
+                                                                                   objectMapper));
+        Assertions.assertEquals(expected, generate(jar, first, TypeFragmentCache.NONE));
+        Assertions.assertEquals(0, first.hits.get());
+        Assertions.assertEquals(1, first.puts.get());
+
+        CountingScanIndexCache second = new CountingScanIndexCache(new JarScanCache(cacheDirectory.toFile(),
+                                                                                    objectMapper));
+        Assertions.assertEquals(expected, generate(jar, second, TypeFragmentCache.NONE));
+        Assertions.assertEquals(1, second.hits.get());
+        Assertions.assertEquals(0, second.puts.get());
+    }
+
+    @Test
+    void checksumChangesWithTheJarContent(@TempDir Path cacheDirectory, @TempDir Path libs) throws Exception {
+        JarScanCache cache = new JarScanCache(cacheDirectory.toFile(), objectMapper);
+        File jar = jar(libs.resolve("payments.jar"), PaymentMethod.class);
+        String checksum = cache.checksum(jar);
+        File copy = Files.copy(jar.toPath(), libs.resolve("copy.jar")).toFile();
+
+        Assertions.assertEquals(checksum, cache.checksum(copy));
+
+        jar(libs.resolve("payments.jar"), PaymentMethod.class, CreditCard.class);
+        Assertions.assertTrue(jar.setLastModified(jar.lastModified() + 2000));
+        Assertions.assertNotEquals(checksum, cache.checksum(jar));
+    }
+
+    @Test
+    void typeFragmentsOfJarsAreCached(@TempDir Path cacheDirectory, @TempDir Path libs) throws Exception {
+        File jar = jar(libs.resolve("customers.jar"), PublishedTypeFragmentsTest.CustomerRegistered.class,
+                       PublishedTypeFragmentsTest.Address.class, PublishedTypeFragmentsTest.Geo.class);
+        JarScanCache cache = new JarScanCache(cacheDirectory.toFile(), objectMapper);
+
+        try (ScanClassLoader loader = loader(jar)) {
+            PublishedTypeFragments typeFragments = new PublishedTypeFragments(List.of(), objectMapper);
+            cache.readTypeFragments(typeFragments, List.of(jar));
+            new MetamodelGenerator(new SystemStreamLog(), List.of(), loader, typeFragments)
+                    .generateMetamodel(loader.loadClass(PublishedTypeFragmentsTest.CustomerRegistered.class.getName()));
+            cache.writeTypeFragments(typeFragments, List.of(jar));
+            Assertions.assertEquals(0, typeFragments.publishedSize());
+        }
+
+        try (ScanClassLoader loader = loader(jar)) {
+            PublishedTypeFragments typeFragments = new PublishedTypeFragments(List.of(), objectMapper);
+            cache.readTypeFragments(typeFragments, List.of(jar));
+
+            Assertions.assertEquals(2, typeFragments.publishedSize());
+            Assertions.assertTrue(typeFragments.get(loader.loadClass(PublishedTypeFragmentsTest.Address.class.getName()))
+                                               .isPresent());
+        }
+    }
+
+    private DataProtectionConfigList generate(File jar,
+                                              ScanIndexCache scanIndexCache,
+                                              TypeFragmentCache typeFragmentCache) throws Exception {
+        try (ScanClassLoader loader = loader(jar)) {
+            return new MetamodelGenerator(new SystemStreamLog(), new ArrayList<>(), loader, typeFragmentCache,
+                                          scanIndexCache)
+                    .generateMetamodel(PACKAGE);
+        }
+    }
+
+    private ScanClassLoader loader(File jar) throws Exception {
+        return new ScanClassLoader(List.of(jar.toURI().toURL()), getClass().getClassLoader());
+    }
+
+    private static File jar(Path target, Class<?>... classes) throws Exception {
+        try (OutputStream out = Files.newOutputStream(target); JarOutputStream jar = new JarOutputStream(out)) {
+            Set<String> directories = new TreeSet<>();
+            for (Class<?> clazz : classes) {
+                String resource = ClassFingerprints.resourceName(clazz.getName());
+                // like jars built by maven, directory entries are needed to find the packages
+                for (int i = resource.indexOf('/'); i != -1; i = resource.indexOf('/', i + 1)) {
+                    if (directories.add(resource.substring(0, i + 1))) {
+                        jar.putNextEntry(new JarEntry(resource.substring(0, i + 1)));
+                        jar.closeEntry();
+                    }
+                }
+                jar.putNextEntry(new JarEntry(resource));
+                try (InputStream in = clazz.getClassLoader().getResourceAsStream(resource)) {
+                    in.transferTo(jar);
+                }
+                jar.closeEntry();
+            }
+        }
+        return target.toFile();
+    }
+
+    /**
+     * Counts the cache hits and stores of jars, delegating to the actual cache.
+     */
+    private static class CountingScanIndexCache implements ScanIndexCache {
+
+        private final ScanIndexCache delegate;
+        private final AtomicInteger hits = new AtomicInteger();
+        private final AtomicInteger puts = new AtomicInteger();
+
+        private CountingScanIndexCache(ScanIndexCache delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Optional<Map<String, Map<String, Set<String>>>> get(URL root, String pkg) {
+            Optional<Map<String, Map<String, Set<String>>>> index = delegate.get(root, pkg);
+            index.ifPresent(i -> hits.incrementAndGet());
+            return index;
+        }
+
+        @Override
+        public void put(URL root, String pkg, Map<String, Map<String, Set<String>>> index) {
+            if (root.toExternalForm().endsWith(".jar") || root.toExternalForm().endsWith(".jar!/")) {
+                puts.incrementAndGet();
+            }
+            delegate.put(root, pkg, index);
+        }
+    }
+}
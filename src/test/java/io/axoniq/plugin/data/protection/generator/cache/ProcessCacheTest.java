@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.cache;
+
+import io.axoniq.plugin.data.protection.annotation.SensitiveData;
+import io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder;
+import io.axoniq.plugin.data.protection.annotation.SubjectId;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.SensitiveDataConfig;
+import io.axoniq.plugin.data.protection.generator.MetamodelGenerator;
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoader;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.annotation.Annotation;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class ProcessCacheTest {
+
+    private static final String PACKAGE = ProcessCacheTest.class.getPackageName();
+
+    private final ProcessCache processCache = new ProcessCache();
+
+    @Test
+    void typeFragmentsAreReusedByLaterBuilds(@TempDir Path module) throws Exception {
+        copyClasses(module,
+                    PublishedTypeFragmentsTest.CustomerRegistered.class,
+                    PublishedTypeFragmentsTest.Address.class,
+                    PublishedTypeFragmentsTest.Geo.class);
+        TypeFragmentCache typeFragments = processCache.typeFragments(List.of());
+        DataProtectionConfig expected = generate(module, typeFragments);
+
+        try (ScanClassLoader loader = loader(module)) {
+            Class<?> address = loader.loadClass(PublishedTypeFragmentsTest.Address.class.getName());
+
+            Assertions.assertTrue(typeFragments.get(address).isPresent());
+            Assertions.assertTrue(processCache.typeFragments(List.of("other")).get(address).isEmpty());
+        }
+        Assertions.assertEquals(expected, generate(module, typeFragments));
+    }
+
+    @Test
+    void typeFragmentsWithChangedClassFilesAreNotReused(@TempDir Path module) throws Exception {
+        copyClasses(module,
+                    PublishedTypeFragmentsTest.CustomerRegistered.class,
+                    PublishedTypeFragmentsTest.Address.class,
+                    PublishedTypeFragmentsTest.Geo.class);
+        TypeFragmentCache typeFragments = processCache.typeFragments(List.of());
+        generate(module, typeFragments);
+        Files.write(module.resolve(ClassFingerprints.resourceName(PublishedTypeFragmentsTest.Geo.class.getName())),
+                    new byte[]{0},
+                    StandardOpenOption.APPEND);
+
+        try (ScanClassLoader loader = loader(module)) {
+            Class<?> address = loader.loadClass(PublishedTypeFragmentsTest.Address.class.getName());
+
+            Assertions.assertTrue(typeFragments.get(address).isEmpty());
+        }
+    }
+
+    @Test
+    void typeFragmentsWithChangedSuperClassesAreNotReused(@TempDir Path module) throws Exception {
+        copyClasses(module, ValueChanged.class, Value.class, Base.class);
+        TypeFragmentCache typeFragments = processCache.typeFragments(List.of());
+        Assertions.assertEquals(Set.of("$.value.id"), paths(generate(module, typeFragments, ValueChanged.class)));
+
+        CtClass base = ClassPool.getDefault().get(Base.class.getName());
+        ConstPool constPool = base.getClassFile().getConstPool();
+        AnnotationsAttribute sensitiveData = new AnnotationsAttribute(constPool, AnnotationsAttribute.visibleTag);
+        sensitiveData.addAnnotation(new Annotation(SensitiveData.class.getName(), constPool));
+        base.getField("secret").getFieldInfo().addAttribute(sensitiveData);
+        Files.write(module.resolve(ClassFingerprints.resourceName(Base.class.getName())), base.toBytecode());
+        base.detach();
+
+        Assertions.assertEquals(Set.of("$.value.id", "$.value.secret"),
+                                paths(generate(module, typeFragments, ValueChanged.class)));
+    }
+
+    @Test
+    void scanIndexesAreCopiedAndValidated(@TempDir Path module) throws Exception {
+        copyClasses(module, PublishedTypeFragmentsTest.Address.class);
+        URL root = module.toUri().toURL();
+        ScanIndexCache scanIndexes = processCache.scanIndexes();
+        Map<String, Map<String, Set<String>>> index = new HashMap<>();
+        index.put("SubTypes", new HashMap<>(Map.of("java.lang.Object", Set.of("Address"))));
+        scanIndexes.put(root, PACKAGE, index);
+        index.get("SubTypes").clear();
+
+        Optional<Map<String, Map<String, Set<String>>>> cached = scanIndexes.get(root, PACKAGE);
+        Assertions.assertEquals(Set.of("Address"), cached.orElseThrow().get("SubTypes").get("java.lang.Object"));
+        cached.get().get("SubTypes").get("java.lang.Object").clear();
+        Assertions.assertEquals(Set.of("Address"),
+                                scanIndexes.get(root, PACKAGE).orElseThrow().get("SubTypes").get("java.lang.Object"));
+
+        Path classFile = module.resolve(
+                ClassFingerprints.resourceName(PublishedTypeFragmentsTest.Address.class.getName()));
+        FileTime modified = Files.getLastModifiedTime(classFile);
+        Files.setLastModifiedTime(classFile, FileTime.fromMillis(modified.toMillis() + 1000));
+        Assertions.assertTrue(scanIndexes.get(root, PACKAGE).isEmpty());
+    }
+
+    @Test
+    void scanClassLoadersAreSharedForTheLastParent() {
+        ClassLoader parent = getClass().getClassLoader();
+
+        Assertions.assertSame(processCache.scanClassLoaders(parent), processCache.scanClassLoaders(parent));
+        Assertions.assertNotSame(processCache.scanClassLoaders(parent),
+                                 processCache.scanClassLoaders(ClassLoader.getPlatformClassLoader()));
+        processCache.clear();
+        Assertions.assertEquals(0, processCache.size());
+    }
+
+    private DataProtectionConfig generate(Path module, TypeFragmentCache typeFragments) throws Exception {
+        return generate(module, typeFragments, PublishedTypeFragmentsTest.CustomerRegistered.class);
+    }
+
+    private DataProtectionConfig generate(Path module, TypeFragmentCache typeFragments, Class<?> holder)
+            throws Exception {
+        try (ScanClassLoader loader = loader(module)) {
+            return new MetamodelGenerator(new SystemStreamLog(), List.of(), loader, typeFragments)
+                    .generateMetamodel(loader.loadClass(holder.getName()));
+        }
+    }
+
+    private static Set<String> paths(DataProtectionConfig config) {
+        return config.getSensitiveData().stream().map(SensitiveDataConfig::getPath).collect(Collectors.toSet());
+    }
+
+    private ScanClassLoader loader(Path module) throws Exception {
+        return new ScanClassLoader(List.of(module.toUri().toURL()), getClass().getClassLoader());
+    }
+
+    private static void copyClasses(Path outputDirectory, Class<?>... classes) throws Exception {
+        for (Class<?> clazz : classes) {
+            String resource = ClassFingerprints.resourceName(clazz.getName());
+            Path target = outputDirectory.resolve(resource);
+            Files.createDirectories(target.getParent());
+            try (InputStream in = clazz.getClassLoader().getResourceAsStream(resource)) {
+                Files.copy(in, target);
+            }
+        }
+    }
+
+    @SensitiveDataHolder
+    static class ValueChanged {
+
+        @SubjectId
+        String id;
+
+        Value value;
+    }
+
+    static class Value extends Base {
+
+        @SensitiveData
+        String id;
+    }
+
+    static class Base {
+
+        String secret;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.axoniq.plugin.data.protection.annotation.SensitiveData;
+import io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder;
+import io.axoniq.plugin.data.protection.annotation.SubjectId;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.SensitiveDataConfig;
+import io.axoniq.plugin.data.protection.generator.MetamodelGenerator;
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoader;
+import io.axoniq.plugin.data.protection.testclasses.polymorphic.PaymentMethod;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+class PublishedTypeFragmentsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void publishedFragmentsAreReusedByDependentModules(@TempDir Path module) throws Exception {
+        copyClasses(module, CustomerRegistered.class, Address.class, Geo.class);
+        DataProtectionConfig expected = publish(module, List.of());
+
+        try (ScanClassLoader loader = loader(module)) {
+            PublishedTypeFragments typeFragments = PublishedTypeFragments.load(loader, List.of(), objectMapper);
+            DataProtectionConfig result = generate(loader, typeFragments, List.of());
+
+            Assertions.assertEquals(2, typeFragments.publishedSize());
+            Assertions.assertEquals(List.of("io.axoniq:module:1.0"), List.copyOf(typeFragments.artifacts()));
+            Assertions.assertTrue(typeFragments.get(loader.loadClass(Address.class.getName())).isPresent());
+            Assertions.assertEquals(expected, result);
+        }
+    }
+
+    @Test
+    void fragmentsWithChangedClassFilesAreNotReused(@TempDir Path module) throws Exception {
+        copyClasses(module, CustomerRegistered.class, Address.class, Geo.class);
+        publish(module, List.of());
+        Path resource = module.resolve(PublishedTypeFragments.RESOURCE);
+        String published = Files.readString(resource, StandardCharsets.UTF_8);
+        Files.writeString(resource, published.replaceAll("\"hash\" : \"[0-9a-f]+\"", "\"hash\" : \"0\""));
+
+        try (ScanClassLoader loader = loader(module)) {
+            PublishedTypeFragments typeFragments = PublishedTypeFragments.load(loader, List.of(), objectMapper);
+
+            Assertions.assertEquals(2, typeFragments.publishedSize());
+            Assertions.assertTrue(typeFragments.get(loader.loadClass(Address.class.getName())).isEmpty());
+        }
+    }
+
+    @Test
+    void fragmentsGeneratedWithOtherIgnoresAreSkipped(@TempDir Path module) throws Exception {
+        copyClasses(module, CustomerRegistered.class, Address.class, Geo.class);
+        publish(module, List.of());
+
+        try (ScanClassLoader loader = loader(module)) {
+            List<String> ignores = List.of(Geo.class.getName());
+            PublishedTypeFragments typeFragments = PublishedTypeFragments.load(loader, ignores, objectMapper);
+
+            Assertions.assertEquals(0, typeFragments.publishedSize());
+        }
+    }
+
+    @Test
+    void fragmentsDependingOnPolymorphicTypesAreNotCached() {
+        Map<String, TypeFragment> stored = new ConcurrentHashMap<>();
+        TypeFragmentCache recording = new TypeFragmentCache() {
+            @Override
+            public Optional<TypeFragment> get(Class<?> type) {
+                return Optional.empty();
+            }
+
+            @Override
+            public void put(Class<?> type, TypeFragment fragment) {
+                stored.put(type.getName(), fragment);
+            }
+        };
+
+        new MetamodelGenerator(new SystemStreamLog(), new ArrayList<>(), getClass().getClassLoader(), recording)
+                .generateMetamodel(WalletCreated.class);
+
+        Assertions.assertFalse(stored.containsKey(Wallet.class.getName()));
+        Assertions.assertFalse(stored.containsKey(PaymentMethod.class.getName()));
+        Assertions.assertEquals(List.of(new SensitiveDataConfig(".lat", "0")),
+                                stored.get(Geo.class.getName()).getSensitiveData());
+        Assertions.assertEquals(Set.of(Geo.class.getName()),
+                                stored.get(Address.class.getName()).getDependencies());
+    }
+
+    private DataProtectionConfig publish(Path module, List<String> ignores) throws Exception {
+        try (ScanClassLoader loader = loader(module)) {
+            PublishedTypeFragments typeFragments = new PublishedTypeFragments(ignores, objectMapper);
+            DataProtectionConfig result = generate(loader, typeFragments, ignores);
+            typeFragments.write(module.resolve(PublishedTypeFragments.RESOURCE).toFile(),
+                                module.toFile(),
+                                "io.axoniq:module:1.0");
+            return result;
+        }
+    }
+
+    private static DataProtectionConfig generate(ClassLoader loader,
+                                                 TypeFragmentCache typeFragments,
+                                                 List<String> ignores) throws Exception {
+        return new MetamodelGenerator(new SystemStreamLog(), ignores, loader, typeFragments)
+                .generateMetamodel(loader.loadClass(CustomerRegistered.class.getName()));
+    }
+
+    private ScanClassLoader loader(Path module) throws Exception {
+        return new ScanClassLoader(List.of(module.toUri().toURL()), getClass().getClassLoader());
+    }
+
+    private static void copyClasses(Path outputDirectory, Class<?>... classes) throws Exception {
+        for (Class<?> clazz : classes) {
+            String resource = ClassFingerprints.resourceName(clazz.getName());
+            Path target = outputDirectory.resolve(resource);
+            Files.createDirectories(target.getParent());
+            try (InputStream in = clazz.getClassLoader().getResourceAsStream(resource)) {
+                Files.copy(in, target);
+            }
+        }
+    }
+
+    @SensitiveDataHolder
+    static class CustomerRegistered {
+
+        @SubjectId
+        String customerId;
+
+        Address address;
+
+        Address previousAddress;
+    }
+
+    static class Address {
+
+        @SensitiveData(replacementValue = "street")
+        String street;
+
+        Geo geo;
+    }
+
+    static class Geo {
+
+        @SensitiveData(replacementValue = "0")
+        String lat;
+    }
+
+    @SensitiveDataHolder
+    static class WalletCreated {
+
+        @SubjectId
+        String walletId;
+
+        Wallet wallet;
+
+        Address address;
+    }
+
+    static class Wallet {
+
+        PaymentMethod paymentMethod;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.classloading;
+
+import io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.generator.MetamodelGenerator;
+import io.axoniq.plugin.data.protection.testclasses.polymorphic.BankAccount;
+import io.axoniq.plugin.data.protection.testclasses.polymorphic.CreditCard;
+import io.axoniq.plugin.data.protection.testclasses.polymorphic.PaymentMethod;
+import io.axoniq.plugin.data.protection.testclasses.polymorphic.PaymentRegisteredEvent;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+class ScanClassLoaderTest {
+
+    private static final String PACKAGE = "io.axoniq.plugin.data.protection.testclasses.polymorphic";
+
+    private static final String RESOURCE = "dependency.txt";
+
+    @Test
+    void projectClassesAreLoadedChildFirst(@TempDir Path outputDirectory) throws Exception {
+        copyClasses(outputDirectory, PaymentRegisteredEvent.class);
+
+        try (ScanClassLoader loader = new ScanClassLoader(List.of(outputDirectory.toUri().toURL()),
+                                                          getClass().getClassLoader())) {
+            Class<?> loaded = loader.loadClass(PaymentRegisteredEvent.class.getName());
+
+            Assertions.assertSame(loader, loaded.getClassLoader());
+            Assertions.assertNotSame(PaymentRegisteredEvent.class, loaded);
+            Assertions.assertTrue(loaded.isAnnotationPresent(SensitiveDataHolder.class));
+            Assertions.assertSame(SensitiveDataHolder.class, loader.loadClass(SensitiveDataHolder.class.getName()));
+        }
+    }
+
+    @Test
+    void generatorScansThroughTheGivenLoader(@TempDir Path outputDirectory) throws Exception {
+        copyClasses(outputDirectory,
+                    PaymentRegisteredEvent.class, PaymentMethod.class, CreditCard.class, BankAccount.class);
+
+        try (ScanClassLoader loader = new ScanClassLoader(List.of(outputDirectory.toUri().toURL()),
+                                                          getClass().getClassLoader())) {
+            MetamodelGenerator generator = new MetamodelGenerator(new SystemStreamLog(), new ArrayList<>(), loader);
+            DataProtectionConfigList result = generator.generateMetamodel(PACKAGE);
+            DataProtectionConfigList expected = new MetamodelGenerator().generateMetamodel(PACKAGE);
+
+            Assertions.assertEquals(expected, result);
+        }
+    }
+
+    @Test
+    void dependencyLoadersAreSharedForIdenticalDependencySets(@TempDir Path firstModule,
+                                                              @TempDir Path secondModule,
+                                                              @TempDir Path dependency) throws Exception {
+        List<URL> dependencies = List.of(dependency.toUri().toURL());
+        try (ScanClassLoaders loaders = new ScanClassLoaders(getClass().getClassLoader());
+             ScanClassLoader first = loaders.create(List.of(firstModule.toUri().toURL()), dependencies);
+             ScanClassLoader second = loaders.create(List.of(secondModule.toUri().toURL()), dependencies);
+             ScanClassLoader other = loaders.create(List.of(secondModule.toUri().toURL()), List.of())) {
+            Assertions.assertNotSame(first, second);
+            Assertions.assertSame(first.getParent(), second.getParent());
+            Assertions.assertSame(getClass().getClassLoader(), other.getParent());
+            Assertions.assertEquals(1, loaders.size());
+        }
+    }
+
+    @Test
+    void replacedDependencyLoadersAreClosedOnceUnused(@TempDir Path module, @TempDir Path dependency)
+            throws Exception {
+        Path jar = dependency.resolve("dependency.jar");
+        writeJar(jar);
+        List<URL> dependencies = List.of(jar.toUri().toURL());
+        try (ScanClassLoaders loaders = new ScanClassLoaders(getClass().getClassLoader())) {
+            ScanClassLoader first = loaders.create(List.of(module.toUri().toURL()), dependencies);
+            Assertions.assertNotNull(first.getParent().getResource(RESOURCE));
+
+            Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() - 10_000));
+            try (ScanClassLoader second = loaders.create(List.of(module.toUri().toURL()), dependencies)) {
+                Assertions.assertNotSame(first.getParent(), second.getParent());
+                Assertions.assertNotNull(first.getParent().getResource(RESOURCE));
+
+                first.close();
+
+                Assertions.assertNull(first.getParent().getResource(RESOURCE));
+                Assertions.assertNotNull(second.getParent().getResource(RESOURCE));
+            }
+        }
+    }
+
+    @Test
+    void sessionLoadersAreClosedWhenTheirExecutionsFinished(@TempDir Path module, @TempDir Path dependency)
+            throws Exception {
+        Path jar = dependency.resolve("dependency.jar");
+        writeJar(jar);
+        MavenSession session = new MavenSession(null,
+                                                new DefaultRepositorySystemSession(),
+                                                new DefaultMavenExecutionRequest(),
+                                                new DefaultMavenExecutionResult());
+        ScanClassLoaders loaders = ScanClassLoaders.of(session, getClass().getClassLoader());
+        List<URL> dependencies = List.of(jar.toUri().toURL());
+
+        ScanClassLoader first = loaders.create(List.of(module.toUri().toURL()), dependencies);
+        ScanClassLoader second = ScanClassLoaders.of(session, getClass().getClassLoader())
+                                                 .create(List.of(module.toUri().toURL()), dependencies);
+        Assertions.assertSame(first.getParent(), second.getParent());
+
+        first.close();
+        Assertions.assertNotNull(second.getParent().getResource(RESOURCE));
+        second.close();
+
+        Assertions.assertNull(second.getParent().getResource(RESOURCE));
+        Assertions.assertEquals(0, loaders.size());
+    }
+
+    @Test
+    void leastRecentlyUsedIdleLoadersAreClosed(@TempDir Path module, @TempDir Path dependency) throws Exception {
+        Path firstJar = dependency.resolve("first.jar");
+        Path secondJar = dependency.resolve("second.jar");
+        writeJar(firstJar);
+        writeJar(secondJar);
+        try (ScanClassLoaders loaders = new ScanClassLoaders(getClass().getClassLoader(), 1)) {
+            ScanClassLoader first = loaders.create(List.of(module.toUri().toURL()), List.of(firstJar.toUri().toURL()));
+            first.close();
+            Assertions.assertNotNull(first.getParent().getResource(RESOURCE));
+            try (ScanClassLoader reused = loaders.create(List.of(module.toUri().toURL()),
+                                                         List.of(firstJar.toUri().toURL()))) {
+                Assertions.assertSame(first.getParent(), reused.getParent());
+            }
+
+            ScanClassLoader second = loaders.create(List.of(module.toUri().toURL()),
+                                                    List.of(secondJar.toUri().toURL()));
+            second.close();
+
+            Assertions.assertNull(first.getParent().getResource(RESOURCE));
+            Assertions.assertNotNull(second.getParent().getResource(RESOURCE));
+            Assertions.assertEquals(1, loaders.size());
+        }
+    }
+
+    private static void writeJar(Path jar) throws Exception {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(RESOURCE));
+            out.write(1);
+            out.closeEntry();
+        }
+    }
+
+    private static void copyClasses(Path outputDirectory, Class<?>... classes) throws Exception {
+        for (Class<?> clazz : classes) {
+            String resource = clazz.getName().replace('.', '/') + ".class";
+            Path target = outputDirectory.resolve(resource);
+            Files.createDirectories(target.getParent());
+            try (InputStream in = clazz.getClassLoader().getResourceAsStream(resource)) {
+                Files.copy(in, target);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.fork;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.generator.Guardrails;
+import io.axoniq.plugin.data.protection.generator.MetamodelGenerator;
+import io.axoniq.plugin.data.protection.generator.utils.JsonUtils;
+import io.axoniq.plugin.data.protection.testclasses.polymorphic.BankAccount;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+class JvmForkTest {
+
+    private static final List<String> PACKAGES = List.of("io.axoniq.plugin.data.protection.testclasses.polymorphic");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void forkedGenerationMatchesTheInProcessGeneration(@TempDir Path workingDirectory) throws Exception {
+        ForkedGenerator request = new ForkedGenerator(PACKAGES, List.of(), List.of(testClasses()), List.of(), 2, true);
+        JvmFork jvmFork = new JvmFork(new SystemStreamLog(), workingDirectory.toFile(), "256m", "128m", List.of());
+
+        File result = jvmFork.run(request, JvmFork.pluginClasspath(getClass().getClassLoader()), objectMapper);
+
+        Assertions.assertEquals(new MetamodelGenerator().generateMetamodel(PACKAGES),
+                                JsonUtils.readConfigList(objectMapper.readTree(result)));
+    }
+
+    @Test
+    void failingForksAreReported(@TempDir Path workingDirectory) {
+        ForkedGenerator request = new ForkedGenerator(PACKAGES, List.of(), List.of(testClasses()), List.of(), 1, true);
+        JvmFork jvmFork = new JvmFork(new SystemStreamLog(), workingDirectory.toFile(), "1x", null, null);
+
+        Assertions.assertThrows(IOException.class, () -> jvmFork.run(
+                request, JvmFork.pluginClasspath(getClass().getClassLoader()), objectMapper));
+    }
+
+    @Test
+    void requestsSurviveTheRoundTrip(@TempDir Path workingDirectory) throws Exception {
+        File requestFile = workingDirectory.resolve("request.json").toFile();
+        File resultFile = workingDirectory.resolve("result.json").toFile();
+        List<File> scanRoots = List.of(new File(testClasses()));
+        new ForkedGenerator(PACKAGES, null, List.of(testClasses()), scanRoots, 1, false)
+                .writeRequest(requestFile, objectMapper);
+
+        ForkedGenerator.main(new String[]{requestFile.getPath(), resultFile.getPath()});
+
+        DataProtectionConfigList result = JsonUtils.readConfigList(objectMapper.readTree(resultFile));
+        Assertions.assertEquals(new MetamodelGenerator().generateMetamodel(PACKAGES), result);
+    }
+
+    @Test
+    void forkedGenerationPublishesTheTypeFragments(@TempDir Path workingDirectory) throws Exception {
+        File requestFile = workingDirectory.resolve("request.json").toFile();
+        File resultFile = workingDirectory.resolve("result.json").toFile();
+        File typeFragments = workingDirectory.resolve("types.json").toFile();
+        List<File> scanRoots = List.of(new File(testClasses()));
+        ForkedCaches caches = new ForkedCaches(true,
+                                               workingDirectory.resolve("cache").toFile(),
+                                               typeFragments,
+                                               new File(testClasses()),
+                                               "io.axoniq:test:1.0");
+        new ForkedGenerator(PACKAGES, null, List.of(testClasses()), scanRoots, 1, false, Guardrails.NONE, caches)
+                .writeRequest(requestFile, objectMapper);
+
+        ForkedGenerator.main(new String[]{requestFile.getPath(), resultFile.getPath()});
+
+        JsonNode published = objectMapper.readTree(typeFragments);
+        Assertions.assertEquals("io.axoniq:test:1.0", published.path("artifact").asText());
+        Assertions.assertTrue(published.toString().contains(BankAccount.class.getName()));
+    }
+
+    private static String testClasses() {
+        return new File("target/test-classes").getAbsolutePath();
+    }
+}
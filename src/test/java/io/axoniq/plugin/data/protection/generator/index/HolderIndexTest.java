@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.index;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.config.SensitiveDataConfig;
+import io.axoniq.plugin.data.protection.config.SubjectIdConfig;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+class HolderIndexTest {
+
+    HolderIndexWriter writer = new HolderIndexWriter(new ObjectMapper());
+
+    DataProtectionConfig first = new DataProtectionConfig(
+            "io.axoniq.FirstEvent", "", new SubjectIdConfig("$.id"),
+            new SensitiveDataConfig("$.name", "name"));
+
+    DataProtectionConfig second = new DataProtectionConfig(
+            "io.axoniq.SecondEvent", "2", new SubjectIdConfig("$.id"),
+            new SensitiveDataConfig("$.email", "email"));
+
+    @Test
+    void writtenIndexCanBeLoaded(@TempDir Path outputDirectory) throws Exception {
+        writer.write(new DataProtectionConfigList(List.of(first, second)),
+                     outputDirectory.resolve(HolderIndex.RESOURCE).toFile());
+
+        HolderIndex index = load(outputDirectory.toFile());
+
+        Assertions.assertEquals(List.of(new HolderIndex.Entry("io.axoniq.FirstEvent", "", writer.hash(first)),
+                                        new HolderIndex.Entry("io.axoniq.SecondEvent", "2", writer.hash(second))),
+                                index.entries());
+        Assertions.assertEquals("2", index.find("io.axoniq.SecondEvent").orElseThrow().getRevision());
+        Assertions.assertTrue(index.find("io.axoniq.UnknownEvent").isEmpty());
+    }
+
+    @Test
+    void indexesOfSeveralArtifactsAreMerged(@TempDir Path firstArtifact, @TempDir Path secondArtifact)
+            throws Exception {
+        writer.write(new DataProtectionConfigList(List.of(first)),
+                     firstArtifact.resolve(HolderIndex.RESOURCE).toFile());
+        writer.write(new DataProtectionConfigList(List.of(second)),
+                     secondArtifact.resolve(HolderIndex.RESOURCE).toFile());
+
+        HolderIndex index = load(firstArtifact.toFile(), secondArtifact.toFile());
+
+        Assertions.assertEquals(List.of("io.axoniq.FirstEvent", "io.axoniq.SecondEvent"),
+                                List.copyOf(index.holderTypes()));
+    }
+
+    @Test
+    void hashChangesWhenConfigurationChanges() {
+        DataProtectionConfig changed = new DataProtectionConfig(
+                "io.axoniq.FirstEvent", "", new SubjectIdConfig("$.id"),
+                new SensitiveDataConfig("$.name", "other"));
+
+        Assertions.assertEquals(writer.hash(first), writer.hash(first));
+        Assertions.assertNotEquals(writer.hash(first), writer.hash(changed));
+    }
+
+    @Test
+    void indexLoadsWithoutThePluginDependencies(@TempDir Path outputDirectory) throws Exception {
+        writer.write(new DataProtectionConfigList(List.of(first)),
+                     outputDirectory.resolve(HolderIndex.RESOURCE).toFile());
+        URL pluginClasses = HolderIndex.class.getProtectionDomain().getCodeSource().getLocation();
+
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[]{pluginClasses, outputDirectory.toUri().toURL()}, ClassLoader.getPlatformClassLoader())) {
+            Class<?> isolated = classLoader.loadClass(HolderIndex.class.getName());
+            Object index = isolated.getMethod("load", ClassLoader.class).invoke(null, classLoader);
+
+            Assertions.assertNotSame(HolderIndex.class, isolated);
+            Assertions.assertEquals(Set.of("io.axoniq.FirstEvent"), isolated.getMethod("holderTypes").invoke(index));
+        }
+    }
+
+    private HolderIndex load(File... directories) throws Exception {
+        URL[] urls = new URL[directories.length];
+        for (int i = 0; i < directories.length; i++) {
+            urls[i] = directories[i].toURI().toURL();
+        }
+        try (URLClassLoader classLoader = new URLClassLoader(urls, null)) {
+            return HolderIndex.load(classLoader);
+        }
+    }
+}
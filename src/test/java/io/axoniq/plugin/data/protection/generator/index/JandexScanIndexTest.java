@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.index;
+
+import io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.generator.MetamodelGenerator;
+import io.axoniq.plugin.data.protection.generator.cache.TypeFragmentCache;
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoader;
+import io.axoniq.plugin.data.protection.testclasses.polymorphic.BankAccount;
+import io.axoniq.plugin.data.protection.testclasses.polymorphic.CreditCard;
+import io.axoniq.plugin.data.protection.testclasses.polymorphic.PaymentMethod;
+import io.axoniq.plugin.data.protection.testclasses.polymorphic.PaymentRegisteredEvent;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexWriter;
+import org.jboss.jandex.Indexer;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+import org.reflections.scanners.Scanners;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+class JandexScanIndexTest {
+
+    private static final String PACKAGE = "io.axoniq.plugin.data.protection.testclasses";
+
+    private static final List<Class<?>> CLASSES =
+            List.of(PaymentRegisteredEvent.class, PaymentMethod.class, CreditCard.class, BankAccount.class);
+
+    @Test
+    void directoryIndexGivesSameResultAsScan() throws Exception {
+        URL testClasses = PaymentMethod.class.getProtectionDomain().getCodeSource().getLocation();
+        JandexScanIndex jandex = new JandexScanIndex(true);
+        DataProtectionConfigList expected = new MetamodelGenerator().generateMetamodel(PACKAGE);
+
+        DataProtectionConfigList result = new MetamodelGenerator(new SystemStreamLog(), new ArrayList<>(),
+                                                                 getClass().getClassLoader(),
+                                                                 TypeFragmentCache.NONE, jandex)
+                .generateMetamodel(PACKAGE);
+
+        Assertions.assertTrue(jandex.get(testClasses, PACKAGE).isPresent());
+        Assertions.assertEquals(expected, result);
+    }
+
+    @Test
+    void nestedClassesUseBinaryNames() throws Exception {
+        File testClasses = new File(getClass().getProtectionDomain().getCodeSource().getLocation().toURI());
+        String pkg = "io.axoniq.plugin.data.protection.generator.cache";
+
+        Map<String, Map<String, Set<String>>> store =
+                JandexScanIndex.toStore(JandexScanIndex.indexDirectory(testClasses, pkg), pkg);
+
+        Assertions.assertTrue(store.get(Scanners.TypesAnnotated.index())
+                                   .get(SensitiveDataHolder.class.getName())
+                                   .contains(pkg + ".PublishedTypeFragmentsTest$CustomerRegistered"));
+    }
+
+    @Test
+    void jarIndexIsUsedInsteadOfScanning(@TempDir Path libs) throws Exception {
+        File jar = jar(libs.resolve("payments.jar"), true);
+        JandexScanIndex jandex = new JandexScanIndex(false);
+        DataProtectionConfigList expected = new MetamodelGenerator().generateMetamodel(PACKAGE + ".polymorphic");
+
+        try (ScanClassLoader loader = new ScanClassLoader(List.of(jar.toURI().toURL()), getClass().getClassLoader())) {
+            DataProtectionConfigList result = new MetamodelGenerator(new SystemStreamLog(), new ArrayList<>(), loader,
+                                                                     TypeFragmentCache.NONE, jandex)
+                    .generateMetamodel(PACKAGE + ".polymorphic");
+
+            Assertions.assertTrue(jandex.get(jar.toURI().toURL(), PACKAGE).isPresent());
+            Assertions.assertEquals(expected, result);
+        }
+    }
+
+    @Test
+    void jarsWithoutIndexAreScanned(@TempDir Path libs) throws Exception {
+        File jar = jar(libs.resolve("payments.jar"), false);
+
+        Assertions.assertTrue(new JandexScanIndex(true).get(jar.toURI().toURL(), PACKAGE).isEmpty());
+    }
+
+    private static File jar(Path target, boolean withIndex) throws Exception {
+        Indexer indexer = new Indexer();
+        try (OutputStream out = Files.newOutputStream(target); JarOutputStream jar = new JarOutputStream(out)) {
+            Set<String> directories = new TreeSet<>();
+            for (Class<?> clazz : CLASSES) {
+                String resource = clazz.getName().replace('.', '/') + ".class";
+                for (int i = resource.indexOf('/'); i != -1; i = resource.indexOf('/', i + 1)) {
+                    if (directories.add(resource.substring(0, i + 1))) {
+                        jar.putNextEntry(new JarEntry(resource.substring(0, i + 1)));
+                        jar.closeEntry();
+                    }
+                }
+                jar.putNextEntry(new JarEntry(resource));
+                try (InputStream in = clazz.getClassLoader().getResourceAsStream(resource)) {
+                    byte[] bytes = in.readAllBytes();
+                    jar.write(bytes);
+                    indexer.index(new ByteArrayInputStream(bytes));
+                }
+                jar.closeEntry();
+            }
+            if (withIndex) {
+                Index index = indexer.complete();
+                jar.putNextEntry(new JarEntry(JandexScanIndex.RESOURCE));
+                new IndexWriter(jar).write(index);
+                jar.closeEntry();
+            }
+        }
+        return target.toFile();
+    }
+}
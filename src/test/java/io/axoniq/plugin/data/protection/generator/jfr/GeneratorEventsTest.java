@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.jfr;
+
+import io.axoniq.plugin.data.protection.annotation.SensitiveData;
+import io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder;
+import io.axoniq.plugin.data.protection.annotation.SubjectId;
+import io.axoniq.plugin.data.protection.generator.MetamodelGenerator;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class GeneratorEventsTest {
+
+    private static final String PACKAGE = GeneratorEventsTest.class.getPackageName();
+
+    @Test
+    void generationEmitsScanHolderAndCacheEvents(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("generation.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PackageScanEvent.class);
+            recording.enable(HolderGenerationEvent.class);
+            recording.enable(CacheLookupEvent.class);
+            recording.start();
+
+            new MetamodelGenerator().generateMetamodel(List.of(PACKAGE));
+
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+        List<RecordedEvent> scans = events(events, "io.axoniq.dataprotection.PackageScan");
+        Assertions.assertEquals(1, scans.size());
+        Assertions.assertEquals(PACKAGE, scans.get(0).getString("pkg"));
+        Assertions.assertEquals(1, scans.get(0).getInt("holders"));
+
+        List<RecordedEvent> holders = events(events, "io.axoniq.dataprotection.HolderGeneration");
+        Assertions.assertEquals(1, holders.size());
+        Assertions.assertEquals(Account.class.getName(), holders.get(0).getString("holder"));
+        Assertions.assertEquals(2, holders.get(0).getInt("paths"));
+
+        List<RecordedEvent> lookups = events(events, "io.axoniq.dataprotection.CacheLookup");
+        Assertions.assertTrue(lookups.stream().anyMatch(
+                lookup -> Owner.class.getName().equals(lookup.getString("key"))
+                        && CacheLookupEvent.TYPE_FRAGMENTS.equals(lookup.getString("cache"))
+                        && !lookup.getBoolean("hit")));
+    }
+
+    @Test
+    void eventsAreNotCommittedWithoutRecording() {
+        HolderGenerationEvent event = new HolderGenerationEvent();
+        event.begin();
+
+        Assertions.assertFalse(event.shouldCommit());
+    }
+
+    private static List<RecordedEvent> events(List<RecordedEvent> events, String name) {
+        return events.stream()
+                     .filter(event -> event.getEventType().getName().equals(name))
+                     .collect(Collectors.toList());
+    }
+
+    @SensitiveDataHolder
+    static class Account {
+
+        @SubjectId
+        String id;
+
+        Owner owner;
+    }
+
+    static class Owner {
+
+        @SensitiveData(replacementValue = "")
+        String name;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.ksp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tschuchort.compiletesting.KotlinCompilation;
+import com.tschuchort.compiletesting.KspKt;
+import com.tschuchort.compiletesting.SourceFile;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.config.SensitiveDataConfig;
+import io.axoniq.plugin.data.protection.config.SubjectIdConfig;
+import io.axoniq.plugin.data.protection.generator.MetamodelGenerator;
+import io.axoniq.plugin.data.protection.generator.processor.CompiledFragments;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+class DataProtectionSymbolProcessorTest {
+
+    private static final String TEST_OBJECTS =
+            "src/test/java/io/axoniq/plugin/data/protection/testclasses/testObjects.kt";
+
+    @TempDir
+    Path workingDirectory;
+
+    @Test
+    void fragmentsMatchTheReflectionBasedGenerator() throws Exception {
+        KotlinCompilation compilation = compilation(SourceFile.Companion.fromPath(new File(TEST_OBJECTS)));
+
+        Assertions.assertEquals(KotlinCompilation.ExitCode.OK, compilation.compile().getExitCode());
+
+        DataProtectionConfigList fragments = fragments(compilation);
+        Assertions.assertEquals(3, fragments.getConfig().size());
+        MetamodelGenerator metamodelGenerator = new MetamodelGenerator();
+        for (DataProtectionConfig fragment : fragments.getConfig()) {
+            Assertions.assertEquals(metamodelGenerator.generateMetamodel(Class.forName(fragment.getType())), fragment);
+        }
+    }
+
+    @Test
+    void sealedAndNullableTypes() throws Exception {
+        KotlinCompilation compilation = compilation(SourceFile.Companion.kotlin("Contacts.kt", String.join(
+                "\n",
+                "package io.axoniq.ksp",
+                "import io.axoniq.plugin.data.protection.annotation.*",
+                "sealed class Contact",
+                "data class Email(@SensitiveData(replacementValue = \"email\") val email: String) : Contact()",
+                "data class Phone(@SensitiveData(replacementValue = \"phone\") val phone: String?) : Contact()",
+                "@SensitiveDataHolder",
+                "data class ContactAdded(",
+                "    @SubjectId val id: String,",
+                "    val contact: Contact?,",
+                "    val history: List<Contact?>,",
+                "    val byName: Map<String, Contact?>?",
+                ")"), false));
+
+        Assertions.assertEquals(KotlinCompilation.ExitCode.OK, compilation.compile().getExitCode());
+
+        DataProtectionConfig expected = new DataProtectionConfig(
+                "io.axoniq.ksp.ContactAdded",
+                "",
+                new SubjectIdConfig("$.id"),
+                List.of(new SensitiveDataConfig("$.contact.email", "email"),
+                        new SensitiveDataConfig("$.contact.phone", "phone"),
+                        new SensitiveDataConfig("$.history[*].email", "email"),
+                        new SensitiveDataConfig("$.history[*].phone", "phone"),
+                        new SensitiveDataConfig("$.byName.*.email", "email"),
+                        new SensitiveDataConfig("$.byName.*.phone", "phone")));
+        Assertions.assertEquals(new DataProtectionConfigList(List.of(expected)), fragments(compilation));
+    }
+
+    @Test
+    void overriddenPropertiesAreReportedOnce() throws Exception {
+        KotlinCompilation compilation = compilation(SourceFile.Companion.kotlin("Overrides.kt", String.join(
+                "\n",
+                "package io.axoniq.ksp",
+                "import io.axoniq.plugin.data.protection.annotation.*",
+                "open class Base(@SensitiveData(replacementValue = \"base\") open val name: String)",
+                "@SensitiveDataHolder",
+                "class Derived(@SubjectId val id: String,",
+                "              @SensitiveData(replacementValue = \"derived\") override val name: String) : Base(name)"),
+                                                                        false));
+
+        Assertions.assertEquals(KotlinCompilation.ExitCode.OK, compilation.compile().getExitCode());
+
+        DataProtectionConfig expected = new DataProtectionConfig(
+                "io.axoniq.ksp.Derived",
+                "",
+                new SubjectIdConfig("$.id"),
+                new SensitiveDataConfig("$.name", "derived"));
+        Assertions.assertEquals(new DataProtectionConfigList(List.of(expected)), fragments(compilation));
+    }
+
+    @Test
+    void missingSubjectIdFailsTheCompilation() {
+        KotlinCompilation compilation = compilation(SourceFile.Companion.kotlin("Missing.kt", String.join(
+                "\n",
+                "package io.axoniq.ksp",
+                "import io.axoniq.plugin.data.protection.annotation.*",
+                "@SensitiveDataHolder",
+                "class Missing(@SensitiveData(replacementValue = \"\") val name: String)"), false));
+
+        Assertions.assertEquals(KotlinCompilation.ExitCode.COMPILATION_ERROR, compilation.compile().getExitCode());
+    }
+
+    private KotlinCompilation compilation(SourceFile source) {
+        KotlinCompilation compilation = new KotlinCompilation();
+        compilation.setWorkingDir(workingDirectory.toFile());
+        compilation.setSources(List.of(source));
+        compilation.setInheritClassPath(true);
+        compilation.setMessageOutputStream(System.out);
+        KspKt.setSymbolProcessorProviders(compilation, List.of(new DataProtectionSymbolProcessorProvider()));
+        KspKt.setKspArgs(compilation, Map.of());
+        return compilation;
+    }
+
+    private DataProtectionConfigList fragments(KotlinCompilation compilation) throws Exception {
+        File resources = new File(KspKt.getKspSourcesDir(compilation), "resources");
+        return CompiledFragments.read(resources, List.of("io.axoniq"), new ObjectMapper());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.axoniq.plugin.data.protection.annotation.SensitiveData;
+import io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder;
+import io.axoniq.plugin.data.protection.annotation.SubjectId;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.generator.MetamodelGenerator;
+import org.junit.jupiter.api.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+
+class GenerationMetricsTest {
+
+    private static final String PACKAGE = GenerationMetricsTest.class.getPackageName();
+
+    @Test
+    void countsTheWorkOfAGeneration() {
+        GenerationMetrics metrics = new GenerationMetrics();
+
+        DataProtectionConfigList config = new MetamodelGenerator().generateMetamodel(List.of(PACKAGE),
+                                                                                      Runnable::run,
+                                                                                      metrics);
+
+        Assertions.assertEquals(1, config.getConfig().size());
+        Assertions.assertEquals(1, metrics.holders());
+        Assertions.assertEquals(4, metrics.paths());
+        Assertions.assertEquals(2, metrics.typesVisited());
+        Assertions.assertEquals(6, metrics.fieldsInspected());
+        Assertions.assertEquals(2, metrics.generationHits());
+        Assertions.assertEquals(0, metrics.typeFragmentHits());
+        Assertions.assertEquals(0, metrics.millis(GenerationMetrics.Phase.SETUP));
+        Assertions.assertTrue(metrics.dependencies().containsAll(
+                List.of(Order.class.getName(), Address.class.getName(), Object.class.getName())));
+    }
+
+    @Test
+    void phaseTimesAddUp() {
+        GenerationMetrics metrics = new GenerationMetrics();
+        long start = System.nanoTime() - 3_000_000;
+
+        metrics.addTime(GenerationMetrics.Phase.WRITE, start);
+        metrics.addTime(GenerationMetrics.Phase.WRITE, start);
+
+        Assertions.assertTrue(metrics.millis(GenerationMetrics.Phase.WRITE) >= 6);
+        Assertions.assertEquals(metrics.millis(GenerationMetrics.Phase.WRITE), metrics.totalMillis());
+    }
+
+    @Test
+    void reportHoldsAllPhasesAndCounters() {
+        GenerationMetrics metrics = new GenerationMetrics();
+        metrics.sampleHeap();
+        metrics.scanIndexHit();
+        metrics.typeFragmentHit();
+
+        ObjectNode report = metrics.toJson(new ObjectMapper());
+
+        Assertions.assertEquals(5, report.get("phases").size());
+        Assertions.assertTrue(report.get("phases").has("serializationMillis"));
+        Assertions.assertEquals(1, report.get("cacheHits").get("scanIndexes").asLong());
+        Assertions.assertEquals(1, report.get("cacheHits").get("typeFragments").asLong());
+        Assertions.assertTrue(report.get("peakHeapBytes").asLong() > 0);
+    }
+
+    @Test
+    void samplingTheHeapKeepsThePeaksOfTheJvm() {
+        long jvmPeak = jvmPeakHeapBytes();
+        GenerationMetrics metrics = new GenerationMetrics();
+
+        metrics.sampleHeap();
+
+        Assertions.assertTrue(metrics.peakHeapBytes() > 0);
+        Assertions.assertTrue(jvmPeakHeapBytes() >= jvmPeak);
+        Assertions.assertTrue(metrics.peakHeapBytes() <= jvmPeakHeapBytes());
+    }
+
+    private static long jvmPeakHeapBytes() {
+        return ManagementFactory.getMemoryPoolMXBeans()
+                                .stream()
+                                .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isValid())
+                                .map(MemoryPoolMXBean::getPeakUsage)
+                                .mapToLong(MemoryUsage::getUsed)
+                                .sum();
+    }
+
+    @SensitiveDataHolder
+    static class Order {
+
+        @SubjectId
+        String id;
+
+        Address billing;
+
+        Address shipping;
+
+        List<Address> previous;
+    }
+
+    static class Address {
+
+        @SensitiveData(replacementValue = "")
+        String street;
+
+        String city;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.generator.MetamodelGenerator;
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoader;
+import io.axoniq.plugin.data.protection.testsupport.SyntheticCatalog;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.nio.file.Path;
+import java.util.List;
+
+class GenerationProfileTest {
+
+    private static final String PACKAGE = "io.axoniq.profiled";
+
+    private final SyntheticCatalog catalog = SyntheticCatalog.builder(PACKAGE).holders(3).depth(2).fanOut(2).build();
+
+    @Test
+    void profilesHoldersAndTypes(@TempDir Path classes) throws Exception {
+        catalog.write(classes);
+        GenerationMetrics metrics = new GenerationMetrics(true);
+
+        DataProtectionConfigList config = generate(classes, metrics);
+
+        GenerationProfile profile = metrics.profile().orElseThrow();
+        List<GenerationProfile.HolderProfile> holders = profile.slowestHolders(10);
+        Assertions.assertEquals(3, holders.size());
+        Assertions.assertEquals(metrics.fieldsInspected(),
+                                holders.stream().mapToLong(GenerationProfile.HolderProfile::getFields).sum());
+        Assertions.assertEquals(metrics.paths(),
+                                holders.stream().mapToLong(GenerationProfile.HolderProfile::getPaths).sum());
+        holders.forEach(holder -> Assertions.assertEquals(3, holder.getMaxDepth()));
+        Assertions.assertEquals(1, profile.slowestHolders(1).size());
+        Assertions.assertEquals(config.getConfig().size(), holders.size());
+
+        GenerationProfile.TypeProfile hottest = profile.hotTypes(1).get(0);
+        Assertions.assertEquals(PACKAGE + ".Value0_0", hottest.getType());
+        Assertions.assertEquals(3, hottest.getRequests());
+        Assertions.assertEquals(3, hottest.getHolders());
+    }
+
+    @Test
+    void reportListsTheTopHoldersAndTypes(@TempDir Path classes) throws Exception {
+        catalog.write(classes);
+        GenerationMetrics metrics = new GenerationMetrics(true);
+        generate(classes, metrics);
+
+        ObjectNode report = metrics.profile().orElseThrow().toJson(new ObjectMapper(), 2);
+
+        Assertions.assertEquals(2, report.get("slowestHolders").size());
+        Assertions.assertEquals(2, report.get("hotTypes").size());
+        Assertions.assertEquals(2, report.get("slowestTypes").size());
+        Assertions.assertTrue(report.get("slowestHolders").get(0).has("maxDepth"));
+    }
+
+    @Test
+    void profilingIsOffByDefault() {
+        Assertions.assertTrue(new GenerationMetrics().profile().isEmpty());
+    }
+
+    private DataProtectionConfigList generate(Path classes, GenerationMetrics metrics) throws Exception {
+        try (ScanClassLoader loader = new ScanClassLoader(List.of(classes.toUri().toURL()),
+                                                          getClass().getClassLoader())) {
+            return new MetamodelGenerator(new SystemStreamLog(), List.of(), loader)
+                    .generateMetamodel(List.of(PACKAGE), Runnable::run, metrics);
+        }
+    }
+}
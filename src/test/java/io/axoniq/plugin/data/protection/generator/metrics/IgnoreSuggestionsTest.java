@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.axoniq.plugin.data.protection.generator.MetamodelGenerator;
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+class IgnoreSuggestionsTest {
+
+    private static final String PACKAGE = "io.axoniq.plugin.data.protection.suggestionclasses";
+
+    @Test
+    void packagesWithoutSensitiveDataAreSuggested() {
+        GenerationMetrics metrics = new GenerationMetrics();
+
+        new MetamodelGenerator().generateMetamodel(List.of(PACKAGE + ".events"), Runnable::run, metrics);
+
+        List<IgnoreSuggestions.Suggestion> suggestions = metrics.ignoreSuggestions().suggestions(10);
+        Assertions.assertEquals(List.of(PACKAGE + ".money.*"), ignores(suggestions));
+        Assertions.assertEquals(2, suggestions.get(0).getTypes());
+        Assertions.assertEquals(4, suggestions.get(0).getFields());
+        Assertions.assertEquals(PACKAGE + ".money.*", metrics.toJson(new ObjectMapper())
+                                                             .get("ignoreSuggestions").get(0).get("ignore").asText());
+    }
+
+    @Test
+    void onlyTheBroadestSafePackageIsSuggested() {
+        IgnoreSuggestions suggestions = new IgnoreSuggestions();
+        suggestions.typeInspected("org.joda.time.DateTime", 100, 3, true);
+        suggestions.typeInspected("org.joda.time.chrono.ISOChronology", 50, 2, true);
+        suggestions.typeInspected("org.hibernate.proxy.HibernateProxy", 500, 1, true);
+        suggestions.typeInspected("org.hibernate.Address", 10, 1, false);
+
+        Assertions.assertEquals(List.of("org.hibernate.proxy.*", "org.joda.*"), ignores(suggestions.suggestions(10)));
+        Assertions.assertEquals(List.of("org.hibernate.proxy.*"), ignores(suggestions.suggestions(1)));
+    }
+
+    @Test
+    void scannedPackagesAndHoldersAreNeverSuggested() {
+        IgnoreSuggestions suggestions = new IgnoreSuggestions();
+        suggestions.scanned(List.of("com.acme.events"));
+        suggestions.holder("com.acme.orders.OrderPlaced");
+        suggestions.typeInspected("com.acme.events.Metadata", 100, 3, true);
+        suggestions.typeInspected("com.acme.orders.Amount", 100, 3, true);
+        suggestions.typeInspected("com.acme.shared.Money", 100, 3, true);
+
+        Assertions.assertEquals(List.of("com.acme.shared.*"), ignores(suggestions.suggestions(10)));
+    }
+
+    private static List<String> ignores(List<IgnoreSuggestions.Suggestion> suggestions) {
+        return suggestions.stream().map(IgnoreSuggestions.Suggestion::getIgnore).collect(Collectors.toList());
+    }
+}
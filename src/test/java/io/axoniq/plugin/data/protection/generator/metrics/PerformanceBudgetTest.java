@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.config.SensitiveDataConfig;
+import io.axoniq.plugin.data.protection.config.SubjectIdConfig;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class PerformanceBudgetTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final PerformanceBudget budget = new PerformanceBudget(2.0, 1.5, 1.5, 1000);
+
+    @Test
+    void runLikeTheBaselineIsWithinBudget() {
+        ObjectNode baseline = PerformanceBudget.baseline(metrics(10, 3, 20), objectMapper);
+
+        Assertions.assertEquals(List.of(), budget.check(baseline, metrics(10, 3, 20)));
+    }
+
+    @Test
+    void moreHoldersOfTheSameShapeAreWithinBudget() {
+        ObjectNode baseline = PerformanceBudget.baseline(metrics(10, 3, 20), objectMapper);
+
+        Assertions.assertEquals(List.of(), budget.check(baseline, metrics(100, 3, 200)));
+    }
+
+    @Test
+    void exceededRatiosAreReported() {
+        ObjectNode baseline = PerformanceBudget.baseline(metrics(10, 3, 20), objectMapper);
+
+        List<String> violations = budget.check(baseline, metrics(10, 6, 40));
+
+        Assertions.assertEquals(2, violations.size());
+        Assertions.assertTrue(violations.get(0).startsWith("visited types per holder grew 2.00 times"));
+        Assertions.assertTrue(violations.get(1).startsWith("paths per holder grew 2.00 times"));
+    }
+
+    @Test
+    void shortRunsAreNotComparedByDuration() {
+        ObjectNode baseline = PerformanceBudget.baseline(metrics(10, 3, 20), objectMapper);
+        baseline.put("durationMillis", 1);
+
+        Assertions.assertEquals(List.of(), budget.check(baseline, metrics(10, 3, 20)));
+    }
+
+    /**
+     * Create metrics of a run with the given number of holders, each with the given paths and visiting its own types.
+     */
+    private static GenerationMetrics metrics(int holders, int pathsPerHolder, int types) {
+        GenerationMetrics metrics = new GenerationMetrics();
+        List<DataProtectionConfig> configs = new ArrayList<>();
+        for (int holder = 0; holder < holders; holder++) {
+            List<SensitiveDataConfig> sensitiveData = new ArrayList<>();
+            for (int path = 1; path < pathsPerHolder; path++) {
+                sensitiveData.add(new SensitiveDataConfig("$.field" + path, ""));
+            }
+            configs.add(new DataProtectionConfig("Holder" + holder, "", new SubjectIdConfig("$.id"), sensitiveData));
+        }
+        for (int type = 0; type < types; type++) {
+            metrics.typeVisited("Type" + type);
+        }
+        metrics.result(new DataProtectionConfigList(configs));
+        return metrics;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.processor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.generator.MetamodelGenerator;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+class DataProtectionProcessorTest {
+
+    private static final String TEST_SOURCES = "src/test/java/io/axoniq/plugin/data/protection/";
+
+    @TempDir
+    Path outputDirectory;
+
+    @Test
+    void fragmentsMatchTheReflectionBasedGenerator() throws Exception {
+        boolean success = compile(outputDirectory, List.of(),
+                                  TEST_SOURCES + "generator/MetamodelGeneratorArrayTypesTest.java",
+                                  TEST_SOURCES + "generator/MetamodelGeneratorBoxedTypesTest.java",
+                                  TEST_SOURCES + "generator/MetamodelGeneratorCollectionTypesTest.java",
+                                  TEST_SOURCES + "generator/MetamodelGeneratorComplexTypesTest.java",
+                                  TEST_SOURCES + "generator/MetamodelGeneratorDateTimeTypesTest.java",
+                                  TEST_SOURCES + "generator/MetamodelGeneratorEnumTest.java",
+                                  TEST_SOURCES + "generator/MetamodelGeneratorExtraTypesTest.java",
+                                  TEST_SOURCES + "generator/MetamodelGeneratorMapTypesTest.java",
+                                  TEST_SOURCES + "generator/MetamodelGeneratorMathTypesTest.java",
+                                  TEST_SOURCES + "generator/MetamodelGeneratorPolymorphicTypesTest.java",
+                                  TEST_SOURCES + "generator/MetamodelGeneratorPrimitiveTypesTest.java",
+                                  TEST_SOURCES + "testclasses/DeepPathJavaEvent.java",
+                                  TEST_SOURCES + "testclasses/ShallowJavaEvent.java");
+        Assertions.assertTrue(success);
+
+        DataProtectionConfigList fragments = CompiledFragments.read(
+                outputDirectory.toFile(), List.of("io.axoniq"), new ObjectMapper());
+        Assertions.assertFalse(fragments.getConfig().isEmpty());
+
+        MetamodelGenerator metamodelGenerator = new MetamodelGenerator();
+        for (DataProtectionConfig fragment : fragments.getConfig()) {
+            Assertions.assertEquals(metamodelGenerator.generateMetamodel(Class.forName(fragment.getType())), fragment);
+        }
+    }
+
+    @Test
+    void fragmentsAreFilteredByPackage() throws Exception {
+        Assertions.assertTrue(compile(outputDirectory, List.of(),
+                                      TEST_SOURCES + "generator/MetamodelGeneratorEnumTest.java",
+                                      TEST_SOURCES + "testclasses/ShallowJavaEvent.java"));
+
+        List<String> types = CompiledFragments.read(outputDirectory.toFile(),
+                                                    List.of("io.axoniq.plugin.data.protection.testclasses"),
+                                                    new ObjectMapper())
+                                              .getConfig()
+                                              .stream()
+                                              .map(DataProtectionConfig::getType)
+                                              .collect(Collectors.toList());
+
+        Assertions.assertEquals(List.of("io.axoniq.plugin.data.protection.testclasses.ShallowJavaEvent"), types);
+    }
+
+    @Test
+    void fragmentsWithoutHolderClassAreStale() throws Exception {
+        Assertions.assertTrue(compile(outputDirectory, List.of(),
+                                      TEST_SOURCES + "testclasses/DeepPathJavaEvent.java",
+                                      TEST_SOURCES + "testclasses/ShallowJavaEvent.java"));
+        Path holderClass = outputDirectory.resolve(
+                "io/axoniq/plugin/data/protection/testclasses/ShallowJavaEvent.class");
+        Files.createDirectories(holderClass.getParent());
+        Files.write(holderClass, new byte[0]);
+
+        List<String> stale = CompiledFragments.staleFragments(outputDirectory.toFile())
+                                              .stream()
+                                              .map(File::getName)
+                                              .collect(Collectors.toList());
+
+        Assertions.assertEquals(List.of(
+                "io.axoniq.plugin.data.protection.testclasses.DeepPathJavaEvent.json"), stale);
+    }
+
+    @Test
+    void missingSubjectIdFailsTheCompilation() throws Exception {
+        Assertions.assertFalse(compile(outputDirectory, List.of(),
+                                       TEST_SOURCES + "generator/MetamodelGeneratorExceptionTest.java"));
+    }
+
+    @Test
+    void recursiveTypeFailsTheCompilation() throws Exception {
+        Assertions.assertFalse(compile(outputDirectory, List.of(),
+                                       TEST_SOURCES + "generator/MetamodelGeneratorIgnoreTypeTest.java"));
+    }
+
+    @Test
+    void ignoredRecursiveTypeMatchesTheReflectionBasedGenerator() throws Exception {
+        String ignore = "io.axoniq.plugin.data.protection.generator.MetamodelGeneratorIgnoreTypeTest$RecursiveType";
+        Assertions.assertTrue(compile(outputDirectory,
+                                      List.of("-A" + DataProtectionProcessor.IGNORES_OPTION + "=" + ignore),
+                                      TEST_SOURCES + "generator/MetamodelGeneratorIgnoreTypeTest.java"));
+
+        DataProtectionConfig fragment = CompiledFragments.read(
+                outputDirectory.toFile(), List.of("io.axoniq"), new ObjectMapper()).getConfig().get(0);
+
+        Assertions.assertEquals(new MetamodelGenerator(List.of(ignore)).generateMetamodel(
+                Class.forName(fragment.getType())), fragment);
+    }
+
+    private static boolean compile(Path outputDirectory, List<String> extraOptions, String... sources)
+            throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+            Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjects(sources);
+            List<String> options = new ArrayList<>(List.of(
+                    "-proc:only",
+                    "-classpath", System.getProperty("surefire.test.class.path",
+                                                     System.getProperty("java.class.path")),
+                    "-d", outputDirectory.toString()));
+            options.addAll(extraOptions);
+            JavaCompiler.CompilationTask task = compiler.getTask(
+                    new StringWriter(), fileManager, null, options, null, compilationUnits);
+            task.setProcessors(List.of(new DataProtectionProcessor()));
+            return task.call();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.watch;
+
+import org.codehaus.plexus.util.Scanner;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+class BuildDeltaTest {
+
+    @Test
+    void fullBuildsHaveNoDelta(@TempDir Path classes) {
+        Optional<Set<String>> result = BuildDelta.changedClasses(new DefaultBuildContext(), classes.toFile());
+
+        Assertions.assertEquals(Optional.empty(), result);
+    }
+
+    @Test
+    void changedAndDeletedClassesAreReported(@TempDir Path changed, @TempDir Path deleted) throws Exception {
+        Files.createDirectories(changed.resolve("io/axoniq"));
+        Files.write(changed.resolve("io/axoniq/Changed$Nested.class"), new byte[]{1});
+        Files.writeString(changed.resolve("io/axoniq/types.json"), "{}");
+        Files.write(deleted.resolve("Deleted.class"), new byte[]{1});
+
+        Optional<Set<String>> result = BuildDelta.changedClasses(new IncrementalBuildContext(changed, deleted),
+                                                                 changed.toFile());
+
+        Assertions.assertEquals(Optional.of(Set.of("io.axoniq.Changed$Nested", "Deleted")), result);
+    }
+
+    @Test
+    void incrementalBuildsWithoutChangedClassesHaveAnEmptyDelta(@TempDir Path changed, @TempDir Path deleted)
+            throws Exception {
+        Files.writeString(changed.resolve("types.json"), "{}");
+
+        Optional<Set<String>> result = BuildDelta.changedClasses(new IncrementalBuildContext(changed, deleted),
+                                                                 changed.toFile());
+
+        Assertions.assertEquals(Optional.of(Set.of()), result);
+    }
+
+    @Test
+    void changesOutsideTheOutputDirectoryChangeTheClasspath(@TempDir Path classes, @TempDir Path sibling)
+            throws Exception {
+        Path jar = Files.write(sibling.resolve("dependency.jar"), new byte[]{1});
+        Path siblingClasses = Files.createDirectories(sibling.resolve("classes"));
+        Files.write(siblingClasses.resolve("Sibling.class"), new byte[]{1});
+        List<String> classpath = List.of(classes.toString(), siblingClasses.toString(), jar.toString());
+        IncrementalBuildContext buildContext = new IncrementalBuildContext(classes, classes);
+        BuildDelta.recordClasspath(buildContext, classpath, classes.toFile(), List.of(classes.toFile()), List.of());
+
+        Files.write(classes.resolve("Changed.class"), new byte[]{1, 2});
+        Assertions.assertFalse(BuildDelta.classpathChanged(buildContext, classpath, classes.toFile(),
+                                                           List.of(classes.toFile())));
+
+        Files.write(siblingClasses.resolve("Sibling.class"), new byte[]{1, 2});
+        Assertions.assertTrue(BuildDelta.classpathChanged(buildContext, classpath, classes.toFile(),
+                                                          List.of(classes.toFile())));
+
+        BuildDelta.recordClasspath(buildContext, classpath, classes.toFile(), List.of(classes.toFile()), List.of());
+        Files.write(jar, new byte[]{1, 2});
+        Assertions.assertTrue(BuildDelta.classpathChanged(buildContext, classpath, classes.toFile(),
+                                                          List.of(classes.toFile())));
+    }
+
+    @Test
+    void onlyTheRecordedTypesOfSiblingDirectoriesAreFingerprinted(@TempDir Path classes, @TempDir Path sibling)
+            throws Exception {
+        Files.createDirectories(sibling.resolve("io/axoniq"));
+        Path dependency = Files.write(sibling.resolve("io/axoniq/Dependency.class"), new byte[]{1});
+        Path unrelated = Files.write(sibling.resolve("io/axoniq/Unrelated.class"), new byte[]{1});
+        List<String> classpath = List.of(classes.toString(), sibling.toString());
+        IncrementalBuildContext buildContext = new IncrementalBuildContext(classes, classes);
+        BuildDelta.recordClasspath(buildContext, classpath, classes.toFile(), List.of(classes.toFile()),
+                                   Set.of("io.axoniq.Dependency", "io.axoniq.Missing"));
+
+        Files.write(unrelated, new byte[]{1, 2});
+        Assertions.assertFalse(BuildDelta.classpathChanged(buildContext, classpath, classes.toFile(),
+                                                           List.of(classes.toFile())));
+
+        Files.write(sibling.resolve("io/axoniq/Missing.class"), new byte[]{1});
+        Assertions.assertTrue(BuildDelta.classpathChanged(buildContext, classpath, classes.toFile(),
+                                                          List.of(classes.toFile())));
+
+        Files.delete(sibling.resolve("io/axoniq/Missing.class"));
+        Files.write(dependency, new byte[]{1, 2});
+        Assertions.assertTrue(BuildDelta.classpathChanged(buildContext, classpath, classes.toFile(),
+                                                          List.of(classes.toFile())));
+    }
+
+    @Test
+    void scanRootsOutsideTheOutputDirectoryAreFingerprintedCompletely(@TempDir Path classes, @TempDir Path sibling)
+            throws Exception {
+        List<String> classpath = List.of(classes.toString(), sibling.toString());
+        List<File> scanRoots = List.of(classes.toFile(), sibling.toFile());
+        IncrementalBuildContext buildContext = new IncrementalBuildContext(classes, classes);
+        BuildDelta.recordClasspath(buildContext, classpath, classes.toFile(), scanRoots, Set.of("io.axoniq.Holder"));
+
+        Files.write(sibling.resolve("NewHolder.class"), new byte[]{1});
+
+        Assertions.assertTrue(BuildDelta.classpathChanged(buildContext, classpath, classes.toFile(), scanRoots));
+    }
+
+    @Test
+    void unrecordedClasspathsAreChanged(@TempDir Path classes) {
+        Assertions.assertTrue(BuildDelta.classpathChanged(new IncrementalBuildContext(classes, classes),
+                                                          List.of(classes.toString()),
+                                                          classes.toFile(),
+                                                          List.of(classes.toFile())));
+    }
+
+    /**
+     * Reports the files in one directory as changed and the files in another directory as deleted, and keeps its
+     * values in memory.
+     */
+    private static class IncrementalBuildContext extends DefaultBuildContext {
+
+        private final Path changed;
+        private final Path deleted;
+        private final Map<String, Object> values = new HashMap<>();
+
+        private IncrementalBuildContext(Path changed, Path deleted) {
+            this.changed = changed;
+            this.deleted = deleted;
+        }
+
+        @Override
+        public boolean isIncremental() {
+            return true;
+        }
+
+        @Override
+        public Scanner newScanner(File basedir) {
+            return super.newScanner(changed.toFile());
+        }
+
+        @Override
+        public Scanner newDeleteScanner(File basedir) {
+            return super.newScanner(deleted.toFile());
+        }
+
+        @Override
+        public Object getValue(String key) {
+            return values.get(key);
+        }
+
+        @Override
+        public void setValue(String key, Object value) {
+            values.put(key, value);
+        }
+    }
+}
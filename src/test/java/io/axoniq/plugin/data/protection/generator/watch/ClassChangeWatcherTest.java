@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.generator.watch;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+class ClassChangeWatcherTest {
+
+    @Test
+    void burstOfChangesIsReportedOnce(@TempDir Path classes) throws Exception {
+        Files.createDirectories(classes.resolve("io/axoniq"));
+        try (ClassChangeWatcher watcher = new ClassChangeWatcher(classes, 200)) {
+            Files.write(classes.resolve("io/axoniq/First.class"), new byte[]{1});
+            Files.write(classes.resolve("io/axoniq/Second.class"), new byte[]{1});
+            Files.write(classes.resolve("io/axoniq/Second.class"), new byte[]{2});
+            Files.writeString(classes.resolve("io/axoniq/types.json"), "{}");
+
+            Assertions.assertEquals(Set.of("io.axoniq.First", "io.axoniq.Second"), watcher.awaitChanges(5000));
+            Assertions.assertEquals(Set.of(), watcher.awaitChanges(100));
+        }
+    }
+
+    @Test
+    void classesInNewDirectoriesAreReported(@TempDir Path classes) throws Exception {
+        try (ClassChangeWatcher watcher = new ClassChangeWatcher(classes, 200)) {
+            Files.createDirectories(classes.resolve("io/axoniq"));
+            Files.write(classes.resolve("io/axoniq/Created.class"), new byte[]{1});
+
+            Assertions.assertTrue(watcher.awaitChanges(5000).contains("io.axoniq.Created"));
+        }
+    }
+
+    @Test
+    void deletedClassesAreReported(@TempDir Path classes) throws Exception {
+        Path deleted = classes.resolve("Deleted$Inner.class");
+        Files.write(deleted, new byte[]{1});
+        try (ClassChangeWatcher watcher = new ClassChangeWatcher(classes, 200)) {
+            Files.delete(deleted);
+
+            Assertions.assertEquals(Set.of("Deleted$Inner"), watcher.awaitChanges(5000));
+        }
+    }
+}
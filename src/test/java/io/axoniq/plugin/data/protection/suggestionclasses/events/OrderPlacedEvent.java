@@ -0,0 +1,17 @@
+package io.axoniq.plugin.data.protection.suggestionclasses.events;
+
+import io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder;
+import io.axoniq.plugin.data.protection.annotation.SubjectId;
+import io.axoniq.plugin.data.protection.suggestionclasses.geo.Address;
+import io.axoniq.plugin.data.protection.suggestionclasses.money.Money;
+
+@SensitiveDataHolder
+public class OrderPlacedEvent {
+
+    @SubjectId
+    String customerId;
+
+    Money total;
+
+    Address deliveryAddress;
+}
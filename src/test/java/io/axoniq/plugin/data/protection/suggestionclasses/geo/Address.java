@@ -0,0 +1,11 @@
+package io.axoniq.plugin.data.protection.suggestionclasses.geo;
+
+import io.axoniq.plugin.data.protection.annotation.SensitiveData;
+
+public class Address {
+
+    @SensitiveData(replacementValue = "street")
+    String street;
+
+    Coordinates coordinates;
+}
@@ -0,0 +1,8 @@
+package io.axoniq.plugin.data.protection.suggestionclasses.geo;
+
+public class Coordinates {
+
+    double latitude;
+
+    double longitude;
+}
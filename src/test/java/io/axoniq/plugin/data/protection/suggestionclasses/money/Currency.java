@@ -0,0 +1,8 @@
+package io.axoniq.plugin.data.protection.suggestionclasses.money;
+
+public class Currency {
+
+    String code;
+
+    int fractionDigits;
+}
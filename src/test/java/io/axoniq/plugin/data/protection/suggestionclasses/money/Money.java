@@ -0,0 +1,8 @@
+package io.axoniq.plugin.data.protection.suggestionclasses.money;
+
+public class Money {
+
+    long amount;
+
+    Currency currency;
+}
@@ -0,0 +1,12 @@
+package io.axoniq.plugin.data.protection.testclasses.polymorphic;
+
+import io.axoniq.plugin.data.protection.annotation.SensitiveData;
+
+public class BankAccount implements PaymentMethod {
+
+    @SensitiveData(replacementValue = "holder")
+    String holderName;
+
+    @SensitiveData(replacementValue = "iban")
+    String iban;
+}
@@ -0,0 +1,12 @@
+package io.axoniq.plugin.data.protection.testclasses.polymorphic;
+
+import io.axoniq.plugin.data.protection.annotation.SensitiveData;
+
+public class CreditCard implements PaymentMethod {
+
+    @SensitiveData(replacementValue = "holder")
+    String holderName;
+
+    @SensitiveData(replacementValue = "number")
+    String number;
+}
@@ -0,0 +1,5 @@
+package io.axoniq.plugin.data.protection.testclasses.polymorphic;
+
+public interface PaymentMethod {
+
+}
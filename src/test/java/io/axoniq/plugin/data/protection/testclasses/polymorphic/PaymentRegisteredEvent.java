@@ -0,0 +1,17 @@
+package io.axoniq.plugin.data.protection.testclasses.polymorphic;
+
+import io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder;
+import io.axoniq.plugin.data.protection.annotation.SubjectId;
+
+import java.util.List;
+
+@SensitiveDataHolder
+public class PaymentRegisteredEvent {
+
+    @SubjectId
+    String customerId;
+
+    PaymentMethod paymentMethod;
+
+    List<PaymentMethod> previousPaymentMethods;
+}
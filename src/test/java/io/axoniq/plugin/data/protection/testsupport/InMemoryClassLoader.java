@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.testsupport;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Map;
+
+/**
+ * Defines classes from class files held in memory. The class files are also served as resources, so class
+ * fingerprints can be computed for them.
+ */
+public class InMemoryClassLoader extends ClassLoader {
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    private final Map<String, byte[]> classFiles;
+
+    /**
+     * Create a loader for the given class files.
+     *
+     * @param classFiles The class files by binary class name.
+     * @param parent     The parent loader, which should be able to load the annotations used by the classes.
+     */
+    public InMemoryClassLoader(Map<String, byte[]> classFiles, ClassLoader parent) {
+        super(parent);
+        this.classFiles = Map.copyOf(classFiles);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] classFile = classFiles.get(name);
+        if (classFile == null) {
+            throw new ClassNotFoundException(name);
+        }
+        return defineClass(name, classFile, 0, classFile.length);
+    }
+
+    @Override
+    protected URL findResource(String name) {
+        if (!name.endsWith(".class")) {
+            return null;
+        }
+        byte[] classFile = classFiles.get(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+        if (classFile == null) {
+            return null;
+        }
+        try {
+            return new URL(null, "memory:/" + name, new URLStreamHandler() {
+                @Override
+                protected URLConnection openConnection(URL url) {
+                    return new URLConnection(url) {
+                        @Override
+                        public void connect() {
+                            connected = true;
+                        }
+
+                        @Override
+                        public InputStream getInputStream() {
+                            return new ByteArrayInputStream(classFile);
+                        }
+                    };
+                }
+            });
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException("Failed to create the URL of " + name, e);
+        }
+    }
+}
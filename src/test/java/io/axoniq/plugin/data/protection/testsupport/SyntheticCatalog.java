@@ -0,0 +1,452 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.testsupport;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import io.axoniq.plugin.data.protection.annotation.SensitiveData;
+import io.axoniq.plugin.data.protection.annotation.SensitiveDataHolder;
+import io.axoniq.plugin.data.protection.annotation.SubjectId;
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.NotFoundException;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.SignatureAttribute;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.AnnotationMemberValue;
+import javassist.bytecode.annotation.ArrayMemberValue;
+import javassist.bytecode.annotation.ClassMemberValue;
+import javassist.bytecode.annotation.MemberValue;
+import javassist.bytecode.annotation.StringMemberValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An event catalog of classes generated at runtime, for benchmarks and stress tests of the generator. The catalog is
+ * built from these shapes:
+ * <ul>
+ *     <li>holders, which embed all value objects of the first level,</li>
+ *     <li>shared value objects, where every level embeds all value objects of the next level, so the number of
+ *     paths per holder grows with {@code fanOut ^ depth} while the number of types only grows with {@code fanOut *
+ *     depth},</li>
+ *     <li>an inheritance chain all holders extend,</li>
+ *     <li>diamond interfaces, two interfaces extending a common one and implemented by a single class,</li>
+ *     <li>a generic container embedding a value object through its type parameter,</li>
+ *     <li>a cycle, a type embedding itself.</li>
+ * </ul>
+ * The classes can be written to a directory or loaded from memory.
+ */
+public class SyntheticCatalog {
+
+    /**
+     * How a type embeds the value objects of the next level.
+     */
+    public enum Shape {
+        /**
+         * As plain field.
+         */
+        FIELDS,
+        /**
+         * As element type of a {@link java.util.List}.
+         */
+        COLLECTIONS,
+        /**
+         * As value type of a {@link java.util.Map}.
+         */
+        MAPS,
+        /**
+         * As component type of an array.
+         */
+        ARRAYS
+    }
+
+    private final String pkg;
+    private final int holders;
+    private final int depth;
+    private final int fanOut;
+    private final Shape shape;
+    private final int inheritanceDepth;
+    private final int diamonds;
+    private final boolean genericContainers;
+    private final boolean cycles;
+
+    private Map<String, byte[]> classFiles;
+
+    private SyntheticCatalog(Builder builder) {
+        this.pkg = builder.pkg;
+        this.holders = builder.holders;
+        this.depth = builder.depth;
+        this.fanOut = builder.fanOut;
+        this.shape = builder.shape;
+        this.inheritanceDepth = builder.inheritanceDepth;
+        this.diamonds = builder.diamonds;
+        this.genericContainers = builder.genericContainers;
+        this.cycles = builder.cycles;
+    }
+
+    /**
+     * Start describing a catalog. Without further configuration, it holds a single holder embedding a single value
+     * object.
+     *
+     * @param pkg The package of the generated classes.
+     * @return A builder for the catalog.
+     */
+    public static Builder builder(String pkg) {
+        return new Builder(pkg);
+    }
+
+    /**
+     * @return The package of the generated classes.
+     */
+    public String getPackage() {
+        return pkg;
+    }
+
+    /**
+     * @return The class names of all holders.
+     */
+    public List<String> holderNames() {
+        List<String> names = new ArrayList<>();
+        for (int holder = 0; holder < holders; holder++) {
+            names.add(pkg + ".Holder" + holder);
+        }
+        return names;
+    }
+
+    /**
+     * @return The number of generated classes and interfaces.
+     */
+    public int size() {
+        return classFiles().size();
+    }
+
+    /**
+     * Generate the class files, once per catalog.
+     *
+     * @return The class files by binary class name.
+     */
+    public synchronized Map<String, byte[]> classFiles() {
+        if (classFiles == null) {
+            try {
+                classFiles = Collections.unmodifiableMap(generate());
+            } catch (NotFoundException | CannotCompileException | IOException e) {
+                throw new IllegalStateException("Failed to generate the catalog", e);
+            }
+        }
+        return classFiles;
+    }
+
+    /**
+     * Write the class files of the catalog.
+     *
+     * @param directory The root directory of the class files.
+     * @throws IOException If the class files can not be written.
+     */
+    public void write(Path directory) throws IOException {
+        for (Map.Entry<String, byte[]> classFile : classFiles().entrySet()) {
+            Path target = directory.resolve(classFile.getKey().replace('.', '/') + ".class");
+            Files.createDirectories(target.getParent());
+            Files.write(target, classFile.getValue());
+        }
+    }
+
+    /**
+     * Load the catalog from memory. Classes loaded this way can be inspected one by one, but packages can not be
+     * scanned; {@link SyntheticCatalog#write(Path) write} the catalog for that.
+     *
+     * @param parent The parent loader, which should be able to load the annotations used by the classes.
+     * @return A loader for the classes of the catalog.
+     */
+    public ClassLoader load(ClassLoader parent) {
+        return new InMemoryClassLoader(classFiles(), parent);
+    }
+
+    private Map<String, byte[]> generate() throws NotFoundException, CannotCompileException, IOException {
+        ClassPool pool = new ClassPool(true);
+        List<CtClass> classes = new ArrayList<>();
+        for (int level = depth - 1; level >= 0; level--) {
+            for (int index = 0; index < fanOut; index++) {
+                CtClass value = pool.makeClass(valueName(level, index));
+                addSensitiveField(pool, value, "secret", "secret-" + level + "-" + index);
+                addReferences(pool, value, level + 1);
+                classes.add(value);
+            }
+        }
+        CtClass superclass = null;
+        for (int level = inheritanceDepth - 1; level >= 0; level--) {
+            CtClass base = pool.makeClass(pkg + ".Base" + level, superclass);
+            addSensitiveField(pool, base, "inherited" + level, "inherited-" + level);
+            classes.add(base);
+            superclass = base;
+        }
+        for (int diamond = 0; diamond < diamonds; diamond++) {
+            classes.addAll(makeDiamond(pool, diamond));
+        }
+        if (genericContainers) {
+            CtClass box = pool.makeClass(pkg + ".Box");
+            box.setGenericSignature("<T:Ljava/lang/Object;>Ljava/lang/Object;");
+            addField(box, pool.get(Object.class.getName()), "value", "TT;", null);
+            addSensitiveField(pool, box, "label", "box");
+            classes.add(box);
+        }
+        if (cycles) {
+            CtClass node = pool.makeClass(pkg + ".Node");
+            addSensitiveField(pool, node, "secret", "node");
+            addField(node, node, "next", null, null);
+            classes.add(node);
+        }
+        for (String name : holderNames()) {
+            classes.add(makeHolder(pool, name, superclass));
+        }
+
+        Map<String, byte[]> result = new LinkedHashMap<>();
+        for (CtClass clazz : classes) {
+            result.put(clazz.getName(), clazz.toBytecode());
+        }
+        return result;
+    }
+
+    private CtClass makeHolder(ClassPool pool, String name, CtClass superclass) throws NotFoundException,
+            CannotCompileException {
+        CtClass holder = pool.makeClass(name, superclass);
+        holder.getClassFile().addAttribute(annotations(holder, SensitiveDataHolder.class.getName()));
+        addField(holder, pool.get(String.class.getName()), "id", null,
+                 annotations(holder, SubjectId.class.getName()));
+        addReferences(pool, holder, 0);
+        for (int diamond = 0; diamond < diamonds; diamond++) {
+            addField(holder, pool.get(pkg + ".Contact" + diamond), "contact" + diamond, null, null);
+        }
+        if (genericContainers && depth > 0) {
+            addField(holder, pool.get(pkg + ".Box"), "box", "L" + internalName(pkg + ".Box") + "<"
+                    + descriptor(valueName(0, 0)) + ">;", null);
+        }
+        if (cycles) {
+            addField(holder, pool.get(pkg + ".Node"), "node", null, null);
+        }
+        return holder;
+    }
+
+    /**
+     * Make the interfaces {@code Contact}, {@code Email} and {@code Phone}, where the latter two extend the first, and
+     * the class {@code ContactImpl} implementing both. The common interface lists the implementation as Jackson
+     * subtype, so it is also found without a package scan.
+     */
+    private List<CtClass> makeDiamond(ClassPool pool, int diamond) throws NotFoundException, CannotCompileException {
+        CtClass contact = pool.makeInterface(pkg + ".Contact" + diamond);
+        CtClass email = pool.makeInterface(pkg + ".Email" + diamond);
+        email.addInterface(contact);
+        CtClass phone = pool.makeInterface(pkg + ".Phone" + diamond);
+        phone.addInterface(contact);
+        CtClass implementation = pool.makeClass(pkg + ".ContactImpl" + diamond);
+        implementation.addInterface(email);
+        implementation.addInterface(phone);
+        addSensitiveField(pool, implementation, "address", "contact-" + diamond);
+
+        ConstPool constPool = contact.getClassFile().getConstPool();
+        Annotation type = new Annotation(JsonSubTypes.Type.class.getName(), constPool);
+        type.addMemberValue("value", new ClassMemberValue(implementation.getName(), constPool));
+        ArrayMemberValue types = new ArrayMemberValue(constPool);
+        types.setValue(new MemberValue[]{new AnnotationMemberValue(type, constPool)});
+        AnnotationsAttribute subTypes = annotations(contact, JsonSubTypes.class.getName());
+        Annotation annotation = subTypes.getAnnotations()[0];
+        annotation.addMemberValue("value", types);
+        subTypes.setAnnotation(annotation);
+        contact.getClassFile().addAttribute(subTypes);
+        return List.of(contact, email, phone, implementation);
+    }
+
+    private void addReferences(ClassPool pool, CtClass owner, int level) throws NotFoundException,
+            CannotCompileException {
+        if (level >= depth) {
+            return;
+        }
+        for (int index = 0; index < fanOut; index++) {
+            String referenced = valueName(level, index);
+            String field = "value" + index;
+            switch (shape) {
+                case COLLECTIONS:
+                    addField(owner, pool.get("java.util.List"), field,
+                             "Ljava/util/List<" + descriptor(referenced) + ">;", null);
+                    break;
+                case MAPS:
+                    addField(owner, pool.get("java.util.Map"), field,
+                             "Ljava/util/Map<Ljava/lang/String;" + descriptor(referenced) + ">;", null);
+                    break;
+                case ARRAYS:
+                    addField(owner, pool.get(referenced + "[]"), field, null, null);
+                    break;
+                default:
+                    addField(owner, pool.get(referenced), field, null, null);
+            }
+        }
+    }
+
+    private static void addSensitiveField(ClassPool pool, CtClass owner, String name, String replacementValue)
+            throws NotFoundException, CannotCompileException {
+        AnnotationsAttribute sensitiveData = annotations(owner, SensitiveData.class.getName());
+        Annotation annotation = sensitiveData.getAnnotations()[0];
+        annotation.addMemberValue("replacementValue",
+                                  new StringMemberValue(replacementValue, owner.getClassFile().getConstPool()));
+        sensitiveData.setAnnotation(annotation);
+        addField(owner, pool.get(String.class.getName()), name, null, sensitiveData);
+    }
+
+    private static void addField(CtClass owner,
+                                 CtClass type,
+                                 String name,
+                                 String genericSignature,
+                                 AnnotationsAttribute annotations) throws CannotCompileException {
+        CtField field = new CtField(type, name, owner);
+        if (genericSignature != null) {
+            field.getFieldInfo().addAttribute(
+                    new SignatureAttribute(owner.getClassFile().getConstPool(), genericSignature));
+        }
+        if (annotations != null) {
+            field.getFieldInfo().addAttribute(annotations);
+        }
+        owner.addField(field);
+    }
+
+    private static AnnotationsAttribute annotations(CtClass owner, String annotationType) {
+        ConstPool constPool = owner.getClassFile().getConstPool();
+        AnnotationsAttribute attribute = new AnnotationsAttribute(constPool, AnnotationsAttribute.visibleTag);
+        attribute.addAnnotation(new Annotation(annotationType, constPool));
+        return attribute;
+    }
+
+    private String valueName(int level, int index) {
+        return pkg + ".Value" + level + "_" + index;
+    }
+
+    private static String descriptor(String className) {
+        return "L" + internalName(className) + ";";
+    }
+
+    private static String internalName(String className) {
+        return className.replace('.', '/');
+    }
+
+    /**
+     * Describes the shapes and sizes of a {@link SyntheticCatalog}.
+     */
+    public static class Builder {
+
+        private final String pkg;
+        private int holders = 1;
+        private int depth = 1;
+        private int fanOut = 1;
+        private Shape shape = Shape.FIELDS;
+        private int inheritanceDepth;
+        private int diamonds;
+        private boolean genericContainers;
+        private boolean cycles;
+
+        private Builder(String pkg) {
+            this.pkg = pkg;
+        }
+
+        /**
+         * @param holders The number of holders.
+         * @return This builder.
+         */
+        public Builder holders(int holders) {
+            this.holders = holders;
+            return this;
+        }
+
+        /**
+         * @param depth The number of value object levels below the holders.
+         * @return This builder.
+         */
+        public Builder depth(int depth) {
+            this.depth = depth;
+            return this;
+        }
+
+        /**
+         * @param fanOut The number of value objects per level.
+         * @return This builder.
+         */
+        public Builder fanOut(int fanOut) {
+            this.fanOut = fanOut;
+            return this;
+        }
+
+        /**
+         * @param shape How value objects are embedded.
+         * @return This builder.
+         */
+        public Builder shape(Shape shape) {
+            this.shape = shape;
+            return this;
+        }
+
+        /**
+         * @param inheritanceDepth The number of superclasses of every holder.
+         * @return This builder.
+         */
+        public Builder inheritanceDepth(int inheritanceDepth) {
+            this.inheritanceDepth = inheritanceDepth;
+            return this;
+        }
+
+        /**
+         * @param diamonds The number of diamond interface hierarchies embedded by every holder.
+         * @return This builder.
+         */
+        public Builder diamonds(int diamonds) {
+            this.diamonds = diamonds;
+            return this;
+        }
+
+        /**
+         * @param genericContainers True if every holder should embed a value object through a generic container.
+         * @return This builder.
+         */
+        public Builder genericContainers(boolean genericContainers) {
+            this.genericContainers = genericContainers;
+            return this;
+        }
+
+        /**
+         * @param cycles True if every holder should embed a type embedding itself. The generator does not detect
+         *               cycles, so ignore the {@code Node} type or set a {@code maxDepth} guardrail when generating
+         *               the config.
+         * @return This builder.
+         */
+        public Builder cycles(boolean cycles) {
+            this.cycles = cycles;
+            return this;
+        }
+
+        /**
+         * @return The described catalog.
+         */
+        public SyntheticCatalog build() {
+            return new SyntheticCatalog(this);
+        }
+    }
+}
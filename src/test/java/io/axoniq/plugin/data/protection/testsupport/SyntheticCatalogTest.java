@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2021. AxonIQ
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.axoniq.plugin.data.protection.testsupport;
+
+import io.axoniq.plugin.data.protection.config.DataProtectionConfig;
+import io.axoniq.plugin.data.protection.config.DataProtectionConfigList;
+import io.axoniq.plugin.data.protection.config.SensitiveDataConfig;
+import io.axoniq.plugin.data.protection.generator.MetamodelGenerator;
+import io.axoniq.plugin.data.protection.generator.classloading.ScanClassLoader;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class SyntheticCatalogTest {
+
+    private static final String PACKAGE = "io.axoniq.synthetic";
+
+    private final SyntheticCatalog catalog = SyntheticCatalog.builder(PACKAGE)
+                                                             .holders(3)
+                                                             .depth(2)
+                                                             .fanOut(2)
+                                                             .shape(SyntheticCatalog.Shape.MAPS)
+                                                             .inheritanceDepth(2)
+                                                             .diamonds(1)
+                                                             .genericContainers(true)
+                                                             .cycles(true)
+                                                             .build();
+
+    @Test
+    void inMemoryCatalogCoversAllShapes() throws Exception {
+        ClassLoader loader = catalog.load(getClass().getClassLoader());
+
+        Class<?> holder = loader.loadClass(catalog.holderNames().get(0));
+
+        DataProtectionConfig result = generator(loader).generateMetamodel(holder);
+
+        Assertions.assertEquals("$.id", result.getSubjectId().getPath());
+        Assertions.assertEquals(List.of("$.inherited0",
+                                        "$.inherited1",
+                                        "$.value0.*.secret",
+                                        "$.value0.*.value0.*.secret",
+                                        "$.value0.*.value1.*.secret",
+                                        "$.value1.*.secret",
+                                        "$.value1.*.value0.*.secret",
+                                        "$.value1.*.value1.*.secret",
+                                        "$.contact0.address",
+                                        "$.box[*].secret",
+                                        "$.box[*].value0.*.secret",
+                                        "$.box[*].value1.*.secret"),
+                                paths(result));
+    }
+
+    @Test
+    void writtenCatalogCanBeScanned(@TempDir Path classes) throws Exception {
+        catalog.write(classes);
+        ClassLoader inMemory = catalog.load(getClass().getClassLoader());
+        List<DataProtectionConfig> expected = new ArrayList<>();
+        for (String holder : catalog.holderNames()) {
+            expected.add(generator(inMemory).generateMetamodel(inMemory.loadClass(holder)));
+        }
+
+        try (ScanClassLoader loader = new ScanClassLoader(List.of(classes.toUri().toURL()),
+                                                          getClass().getClassLoader())) {
+            DataProtectionConfigList result = generator(loader).generateMetamodel(List.of(PACKAGE));
+
+            List<DataProtectionConfig> configs = new ArrayList<>(result.getConfig());
+            configs.sort(Comparator.comparing(DataProtectionConfig::getType));
+            Assertions.assertEquals(expected, configs);
+        }
+    }
+
+    @Test
+    void typesGrowWithDepthAndFanOut() {
+        SyntheticCatalog small = SyntheticCatalog.builder(PACKAGE).holders(10).depth(3).fanOut(4).build();
+
+        Assertions.assertEquals(10 + 3 * 4, small.size());
+        Assertions.assertEquals(catalog.holderNames().size() + 2 * 2 + 2 + 4 + 1 + 1, catalog.size());
+    }
+
+    private static MetamodelGenerator generator(ClassLoader loader) {
+        return new MetamodelGenerator(new SystemStreamLog(), List.of(PACKAGE + ".Node"), loader);
+    }
+
+    private static List<String> paths(DataProtectionConfig config) {
+        return config.getSensitiveData().stream().map(SensitiveDataConfig::getPath).collect(Collectors.toList());
+    }
+}